@@ -0,0 +1,219 @@
+package com.yolt.accountsandtransactions.benchmark;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.yolt.accountsandtransactions.accounts.Account;
+import com.yolt.accountsandtransactions.accounts.AccountRepository;
+import com.yolt.accountsandtransactions.datascience.DsTransaction;
+import com.yolt.accountsandtransactions.datascience.DsTransactionsRepository;
+import com.yolt.accountsandtransactions.datascience.PendingType;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionLoader;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import com.yolt.accountsandtransactions.transactions.TransactionRepository;
+import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichments;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository.TransactionEnrichmentsPrimaryKey;
+import lombok.NonNull;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A thread-safe in-memory stand-in for the Cassandra tables that an ingestion reads and writes, so the ingestion can be
+ * benchmarked without a database.
+ * <p>
+ * The repositories are stand-ins (Mockito mocks answered from the maps below) for the methods the ingestion uses, the
+ * other methods return the Mockito defaults.  Writes are applied when their statements are built, the statements
+ * themselves are empty and are completed right away by the {@link #session()}.  This keeps the order in which the
+ * ingestion issues its deletes and upserts, without the latency of the database.
+ */
+public class InMemoryStorage {
+
+    private final ConcurrentMap<UUID, ConcurrentMap<UUID, Account>> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AccountKey, ConcurrentNavigableMap<RowKey, Transaction>> transactions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AccountKey, ConcurrentNavigableMap<RowKey, DsTransaction>> dsTransactions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TransactionEnrichmentsPrimaryKey, TransactionEnrichments> enrichments = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link TransactionLoader} of the stored transactions, the equivalent of {@link TransactionRepository#getTransactionsInAccountFromDate}.
+     */
+    public TransactionLoader transactionLoader() {
+        return (userId, accountId, earliestDateInclusive) -> new ArrayList<>(rows(transactions, userId, accountId)
+                .tailMap(new RowKey(earliestDateInclusive, ""), true)
+                .values());
+    }
+
+    public AccountRepository accountRepository() {
+        var repository = mock(AccountRepository.class);
+        when(repository.getAccounts(any())).thenAnswer(invocation -> List.copyOf(accountsOf(invocation.getArgument(0)).values()));
+        when(repository.getUserSiteIdsForAccountIds(any(), any())).thenAnswer(invocation -> {
+            Map<UUID, Account> accountsOfUser = accountsOf(invocation.getArgument(0));
+            Collection<UUID> accountIds = invocation.getArgument(1);
+            return accountIds.stream()
+                    .map(accountsOfUser::get)
+                    .filter(Objects::nonNull)
+                    .collect(toMap(Account::getId, Account::getUserSiteId));
+        });
+        doAnswer(invocation -> {
+            Account account = invocation.getArgument(0);
+            accountsOf(account.getUserId()).put(account.getId(), account);
+            return null;
+        }).when(repository).upsert(any());
+        return repository;
+    }
+
+    public TransactionRepository transactionRepository() {
+        var repository = mock(TransactionRepository.class);
+        var loader = transactionLoader();
+        when(repository.getTransactionsInAccountFromDate(any(), any(), any()))
+                .thenAnswer(invocation -> loader.load(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        when(repository.get(any(UUID.class), any(UUID.class), any(LocalDate.class), any(String.class))).thenAnswer(invocation ->
+                Optional.ofNullable(rows(transactions, invocation.getArgument(0), invocation.getArgument(1))
+                        .get(new RowKey(invocation.getArgument(2), invocation.getArgument(3)))));
+        when(repository.upsertStatements(anyList())).thenAnswer(invocation -> {
+            List<Transaction> upserts = invocation.getArgument(0);
+            upserts.forEach(trx -> rows(transactions, trx.getUserId(), trx.getAccountId()).put(new RowKey(trx.getDate(), trx.getId()), trx));
+            return List.of(new BatchStatement());
+        });
+        when(repository.deleteSpecificTransactionsStatement(anyList())).thenAnswer(invocation -> {
+            delete(transactions, invocation.getArgument(0));
+            return new BatchStatement();
+        });
+        return repository;
+    }
+
+    public DsTransactionsRepository dsTransactionsRepository() {
+        var repository = mock(DsTransactionsRepository.class);
+        when(repository.saveTransactionBatchStatements(anyList())).thenAnswer(invocation -> {
+            List<DsTransaction> upserts = invocation.getArgument(0);
+            upserts.forEach(trx -> rows(dsTransactions, trx.getUserId(), trx.getAccountId())
+                    .put(new RowKey(LocalDate.parse(trx.getDate(), DsTransaction.DATE_FORMAT), trx.getTransactionId()), trx));
+            return List.of(new BatchStatement());
+        });
+        when(repository.deleteSpecificTransactionsStatements(anyList())).thenAnswer(invocation -> {
+            delete(dsTransactions, invocation.getArgument(0));
+            return List.of(new BatchStatement());
+        });
+        when(repository.getDatesPendingTransactions(any(), anyList())).thenAnswer(invocation -> {
+            UUID userId = invocation.getArgument(0);
+            List<UUID> accountIds = invocation.getArgument(1);
+            return accountIds.stream()
+                    .flatMap(accountId -> pendingDsTransactions(userId, accountId).stream())
+                    .map(trx -> trx.getDate().substring(0, 7));
+        });
+        when(repository.getPendingTransactionDates(any(), any())).thenAnswer(invocation -> pendingDsTransactions(invocation.getArgument(0), invocation.getArgument(1)).stream()
+                .map(trx -> LocalDate.parse(trx.getDate(), DsTransaction.DATE_FORMAT))
+                .collect(toList()));
+        return repository;
+    }
+
+    public TransactionEnrichmentsRepository transactionEnrichmentsRepository() {
+        var repository = mock(TransactionEnrichmentsRepository.class);
+        when(repository.deleteSpecificEnrichmentsStatement(anyList())).thenAnswer(invocation -> {
+            List<TransactionPrimaryKey> keys = invocation.getArgument(0);
+            keys.forEach(key -> enrichments.remove(new TransactionEnrichmentsPrimaryKey(key.getUserId(), key.getAccountId(), key.getDate(), key.getId())));
+            return new BatchStatement();
+        });
+        when(repository.getAsync(any(), any(), anyList())).thenAnswer(invocation -> {
+            List<TransactionEnrichmentsPrimaryKey> keys = invocation.getArgument(2);
+            return CompletableFuture.completedFuture(keys.stream()
+                    .map(enrichments::get)
+                    .filter(Objects::nonNull)
+                    .collect(toList()));
+        });
+        return repository;
+    }
+
+    /**
+     * A session that completes every statement right away, the writes are applied by the repositories above.
+     */
+    public Session session() {
+        var session = mock(Session.class);
+        when(session.executeAsync(any(Statement.class))).thenAnswer(invocation -> CompletedResultSetFuture.INSTANCE);
+        return session;
+    }
+
+    /**
+     * The number of transactions that are stored, for a sanity check of a run.
+     */
+    public long transactionCount() {
+        return transactions.values().stream().mapToLong(Map::size).sum();
+    }
+
+    private ConcurrentMap<UUID, Account> accountsOf(final UUID userId) {
+        return accounts.computeIfAbsent(userId, ignored -> new ConcurrentHashMap<>());
+    }
+
+    private List<DsTransaction> pendingDsTransactions(final UUID userId, final UUID accountId) {
+        return rows(dsTransactions, userId, accountId).values().stream()
+                .filter(trx -> PendingType.PENDING.equals(trx.getPending()))
+                .collect(toList());
+    }
+
+    private static <T> ConcurrentNavigableMap<RowKey, T> rows(final ConcurrentMap<AccountKey, ConcurrentNavigableMap<RowKey, T>> table, final UUID userId, final UUID accountId) {
+        return table.computeIfAbsent(new AccountKey(userId, accountId), ignored -> new ConcurrentSkipListMap<>());
+    }
+
+    private static <T> void delete(final ConcurrentMap<AccountKey, ConcurrentNavigableMap<RowKey, T>> table, final @NonNull List<TransactionPrimaryKey> keys) {
+        keys.forEach(key -> rows(table, key.getUserId(), key.getAccountId()).remove(new RowKey(key.getDate(), key.getId())));
+    }
+
+    private record AccountKey(UUID userId, UUID accountId) {
+    }
+
+    /**
+     * The clustering key of the transactions of an account: ordered by date, then by id.
+     */
+    private record RowKey(LocalDate date, String id) implements Comparable<RowKey> {
+
+        @Override
+        public int compareTo(final RowKey other) {
+            int byDate = date.compareTo(other.date);
+            return byDate != 0 ? byDate : id.compareTo(other.id);
+        }
+    }
+
+    private static class CompletedResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+        static final CompletedResultSetFuture INSTANCE = new CompletedResultSetFuture();
+
+        private CompletedResultSetFuture() {
+            set(null);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            return null;
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+}
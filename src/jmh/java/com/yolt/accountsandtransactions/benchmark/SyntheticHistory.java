@@ -0,0 +1,164 @@
+package com.yolt.accountsandtransactions.benchmark;
+
+import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import com.yolt.accountsandtransactions.transactions.TransactionService;
+import com.yolt.accountsandtransactions.transactions.TransactionService.AccountIdentifiable;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import nl.ing.lovebird.extendeddata.common.CurrencyCode;
+import nl.ing.lovebird.extendeddata.transaction.ExtendedTransactionDTO;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import nl.ing.lovebird.providerdomain.ProviderTransactionType;
+import nl.ing.lovebird.providerdomain.YoltCategory;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.BOOKED;
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.PENDING;
+
+/**
+ * Generates a reproducible (seeded) transaction history of a single account, as it is used by the reconciliation
+ * benchmarks.
+ * <p>
+ * The history consists of {@link #stored} transactions (already in the database) and an {@link #upstream} batch as
+ * a provider would send it.  The upstream batch always covers the most recent part of the stored history, the
+ * {@link Settings#overlap} determines how much of it:
+ * <pre>
+ *   stored:   |-------------------------------------------|
+ *   upstream:                     |-----------------------|+ new
+ *                                 ^ overlap = 0.5
+ * </pre>
+ * Transactions are spread over 5 per day.  Pending transactions only occur at the most recent end of the history
+ * (just like at a bank), duplicates are transactions with the same date, amount and description but a distinct
+ * external-id (a bank that sends two identical coffees).
+ */
+@Value
+public class SyntheticHistory {
+
+    public static final ZonedDateTime NOW = ZonedDateTime.of(2022, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+    private static final int TRANSACTIONS_PER_DAY = 5;
+
+    UUID userId;
+    UUID accountId;
+
+    /**
+     * The stored transactions in the window of the upstream transactions (and before that, see {@link Settings#overlap}).
+     */
+    List<Transaction> stored;
+
+    /**
+     * The upstream transactions: the overlapping part of the stored history and the new transactions.
+     */
+    List<ProviderTransactionDTO> upstream;
+
+    @Value
+    @Builder
+    public static class Settings {
+        /**
+         * Number of transactions in the database.
+         */
+        @Builder.Default
+        int storedSize = 1_000;
+        /**
+         * Fraction (0..1) of the stored history that is sent again by the bank.
+         */
+        @Builder.Default
+        double overlap = 0.5;
+        /**
+         * Number of new transactions in the upstream batch.
+         */
+        @Builder.Default
+        int newTransactions = 10;
+        /**
+         * Fraction (0..1) of the most recent transactions that is pending.
+         */
+        @Builder.Default
+        double pendingRate = 0.02;
+        /**
+         * Fraction (0..1) of the transactions that is a duplicate of its predecessor (same date, amount, description).
+         */
+        @Builder.Default
+        double duplicateRate = 0.01;
+        /**
+         * Only generate booked transactions, the attribute based reconciliation only operates on those.
+         */
+        @Builder.Default
+        boolean bookedOnly = false;
+        @Builder.Default
+        long seed = 42L;
+    }
+
+    public static SyntheticHistory generate(final @NonNull Settings settings) {
+        var random = new Random(settings.seed);
+        var userId = new UUID(settings.seed, 1L);
+        var accountId = new UUID(settings.seed, 2L);
+        var clock = Clock.fixed(NOW.toInstant(), ZoneOffset.UTC);
+        var accountIdentifiable = new AccountIdentifiable(userId, accountId, CurrencyCode.EUR);
+
+        int total = settings.storedSize + settings.newTransactions;
+        int pendingFrom = settings.bookedOnly ? Integer.MAX_VALUE : total - (int) Math.round(total * settings.pendingRate);
+
+        var history = new ArrayList<ProviderTransactionDTO>(total);
+        for (int i = 0; i < total; i++) {
+            var status = i >= pendingFrom ? PENDING : BOOKED;
+            if (i > 0 && random.nextDouble() < settings.duplicateRate) {
+                history.add(history.get(i - 1).toBuilder()
+                        .externalId("ext-" + i)
+                        .status(status)
+                        .build());
+            } else {
+                history.add(transaction(random, i, total, status));
+            }
+        }
+
+        var storedHistory = history.subList(0, settings.storedSize);
+        var stored = storedHistory.stream()
+                .map(trx -> TransactionService.map(
+                        new ProviderTransactionWithId(trx, UUID.nameUUIDFromBytes(trx.getExternalId().getBytes()).toString()),
+                        accountIdentifiable,
+                        true,
+                        clock,
+                        Instant.now(clock)))
+                .collect(Collectors.toList());
+
+        int firstUpstream = settings.storedSize - (int) Math.round(settings.storedSize * settings.overlap);
+        var upstream = new ArrayList<>(history.subList(firstUpstream, total));
+
+        return new SyntheticHistory(userId, accountId, stored, upstream);
+    }
+
+    private static ProviderTransactionDTO transaction(Random random, int index, int total, TransactionStatus status) {
+        var dateTime = NOW.minusDays((total - index) / TRANSACTIONS_PER_DAY)
+                .withHour(random.nextInt(24))
+                .withMinute(random.nextInt(60));
+        var amount = BigDecimal.valueOf(1 + random.nextInt(100_000), 2);
+        var credit = random.nextInt(5) == 0;
+
+        return ProviderTransactionDTO.builder()
+                .externalId("ext-" + index)
+                .dateTime(dateTime)
+                .amount(amount)
+                .status(status)
+                .type(credit ? ProviderTransactionType.CREDIT : ProviderTransactionType.DEBIT)
+                .category(YoltCategory.GENERAL)
+                .description("description " + random.nextInt(200))
+                .extendedTransaction(ExtendedTransactionDTO.builder()
+                        .creditorName(credit ? null : "creditor " + random.nextInt(200))
+                        .debtorName(credit ? "debtor " + random.nextInt(200) : null)
+                        .bookingDate(dateTime)
+                        .build())
+                .build();
+    }
+}
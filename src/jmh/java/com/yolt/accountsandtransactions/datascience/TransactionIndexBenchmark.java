@@ -0,0 +1,75 @@
+package com.yolt.accountsandtransactions.datascience;
+
+import com.yolt.accountsandtransactions.benchmark.SyntheticHistory;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Builds a {@link TransactionIndex} over the upstream transactions and removes (nearly) all of them again in random
+ * order, this is what {@link TransactionSyncService#reconcileUpstreamTransactionsWithPersisted} does with it.
+ * <p>
+ * Note that the {@code LIST} index is O(n²), it takes minutes per invocation at 100k transactions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class TransactionIndexBenchmark {
+
+    public enum IndexType {
+        LIST(ListTransactionIndex::new),
+        IDENTITY(IdentityTransactionIndex::new);
+
+        final Function<Collection<ProviderTransactionDTO>, TransactionIndex> factory;
+
+        IndexType(Function<Collection<ProviderTransactionDTO>, TransactionIndex> factory) {
+            this.factory = factory;
+        }
+    }
+
+    @Param({"IDENTITY", "LIST"})
+    public IndexType indexType;
+
+    @Param({"100", "1000", "10000"})
+    public int storedSize;
+
+    @Param({"0.01"})
+    public double duplicateRate;
+
+    private List<ProviderTransactionDTO> upstream;
+    private List<ProviderTransactionDTO> removalOrder;
+
+    @Setup
+    public void setup() {
+        upstream = SyntheticHistory.generate(SyntheticHistory.Settings.builder()
+                .storedSize(storedSize)
+                .overlap(1.0)
+                .duplicateRate(duplicateRate)
+                .build()).getUpstream();
+
+        // Leave the new transactions in the index, just like the reconciliation would do.
+        removalOrder = new ArrayList<>(upstream.subList(0, storedSize));
+        Collections.shuffle(removalOrder, new Random(42L));
+    }
+
+    @Benchmark
+    public void buildAndDrain(Blackhole blackhole) {
+        var index = indexType.factory.apply(upstream);
+        for (ProviderTransactionDTO trx : removalOrder) {
+            blackhole.consume(index.byExternalId().get(trx.getExternalId()));
+            index.removeFromIndex(trx);
+        }
+        blackhole.consume(index.transactions());
+    }
+}
@@ -0,0 +1,69 @@
+package com.yolt.accountsandtransactions.datascience;
+
+import com.yolt.accountsandtransactions.benchmark.SyntheticHistory;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The default sync path ({@link TransactionSyncService#reconcile}) without the database: selecting the stored
+ * transactions in the window of the upstream transactions and reconciling them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class TransactionSyncServiceBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int storedSize;
+
+    @Param({"0.1", "1.0"})
+    public double overlap;
+
+    @Param({"0.02"})
+    public double pendingRate;
+
+    @Param({"0.01"})
+    public double duplicateRate;
+
+    private List<Transaction> stored;
+    private List<ProviderTransactionDTO> upstream;
+    private final Clock clock = Clock.fixed(SyntheticHistory.NOW.toInstant(), SyntheticHistory.NOW.getZone());
+
+    @Setup
+    public void setup() {
+        var history = SyntheticHistory.generate(SyntheticHistory.Settings.builder()
+                .storedSize(storedSize)
+                .overlap(overlap)
+                .pendingRate(pendingRate)
+                .duplicateRate(duplicateRate)
+                .build());
+        stored = history.getStored();
+        upstream = history.getUpstream();
+    }
+
+    @Benchmark
+    public Instruction reconcile() {
+        var storedInWindow = TransactionSyncService.retrieveStoredTransactionsInSameTimeWindow("BENCHMARK", upstream, this::load);
+        return TransactionSyncService.reconcileUpstreamTransactionsWithPersisted(storedInWindow, upstream, "BENCHMARK", clock);
+    }
+
+    /**
+     * Mimics {@link com.yolt.accountsandtransactions.transactions.TransactionRepository#getTransactionsInAccountFromDate}.
+     */
+    private List<Transaction> load(LocalDate earliestDateInclusive) {
+        return stored.stream()
+                .filter(trx -> !trx.getDate().isBefore(earliestDateInclusive))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,218 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.yolt.accountsandtransactions.TestUtils;
+import com.yolt.accountsandtransactions.accounts.AccountEventsProducer;
+import com.yolt.accountsandtransactions.accounts.AccountService;
+import com.yolt.accountsandtransactions.benchmark.InMemoryStorage;
+import com.yolt.accountsandtransactions.benchmark.SyntheticHistory;
+import com.yolt.accountsandtransactions.datascience.AccountPendingRangeRepository;
+import com.yolt.accountsandtransactions.datascience.DataScienceCassandraSession;
+import com.yolt.accountsandtransactions.datascience.DataScienceService;
+import com.yolt.accountsandtransactions.datascience.DsAccountDataDeletionService;
+import com.yolt.accountsandtransactions.datascience.DsAccountsCurrentService;
+import com.yolt.accountsandtransactions.datascience.DsCreditCardsCurrentService;
+import com.yolt.accountsandtransactions.datascience.PendingTransactionRangeService;
+import com.yolt.accountsandtransactions.datascience.TransactionSyncService;
+import com.yolt.accountsandtransactions.inputprocessing.dataquality.StartBalanceStrategyAnalyzer;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.activities.ActivityEnrichmentService;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.offloading.OffloadService;
+import com.yolt.accountsandtransactions.summary.AccountTransactionStatusService;
+import com.yolt.accountsandtransactions.transactions.TransactionService;
+import com.yolt.accountsandtransactions.transactions.cycles.TransactionCyclesService;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.ing.lovebird.clienttokens.ClientUserToken;
+import nl.ing.lovebird.clienttokens.test.TestJwtClaims;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays ingestion requests through {@link AccountsAndTransactionsService#processAccountsAndTransactionsForUserSite}, with
+ * the storage replaced by an {@link InMemoryStorage}.  Everything between the request and the storage is the production
+ * code (account mapping, reconciliation, the write pipeline, metrics), except for Kafka, the enrichments and the
+ * diagnostics, which are mocked.
+ * <p>
+ * The requests are either recorded ({@code requests}: a directory with {@link AccountsAndTransactionsRequestDTO} JSON
+ * files, replayed in the order of their names) or synthetic ({@code users} user-sites with a {@link SyntheticHistory} of
+ * {@code transactions} transactions each).  Every request is ingested once during the setup, so the measured refreshes
+ * reconcile against stored transactions, like the refreshes of an existing user-site.
+ * <p>
+ * {@link #throughput()} reports refreshes per second, {@link #latency()} the latency distribution per refresh (p50, p99, ..)
+ * and the gc profiler the allocation per refresh ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class AccountsAndTransactionsServiceReplayBenchmark {
+
+    /**
+     * A directory with recorded requests, synthetic requests are generated if empty.
+     */
+    @Param({""})
+    public String requests;
+
+    @Param({"10"})
+    public int users;
+
+    @Param({"100", "1000"})
+    public int transactions;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .registerModule(new JavaTimeModule())
+            .registerModule(new Jdk8Module());
+
+    private List<Refresh> refreshes;
+    private int next;
+    private AccountsAndTransactionsService service;
+
+    @Setup
+    public void setup() throws IOException {
+        var clock = Clock.systemUTC();
+        var storage = new InMemoryStorage();
+        var metrics = new AccountsAndTransactionMetrics(clock, new SimpleMeterRegistry());
+
+        var dataScienceCassandraSession = mock(DataScienceCassandraSession.class);
+        var session = storage.session();
+        when(dataScienceCassandraSession.getSession()).thenReturn(session);
+
+        var transactionRepository = storage.transactionRepository();
+        var dsTransactionsRepository = storage.dsTransactionsRepository();
+        var transactionService = new TransactionService(
+                transactionRepository,
+                new TransactionEnrichmentsService(storage.transactionEnrichmentsRepository()),
+                mock(TransactionCyclesService.class),
+                mock(OffloadService.class),
+                mock(AccountTransactionStatusService.class),
+                mock(PendingTransactionRangeService.class),
+                mock(UpstreamDigestService.class),
+                clock,
+                metrics);
+        var accountService = new AccountService(
+                clock,
+                storage.accountRepository(),
+                mock(AccountEventsProducer.class),
+                mock(OffloadService.class),
+                transactionService,
+                mock(DsAccountDataDeletionService.class),
+                false);
+        var dataScienceService = new DataScienceService(
+                dsTransactionsRepository,
+                objectMapper,
+                mock(DsAccountsCurrentService.class),
+                mock(DsCreditCardsCurrentService.class),
+                new PendingTransactionRangeService(mock(AccountPendingRangeRepository.class), dsTransactionsRepository, false),
+                clock);
+
+        service = new AccountsAndTransactionsService(
+                dataScienceService,
+                mock(AccountsAndTransactionsFinishedActivityEventProducer.class),
+                accountService,
+                transactionService,
+                new TransactionSyncService(transactionRepository, clock),
+                mock(ActivityEnrichmentService.class),
+                mock(StartBalanceStrategyAnalyzer.class),
+                new AccountIdProvider.RandomAccountIdProvider(),
+                new TransactionIdProvider.RandomTransactionIdProvider(),
+                mock(AccountsAndTransactionDiagnosticsService.class),
+                transactionRepository,
+                new AccountIngestionExecutor(Runnable::run, 1),
+                new TransactionWritePipeline(session, dataScienceCassandraSession, metrics, 8),
+                new UpstreamDigestService(mock(AccountUpstreamDigestRepository.class), metrics, objectMapper, false),
+                new ShadowEvaluator(Runnable::run, metrics, 0.0, Map.of()),
+                mock(AccountTransactionStatusService.class),
+                metrics,
+                clock);
+
+        refreshes = requests.isEmpty() ? synthetic() : recorded(Path.of(requests));
+        refreshes.forEach(this::ingest);
+        if (storage.transactionCount() == 0) {
+            throw new IllegalStateException("No transactions were stored while priming the benchmark.");
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void throughput() {
+        ingest(nextRefresh());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void latency() {
+        ingest(nextRefresh());
+    }
+
+    private Refresh nextRefresh() {
+        var refresh = refreshes.get(next);
+        next = (next + 1) % refreshes.size();
+        return refresh;
+    }
+
+    private void ingest(final Refresh refresh) {
+        service.processAccountsAndTransactionsForUserSite(refresh.clientUserToken, refresh.request);
+    }
+
+    private List<Refresh> synthetic() {
+        var synthetic = new ArrayList<Refresh>(users);
+        for (int i = 0; i < users; i++) {
+            var history = SyntheticHistory.generate(SyntheticHistory.Settings.builder()
+                    .storedSize(transactions)
+                    .overlap(1.0)
+                    .seed(i)
+                    .build());
+            var request = TestUtils.ingestionRequestSuccessMessageWithTransactions(history.getUserId(), UUID.randomUUID(), UUID.randomUUID(),
+                    "account-" + i, "BENCHMARK", UUID.randomUUID(), history.getUpstream());
+            synthetic.add(new Refresh(clientUserToken(history.getUserId()), request));
+        }
+        return synthetic;
+    }
+
+    private List<Refresh> recorded(final Path directory) throws IOException {
+        var recorded = new ArrayList<Refresh>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(it -> it.toString().endsWith(".json")).sorted().toList()) {
+                var request = objectMapper.readValue(file.toFile(), AccountsAndTransactionsRequestDTO.class);
+                var userId = request.getIngestionAccounts().stream()
+                        .map(AccountFromProviders::getYoltUserId)
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("The recorded request " + file + " has no accounts."));
+                recorded.add(new Refresh(clientUserToken(userId), request));
+            }
+        }
+        if (recorded.isEmpty()) {
+            throw new IllegalArgumentException("There are no recorded requests (*.json) in " + directory);
+        }
+        return recorded;
+    }
+
+    private static ClientUserToken clientUserToken(final UUID userId) {
+        return new ClientUserToken(null, TestJwtClaims.createClientUserClaims("benchmark", UUID.randomUUID(), UUID.randomUUID(), userId));
+    }
+
+    private record Refresh(ClientUserToken clientUserToken, AccountsAndTransactionsRequestDTO request) {
+    }
+}
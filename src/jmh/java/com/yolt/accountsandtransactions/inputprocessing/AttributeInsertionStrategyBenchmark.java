@@ -0,0 +1,82 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.yolt.accountsandtransactions.benchmark.SyntheticHistory;
+import com.yolt.accountsandtransactions.datascience.TransactionSyncService;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.yolt.accountsandtransactions.inputprocessing.matching.Matchers.ACTIVATED_ATTR_MATCHERS;
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.BOOKED;
+
+/**
+ * The attribute based reconciliation ({@link AttributeInsertionStrategy}) for every provider configuration in
+ * {@link com.yolt.accountsandtransactions.inputprocessing.matching.Matchers#ACTIVATED_ATTR_MATCHERS}, without the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class AttributeInsertionStrategyBenchmark {
+
+    @Param({"ABN_AMRO", "ASN_BANK", "BUNQ", "ING_NL", "KNAB_BANK_NL", "RABOBANK", "REGIO_BANK", "SNS_BANK", "TRIODOS_BANK_NL"})
+    public String provider;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int storedSize;
+
+    @Param({"0.1", "1.0"})
+    public double overlap;
+
+    @Param({"0.01"})
+    public double duplicateRate;
+
+    private UUID accountId;
+    private List<Transaction> stored;
+    private List<ProviderTransactionDTO> upstream;
+    private AttributeInsertionStrategy strategy;
+
+    @Setup
+    public void setup() {
+        var history = SyntheticHistory.generate(SyntheticHistory.Settings.builder()
+                .storedSize(storedSize)
+                .overlap(overlap)
+                .duplicateRate(duplicateRate)
+                .bookedOnly(true)
+                .build());
+        accountId = history.getAccountId();
+        stored = history.getStored();
+        upstream = history.getUpstream();
+        strategy = new AttributeInsertionStrategy(
+                TransactionInsertionStrategy.Mode.ACTIVE,
+                (userId, account, earliestDateInclusive) -> load(earliestDateInclusive),
+                new TransactionIdProvider.RandomTransactionIdProvider(),
+                ACTIVATED_ATTR_MATCHERS.get(provider));
+    }
+
+    /**
+     * Equivalent to {@link AttributeInsertionStrategy#determineTransactionPersistenceInstruction} minus the client token.
+     */
+    @Benchmark
+    public Instruction reconcile() {
+        var storedInWindow = TransactionSyncService.retrieveStoredTransactionsInSameTimeWindow(provider, upstream, this::load).stream()
+                .filter(trx -> trx.getStatus() == BOOKED)
+                .collect(Collectors.toList());
+        return strategy.toInstruction(accountId, upstream, storedInWindow);
+    }
+
+    private List<Transaction> load(LocalDate earliestDateInclusive) {
+        return stored.stream()
+                .filter(trx -> !trx.getDate().isBefore(earliestDateInclusive))
+                .collect(Collectors.toList());
+    }
+}
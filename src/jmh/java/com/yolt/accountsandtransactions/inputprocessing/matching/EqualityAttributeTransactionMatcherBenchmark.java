@@ -0,0 +1,66 @@
+package com.yolt.accountsandtransactions.inputprocessing.matching;
+
+import com.yolt.accountsandtransactions.benchmark.SyntheticHistory;
+import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.MatchResult;
+import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.Unmatched;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * A single {@link EqualityAttributeTransactionMatcher#match} pass over unprocessed upstream and stored transactions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class EqualityAttributeTransactionMatcherBenchmark {
+
+    private static final Map<String, EqualityAttributeTransactionMatcher> MATCHERS = Map.of(
+            "EXTERNAL_ID_AMOUNT_STRICT", Matchers.EXTERNAL_ID_AMOUNT_STRICT,
+            "BOOKING_DATE_AMOUNT_STRICT", Matchers.BOOKING_DATE_AMOUNT_STRICT,
+            "DATE_AMOUNT_STRICT", Matchers.DATE_AMOUNT_STRICT,
+            "OPEN_BANKING", Matchers.OPEN_BANKING
+    );
+
+    @Param({"EXTERNAL_ID_AMOUNT_STRICT", "BOOKING_DATE_AMOUNT_STRICT", "DATE_AMOUNT_STRICT", "OPEN_BANKING"})
+    public String matcherName;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int storedSize;
+
+    @Param({"1.0"})
+    public double overlap;
+
+    @Param({"0.01"})
+    public double duplicateRate;
+
+    private EqualityAttributeTransactionMatcher matcher;
+    private MatchResult unprocessed;
+
+    @Setup
+    public void setup() {
+        var history = SyntheticHistory.generate(SyntheticHistory.Settings.builder()
+                .storedSize(storedSize)
+                .overlap(overlap)
+                .duplicateRate(duplicateRate)
+                .bookedOnly(true)
+                .build());
+        matcher = MATCHERS.get(matcherName);
+        unprocessed = new MatchResult(
+                emptyList(),
+                emptyList(),
+                Unmatched.unprocessed(GeneralizedTransaction.toProviderGeneralized(history.getUpstream())),
+                Unmatched.unprocessed(GeneralizedTransaction.toStoredGeneralized(history.getStored())));
+    }
+
+    @Benchmark
+    public MatchResult match() {
+        return matcher.match("BENCHMARK", unprocessed);
+    }
+}
@@ -0,0 +1,70 @@
+package com.yolt.accountsandtransactions.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-transaction metrics of the ingestion, {@link AccountsAndTransactionMetrics#incrementDebtorOrCreditorNameIsPresent}
+ * for a page of transactions of a few providers.
+ * <p>
+ * {@link #cached()} is the current implementation, the counters are registered once per provider ({@link CounterCache}).
+ * {@link #registryLookup()} is the previous implementation: {@code MeterRegistry.counter(name, tags...)} per transaction.
+ * <p>
+ * Run with {@code -prof gc}, the difference is mostly in {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class AccountsAndTransactionMetricsBenchmark {
+
+    private static final String[] PROVIDERS = {"ABN_AMRO", "ING_NL", "RABOBANK", "MONZO"};
+
+    @Param({"1000"})
+    public int transactions;
+
+    private MeterRegistry meterRegistry;
+    private AccountsAndTransactionMetrics metrics;
+    private String[] providers;
+    private boolean[][] flags;
+
+    @Setup
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new AccountsAndTransactionMetrics(Clock.systemUTC(), meterRegistry);
+
+        var random = new Random(42);
+        providers = new String[transactions];
+        flags = new boolean[transactions][3];
+        for (int i = 0; i < transactions; i++) {
+            providers[i] = PROVIDERS[random.nextInt(PROVIDERS.length)];
+            flags[i] = new boolean[]{random.nextBoolean(), random.nextBoolean(), random.nextBoolean()};
+        }
+    }
+
+    @Benchmark
+    public void cached() {
+        for (int i = 0; i < transactions; i++) {
+            metrics.incrementDebtorOrCreditorNameIsPresent(providers[i], flags[i][0], flags[i][1], flags[i][2]);
+        }
+    }
+
+    @Benchmark
+    public void registryLookup() {
+        for (int i = 0; i < transactions; i++) {
+            meterRegistry.counter("trx_debtor_creditor_field_presence",
+                            "provider", providers[i],
+                            "incoming_trx", Boolean.toString(flags[i][0]),
+                            "debtor_name", Boolean.toString(flags[i][2]),
+                            "creditor_name", Boolean.toString(flags[i][1]))
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.yolt.accountsandtransactions.transactions;
+
+import com.yolt.accountsandtransactions.TestBuilders;
+import com.yolt.accountsandtransactions.accounts.Account;
+import com.yolt.accountsandtransactions.accounts.AccountEventsProducer;
+import com.yolt.accountsandtransactions.accounts.AccountRepository;
+import com.yolt.accountsandtransactions.accounts.AccountService;
+import com.yolt.accountsandtransactions.datascience.DsAccountDataDeletionService;
+import com.yolt.accountsandtransactions.datetime.DateInterval;
+import com.yolt.accountsandtransactions.inputprocessing.UpstreamDigestService;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.offloading.OffloadService;
+import com.yolt.accountsandtransactions.datascience.PendingTransactionRangeService;
+import com.yolt.accountsandtransactions.summary.AccountTransactionStatusService;
+import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
+import com.yolt.accountsandtransactions.transactions.cycles.TransactionCyclesService;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichments;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository.TransactionEnrichmentsPrimaryKey;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsService;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.CompletableFuture.delayedExecutor;
+import static java.util.stream.Collectors.toList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <code>GET /v1/users/{userId}/accounts</code> and <code>GET /v1/users/{userId}/transactions</code> under concurrent
+ * load, the blocking path ({@link AccountService#getTransactionsForAccount}) against the non-blocking path
+ * ({@link AccountService#getTransactionsForAccountAsync}).
+ * <p>
+ * Cassandra is replaced by an in-memory stand-in that answers every query after {@code latencyMillis}: the blocking
+ * reads sleep on the calling thread, the non-blocking reads complete on a timer like the I/O threads of the driver.
+ * An invocation serves {@link #REQUESTS} concurrent requests on {@link #REQUEST_THREADS} request threads (the
+ * <code>max-threads</code> of Tomcat).  A blocking request holds its thread for every round trip, a non-blocking
+ * request hands it back once the queries are sent.
+ * <p>
+ * The score is in requests per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ReadApiConcurrencyBenchmark.REQUESTS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class ReadApiConcurrencyBenchmark {
+
+    static final int REQUESTS = 64;
+    private static final int REQUEST_THREADS = 4;
+    private static final int ACCOUNTS = 3;
+    private static final int PAGE_SIZE = 100;
+    private static final LocalDate TODAY = LocalDate.of(2022, 6, 1);
+
+    @Param({"1", "5"})
+    public int latencyMillis;
+
+    private final UUID userId = UUID.randomUUID();
+    private DateInterval interval;
+    private AccountService accountService;
+    private ExecutorService requestThreads;
+
+    @Setup
+    public void setup() {
+        interval = DateInterval.of(TODAY.minusMonths(1), Period.ofMonths(1));
+        requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS);
+
+        var accounts = new ArrayList<Account>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(TestBuilders.createAllFieldsRandomAccount(userId, UUID.randomUUID()));
+        }
+        var transactions = new ArrayList<Transaction>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            var accountId = accounts.get(i % ACCOUNTS).getId();
+            transactions.add(TestBuilders.createTransactionTemplate(new TransactionPrimaryKey(userId, accountId, TODAY.minusDays(i % 30), "transaction-" + i, TransactionStatus.BOOKED)));
+        }
+        var page = new TransactionsPage(transactions, null);
+        var latency = Duration.ofMillis(latencyMillis);
+
+        var accountRepository = mock(AccountRepository.class);
+        when(accountRepository.getAccounts(any())).thenAnswer(invocation -> {
+            Thread.sleep(latencyMillis);
+            return accounts;
+        });
+        when(accountRepository.getAccountsAsync(any())).thenAnswer(invocation -> Flux.fromIterable(accounts).delaySubscription(latency));
+
+        var transactionRepository = mock(TransactionRepository.class);
+        when(transactionRepository.get(any(), any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            Thread.sleep(latencyMillis);
+            return page;
+        });
+        when(transactionRepository.getAsync(any(), any(), any(), any(), anyInt())).thenAnswer(invocation -> Mono.just(page).delayElement(latency));
+
+        // Both paths send the enrichment queries asynchronously, the blocking path joins them on the request thread.
+        var enrichmentsRepository = mock(TransactionEnrichmentsRepository.class);
+        when(enrichmentsRepository.getAsync(any(), any(), any())).thenAnswer(invocation -> {
+            List<TransactionEnrichmentsPrimaryKey> keys = invocation.getArgument(2);
+            return CompletableFuture.supplyAsync(() -> keys.stream()
+                    .map(key -> TransactionEnrichments.builder()
+                            .userId(key.getUserId())
+                            .accountId(key.getAccountId())
+                            .date(key.getDate())
+                            .id(key.getId())
+                            .enrichmentCategoryPersonal("Groceries")
+                            .build())
+                    .collect(toList()), delayedExecutor(latencyMillis, TimeUnit.MILLISECONDS));
+        });
+
+        var transactionService = new TransactionService(
+                transactionRepository,
+                new TransactionEnrichmentsService(enrichmentsRepository),
+                mock(TransactionCyclesService.class),
+                mock(OffloadService.class),
+                mock(AccountTransactionStatusService.class),
+                mock(PendingTransactionRangeService.class),
+                mock(UpstreamDigestService.class),
+                Clock.systemUTC(),
+                mock(AccountsAndTransactionMetrics.class));
+        accountService = new AccountService(
+                Clock.systemUTC(),
+                accountRepository,
+                mock(AccountEventsProducer.class),
+                mock(OffloadService.class),
+                transactionService,
+                mock(DsAccountDataDeletionService.class),
+                false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        requestThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public List<TransactionsPageDTO> blocking() {
+        var responses = new ArrayList<CompletableFuture<TransactionsPageDTO>>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            responses.add(CompletableFuture.supplyAsync(() -> accountService.getTransactionsForAccount(userId, null, interval, null, PAGE_SIZE), requestThreads));
+        }
+        return responses.stream().map(CompletableFuture::join).collect(toList());
+    }
+
+    @Benchmark
+    public List<TransactionsPageDTO> nonBlocking() {
+        var responses = new ArrayList<CompletableFuture<TransactionsPageDTO>>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            // The request thread only subscribes, the response is completed by the stand-in (asynchronous request).
+            responses.add(CompletableFuture.supplyAsync(() -> accountService.getTransactionsForAccountAsync(userId, null, interval, null, PAGE_SIZE).toFuture(), requestThreads)
+                    .thenCompose(response -> response));
+        }
+        return responses.stream().map(CompletableFuture::join).collect(toList());
+    }
+}
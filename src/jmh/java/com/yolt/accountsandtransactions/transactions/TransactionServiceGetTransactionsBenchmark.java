@@ -0,0 +1,137 @@
+package com.yolt.accountsandtransactions.transactions;
+
+import com.yolt.accountsandtransactions.TestBuilders;
+import com.yolt.accountsandtransactions.datetime.DateInterval;
+import com.yolt.accountsandtransactions.inputprocessing.UpstreamDigestService;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.offloading.OffloadService;
+import com.yolt.accountsandtransactions.datascience.PendingTransactionRangeService;
+import com.yolt.accountsandtransactions.summary.AccountTransactionStatusService;
+import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
+import com.yolt.accountsandtransactions.transactions.cycles.TransactionCyclesService;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichments;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository.TransactionEnrichmentsPrimaryKey;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsService;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The read path behind <code>GET /v1/users/{userId}/transactions</code> ({@link TransactionService#getTransactions}) without the database.
+ * <p>
+ * {@link #joined()} is the current implementation: the enrichments of the page are read by primary key and joined through a hash map.
+ * {@link #scanned()} mimics the previous implementation: all the enrichments in the date range of the page are read and
+ * every transaction scans that list for its enrichments.
+ * <p>
+ * Run in sample mode to get the latency distribution (p50, p99, ..) per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class TransactionServiceGetTransactionsBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.of(2022, 6, 1);
+    private static final int TRANSACTIONS_PER_DAY = 5;
+
+    @Param({"100", "1000", "5000"})
+    public int pageSize;
+
+    @Param({"1", "4"})
+    public int accounts;
+
+    private final UUID userId = UUID.randomUUID();
+    private List<UUID> accountIds;
+    private List<Transaction> page;
+    private List<TransactionEnrichments> enrichmentsInRange;
+    private TransactionService transactionService;
+
+    @Setup
+    public void setup() {
+        accountIds = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            accountIds.add(UUID.randomUUID());
+        }
+
+        page = new ArrayList<>(pageSize);
+        var enrichmentsByKey = new HashMap<TransactionEnrichmentsPrimaryKey, TransactionEnrichments>();
+        for (int i = 0; i < pageSize; i++) {
+            var accountId = accountIds.get(i % accounts);
+            var date = TODAY.minusDays(i / (TRANSACTIONS_PER_DAY * accounts));
+            var transaction = TestBuilders.createTransactionTemplate(new TransactionPrimaryKey(userId, accountId, date, "transaction-" + i, TransactionStatus.BOOKED));
+            page.add(transaction);
+
+            var enrichments = TransactionEnrichments.builder()
+                    .userId(userId)
+                    .accountId(accountId)
+                    .date(date)
+                    .id(transaction.getId())
+                    .enrichmentCategoryPersonal("Groceries")
+                    .enrichmentCounterpartyName("counterparty")
+                    .enrichmentCounterpartyIsKnownMerchant(true)
+                    .build();
+            enrichmentsByKey.put(new TransactionEnrichmentsPrimaryKey(userId, accountId, date, transaction.getId()), enrichments);
+        }
+        enrichmentsInRange = new ArrayList<>(enrichmentsByKey.values());
+
+        var transactionRepository = mock(TransactionRepository.class);
+        when(transactionRepository.get(any(), any(), any(), any(), anyInt())).thenReturn(new TransactionsPage(page, null));
+
+        var enrichmentsRepository = mock(TransactionEnrichmentsRepository.class);
+        when(enrichmentsRepository.getAsync(any(), any(), any())).thenAnswer(invocation -> {
+            List<TransactionEnrichmentsPrimaryKey> keys = invocation.getArgument(2);
+            return CompletableFuture.supplyAsync(() -> keys.stream()
+                    .map(enrichmentsByKey::get)
+                    .filter(Objects::nonNull)
+                    .collect(toList()));
+        });
+
+        transactionService = new TransactionService(
+                transactionRepository,
+                new TransactionEnrichmentsService(enrichmentsRepository),
+                mock(TransactionCyclesService.class),
+                mock(OffloadService.class),
+                mock(AccountTransactionStatusService.class),
+                mock(PendingTransactionRangeService.class),
+                mock(UpstreamDigestService.class),
+                Clock.systemUTC(),
+                mock(AccountsAndTransactionMetrics.class));
+    }
+
+    @Benchmark
+    public TransactionsPageDTO joined() {
+        return transactionService.getTransactions(userId, accountIds, DateInterval.of(TODAY.minusYears(1), Period.ofYears(1)), null, pageSize);
+    }
+
+    @Benchmark
+    public TransactionsPageDTO scanned() {
+        return new TransactionsPageDTO(page.stream()
+                .map(transaction -> TransactionService.map(transaction, enrichmentsInRange.stream()
+                        .filter(enrichment -> enrichment.getUserId().equals(transaction.getUserId()))
+                        .filter(enrichment -> enrichment.getAccountId().equals(transaction.getAccountId()))
+                        .filter(enrichment -> enrichment.getDate().equals(transaction.getDate()))
+                        .filter(enrichment -> enrichment.getId().equals(transaction.getId()))
+                        .findFirst()
+                        .orElse(null)))
+                .collect(toList()), null);
+    }
+}
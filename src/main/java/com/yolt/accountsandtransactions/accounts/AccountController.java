@@ -11,6 +11,7 @@ import lombok.RequiredArgsConstructor;
 import nl.ing.lovebird.clienttokens.ClientUserToken;
 import nl.ing.lovebird.clienttokens.annotations.VerifiedClientToken;
 import nl.ing.lovebird.springdoc.annotations.ExternalApi;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,6 +26,7 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
 @RequiredArgsConstructor
 @RestController
+@ConditionalOnProperty(value = "yolt.accounts-and-transactions.api.non-blocking-reads.enabled", havingValue = "false", matchIfMissing = true)
 @Tag(name = ApiTags.AIS_TRANSACTION_DETAILS)
 public class AccountController {
 
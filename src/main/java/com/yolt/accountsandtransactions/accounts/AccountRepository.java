@@ -4,10 +4,12 @@ import com.datastax.driver.core.Session;
 import com.datastax.driver.core.querybuilder.Delete;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.mapping.Mapper;
+import com.yolt.accountsandtransactions.concurrency.ReactiveResults;
 import lombok.NonNull;
 import nl.ing.lovebird.cassandra.CassandraRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.validation.annotation.Validated;
+import reactor.core.publisher.Flux;
 
 import javax.validation.Valid;
 import java.util.Collection;
@@ -34,6 +36,16 @@ public class AccountRepository extends CassandraRepository<Account> {
                         .where(eq("user_id", userId)));
     }
 
+    /**
+     * Non-blocking variant of {@link #getAccounts(UUID)}.
+     */
+    public Flux<Account> getAccountsAsync(UUID userId) {
+        var select = QueryBuilder.select()
+                .from("accounts")
+                .where(eq("user_id", userId));
+        return ReactiveResults.rows(ReactiveResults.mono(() -> session.executeAsync(select)).map(mapper::map));
+    }
+
     public List<Account> getAccountsForSiteId(UUID siteId) {
         return select(QueryBuilder.select()
                 .from("accounts")
@@ -21,8 +21,10 @@ import nl.ing.lovebird.extendeddata.transaction.AccountReferenceType;
 import nl.ing.lovebird.providerdomain.AccountType;
 import nl.ing.lovebird.providerdomain.ProviderAccountDTO;
 import nl.ing.lovebird.providerdomain.ProviderAccountNumberDTO;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.time.Clock;
 import java.time.Instant;
@@ -54,6 +56,8 @@ public class AccountService {
     private final OffloadService offloadService;
     private final TransactionService transactionService;
     private final DsAccountDataDeletionService dsAccountDataDeletionService;
+    @Value("${yolt.accounts-and-transactions.ingestion.flush-accounts-early:false}")
+    private final boolean flushAccountsEarly;
 
     // TODO move this out of the AccountService to controller layer
     public List<AccountDTO> getAccountsDTOsForUserSite(@NonNull UUID userId, @Nullable UUID userSiteId) {
@@ -64,6 +68,16 @@ public class AccountService {
         return stream.map(this::map).collect(toList());
     }
 
+    /**
+     * Non-blocking variant of {@link #getAccountsDTOsForUserSite(UUID, UUID)}.
+     */
+    public Mono<List<AccountDTO>> getAccountsDTOsForUserSiteAsync(@NonNull UUID userId, @Nullable UUID userSiteId) {
+        return accountRepository.getAccountsAsync(userId)
+                .filter(account -> userSiteId == null || account.getUserSiteId().equals(userSiteId))
+                .map(this::map)
+                .collectList();
+    }
+
     public Map<UUID, UUID> getUserSiteIdsForAccountIds(@NonNull UUID userId, @NonNull Collection<UUID> accountIds) {
         return accountRepository.getUserSiteIdsForAccountIds(userId, accountIds);
     }
@@ -82,13 +96,26 @@ public class AccountService {
                                          boolean isPresent,
                                          final Instant lastDataFetchedTime) {
         Account account = map(clientUserToken.getUserIdClaim(), providerAccountDTO, accountId, userSiteId, siteId, lastDataFetchedTime, isPresent);
+        saveAccount(clientUserToken, account, isPresent);
+        return account;
+    }
+
+    /**
+     * Coalesce the account mutations of a user-site refresh into a single write per account, see {@link AccountWrites}.
+     */
+    public AccountWrites openAccountWrites(final @NonNull ClientUserToken clientUserToken) {
+        return new AccountWrites(this, clientUserToken, flushAccountsEarly);
+    }
+
+    /**
+     * Upsert the account, produce the {@link AccountEvent} and offload the account.
+     */
+    public void saveAccount(final ClientUserToken clientUserToken, final Account account, boolean isPresent) {
         accountRepository.upsert(account);
         AccountEventType type = isPresent ? AccountEventType.UPDATED : AccountEventType.CREATED;
         produceKafkaEvent(clientUserToken, account, type);
 
         offloadService.offloadInsertOrUpdateAsync(account, clientUserToken.getClientIdClaim());
-
-        return account;
     }
 
     // TODO move this out of the AccountService to controller layer
@@ -323,6 +350,25 @@ public class AccountService {
         return transactionService.getTransactions(userId, accountIds, dateInterval, next, pageSize);
     }
 
+    /**
+     * Non-blocking variant of {@link #getTransactionsForAccount(UUID, List, DateInterval, String, int)}.
+     */
+    public Mono<TransactionsPageDTO> getTransactionsForAccountAsync(UUID userId, List<UUID> accountIds, DateInterval dateInterval, String next, int pageSize) {
+        return getAccountsDTOsForUserSiteAsync(userId, null)
+                .flatMap(userAccounts -> {
+                    final var userAccountsIds = userAccounts.stream()
+                            .map(AccountDTO::getId)
+                            .collect(toList());
+
+                    if (accountIds == null || accountIds.isEmpty()) {
+                        return transactionService.getTransactionsAsync(userId, userAccountsIds, dateInterval, next, pageSize);
+                    }
+                    // Temporary code to see how often customers request transactions for account ids that don't exist. See YCO-2050.
+                    logInvalidAccountIdsForUser(userAccountsIds, accountIds);
+                    return transactionService.getTransactionsAsync(userId, accountIds, dateInterval, next, pageSize);
+                });
+    }
+
     private List<BalanceDTO> mapToExternalBalanceDTOs(List<Balance> balances) {
         return balances.stream()
                 .map(it -> BalanceDTO.builder()
@@ -0,0 +1,87 @@
+package com.yolt.accountsandtransactions.accounts;
+
+import com.yolt.accountsandtransactions.accounts.event.AccountEvent;
+import lombok.NonNull;
+import nl.ing.lovebird.clienttokens.ClientUserToken;
+import nl.ing.lovebird.providerdomain.ProviderAccountDTO;
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces the mutations of the accounts of a single user-site refresh.
+ * <p>
+ * An account is typically mutated more than once during a refresh (for example, {@code lastDataFetchTime} is set after
+ * the transactions are persisted).  Instead of an upsert, an {@link AccountEvent} and an offload per mutation, the
+ * last state of every account is written once by {@link #flush()}.
+ * <p>
+ * With {@code yolt.accounts-and-transactions.ingestion.flush-accounts-early} an account is flushed as soon as it is
+ * {@link #complete(UUID) complete} instead, for downstream consumers that need the state of an account before the whole
+ * user-site is processed.
+ * <p>
+ * Thread-safe, the accounts of a user-site may be processed concurrently.
+ */
+public class AccountWrites {
+
+    private final AccountService accountService;
+    private final ClientUserToken clientUserToken;
+    private final boolean flushEarly;
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+
+    public AccountWrites(final @NonNull AccountService accountService, final @NonNull ClientUserToken clientUserToken, final boolean flushEarly) {
+        this.accountService = accountService;
+        this.clientUserToken = clientUserToken;
+        this.flushEarly = flushEarly;
+    }
+
+    /**
+     * The coalesced equivalent of {@link AccountService#createOrUpdateAccount}: the account is mapped, but only written
+     * on {@link #flush()} (or {@link #complete(UUID)}).
+     *
+     * @return the account as it will be written
+     */
+    public Account createOrUpdateAccount(final ProviderAccountDTO providerAccountDTO,
+                                         final UUID accountId,
+                                         final UUID userSiteId,
+                                         final UUID siteId,
+                                         boolean isPresent,
+                                         final @Nullable Instant lastDataFetchedTime) {
+        var account = accountService.map(clientUserToken.getUserIdClaim(), providerAccountDTO, accountId, userSiteId, siteId, lastDataFetchedTime, isPresent);
+        // the account is only created if it wasn't present at the first mutation, whatever comes after that is the same account
+        pending.merge(accountId, new Pending(account, isPresent), (previous, next) -> new Pending(next.account, previous.isPresent));
+        return account;
+    }
+
+    /**
+     * There are no more mutations of the account, it is flushed right away if it should be flushed early.
+     */
+    public void complete(final @NonNull UUID accountId) {
+        if (flushEarly) {
+            flush(accountId);
+        }
+    }
+
+    /**
+     * Write the account now, with a single upsert, event and offload.
+     */
+    public void flush(final @NonNull UUID accountId) {
+        var account = pending.remove(accountId);
+        if (account != null) {
+            accountService.saveAccount(clientUserToken, account.account, account.isPresent);
+        }
+    }
+
+    /**
+     * Write all accounts that are not flushed yet.
+     */
+    public void flush() {
+        List.copyOf(pending.keySet()).forEach(this::flush);
+    }
+
+    private record Pending(Account account, boolean isPresent) {
+    }
+}
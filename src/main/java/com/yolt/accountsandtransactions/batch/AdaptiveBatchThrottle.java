@@ -0,0 +1,218 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.LatencyTracker;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.StatementWrapper;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.google.common.util.concurrent.RateLimiter;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A throttle that is shared by all batch jobs, and that adapts their read rate and concurrency to the health of the
+ * cluster (AIMD).
+ * <p>
+ * The throttle observes the latency and the timeouts of the queries of the batch jobs, the statements that a job marks
+ * with {@link #track(Statement)} before executing them.  The other queries of the application (live traffic, with a
+ * latency of their own) are ignored.  Every {@code adjustment-interval-ms} the limits are halved if the mean latency
+ * exceeded {@code target-latency-ms} or a query timed out, and are raised by one step otherwise.  The read rate stays between
+ * {@code min-read-per-second} and {@code max-read-per-second}, the concurrency between 1 and {@code max-concurrency}.
+ * The throttle starts at the lower bounds, and is idle (keeps its limits) when the batch jobs do not query.
+ * <p>
+ * The limits of a job itself (its read rate and parallelism) still apply, they are the upper bounds of that job.  The
+ * throttle is a no-op unless {@code yolt.accounts-and-transactions.batch.adaptive-throttle.enabled}.
+ */
+@Slf4j
+@Component
+public class AdaptiveBatchThrottle implements LatencyTracker {
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final double minReadPerSecond;
+    private final double maxReadPerSecond;
+    private final double readPerSecondStep;
+    private final int maxConcurrency;
+    private final long targetLatencyNanos;
+    private final long adjustmentIntervalMillis;
+
+    private final RateLimiter rateLimiter;
+    private int concurrencyLimit = 1;
+    private int active;
+
+    private final AtomicLong windowStart;
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public AdaptiveBatchThrottle(Cluster cluster,
+                                 AccountsAndTransactionMetrics metrics,
+                                 Clock clock,
+                                 @Value("${yolt.accounts-and-transactions.batch.adaptive-throttle.enabled:false}") boolean enabled,
+                                 @Value("${yolt.accounts-and-transactions.batch.adaptive-throttle.min-read-per-second:250}") double minReadPerSecond,
+                                 @Value("${yolt.accounts-and-transactions.batch.adaptive-throttle.max-read-per-second:20000}") double maxReadPerSecond,
+                                 @Value("${yolt.accounts-and-transactions.batch.adaptive-throttle.read-per-second-step:250}") double readPerSecondStep,
+                                 @Value("${yolt.accounts-and-transactions.batch.adaptive-throttle.max-concurrency:16}") int maxConcurrency,
+                                 @Value("${yolt.accounts-and-transactions.batch.adaptive-throttle.target-latency-ms:50}") long targetLatencyMillis,
+                                 @Value("${yolt.accounts-and-transactions.batch.adaptive-throttle.adjustment-interval-ms:1000}") long adjustmentIntervalMillis) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.minReadPerSecond = minReadPerSecond;
+        this.maxReadPerSecond = maxReadPerSecond;
+        this.readPerSecondStep = readPerSecondStep;
+        this.maxConcurrency = maxConcurrency;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.adjustmentIntervalMillis = adjustmentIntervalMillis;
+        this.rateLimiter = RateLimiter.create(minReadPerSecond);
+        this.windowStart = new AtomicLong(clock.millis());
+
+        if (enabled) {
+            cluster.register(this);
+            metrics.registerBatchThrottleGauges(this);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Blocks until one of the concurrent slots of the batch jobs is free, every call must be followed by a
+     * {@link #release()}.
+     */
+    public void acquire() {
+        if (!enabled) {
+            return;
+        }
+        adjustIfDue();
+        synchronized (this) {
+            while (active >= concurrencyLimit) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the batch throttle.", e);
+                }
+            }
+            active++;
+        }
+    }
+
+    public void release() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            active--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the given number of rows can be read within the current read rate.
+     */
+    public void acquireReads(int reads) {
+        if (!enabled) {
+            return;
+        }
+        adjustIfDue();
+        rateLimiter.acquire(Math.max(1, reads));
+    }
+
+    /**
+     * Mark a statement of a batch job, so its latency and timeouts are observed.
+     *
+     * @return the statement to execute instead, the marked statement
+     */
+    public Statement track(Statement statement) {
+        return enabled ? new TrackedStatement(statement) : statement;
+    }
+
+    public double getReadPerSecondLimit() {
+        return rateLimiter.getRate();
+    }
+
+    public synchronized int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    @Override
+    public void update(Host host, Statement statement, Exception exception, long newLatencyNanos) {
+        if (!(statement instanceof TrackedStatement)) {
+            return;
+        }
+        if (exception == null) {
+            samples.increment();
+            latencyNanos.add(newLatencyNanos);
+        } else if (isTimeout(exception)) {
+            timeouts.increment();
+        }
+    }
+
+    @Override
+    public void onRegister(Cluster cluster) {
+        log.info("adaptive batch throttle registered");
+    }
+
+    @Override
+    public void onUnregister(Cluster cluster) {
+    }
+
+    void adjustIfDue() {
+        long start = windowStart.get();
+        long now = clock.millis();
+        if (now - start < adjustmentIntervalMillis || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        long windowSamples = samples.sumThenReset();
+        long windowLatencyNanos = latencyNanos.sumThenReset();
+        long windowTimeouts = timeouts.sumThenReset();
+
+        if (windowTimeouts > 0 || (windowSamples > 0 && windowLatencyNanos / windowSamples > targetLatencyNanos)) {
+            decrease();
+        } else if (windowSamples > 0) {
+            increase();
+        }
+    }
+
+    private synchronized void decrease() {
+        rateLimiter.setRate(Math.max(minReadPerSecond, rateLimiter.getRate() / 2));
+        concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+        log.debug("adaptive batch throttle decreased to {} reads per second and {} concurrent", rateLimiter.getRate(), concurrencyLimit);
+    }
+
+    private synchronized void increase() {
+        rateLimiter.setRate(Math.min(maxReadPerSecond, rateLimiter.getRate() + readPerSecondStep));
+        concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1);
+        notifyAll();
+    }
+
+    /**
+     * The mark of a statement of a batch job.  The driver reports the statement as it was executed, so the mark is
+     * recognized on the I/O threads of the driver without a lookup (or a lock).
+     */
+    private static final class TrackedStatement extends StatementWrapper {
+
+        private TrackedStatement(Statement wrapped) {
+            super(wrapped);
+        }
+    }
+
+    private static boolean isTimeout(Exception exception) {
+        return exception instanceof ReadTimeoutException
+                || exception instanceof WriteTimeoutException
+                || exception instanceof OperationTimedOutException
+                || exception instanceof OverloadedException;
+    }
+}
@@ -0,0 +1,132 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.datastax.driver.mapping.Mapper;
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
+import com.yolt.accountsandtransactions.concurrency.Futures;
+import com.yolt.accountsandtransactions.datascience.DsTransaction;
+import com.yolt.accountsandtransactions.datascience.DsTransactionsRepository;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import com.yolt.accountsandtransactions.transactions.TransactionRepository;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichments;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * One-off job that rewrites the existing transactions and enrichments of the clients with a retention policy with the
+ * TTL of that policy, see {@link RetentionPolicies}.  New rows are written with a TTL already, once this job has run
+ * the rows of these clients expire by themselves and {@link BatchDeleteTransactionsOlderThanOneYearForFrance} is no
+ * longer needed.  Rows that are already past their retention are rewritten with the minimal TTL, so they expire right away.
+ * <p>
+ * A row is rewritten as it was read (without its null columns, to not create tombstones) with a write timestamp just
+ * before the read.  A concurrent write of the same row by the ingestion always wins, so the job never overwrites a
+ * newer version of a row.  An interrupted job can be resumed from its checkpoints.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchApplyRetentionTtl {
+
+    /**
+     * The margin between the write timestamp of a rewrite and the moment the page was handed to the job.
+     */
+    private static final Duration WRITE_TIMESTAMP_MARGIN = Duration.ofMinutes(1);
+
+    private final RetentionPolicies retentionPolicies;
+    private final BatchMetadataCaches batchMetadataCaches;
+    private final TransactionRepository transactionRepository;
+    private final DsTransactionsRepository dsTransactionsRepository;
+    private final TransactionEnrichmentsRepository transactionEnrichmentsRepository;
+    private final TokenRangeScanner tokenRangeScanner;
+    private final AdaptiveBatchThrottle adaptiveBatchThrottle;
+    private final Clock clock;
+
+    @Async("BatchApplyRetentionTtl")
+    public CompletableFuture<Void> run(boolean dryRun, int maxReadPerSecond, int parallelism) {
+        var startTime = Instant.now(clock);
+        log.info("batchApplyRetentionTtl started dry-run={} with {} reads per second (parallelism={})", dryRun, maxReadPerSecond, parallelism);
+        if (retentionPolicies.isEmpty()) {
+            log.info("batchApplyRetentionTtl finished, there are no retention policies");
+            return completedFuture(null);
+        }
+
+        var counters = new Counters();
+        try {
+            var metadata = batchMetadataCaches.create("apply-retention-ttl");
+
+            rewrite("at", transactionRepository.getMapper(), "transactions", Transaction::getUserId, Transaction::getDate,
+                    dryRun, maxReadPerSecond, parallelism, metadata, counters);
+            log.info("1/3 A&T transactions done");
+
+            rewrite("ds", dsTransactionsRepository.getMapper(), DsTransaction.TABLE_NAME, DsTransaction::getUserId, DsTransaction::getLocalDate,
+                    dryRun, maxReadPerSecond, parallelism, metadata, counters);
+            log.info("2/3 DS transactions done");
+
+            rewrite("enrichments", transactionEnrichmentsRepository.getMapper(), TransactionEnrichments.TRANSACTION_ENRICHMENTS_TABLE, TransactionEnrichments::getUserId, TransactionEnrichments::getDate,
+                    dryRun, maxReadPerSecond, parallelism, metadata, counters);
+            log.info("3/3 transaction enrichments done");
+
+            counters.set("user_context_errors", (int) metadata.usersNotFound());
+        } catch (RuntimeException e) {
+            log.error("batchApplyRetentionTtl threw exception. counters={}", counters.toString(), e); //NOSHERIFF
+            return completedFuture(null);
+        }
+
+        log.info("batchApplyRetentionTtl finished. duration={}, counters={}",
+                Duration.between(startTime, Instant.now(clock)),
+                counters.toString()
+        ); //NOSHERIFF
+        return completedFuture(null);
+    }
+
+    private <T> void rewrite(String name, Mapper<T> mapper, String table, Function<T, UUID> userId, Function<T, LocalDate> date,
+                             boolean dryRun, int maxReadPerSecond, int parallelism, BatchMetadataCache metadata, Counters counters) {
+        tokenRangeScanner.scan(TokenRangeScan.<T>builder()
+                .job("apply-retention-ttl-" + name)
+                .mapper(mapper)
+                .table(table)
+                .parallelism(parallelism)
+                .maxReadPerSecond(maxReadPerSecond)
+                .checkpointed(!dryRun)
+                .build(), rows -> {
+            long timestampMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now(clock).minus(WRITE_TIMESTAMP_MARGIN));
+            counters.increment(name + "_rows", rows.size());
+            metadata.prefetchClientIds(rows.stream().map(userId).toList());
+
+            var writes = new ArrayList<CompletableFuture<?>>();
+            for (T row : rows) {
+                var ttl = metadata.clientId(userId.apply(row))
+                        .flatMap(clientId -> retentionPolicies.ttlOfClient(clientId, date.apply(row)));
+                if (ttl.isEmpty()) {
+                    continue;
+                }
+                counters.increment(name + "_rows_with_policy");
+                if (!dryRun) {
+                    var save = mapper.saveQuery(row,
+                            Mapper.Option.saveNullFields(false),
+                            Mapper.Option.ttl(ttl.get()),
+                            Mapper.Option.timestamp(timestampMicros));
+                    // The save of the mapper is sent as a statement of its own, so the throttle tracks it.
+                    writes.add(Futures.from(mapper.getManager().getSession().executeAsync(adaptiveBatchThrottle.track(save))));
+                }
+            }
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+            counters.increment(name + "_rows_rewritten", writes.size());
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.yolt.accountsandtransactions.accounts.Account;
+import com.yolt.accountsandtransactions.accounts.AccountRepository;
+import com.yolt.accountsandtransactions.datascience.PendingTransactionRangeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * One-off job that counts the pending transactions of every account that does not have an
+ * {@link com.yolt.accountsandtransactions.datascience.AccountPendingRange} yet.  Accounts get a range on their next
+ * refresh anyway, this job covers the accounts that are not refreshed before the range is used.
+ * <p>
+ * A range that is written by a refresh while the job runs is never overwritten, so an interrupted job can simply be
+ * resumed from its checkpoints.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchBackfillAccountPendingRanges {
+
+    private final AccountRepository accountRepository;
+    private final PendingTransactionRangeService pendingTransactionRangeService;
+    private final TokenRangeScanner tokenRangeScanner;
+    private final Clock clock;
+
+    @Async("BatchBackfillAccountPendingRanges")
+    public CompletableFuture<Void> run(boolean dryRun, int maxReadPerSecond, int parallelism) {
+        var startTime = Instant.now(clock);
+        log.info("batchBackfillAccountPendingRanges started dry-run={} with {} reads per second (parallelism={})", dryRun, maxReadPerSecond, parallelism);
+
+        var counters = new Counters();
+        try {
+            tokenRangeScanner.scan(TokenRangeScan.<Account>builder()
+                    .job("backfill-account-pending-ranges")
+                    .mapper(accountRepository.getMapper())
+                    .table("accounts")
+                    .parallelism(parallelism)
+                    .maxReadPerSecond(maxReadPerSecond)
+                    .checkpointed(!dryRun)
+                    .build(), accounts -> {
+                for (Account account : accounts) {
+                    counters.increment("accounts");
+                    if (dryRun) {
+                        continue;
+                    }
+                    if (pendingTransactionRangeService.backfill(account.getUserId(), account.getId())) {
+                        counters.increment("backfilled");
+                    } else {
+                        counters.increment("already_present");
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("batchBackfillAccountPendingRanges threw exception. counters={}", counters.toString(), e); //NOSHERIFF
+            return completedFuture(null);
+        }
+
+        log.info("batchBackfillAccountPendingRanges finished. duration={}, counters={}",
+                Duration.between(startTime, Instant.now(clock)),
+                counters.toString()
+        ); //NOSHERIFF
+        return completedFuture(null);
+    }
+}
@@ -0,0 +1,110 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import com.yolt.accountsandtransactions.transactions.TransactionBucketMode;
+import com.yolt.accountsandtransactions.transactions.TransactionRepository;
+import com.yolt.accountsandtransactions.transactions.TransactionsByMonthRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * One-off job that copies the transactions in the {@code transactions} table to the {@code transactions_by_month} table,
+ * see {@link TransactionsByMonthRepository}.  It is run once the ingestion writes to both tables
+ * ({@link TransactionBucketMode#DUAL_WRITE}), after which both tables hold the same transactions and the reads can be
+ * switched over ({@link TransactionBucketMode#DUAL_READ}).
+ * <p>
+ * A row is copied as it was read (without its null columns, to not create tombstones) with the TTL of the retention
+ * policy of its client and a write timestamp just before the read.  A concurrent write or delete of the same row by the
+ * ingestion always wins, so the job never overwrites a newer version of a row.  An interrupted job can be resumed from
+ * its checkpoints.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchBackfillTransactionsByMonth {
+
+    /**
+     * The margin between the write timestamp of a copy and the moment the page was handed to the job.
+     */
+    private static final Duration WRITE_TIMESTAMP_MARGIN = Duration.ofMinutes(1);
+
+    private final RetentionPolicies retentionPolicies;
+    private final BatchMetadataCaches batchMetadataCaches;
+    private final TransactionRepository transactionRepository;
+    private final TransactionsByMonthRepository transactionsByMonthRepository;
+    private final TokenRangeScanner tokenRangeScanner;
+    private final Clock clock;
+
+    @Value("${yolt.accounts-and-transactions.transactions.bucket-mode:OFF}")
+    private final TransactionBucketMode bucketMode;
+
+    @Async("BatchBackfillTransactionsByMonth")
+    public CompletableFuture<Void> run(boolean dryRun, int maxReadPerSecond, int parallelism) {
+        var startTime = Instant.now(clock);
+        log.info("batchBackfillTransactionsByMonth started dry-run={} with {} reads per second (parallelism={})", dryRun, maxReadPerSecond, parallelism);
+        if (!dryRun && !bucketMode.writesMonths()) {
+            // The transactions that are written after they have been copied would be missing.
+            log.warn("batchBackfillTransactionsByMonth not started, the transactions are not written to the buckets (mode={})", bucketMode);
+            return completedFuture(null);
+        }
+
+        var counters = new Counters();
+        try {
+            var metadata = batchMetadataCaches.create("backfill-transactions-by-month");
+
+            tokenRangeScanner.scan(TokenRangeScan.<Transaction>builder()
+                    .job("backfill-transactions-by-month")
+                    .mapper(transactionRepository.getMapper())
+                    .table("transactions")
+                    .parallelism(parallelism)
+                    .maxReadPerSecond(maxReadPerSecond)
+                    .checkpointed(!dryRun)
+                    .build(), rows -> {
+                long timestampMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now(clock).minus(WRITE_TIMESTAMP_MARGIN));
+                counters.increment("transactions", rows.size());
+                if (dryRun) {
+                    return;
+                }
+                if (!retentionPolicies.isEmpty()) {
+                    metadata.prefetchClientIds(rows.stream().map(Transaction::getUserId).toList());
+                }
+                transactionsByMonthRepository.copyAsync(rows, (userId, date) -> ttl(metadata, userId, date), timestampMicros).join();
+                counters.increment("transactions_copied", rows.size());
+            });
+
+            counters.set("user_context_errors", (int) metadata.usersNotFound());
+        } catch (RuntimeException e) {
+            log.error("batchBackfillTransactionsByMonth threw exception. counters={}", counters.toString(), e); //NOSHERIFF
+            return completedFuture(null);
+        }
+
+        log.info("batchBackfillTransactionsByMonth finished. duration={}, counters={}",
+                Duration.between(startTime, Instant.now(clock)),
+                counters.toString()
+        ); //NOSHERIFF
+        return completedFuture(null);
+    }
+
+    private Optional<Integer> ttl(BatchMetadataCache metadata, UUID userId, LocalDate date) {
+        if (retentionPolicies.isEmpty()) {
+            return Optional.empty();
+        }
+        return metadata.clientId(userId)
+                .flatMap(clientId -> retentionPolicies.ttlOfClient(clientId, date));
+    }
+}
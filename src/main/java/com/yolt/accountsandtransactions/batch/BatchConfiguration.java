@@ -1,5 +1,6 @@
 package com.yolt.accountsandtransactions.batch;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.task.TaskExecutorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -52,4 +53,68 @@ public class BatchConfiguration {
                 .threadNamePrefix("BatchPushDataToOffloadTopic-")
                 .build();
     }
+
+    @Bean("BatchBackfillAccountPendingRanges")
+    public ThreadPoolTaskExecutor BatchBackfillAccountPendingRanges(TaskExecutorBuilder builder) {
+        return builder
+                .allowCoreThreadTimeOut(true)
+                .corePoolSize(1)
+                .maxPoolSize(1)
+                .queueCapacity(0)
+                .threadNamePrefix("BatchBackfillAccountPendingRanges-")
+                .build();
+    }
+
+    @Bean("BatchApplyRetentionTtl")
+    public ThreadPoolTaskExecutor BatchApplyRetentionTtl(TaskExecutorBuilder builder) {
+        return builder
+                .allowCoreThreadTimeOut(true)
+                .corePoolSize(1)
+                .maxPoolSize(1)
+                .queueCapacity(0)
+                .threadNamePrefix("BatchApplyRetentionTtl-")
+                .build();
+    }
+
+    @Bean("BatchBackfillTransactionsByMonth")
+    public ThreadPoolTaskExecutor BatchBackfillTransactionsByMonth(TaskExecutorBuilder builder) {
+        return builder
+                .allowCoreThreadTimeOut(true)
+                .corePoolSize(1)
+                .maxPoolSize(1)
+                .queueCapacity(0)
+                .threadNamePrefix("BatchBackfillTransactionsByMonth-")
+                .build();
+    }
+
+    /**
+     * The pool on which the token ranges of the batch jobs are scanned, see {@link TokenRangeScanner}.  The workers of a
+     * job that asks for more parallelism than there are threads are queued.
+     */
+    @Bean("TokenRangeScanRunner")
+    public ThreadPoolTaskExecutor TokenRangeScanRunner(TaskExecutorBuilder builder,
+                                                       @Value("${yolt.accounts-and-transactions.batch.token-range-scan.max-threads:16}") int maxThreads) {
+        return builder
+                .allowCoreThreadTimeOut(true)
+                .corePoolSize(maxThreads)
+                .maxPoolSize(maxThreads)
+                .threadNamePrefix("TokenRangeScanRunner-")
+                .build();
+    }
+
+    /**
+     * The pool on which the users of a page are prefetched into a {@link BatchMetadataCache}.  A prefetch is skipped
+     * if the queue is full, the user is then loaded when the row is processed.
+     */
+    @Bean("BatchMetadataPrefetchRunner")
+    public ThreadPoolTaskExecutor BatchMetadataPrefetchRunner(TaskExecutorBuilder builder,
+                                                              @Value("${yolt.accounts-and-transactions.batch.metadata-cache.prefetch-threads:8}") int maxThreads) {
+        return builder
+                .allowCoreThreadTimeOut(true)
+                .corePoolSize(maxThreads)
+                .maxPoolSize(maxThreads)
+                .queueCapacity(1_000)
+                .threadNamePrefix("BatchMetadataPrefetchRunner-")
+                .build();
+    }
 }
@@ -11,6 +11,9 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
 /**
  * Endpoints to trigger batch jobs.  Internal use only.
+ * <p>
+ * The jobs that scan a table scan {@code parallelism} token ranges at once, see {@link TokenRangeScanner}.  The read
+ * rate of a job is shared by its ranges, a job that is interrupted resumes from its checkpoints (unless it is a dry-run).
  */
 @RestController
 @RequiredArgsConstructor
@@ -20,45 +23,84 @@ public class BatchController {
     private final BatchJobSyncTransactionTables batchJobSyncTransactionTables;
     private final BatchDeleteTransactionsOlderThanOneYearForFrance batchDeleteTransactionsOlderThanOneYearForFrance;
     private final BatchPushOffloadData batchPushOffloadData;
+    private final BatchBackfillAccountPendingRanges batchBackfillAccountPendingRanges;
+    private final BatchApplyRetentionTtl batchApplyRetentionTtl;
+    private final BatchBackfillTransactionsByMonth batchBackfillTransactionsByMonth;
 
     @PostMapping(value = "/batch/check-old-pending-transactions", produces = APPLICATION_JSON_VALUE)
-    public ResponseEntity<Void> runBatchJobCheckOldPendingTransactions() {
-        batchJobCheckOldPendingTransactions.run();
+    public ResponseEntity<Void> runBatchJobCheckOldPendingTransactions(
+            @RequestParam(value = "parallelism", defaultValue = "4") int parallelism
+    ) {
+        batchJobCheckOldPendingTransactions.run(parallelism);
         return ResponseEntity.accepted().build();
     }
 
     @PostMapping(value = "/batch/sync-transaction-tables", produces = APPLICATION_JSON_VALUE)
     public ResponseEntity<Void> runBatchJobSyncTransactionTables(
             @RequestParam(value = "dryrun", defaultValue = "true") boolean dryrun,
-            @RequestParam(value = "max_users", defaultValue = "50000") int maxUsers
+            @RequestParam(value = "max_users", defaultValue = "50000") int maxUsers,
+            @RequestParam(value = "parallelism", defaultValue = "4") int parallelism
     ) {
-        batchJobSyncTransactionTables.run(dryrun, maxUsers);
+        batchJobSyncTransactionTables.run(dryrun, maxUsers, parallelism);
         return ResponseEntity.accepted().build();
     }
 
     @PostMapping(value = "/batch/delete-transactions-older-than-one-year-for-france")
     public ResponseEntity<Void> deleteTransactionsOlderThanOneYearForFrance(
-            @RequestParam(value = "dryrun", defaultValue = "true") boolean dryrun
+            @RequestParam(value = "dryrun", defaultValue = "true") boolean dryrun,
+            @RequestParam(value = "parallelism", defaultValue = "4") int parallelism
     ) {
-        batchDeleteTransactionsOlderThanOneYearForFrance.run(dryrun);
+        batchDeleteTransactionsOlderThanOneYearForFrance.run(dryrun, parallelism);
         return ResponseEntity.accepted().build();
     }
 
     @PostMapping(value = "/batch/push-all-accounts-to-offload-topic")
     public ResponseEntity<Void> pushAllAccountsToOffloadTopic(
             @RequestParam(value = "dryrun", defaultValue = "true") boolean dryrun,
-            @RequestParam(value = "max-read-per-second", defaultValue = "5000") int maxReadPerSecond
+            @RequestParam(value = "max-read-per-second", defaultValue = "5000") int maxReadPerSecond,
+            @RequestParam(value = "parallelism", defaultValue = "4") int parallelism
     ) {
-        batchPushOffloadData.offloadAccounts(dryrun, maxReadPerSecond);
+        batchPushOffloadData.offloadAccounts(dryrun, maxReadPerSecond, parallelism);
         return ResponseEntity.accepted().build();
     }
 
     @PostMapping(value = "/batch/push-all-transactions-to-offload-topic")
     public ResponseEntity<Void> pushAllTransactionsToOffloadTopic(
             @RequestParam(value = "dryrun", defaultValue = "true") boolean dryrun,
-            @RequestParam(value = "max-read-per-second", defaultValue = "5000") int maxReadPerSecond
+            @RequestParam(value = "max-read-per-second", defaultValue = "5000") int maxReadPerSecond,
+            @RequestParam(value = "parallelism", defaultValue = "4") int parallelism
+    ) {
+        batchPushOffloadData.offloadTransactions(dryrun, maxReadPerSecond, parallelism);
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping(value = "/batch/backfill-account-pending-ranges")
+    public ResponseEntity<Void> backfillAccountPendingRanges(
+            @RequestParam(value = "dryrun", defaultValue = "true") boolean dryrun,
+            @RequestParam(value = "max-read-per-second", defaultValue = "2500") int maxReadPerSecond,
+            @RequestParam(value = "parallelism", defaultValue = "4") int parallelism
+    ) {
+        batchBackfillAccountPendingRanges.run(dryrun, maxReadPerSecond, parallelism);
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping(value = "/batch/apply-retention-ttl")
+    public ResponseEntity<Void> applyRetentionTtl(
+            @RequestParam(value = "dryrun", defaultValue = "true") boolean dryrun,
+            @RequestParam(value = "max-read-per-second", defaultValue = "2500") int maxReadPerSecond,
+            @RequestParam(value = "parallelism", defaultValue = "4") int parallelism
+    ) {
+        batchApplyRetentionTtl.run(dryrun, maxReadPerSecond, parallelism);
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping(value = "/batch/backfill-transactions-by-month")
+    public ResponseEntity<Void> backfillTransactionsByMonth(
+            @RequestParam(value = "dryrun", defaultValue = "true") boolean dryrun,
+            @RequestParam(value = "max-read-per-second", defaultValue = "2500") int maxReadPerSecond,
+            @RequestParam(value = "parallelism", defaultValue = "4") int parallelism
     ) {
-        batchPushOffloadData.offloadTransactions(dryrun, maxReadPerSecond);
+        batchBackfillTransactionsByMonth.run(dryrun, maxReadPerSecond, parallelism);
         return ResponseEntity.accepted().build();
     }
 }
@@ -2,16 +2,11 @@ package com.yolt.accountsandtransactions.batch;
 
 import com.yolt.accountsandtransactions.datascience.DsTransaction;
 import com.yolt.accountsandtransactions.datascience.DsTransactionsRepository;
-import com.yolt.accountsandtransactions.inputprocessing.enrichments.UsersClient;
 import com.yolt.accountsandtransactions.transactions.Transaction;
 import com.yolt.accountsandtransactions.transactions.TransactionRepository;
 import com.yolt.accountsandtransactions.transactions.TransactionService;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import nl.ing.lovebird.cassandrabatch.pager.EntitiesPage;
-import nl.ing.lovebird.cassandrabatch.pager.SelectAllEntityPager;
-import nl.ing.lovebird.cassandrabatch.throttler.CassandraBatchThrottler;
-import nl.ing.lovebird.cassandrabatch.throttler.ThrottledTaskResult;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -20,6 +15,7 @@ import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.CompletableFuture.failedFuture;
@@ -27,6 +23,11 @@ import static java.util.stream.Collectors.toList;
 
 /**
  * This job deletes all transactions of users owned by clients from France that are older than a year.
+ * <p>
+ * Once {@link BatchApplyRetentionTtl} has run, the transactions expire by themselves through the retention policy of the
+ * client (see {@link com.yolt.accountsandtransactions.compliance.RetentionPolicies}).  This job stays as a backstop for
+ * the rows that were written without a TTL anyway, e.g. before the policy was configured; it should find (almost)
+ * nothing to delete.
  */
 @Slf4j
 @Service
@@ -37,41 +38,35 @@ public class BatchDeleteTransactionsOlderThanOneYearForFrance {
      */
     static final UUID clientIdFrance = UUID.fromString("a5154eb9-9f47-43b4-81b1-fce67813c002");
 
-    /**
-     * A map to cache relevant information for a given user saving us many roundtrips to the users service.
-     * <p>
-     * userId -> clientId
-     */
-    private final Map<UUID, UUID> userIdToClientIdMap = new HashMap<>();
-    /**
-     * If we cannot retrieve the user info for a user we add the id to this set to prevent
-     * hammering the users service.
-     */
-    private final Set<UUID> userContextClientErrors = new HashSet<>();
-
     /**
      * Name of the environment we're running on (e.g. "yfb-prd")
      */
     private final String environmentName;
 
-    private final UsersClient usersClient;
+    private final BatchMetadataCaches batchMetadataCaches;
     private final TransactionRepository atTransactionsRepository;
+    private final TransactionService transactionService;
     private final DsTransactionsRepository dsTransactionsRepository;
+    private final TokenRangeScanner tokenRangeScanner;
 
     public BatchDeleteTransactionsOlderThanOneYearForFrance(
             @Value("${environment}") String environmentName,
-            UsersClient usersClient,
+            BatchMetadataCaches batchMetadataCaches,
             TransactionRepository atTransactionsRepository,
-            DsTransactionsRepository dsTransactionsRepository
+            TransactionService transactionService,
+            DsTransactionsRepository dsTransactionsRepository,
+            TokenRangeScanner tokenRangeScanner
     ) {
         this.environmentName = environmentName;
-        this.usersClient = usersClient;
+        this.batchMetadataCaches = batchMetadataCaches;
         this.atTransactionsRepository = atTransactionsRepository;
+        this.transactionService = transactionService;
         this.dsTransactionsRepository = dsTransactionsRepository;
+        this.tokenRangeScanner = tokenRangeScanner;
     }
 
     @Async("BatchDeleteTransactionsOlderThanOneYear")
-    public CompletableFuture<Void> run(boolean dryrun) {
+    public CompletableFuture<Void> run(boolean dryrun, int parallelism) {
         final UUID clientId = clientIdFrance;
         crashUnlessPreconditionsMet(environmentName, clientId);
 
@@ -86,22 +81,22 @@ public class BatchDeleteTransactionsOlderThanOneYearForFrance {
 
         var counters = new Counters();
         try {
-            log.info("BatchDeleteTransactionsOlderThanOneYear starting (clientId={}, dryrun={})", clientId, dryrun);
+            log.info("BatchDeleteTransactionsOlderThanOneYear starting (clientId={}, dryrun={}, parallelism={})", clientId, dryrun, parallelism);
+            // The users are cached for this run only, so a re-run of the job tries to fetch the users that failed again.
+            var metadata = batchMetadataCaches.create("delete-transactions-older-than-one-year-for-france");
 
-            deleteFromAccountsAndTransactionsKeyspace(clientId, dryrun, counters, referenceDate);
+            deleteFromAccountsAndTransactionsKeyspace(clientId, dryrun, parallelism, metadata, counters, referenceDate);
             log.info("1/2 A&T keyspace done");
 
-            deleteFromDatascienceKeyspace(clientId, dryrun, counters, referenceDate);
+            deleteFromDatascienceKeyspace(clientId, dryrun, parallelism, metadata, counters, referenceDate);
             log.info("2/2 DS keyspace done");
 
-            if (!userContextClientErrors.isEmpty()) {
-                log.warn("Failed to retrieve information about {} user(s).  Consequently, not all data might have been removed.  This is a known problem, see https://yolt.atlassian.net/browse/YCO-1917 for more information.", userContextClientErrors.size());
+            if (metadata.usersNotFound() > 0) {
+                log.warn("Failed to retrieve information about {} user(s).  Consequently, not all data might have been removed.  This is a known problem, see https://yolt.atlassian.net/browse/YCO-1917 for more information.", metadata.usersNotFound());
             }
 
             // The number of users we failed to look up in the users service.
-            counters.set("user_context_errors", userContextClientErrors.size());
-            // Clear the errors so we can re-run the job and try to fetch these users again.
-            userContextClientErrors.clear();
+            counters.set("user_context_errors", (int) metadata.usersNotFound());
 
         } catch (RuntimeException e) {
             log.error("failed with exception, counters so far: {}", counters, e); //NOSHERIFF
@@ -114,21 +109,21 @@ public class BatchDeleteTransactionsOlderThanOneYearForFrance {
     /**
      * Remove old transactions from the A&T keyspace.
      */
-    private void deleteFromAccountsAndTransactionsKeyspace(@NonNull UUID clientId, boolean dryrun, Counters counters, LocalDate referenceDate) {
-        Set<UUID> accountIds = new HashSet<>();
-        Set<UUID> userIds = new HashSet<>();
-
-        final CassandraBatchThrottler cassaThrottler = new CassandraBatchThrottler(5_000);
-        cassaThrottler.startBatch((pagingState, pageSize) -> {
-            SelectAllEntityPager<Transaction> pager = new SelectAllEntityPager<>(
-                    atTransactionsRepository.getMapper().getManager().getSession(),
-                    atTransactionsRepository.getMapper(),
-                    pageSize
-            );
-            EntitiesPage<Transaction> transactionPage = pager.getNextPage("transactions", pagingState);
-
-            final List<Transaction> transactionsForClient = transactionPage.getEntities().stream()
-                    .filter(t -> clientId.equals(clientId(t.getUserId())))
+    private void deleteFromAccountsAndTransactionsKeyspace(@NonNull UUID clientId, boolean dryrun, int parallelism, BatchMetadataCache metadata, Counters counters, LocalDate referenceDate) {
+        Set<UUID> accountIds = ConcurrentHashMap.newKeySet();
+        Set<UUID> userIds = ConcurrentHashMap.newKeySet();
+
+        tokenRangeScanner.scan(TokenRangeScan.<Transaction>builder()
+                .job("delete-transactions-older-than-one-year-for-france-at")
+                .mapper(atTransactionsRepository.getMapper())
+                .table("transactions")
+                .parallelism(parallelism)
+                .maxReadPerSecond(5_000)
+                .checkpointed(!dryrun)
+                .build(), transactions -> {
+            metadata.prefetchClientIds(transactions.stream().map(Transaction::getUserId).toList());
+            final List<Transaction> transactionsForClient = transactions.stream()
+                    .filter(t -> metadata.clientId(t.getUserId()).filter(clientId::equals).isPresent())
                     .collect(toList());
 
             // Total number of transactions in the A&T keyspace for the client (tracking this out of curiousity)
@@ -143,8 +138,6 @@ public class BatchDeleteTransactionsOlderThanOneYearForFrance {
             // Total number of transactions in A&T that can be deleted (old trxs belonging to the given client).
             counters.increment("at_trxs_can_delete", transactionsToDelete.size());
             counters.increment("at_trxs_did_delete", deleteTransactions(transactionsToDelete, dryrun));
-
-            return new ThrottledTaskResult(transactionPage.getPagingState(), transactionPage.getEntities().size(), 0);
         });
         // Total number of users and accounts in the A&T keyspace for the client (tracking this out of curiousity)
         counters.set("at_users", userIds.size());
@@ -154,21 +147,21 @@ public class BatchDeleteTransactionsOlderThanOneYearForFrance {
     /**
      * Remove old transactions from the DS keyspace.
      */
-    private void deleteFromDatascienceKeyspace(@NonNull UUID clientId, boolean dryrun, Counters counters, LocalDate referenceDate) {
-        Set<UUID> accountIds = new HashSet<>();
-        Set<UUID> userIds = new HashSet<>();
-
-        final CassandraBatchThrottler cassaThrottler = new CassandraBatchThrottler(5_000);
-        cassaThrottler.startBatch((pagingState, pageSize) -> {
-            SelectAllEntityPager<DsTransaction> pager = new SelectAllEntityPager<>(
-                    dsTransactionsRepository.getMapper().getManager().getSession(),
-                    dsTransactionsRepository.getMapper(),
-                    pageSize
-            );
-            EntitiesPage<DsTransaction> transactionPage = pager.getNextPage("transactions", pagingState);
-
-            final List<DsTransaction> transactionsForClient = transactionPage.getEntities().stream()
-                    .filter(t -> clientId.equals(clientId(t.getUserId())))
+    private void deleteFromDatascienceKeyspace(@NonNull UUID clientId, boolean dryrun, int parallelism, BatchMetadataCache metadata, Counters counters, LocalDate referenceDate) {
+        Set<UUID> accountIds = ConcurrentHashMap.newKeySet();
+        Set<UUID> userIds = ConcurrentHashMap.newKeySet();
+
+        tokenRangeScanner.scan(TokenRangeScan.<DsTransaction>builder()
+                .job("delete-transactions-older-than-one-year-for-france-ds")
+                .mapper(dsTransactionsRepository.getMapper())
+                .table("transactions")
+                .parallelism(parallelism)
+                .maxReadPerSecond(5_000)
+                .checkpointed(!dryrun)
+                .build(), transactions -> {
+            metadata.prefetchClientIds(transactions.stream().map(DsTransaction::getUserId).toList());
+            final List<DsTransaction> transactionsForClient = transactions.stream()
+                    .filter(t -> metadata.clientId(t.getUserId()).filter(clientId::equals).isPresent())
                     .collect(toList());
 
             // Total number of transactions in the DS keyspace (tracking this out of curiousity)
@@ -183,9 +176,6 @@ public class BatchDeleteTransactionsOlderThanOneYearForFrance {
             // Total number of transactions in DS that can be deleted (old trxs belonging to the given client).
             counters.increment("ds_trxs_can_delete", transactionsToDelete.size());
             counters.increment("ds_trxs_did_delete", deleteDsTransactions(transactionsToDelete, dryrun));
-
-
-            return new ThrottledTaskResult(transactionPage.getPagingState(), transactionPage.getEntities().size(), 0);
         });
         // Total number of users and accounts in the DS keyspace (tracking this out of curiousity)
         counters.set("ds_users", userIds.size());
@@ -200,10 +190,8 @@ public class BatchDeleteTransactionsOlderThanOneYearForFrance {
         if (dryrun || transactions.isEmpty()) {
             return 0;
         }
-        var keys = transactions.stream()
-                .map(t -> new TransactionService.TransactionPrimaryKey(t.getUserId(), t.getAccountId(), t.getDate(), t.getId(), t.getStatus()))
-                .collect(toList());
-        atTransactionsRepository.deleteSpecificTransactions(keys);
+        // Through the service, so the enrichments and the status of the accounts go with the transactions.
+        transactionService.deleteTransactions(transactions);
         return transactions.size();
     }
 
@@ -226,23 +214,6 @@ public class BatchDeleteTransactionsOlderThanOneYearForFrance {
         return LocalDate.parse(trx.getDate()).isBefore(referenceDate);
     }
 
-    UUID clientId(UUID userId) {
-        if (userContextClientErrors.contains(userId)) {
-            return null;
-        }
-        if (!userIdToClientIdMap.containsKey(userId)) {
-            var optionalCtx = usersClient.getUser(userId);
-            optionalCtx.ifPresentOrElse(
-                    (ctx) -> userIdToClientIdMap.put(userId, ctx.clientId()),
-                    () -> {
-                        log.warn("Can't retrieve UserContext for userId={}.", userId);
-                        userContextClientErrors.add(userId);
-                    }
-            );
-        }
-        return userIdToClientIdMap.get(userId);
-    }
-
     /**
      * An as extra safeguard (to prevent catastrophic errors) we check that
      * we are not running on an unexpected environment or with an unexpected
@@ -1,15 +1,10 @@
 package com.yolt.accountsandtransactions.batch;
 
 import com.yolt.accountsandtransactions.accounts.Account;
-import com.yolt.accountsandtransactions.accounts.AccountRepository;
 import com.yolt.accountsandtransactions.transactions.Transaction;
 import com.yolt.accountsandtransactions.transactions.TransactionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nl.ing.lovebird.cassandrabatch.pager.EntitiesPage;
-import nl.ing.lovebird.cassandrabatch.pager.SelectAllEntityPager;
-import nl.ing.lovebird.cassandrabatch.throttler.CassandraBatchThrottler;
-import nl.ing.lovebird.cassandrabatch.throttler.ThrottledTaskResult;
 import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -33,38 +28,40 @@ import java.util.stream.Collectors;
 public class BatchJobCheckOldPendingTransactions {
 
     private final TransactionRepository transactionRepository;
-    private final AccountRepository accountRepository;
+    private final BatchMetadataCaches batchMetadataCaches;
+    private final TokenRangeScanner tokenRangeScanner;
     private final Clock clock;
 
     @Async("batchJobCheckOldPendingTransactionsRunner")
-    public void run() {
+    public void run(int parallelism) {
         var startTime = Instant.now(clock);
         var filterPendingTransactionsOlderThan = LocalDate.ofInstant(startTime.minus(40, ChronoUnit.DAYS), ZoneOffset.UTC);
-        log.info("batchJobCheckOldPendingTransactions started");
-        final CassandraBatchThrottler cassaThrottler = new CassandraBatchThrottler(2_500);
+        log.info("batchJobCheckOldPendingTransactions started (parallelism={})", parallelism);
 
         var counters = new Counters();
+        var metadata = batchMetadataCaches.create("check-old-pending-transactions");
         try {
-            cassaThrottler.startBatch((pagingState, pageSize) -> {
-                SelectAllEntityPager<Transaction> pager = new SelectAllEntityPager<>(
-                        transactionRepository.getMapper().getManager().getSession(),
-                        transactionRepository.getMapper(),
-                        pageSize
-                );
-                EntitiesPage<Transaction> transactionPage = pager.getNextPage("transactions", pagingState);
-
+            // Not checkpointed, the job only reports and the counters of an interrupted run are lost anyway.
+            tokenRangeScanner.scan(TokenRangeScan.<Transaction>builder()
+                    .job("check-old-pending-transactions")
+                    .mapper(transactionRepository.getMapper())
+                    .table("transactions")
+                    .parallelism(parallelism)
+                    .maxReadPerSecond(2_500)
+                    .build(), transactions -> {
                 // Filter the transactions and keep only the ones that have status PENDING and that are older than 40 days.
-                var oldPendingTrxs = transactionPage.getEntities().stream()
+                var oldPendingTrxs = transactions.stream()
                         .filter(t -> t.getStatus() == TransactionStatus.PENDING)
                         .filter(t -> t.getDate().isBefore(filterPendingTransactionsOlderThan))
                         .collect(Collectors.toList());
+                metadata.prefetchAccounts(oldPendingTrxs.stream().map(Transaction::getUserId).toList());
 
                 for (Transaction t : oldPendingTrxs) {
                     // Will give us a count of transactions per month, per status.  We expect not to find PENDING
                     // transactions older than 40 days.
                     counters.increment(t.getDate().getYear() * 1_00_00 + t.getDate().getMonthValue() * 1_00 + t.getDate().getDayOfMonth() + "");
 
-                    UUID siteId = accountRepository.getAccounts(t.getUserId()).stream()
+                    UUID siteId = metadata.accounts(t.getUserId()).stream()
                             .filter(a -> a.getId().equals(t.getAccountId()))
                             .map(Account::getSiteId)
                             .findFirst()
@@ -73,8 +70,6 @@ public class BatchJobCheckOldPendingTransactions {
                     counters.increment("old_pending_trxs_total");
                     counters.increment("old_pending_trx_site_" + siteId);
                 }
-
-                return new ThrottledTaskResult(transactionPage.getPagingState(), transactionPage.getEntities().size(), 0);
             });
         } catch (RuntimeException e) {
             log.error("batchJobCheckOldPendingTransactions threw exception. counters={}", counters.toString(), e); //NOSHERIFF
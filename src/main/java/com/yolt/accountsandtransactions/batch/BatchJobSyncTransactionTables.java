@@ -13,8 +13,6 @@ import com.yolt.accountsandtransactions.transactions.TransactionRepository;
 import com.yolt.accountsandtransactions.transactions.TransactionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nl.ing.lovebird.cassandrabatch.pager.EntitiesPage;
-import nl.ing.lovebird.cassandrabatch.pager.SelectAllEntityPager;
 import nl.ing.lovebird.cassandrabatch.throttler.CassandraBatchThrottler;
 import nl.ing.lovebird.cassandrabatch.throttler.ThrottledTaskResult;
 import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
@@ -22,11 +20,13 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 /**
  * This job:
- * 1) creates a list of all user_ids by scanning the transactions table in the datascience keyspace
+ * 1) creates a list of all user_ids by scanning the accounts table, see {@link TokenRangeScanner}
  * 2) for every user, retrieves all transactions from the datascience keyspace and the A&T keyspace
  * 3a) deletes pending transactions from the AT keyspace that aren't present in the DS keyspace, see:
  * {@link #deleteUnmatchedPendingTransactionsFromKeyspaceAT}
@@ -47,148 +47,170 @@ public class BatchJobSyncTransactionTables {
     private final TransactionRepository atTransactionsRepository;
     private final TransactionService atTrxService;
     private final BatchSyncProgressStateRepository batchSyncProgressStateRepository;
+    private final TokenRangeScanner tokenRangeScanner;
+    private final AdaptiveBatchThrottle adaptiveBatchThrottle;
 
     @Async("BatchJobSyncTransactionTablesRunner")
-    public void run(boolean dryrun, int maxUsers) {
-        doRun(dryrun, maxUsers);
+    public void run(boolean dryrun, int maxUsers, int parallelism) {
+        doRun(dryrun, maxUsers, parallelism);
     }
 
-    public void doRun(boolean dryrun, int maxUsers) {
-        log.info("batchJobSyncTransactionTables started (dryrun={})", dryrun);
+    public void doRun(boolean dryrun, int maxUsers, int parallelism) {
+        log.info("batchJobSyncTransactionTables started (dryrun={}, parallelism={})", dryrun, parallelism);
 
         // Keep some global counters.
         Counters counters = new Counters();
+        // The accounts of a user are adjacent in the token range of the user, but can be spread over two pages.  A worker
+        // scans a range page by page, so it only remembers the last user it saw (bounded by the parallelism).
+        Map<Thread, UUID> lastUserOfWorker = new ConcurrentHashMap<>();
+        // Job can be configured to process at most n users per batch run.  The workers finish the user they are
+        // processing, so a few more users than that can be processed.
+        BooleanSupplier maxUsersProcessed = () -> maxUsers != -1 && counters.get("processed_users") >= maxUsers;
 
         try {
-            final Set<UUID> userIds = listUsers();
-            log.info("batchJobSyncTransactionTables total_users={}", userIds.size());
-
-            // We have made a list of all users based on the datascience transactions table.
-            // Go over every user to compare the two sets of transactions (ds, at).
-            for (UUID userId : userIds) {
-                Counters userCounters = new Counters();
-
-                if (!dryrun) {
-                    if (batchSyncProgressStateRepository.get(userId)
-                            .map(BatchSyncProgressState::isPendingTransactionsRemovedFromATKeyspace)
-                            .orElse(false)) {
-                        counters.increment("skipped_users");
+            // Make a list of all users based on the accounts table, and go over every user to compare the two sets of
+            // transactions (ds, at).
+            tokenRangeScanner.scan(TokenRangeScan.<Account>builder()
+                    .job("sync-transaction-tables")
+                    .mapper(atAccRepo.getMapper())
+                    .table("accounts")
+                    .parallelism(parallelism)
+                    .maxReadPerSecond(5_000)
+                    .checkpointed(!dryrun)
+                    .stopWhen(maxUsersProcessed)
+                    .build(), accounts -> {
+                var worker = Thread.currentThread();
+                for (Account account : accounts) {
+                    var userId = account.getUserId();
+                    if (userId.equals(lastUserOfWorker.put(worker, userId))) {
                         continue;
                     }
+                    counters.increment("total_users");
+                    if (!maxUsersProcessed.getAsBoolean()) {
+                        syncUser(userId, dryrun, counters);
+                    }
                 }
+            });
+        } catch (Exception e) {
+            log.info("batchJobSyncTransactionTables threw exception", e); //NOSHERIFF
+        } finally {
+            log.info("batchJobSyncTransactionTables finished, counters={}", counters); //NOSHERIFF
+        }
+    }
 
-                // Retrieve all transactions for this user from both keyspaces.
-                List<DsTransaction> dsTrx = listAllTransactionsForUserInKeyspaceDS(userId);
-                List<Transaction> atTrx = listAllTransactionsForUserInKeyspaceAT(userId);
+    private void syncUser(UUID userId, boolean dryrun, Counters counters) {
+        Counters userCounters = new Counters();
 
-                // Keep track of the largest amount of trx seen across all users (no functional reason, just because it's interesting).
-                if (dsTrx.size() > counters.get("dstrx_high_water_mark")) {
-                    counters.set("dstrx_high_water_mark", dsTrx.size());
-                }
-                if (atTrx.size() > counters.get("attrx_high_water_mark")) {
-                    counters.set("attrx_high_water_mark", atTrx.size());
-                }
+        if (!dryrun) {
+            if (batchSyncProgressStateRepository.get(userId)
+                    .map(BatchSyncProgressState::isPendingTransactionsRemovedFromATKeyspace)
+                    .orElse(false)) {
+                counters.increment("skipped_users");
+                return;
+            }
+        }
 
-                // Group them by account.
-                Map<UUID, List<DsTransaction>> dsTrxByAccount = dsTrx.stream().collect(Collectors.groupingBy(DsTransaction::getAccountId));
-                Map<UUID, List<Transaction>> atTrxByAccount = atTrx.stream().collect(Collectors.groupingBy(Transaction::getAccountId));
-
-                // accountsCtr[0] is a counter that keeps track of the accounts that we have seen.
-                var accountsCtr = new int[]{1};
-
-                // The datascience accounts are the source of truth.  Use these as 'base' and find out if there are
-                // mismatches between the two tables.
-                dsTrxByAccount.forEach((accountId, dsTransactions) -> {
-                    // Look up the corresponding transactions for this account in the AT keyspace.
-                    List<Transaction> atTransactions = atTrxByAccount.getOrDefault(accountId, Collections.emptyList());
-
-                    // We now have:
-                    // dsTransactions = transactions for 1 account in the datascience keyspace
-                    // atTransactions = transactions for the same account in the accounts_and_transactions keyspace
-
-                    // Group these by transactions status (PENDING / BOOKED).
-                    Map<Integer, List<DsTransaction>> dsTransactionsByStatus = dsTransactions.stream().collect(Collectors.groupingBy(DsTransaction::getPending));
-                    Map<TransactionStatus, List<Transaction>> atTransactionsByStatus = atTransactions.stream().collect(Collectors.groupingBy(Transaction::getStatus));
-
-                    // Count them.
-                    var dsPending = dsTransactionsByStatus.getOrDefault(PendingType.PENDING, Collections.emptyList());
-                    var atPending = atTransactionsByStatus.getOrDefault(TransactionStatus.PENDING, Collections.emptyList());
-                    var dsBooked = dsTransactionsByStatus.getOrDefault(PendingType.REGULAR, Collections.emptyList());
-                    var atBooked = atTransactionsByStatus.getOrDefault(TransactionStatus.BOOKED, Collections.emptyList());
-
-                    // Make a note of any difference, and if so: how much.
-                    if (dsPending.size() != atPending.size()) {
-                        // Report what the difference was (how many pending transactions).  This number is positive
-                        // if there are more pending transactions in the A&T keyspace, and negative if there are more
-                        // pending transactions in the ds keyspace.
-                        userCounters.increment("pending_mismatch_acc" + accountsCtr[0], atPending.size() - dsPending.size());
-                        // Increment a global counter that contains the number of accounts we found where there were
-                        // differences in the number of pending transactions between keyspaces.
-                        counters.increment("accs_with_pending_mismatch", 1);
-
-                        // If there are more pending transactions in our own keyspace than there are in the ds keyspace
-                        // that is a problem we know how to correct.
-                        if (atPending.size() > dsPending.size()) {
-                            int deleted = deleteUnmatchedPendingTransactionsFromKeyspaceAT(dryrun, dsPending, atPending);
-                            counters.increment(dryrun ? "would_delete_pending" : "did_delete_pending", deleted);
-                        }
-                    }
-                    if (dsBooked.size() != atBooked.size()) {
-                        // Report what the difference was (how many booked transactions).  This number is positive
-                        // if there are more booked transactions in the A&T keyspace, and negative if there are more
-                        // booked transactions in the ds keyspace.
-                        userCounters.increment("booked_mismatch_acc" + accountsCtr[0], atBooked.size() - dsBooked.size());
-                        // Increment a global counter that contains the number of accounts we found where there were
-                        // differences in the number of booked transactions between keyspaces.
-                        counters.increment("accs_with_booked_mismatch", 1);
-                    }
+        // Retrieve all transactions for this user from both keyspaces.
+        List<DsTransaction> dsTrx = listAllTransactionsForUserInKeyspaceDS(userId);
+        List<Transaction> atTrx = listAllTransactionsForUserInKeyspaceAT(userId);
+
+        // Keep track of the largest amount of trx seen across all users (no functional reason, just because it's interesting).
+        counters.max("dstrx_high_water_mark", dsTrx.size());
+        counters.max("attrx_high_water_mark", atTrx.size());
+        adaptiveBatchThrottle.acquireReads(dsTrx.size() + atTrx.size());
+
+        // Group them by account.
+        Map<UUID, List<DsTransaction>> dsTrxByAccount = dsTrx.stream().collect(Collectors.groupingBy(DsTransaction::getAccountId));
+        Map<UUID, List<Transaction>> atTrxByAccount = atTrx.stream().collect(Collectors.groupingBy(Transaction::getAccountId));
+
+        // accountsCtr[0] is a counter that keeps track of the accounts that we have seen.
+        var accountsCtr = new int[]{1};
+
+        // The datascience accounts are the source of truth.  Use these as 'base' and find out if there are
+        // mismatches between the two tables.
+        dsTrxByAccount.forEach((accountId, dsTransactions) -> {
+            // Look up the corresponding transactions for this account in the AT keyspace.
+            List<Transaction> atTransactions = atTrxByAccount.getOrDefault(accountId, Collections.emptyList());
+
+            // We now have:
+            // dsTransactions = transactions for 1 account in the datascience keyspace
+            // atTransactions = transactions for the same account in the accounts_and_transactions keyspace
+
+            // Group these by transactions status (PENDING / BOOKED).
+            Map<Integer, List<DsTransaction>> dsTransactionsByStatus = dsTransactions.stream().collect(Collectors.groupingBy(DsTransaction::getPending));
+            Map<TransactionStatus, List<Transaction>> atTransactionsByStatus = atTransactions.stream().collect(Collectors.groupingBy(Transaction::getStatus));
+
+            // Count them.
+            var dsPending = dsTransactionsByStatus.getOrDefault(PendingType.PENDING, Collections.emptyList());
+            var atPending = atTransactionsByStatus.getOrDefault(TransactionStatus.PENDING, Collections.emptyList());
+            var dsBooked = dsTransactionsByStatus.getOrDefault(PendingType.REGULAR, Collections.emptyList());
+            var atBooked = atTransactionsByStatus.getOrDefault(TransactionStatus.BOOKED, Collections.emptyList());
+
+            // Make a note of any difference, and if so: how much.
+            if (dsPending.size() != atPending.size()) {
+                // Report what the difference was (how many pending transactions).  This number is positive
+                // if there are more pending transactions in the A&T keyspace, and negative if there are more
+                // pending transactions in the ds keyspace.
+                userCounters.increment("pending_mismatch_acc" + accountsCtr[0], atPending.size() - dsPending.size());
+                // Increment a global counter that contains the number of accounts we found where there were
+                // differences in the number of pending transactions between keyspaces.
+                counters.increment("accs_with_pending_mismatch", 1);
+
+                // If there are more pending transactions in our own keyspace than there are in the ds keyspace
+                // that is a problem we know how to correct.
+                if (atPending.size() > dsPending.size()) {
+                    int deleted = deleteUnmatchedPendingTransactionsFromKeyspaceAT(dryrun, dsPending, atPending);
+                    counters.increment(dryrun ? "would_delete_pending" : "did_delete_pending", deleted);
+                }
+            }
+            if (dsBooked.size() != atBooked.size()) {
+                // Report what the difference was (how many booked transactions).  This number is positive
+                // if there are more booked transactions in the A&T keyspace, and negative if there are more
+                // booked transactions in the ds keyspace.
+                userCounters.increment("booked_mismatch_acc" + accountsCtr[0], atBooked.size() - dsBooked.size());
+                // Increment a global counter that contains the number of accounts we found where there were
+                // differences in the number of booked transactions between keyspaces.
+                counters.increment("accs_with_booked_mismatch", 1);
+            }
 
-                    if (dsPending.size() == atPending.size() && dsBooked.size() == atBooked.size()) {
-                        // If everything is equal we keep track of that too.
-                        counters.increment("accs_perfect", 1);
-                    }
+            if (dsPending.size() == atPending.size() && dsBooked.size() == atBooked.size()) {
+                // If everything is equal we keep track of that too.
+                counters.increment("accs_perfect", 1);
+            }
 
-                    accountsCtr[0]++;
+            accountsCtr[0]++;
 
-                    // Sleep for a little while as a 'throttle'.  This puts an upperbound of 10 users / sec on the
-                    // above process.  In practice it will be less because the code takes time to execute of course.
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                });
-
-                if (!dryrun) {
-                    counters.increment("processed_users");
-                    batchSyncProgressStateRepository.upsert(BatchSyncProgressState.builder()
-                            .userId(userId)
-                            .pendingTransactionsRemovedFromATKeyspace(true)
-                            .build()
-                    );
-                    if (maxUsers != -1 && counters.get("processed_users") >= maxUsers) {
-                        // Job can be configured to process at most n users per batch run.
-                        break;
-                    }
-                }
-
-                // Everything is OK for this user.  Continue with the next user.
-                if (userCounters.isEmpty()) {
-                    continue;
+            // Sleep for a little while as a 'throttle', unless the adaptive throttle is enabled.  This puts an upperbound
+            // of 10 accounts / sec on the above process.  In practice it will be less because the code takes time to
+            // execute of course.
+            if (!adaptiveBatchThrottle.isEnabled()) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
                 }
+            }
+        });
 
-                // Only log information if something is wrong with a user.
-                log.info("batchJobSyncTransactionTables userId={} counters={}",
-                        userId,
-                        userCounters.toString()
-                ); //NOSHERIFF
-            } // for each user
+        if (!dryrun) {
+            counters.increment("processed_users");
+            batchSyncProgressStateRepository.upsert(BatchSyncProgressState.builder()
+                    .userId(userId)
+                    .pendingTransactionsRemovedFromATKeyspace(true)
+                    .build()
+            );
+        }
 
-        } catch (Exception e) {
-            log.info("batchJobSyncTransactionTables threw exception", e); //NOSHERIFF
-        } finally {
-            log.info("batchJobSyncTransactionTables finished, counters={}", counters); //NOSHERIFF
+        // Everything is OK for this user.  Continue with the next user.
+        if (userCounters.isEmpty()) {
+            return;
         }
+
+        // Only log information if something is wrong with a user.
+        log.info("batchJobSyncTransactionTables userId={} counters={}",
+                userId,
+                userCounters.toString()
+        ); //NOSHERIFF
     }
 
     private List<DsTransaction> listAllTransactionsForUserInKeyspaceDS(UUID userId) {
@@ -198,7 +220,7 @@ public class BatchJobSyncTransactionTables {
             Select select = dsTransactionsRepository.getTransactionForUserQuery(userId);
             select.setFetchSize(pageSize);
             select.setPagingState(pagingState);
-            final ResultSet resultSet = dsTransactionsRepository.getMapper().getManager().getSession().execute(select);
+            final ResultSet resultSet = dsTransactionsRepository.getMapper().getManager().getSession().execute(adaptiveBatchThrottle.track(select));
             final PagingState newPagingState = resultSet.getExecutionInfo().getPagingState();
             List<DsTransaction> result = dsTransactionsRepository.getMapper().map(resultSet).all();
             trxs.addAll(result);
@@ -214,7 +236,7 @@ public class BatchJobSyncTransactionTables {
             Select select = atTransactionsRepository.getTransactionsForUserQuery(userId);
             select.setFetchSize(pageSize);
             select.setPagingState(pagingState);
-            final ResultSet resultSet = atTransactionsRepository.getMapper().getManager().getSession().execute(select);
+            final ResultSet resultSet = atTransactionsRepository.getMapper().getManager().getSession().execute(adaptiveBatchThrottle.track(select));
             final PagingState newPagingState = resultSet.getExecutionInfo().getPagingState();
             List<Transaction> result = atTransactionsRepository.getMapper().map(resultSet).all();
             trxs.addAll(result);
@@ -254,23 +276,4 @@ public class BatchJobSyncTransactionTables {
         return 0;
     }
 
-    /**
-     * List all users by scanning the transactions table.
-     */
-    private Set<UUID> listUsers() {
-        Set<UUID> userIds = new HashSet<>();
-        final CassandraBatchThrottler cassaThrottler = new CassandraBatchThrottler(5_000);
-        cassaThrottler.startBatch((pagingState, pageSize) -> {
-            SelectAllEntityPager<Account> pager = new SelectAllEntityPager<>(
-                    atAccRepo.getMapper().getManager().getSession(),
-                    atAccRepo.getMapper(),
-                    pageSize
-            );
-            EntitiesPage<Account> accountPage = pager.getNextPage("accounts", pagingState);
-            accountPage.getEntities().forEach(acc -> userIds.add(acc.getUserId()));
-            return new ThrottledTaskResult(accountPage.getPagingState(), accountPage.getEntities().size(), 0);
-        });
-        return userIds;
-    }
-
 }
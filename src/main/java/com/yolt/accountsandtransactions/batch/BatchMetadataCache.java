@@ -0,0 +1,126 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yolt.accountsandtransactions.accounts.Account;
+import com.yolt.accountsandtransactions.accounts.AccountRepository;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.UserDTO;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.UsersClient;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics.BatchMetadataCacheResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metadata of the users that a batch job looks up for the rows it scans (the client of a user, the accounts of a
+ * user), cached for the duration of one run of the job.  See {@link BatchMetadataCaches#create}.
+ * <p>
+ * The caches are bounded and safe to use from the workers of a {@link TokenRangeScanner}.  Concurrent lookups of the
+ * same user are coalesced into one load.  The users of a page can be prefetched (concurrently, on the
+ * {@code BatchMetadataPrefetchRunner} pool) before the page is processed, so the lookups of the rows do not wait on
+ * the users service or Cassandra one after the other.
+ */
+@Slf4j
+public class BatchMetadataCache {
+
+    static final String CLIENT_ID = "client_id";
+    static final String ACCOUNTS = "accounts";
+
+    private final String job;
+    private final Executor prefetchExecutor;
+    private final AccountsAndTransactionMetrics metrics;
+    private final LoadingCache<UUID, Optional<UUID>> clientIds;
+    private final LoadingCache<UUID, List<Account>> accounts;
+    private final LongAdder usersNotFound = new LongAdder();
+
+    BatchMetadataCache(String job, long maximumSize, Executor prefetchExecutor, AccountsAndTransactionMetrics metrics,
+                       UsersClient usersClient, AccountRepository accountRepository) {
+        this.job = job;
+        this.prefetchExecutor = prefetchExecutor;
+        this.metrics = metrics;
+        this.clientIds = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build(CacheLoader.from(userId -> {
+                    var clientId = usersClient.getUser(userId).map(UserDTO::clientId);
+                    if (clientId.isEmpty()) {
+                        log.warn("Can't retrieve UserContext for userId={}.", userId);
+                        usersNotFound.increment();
+                    }
+                    return clientId;
+                }));
+        this.accounts = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build(CacheLoader.from(accountRepository::getAccounts));
+    }
+
+    /**
+     * @return the client of the user, empty if the user is not known to the users service
+     */
+    public Optional<UUID> clientId(UUID userId) {
+        return get(clientIds, CLIENT_ID, userId);
+    }
+
+    public List<Account> accounts(UUID userId) {
+        return get(accounts, ACCOUNTS, userId);
+    }
+
+    public void prefetchClientIds(Collection<UUID> userIds) {
+        prefetch(clientIds, CLIENT_ID, userIds);
+    }
+
+    public void prefetchAccounts(Collection<UUID> userIds) {
+        prefetch(accounts, ACCOUNTS, userIds);
+    }
+
+    /**
+     * @return the number of users that the users service did not know during this run
+     */
+    public long usersNotFound() {
+        return usersNotFound.sum();
+    }
+
+    private <V> V get(LoadingCache<UUID, V> cache, String name, UUID userId) {
+        V cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            metrics.incrementBatchMetadataCacheLookup(job, name, BatchMetadataCacheResult.HIT);
+            return cached;
+        }
+        metrics.incrementBatchMetadataCacheLookup(job, name, BatchMetadataCacheResult.MISS);
+        try {
+            // Waits for the load of a prefetch or another worker, if there is one.
+            return cache.getUnchecked(userId);
+        } catch (UncheckedExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private <V> void prefetch(LoadingCache<UUID, V> cache, String name, Collection<UUID> userIds) {
+        userIds.stream()
+                .distinct()
+                .filter(userId -> cache.getIfPresent(userId) == null)
+                .forEach(userId -> {
+                    try {
+                        prefetchExecutor.execute(() -> {
+                            try {
+                                cache.getUnchecked(userId);
+                            } catch (RuntimeException e) {
+                                // The lookup of the row loads (and fails) again.
+                                log.debug("prefetch of {} for user {} failed", name, userId, e);
+                            }
+                        });
+                        metrics.incrementBatchMetadataCacheLookup(job, name, BatchMetadataCacheResult.PREFETCH);
+                    } catch (RejectedExecutionException e) {
+                        // The pool is saturated, the user is loaded by the lookup of the row.
+                    }
+                });
+    }
+}
@@ -0,0 +1,42 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.yolt.accountsandtransactions.accounts.AccountRepository;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.UsersClient;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Creates the {@link BatchMetadataCache} of a run of a batch job.
+ */
+@Component
+public class BatchMetadataCaches {
+
+    private final Executor prefetchExecutor;
+    private final AccountsAndTransactionMetrics metrics;
+    private final UsersClient usersClient;
+    private final AccountRepository accountRepository;
+    private final long maximumSize;
+
+    public BatchMetadataCaches(@Qualifier("BatchMetadataPrefetchRunner") Executor prefetchExecutor,
+                               AccountsAndTransactionMetrics metrics,
+                               UsersClient usersClient,
+                               AccountRepository accountRepository,
+                               @Value("${yolt.accounts-and-transactions.batch.metadata-cache.max-users:100000}") long maximumSize) {
+        this.prefetchExecutor = prefetchExecutor;
+        this.metrics = metrics;
+        this.usersClient = usersClient;
+        this.accountRepository = accountRepository;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @param job the name of the job, the metrics of the cache are tagged with it
+     */
+    public BatchMetadataCache create(String job) {
+        return new BatchMetadataCache(job, maximumSize, prefetchExecutor, metrics, usersClient, accountRepository);
+    }
+}
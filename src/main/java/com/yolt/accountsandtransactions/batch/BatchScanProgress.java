@@ -0,0 +1,52 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.datastax.driver.mapping.annotations.ClusteringColumn;
+import com.datastax.driver.mapping.annotations.Column;
+import com.datastax.driver.mapping.annotations.PartitionKey;
+import com.datastax.driver.mapping.annotations.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * The progress of a {@link TokenRangeScanner} scan in one token range, so an interrupted job resumes where it left off.
+ * <p>
+ * The rows of a job are removed once all its ranges have been scanned.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder(toBuilder = true)
+@Table(name = "batch_scan_progress")
+public class BatchScanProgress {
+
+    @NotNull
+    @PartitionKey
+    @Column(name = "job")
+    private String job;
+
+    /**
+     * The start of the range (exclusive).
+     */
+    @ClusteringColumn
+    @Column(name = "range_start")
+    private long rangeStart;
+
+    /**
+     * The end of the range (inclusive).
+     */
+    @Column(name = "range_end")
+    private long rangeEnd;
+
+    /**
+     * The paging state of the next page in the range, {@code null} if the range is {@link #done}.
+     */
+    @Column(name = "paging_state")
+    private String pagingState;
+
+    @Column(name = "done")
+    private boolean done;
+}
@@ -3,12 +3,14 @@ package com.yolt.accountsandtransactions.batch;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.mapping.Mapper;
+import com.datastax.driver.mapping.MappingManager;
 import lombok.NonNull;
 import nl.ing.lovebird.cassandra.CassandraRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.Valid;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,8 +21,11 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.truncate;
 @Validated
 public class BatchSyncProgressStateRepository extends CassandraRepository<BatchSyncProgressState> {
 
+    private final Mapper<BatchScanProgress> scanProgressMapper;
+
     public BatchSyncProgressStateRepository(Session session) {
         super(session, BatchSyncProgressState.class);
+        this.scanProgressMapper = new MappingManager(session).mapper(BatchScanProgress.class);
     }
 
     public Optional<BatchSyncProgressState> get(@NonNull UUID userId) {
@@ -35,8 +40,34 @@ public class BatchSyncProgressStateRepository extends CassandraRepository<BatchS
         super.save(batchSyncProgressState, Mapper.Option.saveNullFields(false));
     }
 
+    /**
+     * Truncates the progress of all batch jobs, including the progress of their token range scans.
+     */
     public void reset() {
         session.execute(truncate("batch_sync_progress_state"));
+        session.execute(truncate("batch_scan_progress"));
+    }
+
+    /**
+     * @return the progress of the token ranges of the given job, see {@link TokenRangeScanner}
+     */
+    public List<BatchScanProgress> getScanProgress(@NonNull String job) {
+        return scanProgressMapper.map(session.execute(QueryBuilder
+                .select()
+                .from("batch_scan_progress")
+                .where(eq("job", job))
+        )).all();
     }
 
+    public void upsertScanProgress(@NonNull @Valid BatchScanProgress batchScanProgress) {
+        scanProgressMapper.save(batchScanProgress, Mapper.Option.saveNullFields(false));
+    }
+
+    public void resetScanProgress(@NonNull String job) {
+        session.execute(QueryBuilder
+                .delete()
+                .from("batch_scan_progress")
+                .where(eq("job", job))
+        );
+    }
 }
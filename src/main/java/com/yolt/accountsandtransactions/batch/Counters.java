@@ -1,18 +1,21 @@
 package com.yolt.accountsandtransactions.batch;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * Counters of a batch job, safe to update from the workers of a {@link TokenRangeScanner}.
+ */
 class Counters {
-    final Map<String, Integer> counters = new HashMap<>();
+    final Map<String, Integer> counters = new ConcurrentHashMap<>();
 
     public void increment(String name) {
-        counters.compute(name, (k, v) -> v == null ? 1 : v + 1);
+        counters.merge(name, 1, Integer::sum);
     }
 
     public void increment(String name, int amount) {
-        counters.compute(name, (k, v) -> v == null ? amount : v + amount);
+        counters.merge(name, amount, Integer::sum);
     }
 
     public int get(String name) {
@@ -23,6 +26,13 @@ class Counters {
         counters.put(name, value);
     }
 
+    /**
+     * Sets the counter to the value if that is higher than its current value.
+     */
+    public void max(String name, int value) {
+        counters.merge(name, value, Math::max);
+    }
+
     /**
      * @return string representation of all counters
      */
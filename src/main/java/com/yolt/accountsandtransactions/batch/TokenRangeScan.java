@@ -0,0 +1,59 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.datastax.driver.mapping.Mapper;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A full table scan by the {@link TokenRangeScanner}.
+ */
+@Value
+@Builder
+public class TokenRangeScan<T> {
+
+    /**
+     * The name under which the progress of the scan is checkpointed, unique per job and table.
+     */
+    @NonNull
+    String job;
+
+    @NonNull
+    Mapper<T> mapper;
+
+    @NonNull
+    String table;
+
+    /**
+     * The partition key of the {@link #table}, the tables of this service are all partitioned by user.
+     */
+    @NonNull
+    @Builder.Default
+    String partitionKey = "user_id";
+
+    /**
+     * The number of token ranges that are scanned concurrently.
+     */
+    @Builder.Default
+    int parallelism = 1;
+
+    /**
+     * The number of rows that are read per second, in total.  Every range that is being scanned gets an equal share.
+     */
+    int maxReadPerSecond;
+
+    /**
+     * Whether the progress is checkpointed, so an interrupted scan resumes where it left off the next time.  A dry-run
+     * should not be checkpointed, so it does not skip over the ranges of a previous real run (or vice versa).
+     */
+    boolean checkpointed;
+
+    /**
+     * Checked before every page, the scan stops (and keeps its checkpoints) once it returns true.
+     */
+    @NonNull
+    @Builder.Default
+    BooleanSupplier stopWhen = () -> false;
+}
@@ -0,0 +1,253 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.exceptions.PagingStateException;
+import com.google.common.util.concurrent.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Scans a whole table by splitting the token ring into ranges that are scanned concurrently, instead of paging through
+ * the table on a single thread.
+ * <p>
+ * The ring is split in {@code yolt.accounts-and-transactions.batch.token-range-scan.splits} equal ranges (of the
+ * Murmur3 partitioner), which are handed out to {@link TokenRangeScan#getParallelism()} workers on the
+ * {@code TokenRangeScanRunner} pool.  Every worker is throttled to its share of {@link TokenRangeScan#getMaxReadPerSecond()},
+ * and by the {@link AdaptiveBatchThrottle} that all batch jobs share.
+ * <p>
+ * A {@link TokenRangeScan#isCheckpointed() checkpointed} scan stores the paging state of every range after each page, see
+ * {@link BatchSyncProgressStateRepository#getScanProgress}.  If the job is interrupted (a restart, a failure, a stop) the
+ * next scan of the job continues with the unfinished ranges.  The checkpoints are removed once all ranges are scanned.
+ * The page that was being processed when the job was interrupted is processed again, so the page consumer should be
+ * idempotent.
+ */
+@Slf4j
+@Component
+public class TokenRangeScanner {
+
+    private final Executor executor;
+    private final BatchSyncProgressStateRepository progressRepository;
+    private final AdaptiveBatchThrottle adaptiveBatchThrottle;
+    private final int splits;
+    private final int pageSize;
+
+    public TokenRangeScanner(@Qualifier("TokenRangeScanRunner") Executor executor,
+                             BatchSyncProgressStateRepository progressRepository,
+                             AdaptiveBatchThrottle adaptiveBatchThrottle,
+                             @Value("${yolt.accounts-and-transactions.batch.token-range-scan.splits:256}") int splits,
+                             @Value("${yolt.accounts-and-transactions.batch.token-range-scan.page-size:500}") int pageSize) {
+        this.executor = executor;
+        this.progressRepository = progressRepository;
+        this.adaptiveBatchThrottle = adaptiveBatchThrottle;
+        this.splits = splits;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Scans the table and hands every page to the consumer, from multiple threads at once.
+     *
+     * @return true if the whole table was scanned, false if the scan was stopped
+     */
+    public <T> boolean scan(TokenRangeScan<T> scan, Consumer<List<T>> pageConsumer) {
+        var ranges = split(splits);
+        Map<Long, BatchScanProgress> progress = scan.isCheckpointed() ? checkpoints(scan.getJob(), ranges) : Map.of();
+
+        var pending = new ConcurrentLinkedQueue<Range>();
+        ranges.stream()
+                .filter(range -> !progress.containsKey(range.start()) || !progress.get(range.start()).isDone())
+                .forEach(pending::add);
+        log.info("token range scan {} started, {} of {} ranges to scan", scan.getJob(), pending.size(), ranges.size());
+
+        int parallelism = Math.max(1, Math.min(scan.getParallelism(), pending.size()));
+        var execution = new Execution<>(scan, pageConsumer, pending, progress, Math.max(1.0, (double) scan.getMaxReadPerSecond() / parallelism));
+
+        var workers = new ArrayList<CompletableFuture<Void>>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            workers.add(CompletableFuture.runAsync(execution::run, executor));
+        }
+        try {
+            CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+
+        boolean completed = pending.isEmpty() && !execution.stopped.get();
+        if (completed && scan.isCheckpointed()) {
+            progressRepository.resetScanProgress(scan.getJob());
+        }
+        log.info("token range scan {} {}, rows={}", scan.getJob(), completed ? "finished" : "stopped", execution.rows.get());
+        return completed;
+    }
+
+    /**
+     * The checkpoints of the job by the start of their range.  Checkpoints that do not match the ranges (the number of
+     * splits was changed) are discarded, and the scan starts over.
+     */
+    private Map<Long, BatchScanProgress> checkpoints(String job, List<Range> ranges) {
+        Map<Long, BatchScanProgress> progress = progressRepository.getScanProgress(job).stream()
+                .collect(toMap(BatchScanProgress::getRangeStart, Function.identity()));
+        boolean matches = progress.values().stream()
+                .allMatch(checkpoint -> ranges.contains(new Range(checkpoint.getRangeStart(), checkpoint.getRangeEnd())));
+        if (!matches) {
+            log.warn("token range scan {} has checkpoints of different token ranges, starting over", job);
+            progressRepository.resetScanProgress(job);
+            return Map.of();
+        }
+        return progress;
+    }
+
+    /**
+     * Splits the token ring of the Murmur3 partitioner, (-2^63, 2^63 - 1], in ranges of (nearly) equal width.  The
+     * minimum token is never assigned to a partition, so the first range can exclude it.  The ranges are shuffled, so
+     * the workers do not scan adjacent ranges (that are likely owned by the same replicas) at the same time.
+     */
+    static List<Range> split(int splits) {
+        var min = BigInteger.valueOf(Long.MIN_VALUE);
+        var width = BigInteger.valueOf(Long.MAX_VALUE).subtract(min);
+        var ranges = new ArrayList<Range>(splits);
+        for (int i = 0; i < splits; i++) {
+            long start = min.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(splits))).longValueExact();
+            long end = min.add(width.multiply(BigInteger.valueOf(i + 1L)).divide(BigInteger.valueOf(splits))).longValueExact();
+            ranges.add(new Range(start, end));
+        }
+        Collections.shuffle(ranges);
+        return ranges;
+    }
+
+    /**
+     * A range of tokens, the start is exclusive and the end is inclusive.
+     */
+    record Range(long start, long end) {
+    }
+
+    private class Execution<T> {
+
+        private final TokenRangeScan<T> scan;
+        private final Consumer<List<T>> pageConsumer;
+        private final Queue<Range> pending;
+        private final Map<Long, BatchScanProgress> progress;
+        private final double maxReadPerSecondPerWorker;
+        private final Session session;
+        private final String query;
+
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        private final AtomicLong rows = new AtomicLong();
+
+        Execution(TokenRangeScan<T> scan, Consumer<List<T>> pageConsumer, Queue<Range> pending, Map<Long, BatchScanProgress> progress, double maxReadPerSecondPerWorker) {
+            this.scan = scan;
+            this.pageConsumer = pageConsumer;
+            this.pending = pending;
+            this.progress = progress;
+            this.maxReadPerSecondPerWorker = maxReadPerSecondPerWorker;
+            this.session = scan.getMapper().getManager().getSession();
+            this.query = "select * from " + scan.getTable() +
+                    " where token(" + scan.getPartitionKey() + ") > ? and token(" + scan.getPartitionKey() + ") <= ?";
+        }
+
+        void run() {
+            var rateLimiter = RateLimiter.create(maxReadPerSecondPerWorker);
+            try {
+                Range range;
+                while (!stopped.get() && (range = pending.poll()) != null) {
+                    scanRange(range, rateLimiter);
+                }
+            } catch (RuntimeException e) {
+                // Stop the other workers, the scan is resumed from the checkpoints on the next run.
+                stopped.set(true);
+                throw e;
+            }
+        }
+
+        private void scanRange(Range range, RateLimiter rateLimiter) {
+            var statement = new SimpleStatement(query, range.start(), range.end());
+            statement.setFetchSize(pageSize);
+            var checkpoint = progress.get(range.start());
+            String pagingState = checkpoint != null ? checkpoint.getPagingState() : null;
+
+            do {
+                if (scan.getStopWhen().getAsBoolean()) {
+                    stopped.set(true);
+                }
+                if (stopped.get()) {
+                    // Hand the range back, a stopped scan is not complete.
+                    pending.add(range);
+                    return;
+                }
+                if (pagingState != null) {
+                    setPagingState(statement, pagingState, range);
+                }
+
+                ResultSet resultSet;
+                List<T> page;
+                adaptiveBatchThrottle.acquire();
+                try {
+                    resultSet = session.execute(adaptiveBatchThrottle.track(statement));
+                    page = currentPage(resultSet);
+                    rateLimiter.acquire(Math.max(1, page.size()));
+                    adaptiveBatchThrottle.acquireReads(page.size());
+                    pageConsumer.accept(page);
+                } finally {
+                    adaptiveBatchThrottle.release();
+                }
+                rows.addAndGet(page.size());
+
+                PagingState next = resultSet.getExecutionInfo().getPagingState();
+                pagingState = next != null ? next.toString() : null;
+                if (scan.isCheckpointed()) {
+                    progressRepository.upsertScanProgress(BatchScanProgress.builder()
+                            .job(scan.getJob())
+                            .rangeStart(range.start())
+                            .rangeEnd(range.end())
+                            .pagingState(pagingState)
+                            .done(pagingState == null)
+                            .build());
+                }
+            } while (pagingState != null);
+        }
+
+        private List<T> currentPage(ResultSet resultSet) {
+            int available = resultSet.getAvailableWithoutFetching();
+            List<T> page = new ArrayList<>(available);
+            if (available > 0) {
+                for (T entity : scan.getMapper().map(resultSet)) {
+                    page.add(entity);
+                    // Prevent the driver from fetching the next page, that is done (and checkpointed) by the scan.
+                    if (page.size() == available) {
+                        break;
+                    }
+                }
+            }
+            return page;
+        }
+
+        private void setPagingState(SimpleStatement statement, String pagingState, Range range) {
+            try {
+                statement.setPagingState(PagingState.fromString(pagingState));
+            } catch (PagingStateException e) {
+                log.warn("token range scan {} has an invalid checkpoint for range {}, scanning the range from the start", scan.getJob(), range, e);
+            }
+        }
+    }
+}
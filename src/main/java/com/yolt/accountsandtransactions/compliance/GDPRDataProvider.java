@@ -9,10 +9,13 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -21,6 +24,9 @@ import java.util.UUID;
  * <p>
  * Currently this implementation outputs a single CSV file as byte array. If the needs arises to export more than one file,
  * consider outputting a zip file (using apache commons compression for example).
+ * <p>
+ * The SPI takes the export as a byte array, so the CSV bytes are held in memory.  The transactions themselves are
+ * streamed into the CSV a page at a time and are never collected.
  */
 @Slf4j
 @Component
@@ -29,6 +35,7 @@ public class GDPRDataProvider implements GDPRServiceDataProvider {
 
     private static final String SERVICE_NAME = "accounts-and-transactions";
     private static final String CSV_FORMAT = "csv";
+    private static final int TRANSACTIONS_FETCH_SIZE = 500;
 
     private static final String LABEL_ACC_ACCOUNT_ID = "account_id";
     private static final String LABEL_ACC_ACCOUNT_HOLDER_NAME = "holder_name";
@@ -51,75 +58,70 @@ public class GDPRDataProvider implements GDPRServiceDataProvider {
     public Optional<FileMetaAndBytes> getDataFileAsBytes(final UUID userId) {
 
         final var output = new ByteArrayOutputStream();
+        writeDataFile(userId, output);
+
+        log.info("Returning GDPR data file");
+
+        return Optional.of(new FileMetaAndBytes(new FileMetadata(SERVICE_NAME, CSV_FORMAT), output.toByteArray()));
+    }
+
+    /**
+     * Write the export as CSV to {@code output}, which is flushed but not closed.
+     * <p>
+     * The transactions are read a page at a time and every row is written as soon as it is read, so apart from the
+     * CSV bytes the memory that is used does not depend on the number of transactions of the user.
+     */
+    void writeDataFile(final UUID userId, final OutputStream output) {
 
         log.info("Adding accounts to GDPR export");
 
-        try (final var writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
-            final CSVPrinter csvPrinter;
-            try {
-                csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(
-                        LABEL_ACC_ACCOUNT_ID,
-                        LABEL_ACC_ACCOUNT_HOLDER_NAME,
-                        LABEL_ACC_ACCOUNT_IDENTIFICATION,
-                        LABEL_ACC_ACCOUNT_NAME,
-                        LABEL_ACC_BALANCE,
-                        LABEL_ACC_CURRENCY
-                ));
-            } catch (IOException e) {
-                throw new GDPRDataProviderException(e);
+        final var writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        try {
+            final var csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(
+                    LABEL_ACC_ACCOUNT_ID,
+                    LABEL_ACC_ACCOUNT_HOLDER_NAME,
+                    LABEL_ACC_ACCOUNT_IDENTIFICATION,
+                    LABEL_ACC_ACCOUNT_NAME,
+                    LABEL_ACC_BALANCE,
+                    LABEL_ACC_CURRENCY
+            ));
+
+            for (final var account : accountRepository.getAccounts(userId)) {
+                csvPrinter.printRecord(
+                        hash(account.getId().toString()),
+                        account.getAccountHolder(),
+                        account.getAccountNumber().flatMap(an -> an.identification).orElse(""),
+                        account.getName(),
+                        account.getBalance(),
+                        account.getCurrency());
             }
 
-            final var accounts = accountRepository.getAccounts(userId);
-            accounts.forEach(account -> {
-                try {
-                    csvPrinter.printRecord(
-                            hash(account.getId().toString()),
-                            account.getAccountHolder(),
-                            account.getAccountNumber().flatMap(an -> an.identification).orElse(""),
-                            account.getName(),
-                            account.getBalance(),
-                            account.getCurrency());
-                } catch (IOException e) {
-                    throw new GDPRDataProviderException(e);
-                }
-            });
-
-            final CSVPrinter csvPrinterTrx;
-            try {
-                csvPrinterTrx = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(
-                        LABEL_TRX_ACCOUNT_ID,
-                        LABEL_TRX_TRANSACTION_ID,
-                        LABEL_TRX_DATE,
-                        LABEL_TRX_AMOUNT,
-                        LABEL_TRX_CURRENCY,
-                        LABEL_TRX_DESCRIPTION
-                ));
-            } catch (IOException e) {
-                throw new GDPRDataProviderException(e);
-            }
+            final var csvPrinterTrx = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(
+                    LABEL_TRX_ACCOUNT_ID,
+                    LABEL_TRX_TRANSACTION_ID,
+                    LABEL_TRX_DATE,
+                    LABEL_TRX_AMOUNT,
+                    LABEL_TRX_CURRENCY,
+                    LABEL_TRX_DESCRIPTION
+            ));
 
             log.info("Adding transactions to GDPR export");
 
-            transactionRepository.getTransactionsForUser(userId).forEach(tx -> {
-                try {
-                    csvPrinterTrx.printRecord(
-                            hash(tx.getAccountId().toString()),
-                            tx.getId(),
-                            tx.getDate(),
-                            tx.getAmount(),
-                            tx.getCurrency(),
-                            tx.getRemittanceInformationUnstructured());
-                } catch (IOException e) {
-                    throw new GDPRDataProviderException(e);
-                }
-            });
+            // the account ids repeat for every transaction, hash them once per account
+            final var hashedAccountIds = new HashMap<UUID, String>();
+            for (final var tx : transactionRepository.streamTransactionsForUser(userId, TRANSACTIONS_FETCH_SIZE)) {
+                csvPrinterTrx.printRecord(
+                        hashedAccountIds.computeIfAbsent(tx.getAccountId(), accountId -> hash(accountId.toString())),
+                        tx.getId(),
+                        tx.getDate(),
+                        tx.getAmount(),
+                        tx.getCurrency(),
+                        tx.getRemittanceInformationUnstructured());
+            }
+            writer.flush();
         } catch (IOException e) {
             throw new GDPRDataProviderException(e);
         }
-
-        log.info("Returning GDPR data file");
-
-        return Optional.of(new FileMetaAndBytes(new FileMetadata(SERVICE_NAME, CSV_FORMAT), output.toByteArray()));
     }
 
     @Override
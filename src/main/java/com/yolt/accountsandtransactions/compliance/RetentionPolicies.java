@@ -0,0 +1,144 @@
+package com.yolt.accountsandtransactions.compliance;
+
+import com.datastax.driver.mapping.Mapper;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.UserDTO;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.UsersClient;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.util.stream.Collectors.toUnmodifiableMap;
+
+/**
+ * The retention of the transactions (and their enrichments) per client, enforced by Cassandra itself: the rows of a
+ * client with a policy are written with a TTL that expires them once they are older than the retention of the client.
+ * No scans or deletes are needed to remove old transactions, and expired rows are dropped during compaction instead of
+ * leaving tombstones behind.
+ * <p>
+ * The policies are configured as {@code clientId: days} in
+ * {@code yolt.accounts-and-transactions.retention.client-retention-days}, for example
+ * {@code {'a5154eb9-9f47-43b4-81b1-fce67813c002': 365}}.  A transaction dated D expires at the start of day
+ * D + days + 1 (UTC).  A transaction that is already past its retention is written with the minimal TTL, so it expires
+ * right away.
+ * <p>
+ * The writes are keyed by user.  The ingestion knows the client of the user from its client token and registers it
+ * (see {@link #clientOf(UUID, UUID)}), other writes look the client up in the users service.  Both are cached.  If the
+ * client cannot be looked up the write fails, rather than writing a row that would be kept forever.  If there are no
+ * policies, nothing is looked up and the rows are written without a TTL.  Rows that were written before a policy was
+ * configured are not expired, see {@link com.yolt.accountsandtransactions.batch.BatchApplyRetentionTtl}.
+ */
+@Component
+public class RetentionPolicies {
+
+    /**
+     * The maximum TTL that Cassandra accepts (20 years).
+     */
+    static final int MAX_TTL_SECONDS = 630_720_000;
+
+    private final Clock clock;
+    private final Map<UUID, Integer> clientRetentionDays;
+    private final LoadingCache<UUID, Optional<UUID>> clientIds;
+
+    public RetentionPolicies(final UsersClient usersClient,
+                             final Clock clock,
+                             @Value("#{${yolt.accounts-and-transactions.retention.client-retention-days:{:}}}") final Map<String, Integer> clientRetentionDays,
+                             @Value("${yolt.accounts-and-transactions.retention.max-users:100000}") final long maxUsers) {
+        this.clock = clock;
+        this.clientRetentionDays = clientRetentionDays.entrySet().stream()
+                .collect(toUnmodifiableMap(e -> UUID.fromString(e.getKey()), Map.Entry::getValue));
+        // A user never moves to another client, the expiry only bounds how long a user that was not found is cached.
+        this.clientIds = CacheBuilder.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofHours(1))
+                .build(CacheLoader.from(userId -> usersClient.getUser(userId).map(UserDTO::clientId)));
+    }
+
+    /**
+     * Register the client of a user that is known to the caller, so writes of the user do not look it up.
+     */
+    public void clientOf(final @NonNull UUID userId, final @NonNull UUID clientId) {
+        if (!isEmpty()) {
+            clientIds.put(userId, Optional.of(clientId));
+        }
+    }
+
+    public boolean isEmpty() {
+        return clientRetentionDays.isEmpty();
+    }
+
+    public Optional<Integer> retentionDays(final @NonNull UUID clientId) {
+        return Optional.ofNullable(clientRetentionDays.get(clientId));
+    }
+
+    /**
+     * @return the TTL (in seconds) of a row of the user that is dated {@code date}, empty if the row is kept forever
+     * @throws IllegalStateException if the client of the user cannot be looked up
+     */
+    public Optional<Integer> ttl(final @NonNull UUID userId, final @NonNull LocalDate date) {
+        if (isEmpty()) {
+            return Optional.empty();
+        }
+        return clientId(userId).flatMap(clientId -> ttlOfClient(clientId, date));
+    }
+
+    /**
+     * @return the TTL (in seconds) of a row of the client that is dated {@code date}, empty if the row is kept forever
+     */
+    public Optional<Integer> ttlOfClient(final @NonNull UUID clientId, final @NonNull LocalDate date) {
+        return retentionDays(clientId).map(days -> {
+            long expiry = date.plusDays(days + 1L).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            long ttl = expiry - clock.instant().getEpochSecond();
+            return (int) Math.max(1, Math.min(MAX_TTL_SECONDS, ttl));
+        });
+    }
+
+    /**
+     * @return true if a row of the user that is dated {@code date} is past the retention of its client, so it has expired
+     * @throws IllegalStateException if the client of the user cannot be looked up
+     */
+    public boolean isExpired(final @NonNull UUID userId, final @NonNull LocalDate date) {
+        if (isEmpty()) {
+            return false;
+        }
+        return clientId(userId)
+                .flatMap(this::retentionDays)
+                .map(days -> !date.plusDays(days + 1L).atStartOfDay(ZoneOffset.UTC).toInstant().isAfter(clock.instant()))
+                .orElse(false);
+    }
+
+    /**
+     * The options with which a row of the user that is dated {@code date} is saved, see {@link #ttl(UUID, LocalDate)}.
+     */
+    public List<Mapper.Option> saveOptions(final @NonNull UUID userId, final @NonNull LocalDate date, final Mapper.Option... options) {
+        var ttl = ttl(userId, date);
+        if (ttl.isEmpty()) {
+            return List.of(options);
+        }
+        var withTtl = new ArrayList<>(List.of(options));
+        withTtl.add(Mapper.Option.ttl(ttl.get()));
+        return withTtl;
+    }
+
+    private Optional<UUID> clientId(final UUID userId) {
+        try {
+            return clientIds.getUnchecked(userId);
+        } catch (UncheckedExecutionException e) {
+            // Not cached, the next write of the user tries again.  Without a TTL the row would be kept forever.
+            throw new IllegalStateException("Failed to look up the client of user " + userId + ", the retention policy cannot be applied.", e.getCause());
+        }
+    }
+}
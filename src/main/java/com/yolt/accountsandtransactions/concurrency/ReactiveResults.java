@@ -0,0 +1,51 @@
+package com.yolt.accountsandtransactions.concurrency;
+
+import com.datastax.driver.core.PagingIterable;
+import com.google.common.util.concurrent.ListenableFuture;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Adapters from the asynchronous results of the Cassandra driver to Reactor, in the style of {@link Futures}.
+ * <p>
+ * Nothing blocks: a query is sent when the {@link Mono} is subscribed to, and the next page of a result is only
+ * fetched once the rows of the current page have been emitted.  The signals are emitted on the I/O threads of the
+ * driver, so downstream operators must not block (or move to another scheduler first).
+ */
+public class ReactiveResults {
+
+    private ReactiveResults() {
+    }
+
+    /**
+     * @param query sends the query, called once per subscription
+     */
+    public static <T> Mono<T> mono(final Supplier<? extends ListenableFuture<T>> query) {
+        return Mono.defer(() -> Mono.fromFuture(Futures.from(query.get())));
+    }
+
+    /**
+     * The rows of {@code result}, including the pages that are not fetched yet.
+     */
+    public static <S extends PagingIterable<S, T>, T> Flux<T> rows(final Mono<S> result) {
+        return result.flatMapMany(ReactiveResults::drain);
+    }
+
+    private static <S extends PagingIterable<S, T>, T> Flux<T> drain(final S result) {
+        // Only take the rows that are available, PagingIterable#one() would fetch the next page synchronously.
+        int available = result.getAvailableWithoutFetching();
+        var rows = new ArrayList<T>(available);
+        for (int i = 0; i < available; i++) {
+            rows.add(result.one());
+        }
+
+        var page = Flux.fromIterable(rows);
+        if (result.isFullyFetched()) {
+            return page;
+        }
+        return page.concatWith(mono(result::fetchMoreResults).flatMapMany(ReactiveResults::drain));
+    }
+}
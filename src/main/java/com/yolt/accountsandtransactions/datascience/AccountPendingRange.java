@@ -0,0 +1,53 @@
+package com.yolt.accountsandtransactions.datascience;
+
+import com.datastax.driver.mapping.annotations.ClusteringColumn;
+import com.datastax.driver.mapping.annotations.Column;
+import com.datastax.driver.mapping.annotations.PartitionKey;
+import com.datastax.driver.mapping.annotations.Table;
+import lombok.*;
+import nl.ing.lovebird.cassandra.codec.LocalDateTypeCodec;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * The earliest and the latest date of the pending transactions of an account in the datascience keyspace, and the number
+ * of those transactions.  Maintained by {@link PendingTransactionRangeService}.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "account_pending_ranges")
+@Data
+@Builder(toBuilder = true)
+public class AccountPendingRange {
+    public static final String USER_ID_COLUMN = "user_id";
+    public static final String ACCOUNT_ID_COLUMN = "account_id";
+    public static final String EARLIEST_COLUMN = "earliest";
+    public static final String LATEST_COLUMN = "latest";
+    public static final String PENDING_COUNT_COLUMN = "pending_count";
+
+    @NonNull
+    @PartitionKey
+    @Column(name = USER_ID_COLUMN)
+    private UUID userId;
+
+    @NonNull
+    @ClusteringColumn
+    @Column(name = ACCOUNT_ID_COLUMN)
+    private UUID accountId;
+
+    /**
+     * {@code null} if the account has no pending transactions.
+     */
+    @Column(name = EARLIEST_COLUMN, codec = LocalDateTypeCodec.class)
+    private LocalDate earliest;
+
+    /**
+     * {@code null} if the account has no pending transactions.
+     */
+    @Column(name = LATEST_COLUMN, codec = LocalDateTypeCodec.class)
+    private LocalDate latest;
+
+    @Column(name = PENDING_COUNT_COLUMN)
+    private int pendingCount;
+}
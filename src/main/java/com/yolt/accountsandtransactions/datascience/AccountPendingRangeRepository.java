@@ -0,0 +1,71 @@
+package com.yolt.accountsandtransactions.datascience;
+
+import com.datastax.driver.core.Session;
+import com.datastax.driver.mapping.Mapper;
+import lombok.extern.slf4j.Slf4j;
+import nl.ing.lovebird.cassandra.CassandraRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
+import static com.yolt.accountsandtransactions.datascience.AccountPendingRange.ACCOUNT_ID_COLUMN;
+import static com.yolt.accountsandtransactions.datascience.AccountPendingRange.USER_ID_COLUMN;
+
+/**
+ * The {@link AccountPendingRange}s live in the accounts-and-transactions keyspace, next to the accounts.
+ */
+@Validated
+@Repository
+@Slf4j
+public class AccountPendingRangeRepository extends CassandraRepository<AccountPendingRange> {
+    protected AccountPendingRangeRepository(Session session) {
+        super(session, AccountPendingRange.class);
+        setAuditLoggingEnabled(false);
+    }
+
+    void persist(AccountPendingRange accountPendingRange) {
+        save(accountPendingRange);
+    }
+
+    /**
+     * Persist the range unless the account already has one, so a backfill never overwrites a range that was maintained
+     * by a refresh in the meantime.
+     *
+     * @return true if the range was persisted
+     */
+    boolean persistIfAbsent(AccountPendingRange accountPendingRange) {
+        return session.execute(mapper.saveQuery(accountPendingRange, Mapper.Option.ifNotExists())).wasApplied();
+    }
+
+    Optional<AccountPendingRange> find(UUID userId, UUID accountId) {
+        var select = createSelect();
+        select.where(eq(USER_ID_COLUMN, userId))
+                .and(eq(ACCOUNT_ID_COLUMN, accountId));
+        return select(select).stream().findFirst();
+    }
+
+    List<AccountPendingRange> find(UUID userId, List<UUID> accountIds) {
+        var select = createSelect();
+        select.where(eq(USER_ID_COLUMN, userId))
+                .and(in(ACCOUNT_ID_COLUMN, accountIds));
+        return select(select);
+    }
+
+    void delete(UUID userId, List<UUID> accountIds) {
+        var delete = createDelete();
+        delete.where(eq(USER_ID_COLUMN, userId))
+                .and(in(ACCOUNT_ID_COLUMN, accountIds));
+        executeDelete(delete);
+    }
+
+    void delete(UUID userId) {
+        var delete = createDelete();
+        delete.where(eq(USER_ID_COLUMN, userId));
+        executeDelete(delete);
+    }
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yolt.accountsandtransactions.accounts.Account;
 import com.yolt.accountsandtransactions.inputprocessing.AccountFromProviders;
 import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Writes;
 import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +23,8 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Keyspace.DATASCIENCE;
+
 @Slf4j
 @RequiredArgsConstructor
 @Service
@@ -30,6 +34,7 @@ public class DataScienceService {
     private final ObjectMapper objectMapper;
     private final DsAccountsCurrentService dsAccountsCurrentService;
     private final DsCreditCardsCurrentService dsCreditCardsCurrentService;
+    private final PendingTransactionRangeService pendingTransactionRangeService;
     private final Clock clock;
 
     public List<DsTransaction> toDsTransactionList(final UUID accountId,
@@ -81,13 +86,28 @@ public class DataScienceService {
     }
 
     public Stream<String> getDatesPendingTransactions(final UUID userId, final List<UUID> accountId) {
-        return dsTransactionsRepository.getDatesPendingTransactions(userId, accountId);
+        return pendingTransactionRangeService.getDatesPendingTransactions(userId, accountId);
+    }
+
+    /**
+     * Keep the range of the pending transactions of the account up to date, after {@code instruction} has been written.
+     */
+    public void updatePendingTransactionRange(final UUID userId, final UUID accountId, final Instruction instruction) {
+        pendingTransactionRangeService.update(userId, accountId, instruction);
     }
 
     public void saveTransactionBatch(List<DsTransaction> transactions) {
         dsTransactionsRepository.saveTransactionBatch(transactions);
     }
 
+    /**
+     * Asynchronous variant of {@link #saveTransactionBatch(List)}, the batches are submitted to {@code writes}.
+     */
+    public void saveTransactionBatch(List<DsTransaction> transactions, Writes writes) {
+        writes.upsert(DATASCIENCE, dsTransactionsRepository.saveTransactionBatchStatements(transactions));
+        writes.afterCompletion(() -> log.info("Saved {} transactions in the DS keyspace", transactions.size()));
+    }
+
     public void saveAccount(Account account, AccountFromProviders accountFromProviders) {
         dsAccountsCurrentService.saveDsAccountCurrent(account, accountFromProviders);
         if (accountFromProviders.getCreditCardData() != null) {
@@ -107,4 +127,11 @@ public class DataScienceService {
     public void deleteSpecificTransactions(final @NonNull List<TransactionPrimaryKey> transactionPrimaryKeys) {
         dsTransactionsRepository.deleteSpecificTransactions(transactionPrimaryKeys);
     }
+
+    /**
+     * Asynchronous variant of {@link #deleteSpecificTransactions(List)}, the batches are submitted to {@code writes}.
+     */
+    public void deleteSpecificTransactions(final @NonNull List<TransactionPrimaryKey> transactionPrimaryKeys, final @NonNull Writes writes) {
+        writes.delete(DATASCIENCE, dsTransactionsRepository.deleteSpecificTransactionsStatements(transactionPrimaryKeys));
+    }
 }
@@ -8,6 +8,7 @@ import com.datastax.driver.core.querybuilder.Delete;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.mapping.Mapper;
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
 import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -18,6 +19,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -26,6 +28,7 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.gte;
 import static com.yolt.accountsandtransactions.datascience.PendingType.PENDING;
 import static com.yolt.accountsandtransactions.datascience.PendingType.REGULAR;
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.collections4.ListUtils.partition;
 
 /**
@@ -37,36 +40,23 @@ public class DsTransactionsRepository extends CassandraRepository<DsTransaction>
     private final LocalDateTypeCodec localDateTypeCodec = new LocalDateTypeCodec();
 
     private final int batchSize;
+    private final RetentionPolicies retentionPolicies;
 
     @Autowired
     public DsTransactionsRepository(
             final DataScienceCassandraSession session,
+            final RetentionPolicies retentionPolicies,
             @Value("${lovebird.accounts-and-transactions.batch-size:500}") final int batchSize) {
         super(session.getSession(), DsTransaction.class);
+        this.retentionPolicies = retentionPolicies;
         this.batchSize = batchSize;
     }
 
     public void saveTransactionBatch(final List<DsTransaction> transactions) {
-        // Using unlogged batch here because all transactions have the same userId, thus they will be written
-        // to the same partition
-        // This improves performance 2-3 times in comparison with saving each transaction using a separate save() call
-        //
-        // For large number of transactions it is necessary to do writes in several batches
-
-        partition(transactions, batchSize).forEach(subBatch -> {
-            BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
-
-            subBatch.forEach(t -> {
-                // Avoid writing NULL's to C* to prevent creation of too many tombstones
-                // Accepting a small risk that a previously non-NULL value would not be overwritten
-                Statement saveStatement = mapper.saveQuery(t, Mapper.Option.saveNullFields(false));
-                saveStatement.setConsistencyLevel(writeConsistency);
-                batch.add(saveStatement);
-            });
-
+        saveTransactionBatchStatements(transactions).forEach(batch -> {
             session.execute(batch);
 
-            log.debug("Saved a batch of {} transactions", subBatch.size());
+            log.debug("Saved a batch of {} transactions", batch.size());
         });
 
         // Temporarily log the number of saved transactions to troubleshoot lingering transactions in the DS
@@ -74,6 +64,32 @@ public class DsTransactionsRepository extends CassandraRepository<DsTransaction>
         log.info("Saved {} transactions in the DS keyspace", transactions.size());
     }
 
+    /**
+     * The (unlogged) batches that {@link #saveTransactionBatch(List)} executes, for asynchronous execution.  The
+     * transactions are written with the TTL of the retention policy of their client (if any), see {@link RetentionPolicies}.
+     */
+    public List<BatchStatement> saveTransactionBatchStatements(final List<DsTransaction> transactions) {
+        // Using unlogged batch here because all transactions have the same userId, thus they will be written
+        // to the same partition
+        // This improves performance 2-3 times in comparison with saving each transaction using a separate save() call
+        //
+        // For large number of transactions it is necessary to do writes in several batches
+        return partition(transactions, batchSize).stream()
+                .map(subBatch -> {
+                    BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+
+                    subBatch.forEach(t -> {
+                        // Avoid writing NULL's to C* to prevent creation of too many tombstones
+                        // Accepting a small risk that a previously non-NULL value would not be overwritten
+                        Statement saveStatement = mapper.saveQuery(t, retentionPolicies.saveOptions(t.getUserId(), t.getLocalDate(), Mapper.Option.saveNullFields(false)).toArray(Mapper.Option[]::new));
+                        saveStatement.setConsistencyLevel(writeConsistency);
+                        batch.add(saveStatement);
+                    });
+                    return batch;
+                })
+                .collect(toList());
+    }
+
     public void deleteTransactions(final List<DsTransaction> transactions) {
         transactions.forEach(this.mapper::delete);
 
@@ -119,6 +135,22 @@ public class DsTransactionsRepository extends CassandraRepository<DsTransaction>
         return resultSet.all().stream().map(row -> row.getString(0).substring(0, 7));
     }
 
+    /**
+     * The dates of all pending transactions of the account, see {@link PendingTransactionRangeService} for the cheap alternative.
+     */
+    public List<LocalDate> getPendingTransactionDates(final @NonNull UUID userId, final @NonNull UUID accountId) {
+        Select select = QueryBuilder
+                .select(DsTransaction.DATE_COLUMN)
+                .from(DsTransaction.TABLE_NAME);
+        select.where(eq(DsTransaction.USER_ID_COLUMN, userId))
+                .and(eq(DsTransaction.PENDING_COLUMN, PENDING))
+                .and(eq(DsTransaction.ACCOUNT_ID_COLUMN, accountId));
+
+        return session.execute(select).all().stream()
+                .map(row -> LocalDate.parse(row.getString(0), DsTransaction.DATE_FORMAT))
+                .collect(toList());
+    }
+
     public void deleteTransactionsForAccount(final UUID userId, final UUID accountId) {
         var delete = QueryBuilder.delete()
                 .from(DsTransaction.TABLE_NAME)
@@ -137,9 +169,19 @@ public class DsTransactionsRepository extends CassandraRepository<DsTransaction>
      * @param transactionPrimaryKeys the transactions to delete identified by their primary key
      */
     public void deleteSpecificTransactions(final @NonNull List<TransactionPrimaryKey> transactionPrimaryKeys) {
+        deleteSpecificTransactionsStatements(transactionPrimaryKeys).forEach(batch -> {
+            session.execute(batch);
+
+            log.debug("Deleted a batch of {} datascience transactions", batch.size());
+        });
+    }
 
-        partition(transactionPrimaryKeys, batchSize)
-                .forEach(subBatch -> {
+    /**
+     * The (unlogged) batches that {@link #deleteSpecificTransactions(List)} executes, for asynchronous execution.
+     */
+    public List<BatchStatement> deleteSpecificTransactionsStatements(final @NonNull List<TransactionPrimaryKey> transactionPrimaryKeys) {
+        return partition(transactionPrimaryKeys, batchSize).stream()
+                .map(subBatch -> {
                     BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
 
                     subBatch.forEach(t -> {
@@ -151,10 +193,8 @@ public class DsTransactionsRepository extends CassandraRepository<DsTransaction>
                         delete.where(eq("transaction_id", t.getId()));
                         batch.add(delete);
                     });
-
-                    session.execute(batch);
-
-                    log.debug("Deleted a batch of {} datascience transactions", subBatch.size());
-                });
+                    return batch;
+                })
+                .collect(toList());
     }
 }
@@ -0,0 +1,165 @@
+package com.yolt.accountsandtransactions.datascience;
+
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import lombok.Value;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+
+import java.util.*;
+
+/**
+ * {@link TransactionIndex} that supports O(1) membership checks and removals.
+ * <p>
+ * Every transaction is assigned a slot (its position in the input), a removal replaces the slot with a tombstone
+ * (null) instead of shifting the remaining transactions.  The slots are looked up by object identity, which is fine
+ * because the transactions that are removed are always obtained from the index itself.  The same instance may occur
+ * more than once in the input, in that case the occurrences are chained and removed in order of appearance, just like
+ * {@link List#remove(Object)} would do.
+ * <p>
+ * The externalId and amount buckets are kept as lists, they are typically (very) small.  The amount in cents and the
+ * date of every transaction are derived once, when the index is created, rather than on every lookup.
+ */
+class IdentityTransactionIndex extends TransactionIndex {
+
+    private static final int NO_SLOT = -1;
+
+    private final ProviderTransactionDTO[] slots;
+    private final long[] amountsInCents;
+    private final int[] nextSlotOfSameInstance;
+    private final IdentityHashMap<ProviderTransactionDTO, Integer> firstSlotByInstance;
+    private final Map<String, List<ProviderTransactionDTO>> byExternalId;
+    private final Map<Long, List<ProviderTransactionDTO>> byAmountInCents;
+    private final long[] epochDays;
+    private final Map<AmountAndDay, List<ProviderTransactionDTO>> byAmountAndDay;
+    private int size;
+
+    IdentityTransactionIndex(Collection<ProviderTransactionDTO> input) {
+        slots = input.toArray(new ProviderTransactionDTO[0]);
+        size = slots.length;
+        amountsInCents = new long[slots.length];
+        nextSlotOfSameInstance = new int[slots.length];
+        firstSlotByInstance = new IdentityHashMap<>(slots.length);
+        byExternalId = new HashMap<>();
+        byAmountInCents = new HashMap<>();
+        epochDays = new long[slots.length];
+        byAmountAndDay = new HashMap<>();
+
+        int[] lastSlotOfSameInstance = new int[slots.length];
+        for (int slot = 0; slot < slots.length; slot++) {
+            ProviderTransactionDTO pt = slots[slot];
+            nextSlotOfSameInstance[slot] = NO_SLOT;
+            Integer first = firstSlotByInstance.putIfAbsent(pt, slot);
+            if (first == null) {
+                lastSlotOfSameInstance[slot] = slot;
+            } else {
+                nextSlotOfSameInstance[lastSlotOfSameInstance[first]] = slot;
+                lastSlotOfSameInstance[first] = slot;
+            }
+
+            amountsInCents[slot] = amountInCents(pt);
+            byAmountInCents.computeIfAbsent(amountsInCents[slot], k -> new ArrayList<>()).add(pt);
+            epochDays[slot] = pt.getDateTime().toLocalDate().toEpochDay();
+            byAmountAndDay.computeIfAbsent(new AmountAndDay(amountsInCents[slot], epochDays[slot]), k -> new ArrayList<>()).add(pt);
+            if (pt.getExternalId() != null) {
+                byExternalId.computeIfAbsent(pt.getExternalId(), k -> new ArrayList<>()).add(pt);
+            }
+        }
+    }
+
+    @Override
+    void removeFromIndex(ProviderTransactionDTO pt) {
+        Integer slot = firstSlotByInstance.get(pt);
+        if (slot == null) {
+            throw new IllegalStateException("Can't delete a transaction that is not present.");
+        }
+
+        int next = nextSlotOfSameInstance[slot];
+        if (next == NO_SLOT) {
+            firstSlotByInstance.remove(pt);
+        } else {
+            firstSlotByInstance.put(pt, next);
+        }
+        slots[slot] = null;
+        --size;
+
+        long amount = amountsInCents[slot];
+        List<ProviderTransactionDTO> byAmount = byAmountInCents.get(amount);
+        removeInstance(byAmount, pt);
+        if (byAmount.isEmpty()) {
+            byAmountInCents.remove(amount);
+        }
+
+        var amountAndDay = new AmountAndDay(amount, epochDays[slot]);
+        List<ProviderTransactionDTO> byAmountAndDate = byAmountAndDay.get(amountAndDay);
+        removeInstance(byAmountAndDate, pt);
+        if (byAmountAndDate.isEmpty()) {
+            byAmountAndDay.remove(amountAndDay);
+        }
+
+        if (pt.getExternalId() != null) {
+            List<ProviderTransactionDTO> byExtId = byExternalId.get(pt.getExternalId());
+            removeInstance(byExtId, pt);
+            if (byExtId.isEmpty()) {
+                byExternalId.remove(pt.getExternalId());
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the transactions that are still present, skipping the tombstones.
+     */
+    @Override
+    List<ProviderTransactionDTO> transactions() {
+        List<ProviderTransactionDTO> result = new ArrayList<>(size);
+        for (ProviderTransactionDTO pt : slots) {
+            if (pt != null) {
+                result.add(pt);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Changes to {@link #byExternalId} should only take place via {@link #removeFromIndex}, hence the call to {@link Collections#unmodifiableMap}.
+     */
+    @Override
+    public Map<String, List<ProviderTransactionDTO>> byExternalId() {
+        return Collections.unmodifiableMap(byExternalId);
+    }
+
+    @Override
+    public List<ProviderTransactionDTO> findByAmount(Transaction t) {
+        List<ProviderTransactionDTO> result = byAmountInCents.get(amountInCents(t));
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public List<ProviderTransactionDTO> findByAmountAndDate(Transaction t) {
+        if (t.getDate() == null) {
+            return Collections.emptyList();
+        }
+        List<ProviderTransactionDTO> result = byAmountAndDay.get(new AmountAndDay(amountInCents(t), t.getDate().toEpochDay()));
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static void removeInstance(List<ProviderTransactionDTO> bucket, ProviderTransactionDTO pt) {
+        for (int i = 0; i < bucket.size(); i++) {
+            if (bucket.get(i) == pt) {
+                bucket.remove(i);
+                return;
+            }
+        }
+        throw new IllegalStateException("Index is inconsistent, transaction is missing from bucket.");
+    }
+
+    @Value
+    private static class AmountAndDay {
+        long amountInCents;
+        long epochDay;
+    }
+}
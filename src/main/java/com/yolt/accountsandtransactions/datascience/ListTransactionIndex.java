@@ -0,0 +1,85 @@
+package com.yolt.accountsandtransactions.datascience;
+
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * {@link TransactionIndex} backed by a plain list.  Removing a transaction requires a linear scan of that list, which
+ * makes reconciliation O(n²) for large histories.  Kept around as the reference implementation for {@link IdentityTransactionIndex}.
+ */
+class ListTransactionIndex extends TransactionIndex {
+
+    private final List<ProviderTransactionDTO> transactions;
+    private final Map<String, List<ProviderTransactionDTO>> byExternalId;
+    private final Map<Long, List<ProviderTransactionDTO>> byAmountInCents;
+
+    ListTransactionIndex(Collection<ProviderTransactionDTO> input) {
+        transactions = new ArrayList<>(input);
+        byExternalId = transactions.stream()
+                .filter(t -> t.getExternalId() != null)
+                .collect(groupingBy(ProviderTransactionDTO::getExternalId, Collectors.toList()));
+        byAmountInCents = transactions.stream()
+                .collect(groupingBy(TransactionIndex::amountInCents, toList()));
+    }
+
+    @Override
+    void removeFromIndex(ProviderTransactionDTO pt) {
+        if (!transactions.contains(pt)) {
+            throw new IllegalStateException("Can't delete a transaction that is not present.");
+        }
+
+        transactions.remove(pt);
+
+        List<ProviderTransactionDTO> byAmount = byAmountInCents.get(amountInCents(pt));
+        byAmount.remove(pt);
+        if (byAmount.isEmpty()) {
+            byAmountInCents.remove(amountInCents(pt));
+        }
+
+        if (pt.getExternalId() != null) {
+            List<ProviderTransactionDTO> byExtId = byExternalId.get(pt.getExternalId());
+            byExtId.remove(pt);
+            if (byExtId.isEmpty()) {
+                byExternalId.remove(pt.getExternalId());
+            }
+        }
+    }
+
+    /**
+     * Changes to {@link #transactions} should only take place via {@link #removeFromIndex}, hence the call to {@link Collections#unmodifiableList}.
+     */
+    @Override
+    List<ProviderTransactionDTO> transactions() {
+        return Collections.unmodifiableList(transactions);
+    }
+
+    /**
+     * Changes to {@link #byExternalId} should only take place via {@link #removeFromIndex}, hence the call to {@link Collections#unmodifiableMap}.
+     */
+    @Override
+    public Map<String, List<ProviderTransactionDTO>> byExternalId() {
+        return Collections.unmodifiableMap(byExternalId);
+    }
+
+    @Override
+    public List<ProviderTransactionDTO> findByAmount(Transaction t) {
+        List<ProviderTransactionDTO> result = byAmountInCents.get(amountInCents(t));
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public List<ProviderTransactionDTO> findByAmountAndDate(Transaction t) {
+        return findByAmount(t).stream()
+                .filter(trx -> trx.getDateTime().toLocalDate().equals(t.getDate()))
+                .collect(toList());
+    }
+}
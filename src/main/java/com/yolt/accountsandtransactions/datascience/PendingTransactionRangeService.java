@@ -0,0 +1,172 @@
+package com.yolt.accountsandtransactions.datascience;
+
+import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Keeps track of the earliest and the latest date of the pending transactions of every account (see {@link AccountPendingRange}),
+ * so the range of the pending transactions of a user-site is a point read per account instead of a read of all pending
+ * transactions in the datascience keyspace.
+ * <p>
+ * The range is maintained from the {@link Instruction} that is persisted for an account: a pending transaction that is
+ * written widens the range, and once all pending transactions that were counted have been deleted the range starts over.
+ * The range therefore covers every pending transaction of the account, but may be wider than the pending transactions
+ * that are left, as long as there are any.
+ * <p>
+ * The ranges are only maintained and read with yolt.accounts-and-transactions.ingestion.pending-range.enabled.  An account
+ * without a range (because it was not refreshed since, and not backfilled) falls back to the datascience keyspace.  The
+ * ranges go stale while the flag is off: when it is switched on again, truncate {@code account_pending_ranges} before
+ * running the backfill.
+ * <p>
+ * The ranges are deleted together with the transactions of their accounts, and with all data of a user.
+ */
+@Service
+@Slf4j
+public class PendingTransactionRangeService {
+
+    private static final DateTimeFormatter MONTH_TRUNCATING_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final AccountPendingRangeRepository accountPendingRangeRepository;
+    private final DsTransactionsRepository dsTransactionsRepository;
+    private final boolean enabled;
+
+    public PendingTransactionRangeService(final AccountPendingRangeRepository accountPendingRangeRepository,
+                                          final DsTransactionsRepository dsTransactionsRepository,
+                                          @Value("${yolt.accounts-and-transactions.ingestion.pending-range.enabled:false}") final boolean enabled) {
+        this.accountPendingRangeRepository = accountPendingRangeRepository;
+        this.dsTransactionsRepository = dsTransactionsRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * The drop-in replacement of {@link DsTransactionsRepository#getDatesPendingTransactions(UUID, List)}: months in the
+     * format 'yyyy-MM' that span the same range as the pending transactions of the accounts.
+     */
+    public Stream<String> getDatesPendingTransactions(final @NonNull UUID userId, final @NonNull List<UUID> accountIds) {
+        if (!enabled || accountIds.isEmpty()) {
+            return dsTransactionsRepository.getDatesPendingTransactions(userId, accountIds);
+        }
+
+        var ranges = accountPendingRangeRepository.find(userId, accountIds);
+        var accountsWithoutRange = new ArrayList<>(accountIds);
+        var months = new ArrayList<String>();
+        ranges.forEach(range -> {
+            accountsWithoutRange.remove(range.getAccountId());
+            if (range.getEarliest() != null) {
+                months.add(MONTH_TRUNCATING_DATE_FORMATTER.format(range.getEarliest()));
+                months.add(MONTH_TRUNCATING_DATE_FORMATTER.format(range.getLatest()));
+            }
+        });
+
+        if (accountsWithoutRange.isEmpty()) {
+            return months.stream();
+        }
+        return Stream.concat(months.stream(), dsTransactionsRepository.getDatesPendingTransactions(userId, accountsWithoutRange));
+    }
+
+    /**
+     * Update the range of the account after {@code instruction} has been written to the datascience keyspace.
+     */
+    public void update(final @NonNull UUID userId, final @NonNull UUID accountId, final @NonNull Instruction instruction) {
+        if (!enabled) {
+            return;
+        }
+        var stored = accountPendingRangeRepository.find(userId, accountId);
+        if (stored.isEmpty()) {
+            // The first time the account is seen, its pending transactions are counted once.
+            accountPendingRangeRepository.persist(count(userId, accountId));
+            return;
+        }
+
+        var range = stored.get();
+
+        // A transaction whose date or status changes is deleted and written again (see TransactionSyncService), the
+        // other updates overwrite the same (pending) row.
+        Set<String> deletedIds = new HashSet<>();
+        int deletedPending = 0;
+        for (Transaction deleted : instruction.getTransactionsToDelete()) {
+            deletedIds.add(deleted.getId());
+            if (PendingType.of(deleted.getStatus()) == PendingType.PENDING) {
+                deletedPending++;
+            }
+        }
+
+        List<LocalDate> writtenPending = new ArrayList<>();
+        instruction.getTransactionsToInsert().forEach(trx -> addIfPending(trx, writtenPending));
+        instruction.getTransactionsToUpdate().stream()
+                .filter(trx -> deletedIds.contains(trx.getTransactionId()))
+                .forEach(trx -> addIfPending(trx, writtenPending));
+
+        if (deletedPending == 0 && writtenPending.isEmpty()) {
+            return;
+        }
+
+        int remaining = Math.max(0, range.getPendingCount() - deletedPending);
+        LocalDate earliest = remaining == 0 ? null : range.getEarliest();
+        LocalDate latest = remaining == 0 ? null : range.getLatest();
+        for (LocalDate date : writtenPending) {
+            earliest = earliest == null || date.isBefore(earliest) ? date : earliest;
+            latest = latest == null || date.isAfter(latest) ? date : latest;
+        }
+
+        accountPendingRangeRepository.persist(range.toBuilder()
+                .earliest(earliest)
+                .latest(latest)
+                .pendingCount(remaining + writtenPending.size())
+                .build());
+    }
+
+    /**
+     * Delete the ranges of the accounts, together with their transactions.
+     */
+    public void delete(final @NonNull UUID userId, final @NonNull List<UUID> accountIds) {
+        if (!accountIds.isEmpty()) {
+            accountPendingRangeRepository.delete(userId, accountIds);
+        }
+    }
+
+    /**
+     * Delete the ranges of all accounts of the user, including the ones of accounts that no longer exist.
+     */
+    public void deleteAll(final @NonNull UUID userId) {
+        accountPendingRangeRepository.delete(userId);
+    }
+
+    /**
+     * Count the pending transactions of an account that does not have a range yet, for the backfill.
+     *
+     * @return true if the range was persisted, false if the account has a range already
+     */
+    public boolean backfill(final @NonNull UUID userId, final @NonNull UUID accountId) {
+        return accountPendingRangeRepository.persistIfAbsent(count(userId, accountId));
+    }
+
+    private AccountPendingRange count(final UUID userId, final UUID accountId) {
+        var dates = dsTransactionsRepository.getPendingTransactionDates(userId, accountId);
+        return AccountPendingRange.builder()
+                .userId(userId)
+                .accountId(accountId)
+                .earliest(dates.stream().min(Comparator.naturalOrder()).orElse(null))
+                .latest(dates.stream().max(Comparator.naturalOrder()).orElse(null))
+                .pendingCount(dates.size())
+                .build();
+    }
+
+    private static void addIfPending(final ProviderTransactionWithId transaction, final List<LocalDate> dates) {
+        var providerTransaction = transaction.getProviderTransactionDTO();
+        if (PendingType.of(providerTransaction.getStatus()) == PendingType.PENDING) {
+            // The same date as the row in the datascience keyspace, see DataScienceService#toDsTransactionList.
+            dates.add(providerTransaction.getDateTime().toLocalDate());
+        }
+    }
+}
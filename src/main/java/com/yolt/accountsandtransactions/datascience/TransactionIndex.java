@@ -4,79 +4,47 @@ import com.yolt.accountsandtransactions.transactions.Transaction;
 import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
 
 import java.math.BigDecimal;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toList;
 import static nl.ing.lovebird.providerdomain.ProviderTransactionType.CREDIT;
 
 /**
  * Helper class that does two things:
  * - offers facilities to look transactions up by either their transactionId or their externalId
  * - has the {@link #removeFromIndex)} operation to delete a transaction from all related data structures
+ * <p>
+ * There are two implementations:
+ * - {@link ListTransactionIndex}, the original implementation which is backed by a list (removal is O(n))
+ * - {@link IdentityTransactionIndex}, which uses identity-keyed slots (removal is O(1)), this is the one that is used
+ * by {@link TransactionSyncService}
  */
-public class TransactionIndex {
+public abstract class TransactionIndex {
 
     static BigDecimal _100 = new BigDecimal(100L);
     static BigDecimal negative_100 = _100.negate();
 
-    private final List<ProviderTransactionDTO> transactions;
-    private final Map<String, List<ProviderTransactionDTO>> byExternalId;
-    private final Map<Long, List<ProviderTransactionDTO>> byAmountInCents;
-
-    TransactionIndex(Collection<ProviderTransactionDTO> input) {
-        transactions = new ArrayList<>(input);
-        byExternalId = transactions.stream()
-                .filter(t -> t.getExternalId() != null)
-                .collect(groupingBy(ProviderTransactionDTO::getExternalId, Collectors.toList()));
-        byAmountInCents = transactions.stream()
-                .collect(groupingBy(TransactionIndex::amountInCents, toList()));
+    static TransactionIndex create(Collection<ProviderTransactionDTO> input) {
+        return new IdentityTransactionIndex(input);
     }
 
-    void removeFromIndex(ProviderTransactionDTO pt) {
-        if (!transactions.contains(pt)) {
-            throw new IllegalStateException("Can't delete a transaction that is not present.");
-        }
-
-        transactions.remove(pt);
-
-        List<ProviderTransactionDTO> byAmount = byAmountInCents.get(amountInCents(pt));
-        byAmount.remove(pt);
-        if (byAmount.isEmpty()) {
-            byAmountInCents.remove(amountInCents(pt));
-        }
-
-        if (pt.getExternalId() != null) {
-            List<ProviderTransactionDTO> byExtId = byExternalId.get(pt.getExternalId());
-            byExtId.remove(pt);
-            if (byExtId.isEmpty()) {
-                byExternalId.remove(pt.getExternalId());
-            }
-        }
-    }
+    abstract void removeFromIndex(ProviderTransactionDTO pt);
 
     /**
-     * Changes to {@link #transactions} should only take place via {@link #removeFromIndex}, hence the call to {@link Collections#unmodifiableList}.
+     * The transactions that are (still) present in the index, in the order in which they were offered to the index.
      */
-    List<ProviderTransactionDTO> transactions() {
-        return Collections.unmodifiableList(transactions);
-    }
+    abstract List<ProviderTransactionDTO> transactions();
+
+    public abstract Map<String, List<ProviderTransactionDTO>> byExternalId();
+
+    public abstract List<ProviderTransactionDTO> findByAmount(Transaction t);
 
     /**
-     * Changes to {@link #byExternalId} should only take place via {@link #removeFromIndex}, hence the call to {@link Collections#unmodifiableMap}.
+     * The transactions with the same amount as the given transaction that are on the same date, in the order in which
+     * they were offered to the index.
      */
-    public Map<String, List<ProviderTransactionDTO>> byExternalId() {
-        return Collections.unmodifiableMap(byExternalId);
-    }
-
-    public List<ProviderTransactionDTO> findByAmount(Transaction t) {
-        List<ProviderTransactionDTO> result = byAmountInCents.get(amountInCents(t));
-        if (result == null) {
-            return Collections.emptyList();
-        }
-        return Collections.unmodifiableList(result);
-    }
+    public abstract List<ProviderTransactionDTO> findByAmountAndDate(Transaction t);
 
     static long amountInCents(ProviderTransactionDTO t) {
         return t.getAmount()
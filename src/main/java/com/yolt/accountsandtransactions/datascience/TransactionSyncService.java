@@ -3,6 +3,7 @@ package com.yolt.accountsandtransactions.datascience;
 import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
 import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy;
 import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionLoader;
 import com.yolt.accountsandtransactions.inputprocessing.TransactionReconciliationResultMetrics;
 import com.yolt.accountsandtransactions.transactions.Transaction;
 import com.yolt.accountsandtransactions.transactions.TransactionRepository;
@@ -46,6 +47,17 @@ public class TransactionSyncService {
                                  final UUID accountId,
                                  final List<ProviderTransactionDTO> upstreamTransactions,
                                  final String provider) {
+        return reconcile(clientUserToken, accountId, upstreamTransactions, provider, transactionRepository::getTransactionsInAccountFromDate);
+    }
+
+    /**
+     * See {@link #reconcile(ClientUserToken, UUID, List, String)}, with the stored transactions loaded by {@code transactionLoader}.
+     */
+    public Instruction reconcile(final ClientUserToken clientUserToken,
+                                 final UUID accountId,
+                                 final List<ProviderTransactionDTO> upstreamTransactions,
+                                 final String provider,
+                                 final TransactionLoader transactionLoader) {
         if (upstreamTransactions.isEmpty()) {
             return TransactionInsertionStrategy.EMPTY_INSTRUCTION;
         }
@@ -54,7 +66,7 @@ public class TransactionSyncService {
         // Retrieve the transactions that we have in the database for the same time-period as upstreamTransactions.
         final List<Transaction> storedTransactions = retrieveStoredTransactionsInSameTimeWindow(
                 provider, upstreamTransactions,
-                (LocalDate earliestDate) -> transactionRepository.getTransactionsInAccountFromDate(userId, accountId, earliestDate)
+                (LocalDate earliestDate) -> transactionLoader.load(userId, accountId, earliestDate)
         );
 
         var instruction = reconcileUpstreamTransactionsWithPersisted(storedTransactions, upstreamTransactions, provider, clock);
@@ -89,6 +101,18 @@ public class TransactionSyncService {
                                                                   final List<ProviderTransactionDTO> originalUpstreamTransactions,
                                                                   final String provider,
                                                                   final Clock clock) {
+        return reconcileUpstreamTransactionsWithPersisted(storedTransactions, originalUpstreamTransactions, provider, clock, TransactionIndex::create);
+    }
+
+    /**
+     * See {@link #reconcileUpstreamTransactionsWithPersisted(List, List, String, Clock)}, the {@link TransactionIndex}
+     * implementation is pluggable so the implementations can be compared against each other.
+     */
+    static Instruction reconcileUpstreamTransactionsWithPersisted(final List<Transaction> storedTransactions,
+                                                                  final List<ProviderTransactionDTO> originalUpstreamTransactions,
+                                                                  final String provider,
+                                                                  final Clock clock,
+                                                                  final Function<Collection<ProviderTransactionDTO>, TransactionIndex> indexFactory) {
 
         // Counters that keep track of what happens to stored transactions (those already in our database) because
         // of the new batch of incoming transactions.
@@ -109,7 +133,7 @@ public class TransactionSyncService {
 
         // This data structure contains a copy of the upstream transactions, it gives us the ability to do efficient
         // lookups / deletions.
-        TransactionIndex upstreamTransactions = new TransactionIndex(originalUpstreamTransactions);
+        TransactionIndex upstreamTransactions = indexFactory.apply(originalUpstreamTransactions);
 
         // Counters to monitor bank behaviour with respect to identifiers
         final long upstreamTrxWithDuplicateExternalIds = countDuplicateTransactions(upstreamTransactions.byExternalId().values());
@@ -160,8 +184,7 @@ public class TransactionSyncService {
                 // Note: the below heuristics have no 'scientific' research behind them.  If you are looking at this
                 //       code because it has problems: feel free to (carefully) refine these heuristics.
                 //
-                List<ProviderTransactionDTO> upstreamCandidatesByAmountAndDate = upstreamTransactions.findByAmount(storedTrx).stream()
-                        .filter(trx -> toLocalDate(trx.getDateTime()).equals(storedTrx.getDate()))
+                List<ProviderTransactionDTO> upstreamCandidatesByAmountAndDate = upstreamTransactions.findByAmountAndDate(storedTrx).stream()
                         // If the stored transaction has status booked, we must not consider pending
                         // upstream transactions.
                         .filter(trx -> storedTrx.getStatus() != BOOKED || trx.getStatus() != PENDING)
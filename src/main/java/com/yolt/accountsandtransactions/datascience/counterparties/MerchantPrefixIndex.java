@@ -0,0 +1,84 @@
+package com.yolt.accountsandtransactions.datascience.counterparties;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable index of the merchants of a single country, sorted by search term.
+ * <p/>
+ * All the search terms that start with a given prefix are adjacent in the sorted array, the first one is found by means
+ * of a binary search.  A lookup is therefore O(log n + k), with k the number of search terms that are visited.
+ * <p/>
+ * If multiple merchants have the same search term, only the first one is indexed.
+ */
+final class MerchantPrefixIndex {
+
+    static final MerchantPrefixIndex EMPTY = new MerchantPrefixIndex(new String[0], new String[0]);
+
+    private final String[] searchTerms;
+    private final String[] merchantNames;
+
+    private MerchantPrefixIndex(final String[] searchTerms, final String[] merchantNames) {
+        this.searchTerms = searchTerms;
+        this.merchantNames = merchantNames;
+    }
+
+    /**
+     * @param entries the search term and merchant name pairs, in order of precedence
+     */
+    static MerchantPrefixIndex of(final @NonNull List<Map.Entry<String, String>> entries) {
+        var sorted = new ArrayList<>(entries);
+        // stable, so the first of multiple entries with the same search term stays first
+        sorted.sort(Map.Entry.comparingByKey());
+
+        var searchTerms = new ArrayList<String>(sorted.size());
+        var merchantNames = new ArrayList<String>(sorted.size());
+        for (Map.Entry<String, String> entry : sorted) {
+            if (!searchTerms.isEmpty() && searchTerms.get(searchTerms.size() - 1).equals(entry.getKey())) {
+                continue;
+            }
+            searchTerms.add(entry.getKey());
+            merchantNames.add(entry.getValue());
+        }
+        return new MerchantPrefixIndex(searchTerms.toArray(String[]::new), merchantNames.toArray(String[]::new));
+    }
+
+    /**
+     * @return at most {@code limit} distinct merchant names of which the search term starts with {@code prefix}, in order of search term
+     */
+    List<String> search(final @NonNull String prefix, final int limit) {
+        var matches = new LinkedHashSet<String>();
+        for (int i = lowerBound(prefix); i < searchTerms.length && matches.size() < limit; i++) {
+            if (!searchTerms[i].startsWith(prefix)) {
+                break;
+            }
+            matches.add(merchantNames[i]);
+        }
+        return new ArrayList<>(matches);
+    }
+
+    int size() {
+        return searchTerms.length;
+    }
+
+    /**
+     * The index of the first search term that is greater than or equal to {@code key}.
+     */
+    private int lowerBound(final String key) {
+        int low = 0;
+        int high = searchTerms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (searchTerms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -2,16 +2,16 @@ package com.yolt.accountsandtransactions.datascience.counterparties;
 
 import com.yolt.accountsandtransactions.datascience.counterparties.client.dto.MerchantsInCountriesDTO;
 import com.yolt.accountsandtransactions.datascience.preprocessing.PreProcessingServiceClient;
-import lombok.Builder;
 import lombok.RequiredArgsConstructor;
-import lombok.Value;
 import nl.ing.lovebird.clienttokens.ClientUserToken;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.text.Normalizer;
 import java.time.Duration;
-import java.util.*;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -28,7 +28,7 @@ public class MerchantsService {
     private static final long FIVE_MINUTES_IN_MILLIS = 5 * 60 * 1000L;
     private static final int MAX_MERCHANT_COUNT = 10;
 
-    private Map<String, TreeSet<MerchantEntry>> merchantsCountryMap = new HashMap<>();
+    private volatile Map<String, MerchantPrefixIndex> merchantIndexByCountry = emptyMap();
 
     private final PreProcessingServiceClient preprocessingServiceClient;
 
@@ -43,51 +43,27 @@ public class MerchantsService {
             return preprocessingServiceClient.getAdjustedCounterpartiesIgnoreErrors(clientUserToken).getCounterpartyNames();
         }
 
-        Set<String> matchedMerchants = new HashSet<>();
-
-        final String searchTerm = generateSearchTerm(searchText);
-        final int searchTermLength = searchTerm.length();
-
-        for (MerchantEntry me : merchantsCountryMap.getOrDefault(country, new TreeSet<>())) {
-            if (searchTermLength <= me.getSearchTerm().length()) {
-                int comp = searchTerm.compareTo(me.getSearchTerm().substring(0, searchTermLength));
-
-                if (comp < 0) {
-                    break;
-                } else if (comp == 0) {
-                    matchedMerchants.add(me.getMerchantName());
-                    if (matchedMerchants.size() >= MAX_MERCHANT_COUNT) {
-                        break;
-                    }
-                }
-            }
-        }
-
-        return matchedMerchants.stream().sorted().collect(Collectors.toList());
+        return merchantIndexByCountry.getOrDefault(country, MerchantPrefixIndex.EMPTY)
+                .search(generateSearchTerm(searchText), MAX_MERCHANT_COUNT)
+                .stream()
+                .sorted()
+                .collect(Collectors.toList());
     }
 
     private void getMerchants() {
-        merchantsCountryMap = preprocessingServiceClient.getMerchantsByCountries()
+        // The indices are built completely before they are published (the map is never modified afterwards),
+        // a concurrent search either sees the previous or the new indices.
+        merchantIndexByCountry = preprocessingServiceClient.getMerchantsByCountries()
                 .map(merchantsInCountries -> merchantsInCountries.getMerchantsByCountries().stream()
                         .collect(toMap(MerchantsInCountriesDTO.MerchantsInCountryDTO::getCountry, c -> {
-                            Stream<MerchantEntry> merchantEntries = c.getMerchants().stream()
-                                    .map(s -> MerchantEntry.builder()
-                                            .searchTerm(generateSearchTerm(s))
-                                            .merchantName(s)
-                                            .build());
-
-                            Stream<MerchantEntry> alternativeMerchantEntries = c.getMappings().stream()
-                                    .map(m -> MerchantEntry.builder()
-                                            .searchTerm(generateSearchTerm(m.getAlternative()))
-                                            .merchantName(m.getName())
-                                            .build());
-
-                            List<MerchantEntry> entries = Stream.concat(merchantEntries, alternativeMerchantEntries)
-                                    .collect(Collectors.toList());
-
-                            TreeSet<MerchantEntry> sorted = new TreeSet<>(Comparator.comparing(MerchantEntry::getSearchTerm));
-                            sorted.addAll(entries);
-                            return sorted;
+                            Stream<Map.Entry<String, String>> merchantEntries = c.getMerchants().stream()
+                                    .map(s -> new SimpleImmutableEntry<>(generateSearchTerm(s), s));
+
+                            Stream<Map.Entry<String, String>> alternativeMerchantEntries = c.getMappings().stream()
+                                    .map(m -> new SimpleImmutableEntry<>(generateSearchTerm(m.getAlternative()), m.getName()));
+
+                            return MerchantPrefixIndex.of(Stream.concat(merchantEntries, alternativeMerchantEntries)
+                                    .collect(Collectors.toList()));
                         })))
                 .blockOptional(Duration.of(DEFAULT_TIMEOUT_IN_SECONDS, SECONDS))
                 .orElse(emptyMap());
@@ -116,11 +92,4 @@ public class MerchantsService {
 
         return searchTerm.toString();
     }
-
-    @Value
-    @Builder
-    private static class MerchantEntry {
-        String searchTerm;
-        String merchantName;
-    }
 }
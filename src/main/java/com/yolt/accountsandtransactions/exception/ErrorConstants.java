@@ -3,7 +3,8 @@ package com.yolt.accountsandtransactions.exception;
 import nl.ing.lovebird.errorhandling.ErrorInfo;
 
 public enum ErrorConstants implements ErrorInfo {
-    NOT_ALLOWED_TO_ACCESS_RISK_INSIGHTS("001", "Client is not configured to access risk insights. Please contact Yolt if you would like to have this functionality.");
+    NOT_ALLOWED_TO_ACCESS_RISK_INSIGHTS("001", "Client is not configured to access risk insights. Please contact Yolt if you would like to have this functionality."),
+    INVALID_PAGING_STATE("002", "The paging state is invalid or has expired. Please retrieve the first page again.");
 
     private final String code;
     private final String message;
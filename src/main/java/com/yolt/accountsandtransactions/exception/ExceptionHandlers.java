@@ -1,6 +1,7 @@
 package com.yolt.accountsandtransactions.exception;
 
 import com.yolt.accountsandtransactions.datetime.exception.RiskInsightsClaimMissingException;
+import com.yolt.accountsandtransactions.transactions.InvalidPagingStateException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.ing.lovebird.errorhandling.ErrorDTO;
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import static com.yolt.accountsandtransactions.exception.ErrorConstants.INVALID_PAGING_STATE;
 import static com.yolt.accountsandtransactions.exception.ErrorConstants.NOT_ALLOWED_TO_ACCESS_RISK_INSIGHTS;
 
 /**
@@ -33,4 +35,14 @@ public class ExceptionHandlers {
         return exceptionHandlingService.logAndConstruct(NOT_ALLOWED_TO_ACCESS_RISK_INSIGHTS, e);
     }
 
+    /**
+     * A paging state of another table, e.g. issued before {@link com.yolt.accountsandtransactions.transactions.TransactionBucketMode}
+     * was switched, or otherwise invalid.
+     */
+    @ExceptionHandler(InvalidPagingStateException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorDTO handle(final InvalidPagingStateException e) {
+        return exceptionHandlingService.logAndConstruct(INVALID_PAGING_STATE, e);
+    }
+
 }
@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.ing.lovebird.clienttokens.ClientUserToken;
 import nl.ing.lovebird.clienttokens.annotations.VerifiedClientToken;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -22,6 +23,8 @@ public class AccountAndTransactionsInternalController {
 
     private final ObjectMapper objectMapper;
     private final AccountsAndTransactionsRequestConsumer accountsAndTransactionsRequestConsumer;
+    @Value("${yolt.accounts-and-transactions.ingestion.streaming.enabled:false}")
+    private final boolean streaming;
 
     /**
      * This POST method accepts a batch of accounts and transactions from providers. Normally this is sent through kafka, but that has a limit of 10Mb. (uncompressed [1])
@@ -38,6 +41,10 @@ public class AccountAndTransactionsInternalController {
      * Note that jetty/undertow do have some functionality for this [2]. However, that has potential side effects and makes it less standard throughout yolt.
      * The code in this controller is very limited and also only uses standard java libs, therefore I preferred this solution.
      *
+     * With yolt.accounts-and-transactions.ingestion.streaming.enabled the body is not read into a single {@link AccountsAndTransactionsRequestDTO}.
+     * Instead the accounts are read and processed one at a time (see {@link StreamingIngestionRequest}), so the memory that a request
+     * takes is bounded by its largest account rather than by the whole user-site.
+     *
      * [1] Please see https://issues.apache.org/jira/browse/KAFKA-4169.
      * Or consult {@link org.apache.kafka.clients.producer.KafkaProducer}
      * <code>
@@ -56,13 +63,21 @@ public class AccountAndTransactionsInternalController {
         try (ServletInputStream servletInputStream = servletRequest.getInputStream();
                 GZIPInputStream gzipInputStream = new GZIPInputStream(servletInputStream)) {
 
+            if (streaming) {
+                try (StreamingIngestionRequest request = StreamingIngestionRequest.read(objectMapper, gzipInputStream)) {
+                    accountsAndTransactionsRequestConsumer.process(request, clientUserToken);
+                    log.info("Received provider accounts through HTTP (streamed) with a total of {} transactions.", request.getTransactionCount());
+                }
+                return;
+            }
+
             AccountsAndTransactionsRequestDTO accountsAndTransactionsRequestDTO = objectMapper.readValue(gzipInputStream, AccountsAndTransactionsRequestDTO.class);
             log.info("Received provider accounts through HTTP with a total of {} transactions.", accountsAndTransactionsRequestDTO.getIngestionAccounts()
                     .stream()
                     .mapToInt(it -> it.getTransactions().size())
                     .sum());
 
-            accountsAndTransactionsRequestConsumer.transactionsUpdate(accountsAndTransactionsRequestDTO, clientUserToken);
+            accountsAndTransactionsRequestConsumer.process(accountsAndTransactionsRequestDTO, clientUserToken);
         }
 
     }
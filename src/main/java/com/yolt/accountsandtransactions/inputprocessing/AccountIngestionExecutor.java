@@ -0,0 +1,122 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Processes the accounts of a single user-site concurrently.
+ * <p>
+ * At most {@link #parallelismPerUserSite} accounts of a user-site are processed at the same time.  The calling thread
+ * always takes part in the processing, the remaining workers are borrowed from the shared (queue-less) pool.  If the
+ * pool is saturated the calling thread processes all accounts by itself, so an ingestion never waits for a free thread.
+ * <p>
+ * A failure of one account does not affect the processing of the other accounts, it is recorded in the {@link Outcome}
+ * of that account instead.
+ */
+@Slf4j
+@Component
+public class AccountIngestionExecutor {
+
+    private final TaskExecutor taskExecutor;
+    private final int parallelismPerUserSite;
+
+    public AccountIngestionExecutor(@Qualifier("accountIngestionRunner") TaskExecutor taskExecutor,
+                                    @org.springframework.beans.factory.annotation.Value("${yolt.accounts-and-transactions.ingestion.account-parallelism:4}") int parallelismPerUserSite) {
+        if (parallelismPerUserSite < 1) {
+            throw new IllegalArgumentException("account-parallelism must be at least 1, got " + parallelismPerUserSite);
+        }
+        this.taskExecutor = taskExecutor;
+        this.parallelismPerUserSite = parallelismPerUserSite;
+    }
+
+    /**
+     * Applies {@code fn} to every item and waits until all items have been processed.
+     *
+     * @return the outcomes in the same order as {@code items}
+     */
+    public <T, R> List<Outcome<T, R>> processAll(final @NonNull List<T> items, final @NonNull Function<T, R> fn) {
+        @SuppressWarnings("unchecked")
+        Outcome<T, R>[] outcomes = new Outcome[items.size()];
+        AtomicInteger next = new AtomicInteger();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < items.size()) {
+                T item = items.get(i);
+                try {
+                    outcomes[i] = Outcome.success(item, fn.apply(item));
+                } catch (RuntimeException e) {
+                    outcomes[i] = Outcome.failure(item, e);
+                }
+            }
+        };
+
+        int helpers = Math.min(parallelismPerUserSite, items.size()) - 1;
+        List<CompletableFuture<Void>> running = new ArrayList<>(Math.max(helpers, 0));
+        for (int h = 0; h < helpers; h++) {
+            try {
+                running.add(CompletableFuture.runAsync(withMdc(mdc, worker), taskExecutor));
+            } catch (TaskRejectedException e) {
+                log.debug("Account ingestion pool is saturated, continuing with {} helper(s).", h);
+                break;
+            }
+        }
+
+        worker.run();
+        running.forEach(CompletableFuture::join);
+
+        return Arrays.asList(outcomes);
+    }
+
+    private static Runnable withMdc(final Map<String, String> mdc, final Runnable runnable) {
+        return () -> {
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            try {
+                runnable.run();
+            } finally {
+                MDC.clear();
+            }
+        };
+    }
+
+    @Value
+    public static class Outcome<T, R> {
+        T item;
+        R result;
+        RuntimeException failure;
+
+        static <T, R> Outcome<T, R> success(T item, R result) {
+            return new Outcome<>(item, result, null);
+        }
+
+        static <T, R> Outcome<T, R> failure(T item, RuntimeException failure) {
+            return new Outcome<>(item, null, failure);
+        }
+
+        public Optional<R> getResult() {
+            return Optional.ofNullable(result);
+        }
+
+        public Optional<RuntimeException> getFailure() {
+            return Optional.ofNullable(failure);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.datastax.driver.mapping.annotations.ClusteringColumn;
+import com.datastax.driver.mapping.annotations.Column;
+import com.datastax.driver.mapping.annotations.PartitionKey;
+import com.datastax.driver.mapping.annotations.Table;
+import lombok.*;
+import nl.ing.lovebird.cassandra.codec.LocalDateTypeCodec;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * The {@link UpstreamDigest} of the transactions of an account as they were last reconciled.  This table has a TTL, an
+ * account without a digest is simply reconciled in full.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "account_upstream_digests")
+@Data
+@Builder(toBuilder = true)
+public class AccountUpstreamDigest {
+    public static final String USER_ID_COLUMN = "user_id";
+    public static final String ACCOUNT_ID_COLUMN = "account_id";
+    public static final String DIGEST_COLUMN = "digest";
+    public static final String WINDOW_START_COLUMN = "window_start";
+    public static final String WINDOW_END_COLUMN = "window_end";
+
+    @NonNull
+    @PartitionKey
+    @Column(name = USER_ID_COLUMN)
+    private UUID userId;
+
+    @NonNull
+    @ClusteringColumn
+    @Column(name = ACCOUNT_ID_COLUMN)
+    private UUID accountId;
+
+    @NonNull
+    @Column(name = DIGEST_COLUMN)
+    private String digest;
+
+    @Column(name = WINDOW_START_COLUMN, codec = LocalDateTypeCodec.class)
+    private LocalDate windowStart;
+
+    @Column(name = WINDOW_END_COLUMN, codec = LocalDateTypeCodec.class)
+    private LocalDate windowEnd;
+}
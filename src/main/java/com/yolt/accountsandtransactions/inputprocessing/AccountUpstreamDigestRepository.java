@@ -0,0 +1,44 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.datastax.driver.core.Session;
+import lombok.extern.slf4j.Slf4j;
+import nl.ing.lovebird.cassandra.CassandraRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
+import static com.yolt.accountsandtransactions.inputprocessing.AccountUpstreamDigest.ACCOUNT_ID_COLUMN;
+import static com.yolt.accountsandtransactions.inputprocessing.AccountUpstreamDigest.USER_ID_COLUMN;
+
+@Validated
+@Repository
+@Slf4j
+public class AccountUpstreamDigestRepository extends CassandraRepository<AccountUpstreamDigest> {
+    protected AccountUpstreamDigestRepository(Session session) {
+        super(session, AccountUpstreamDigest.class);
+        setAuditLoggingEnabled(false);
+    }
+
+    void persist(AccountUpstreamDigest accountUpstreamDigest) {
+        save(accountUpstreamDigest);
+    }
+
+    Optional<AccountUpstreamDigest> find(UUID userId, UUID accountId) {
+        var select = createSelect();
+        select.where(eq(USER_ID_COLUMN, userId))
+                .and(eq(ACCOUNT_ID_COLUMN, accountId));
+        return select(select).stream().findFirst();
+    }
+
+    void delete(UUID userId, List<UUID> accountIds) {
+        var delete = createDelete();
+        delete.where(eq(USER_ID_COLUMN, userId))
+                .and(in(ACCOUNT_ID_COLUMN, accountIds));
+        executeDelete(delete);
+    }
+}
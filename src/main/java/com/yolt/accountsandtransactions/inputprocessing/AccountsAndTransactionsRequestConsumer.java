@@ -2,6 +2,8 @@ package com.yolt.accountsandtransactions.inputprocessing;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterators;
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import nl.ing.lovebird.clienttokens.ClientUserToken;
@@ -10,15 +12,31 @@ import nl.ing.lovebird.logging.LogTypeMarker;
 import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+import java.util.Iterator;
 import java.util.UUID;
 
 import static nl.ing.lovebird.clienttokens.constants.ClientTokenConstants.CLIENT_TOKEN_HEADER_NAME;
 
+/**
+ * Consumes the ingestion requests.
+ * <p>
+ * By default a request is processed on the listener thread.  With {@code yolt.accounts-and-transactions.ingestion.key-ordered.enabled}
+ * the requests are handed to a {@link KeyOrderedExecutor} instead: the requests of a user are processed strictly in
+ * order, the requests of different users in parallel, so a slow refresh no longer holds up the other users on the
+ * same partition.  An offset is only committed once all records up to it are processed, see {@link CompletedOffsets}.
+ * The listener thread never waits for the executor: once it is saturated the partitions of the listener are paused
+ * (the records of the current poll are still submitted), and they are resumed once a request completes.  Blocking
+ * the listener thread instead could exceed {@code max.poll.interval.ms} and trigger a rebalance.
+ */
 @Component
 @Slf4j
 class AccountsAndTransactionsRequestConsumer {
@@ -27,22 +45,89 @@ class AccountsAndTransactionsRequestConsumer {
     private final KafkaTemplate<String, String> stringKafkaTemplate;
     private final String requestsErrorsTopic;
     private final ObjectMapper objectMapper;
+    private final KeyOrderedExecutor<UUID> ingestionRequestExecutor;
+    private final boolean keyOrdered;
+    private final CompletedOffsets completedOffsets;
+    private final KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+    private final RetentionPolicies retentionPolicies;
 
     AccountsAndTransactionsRequestConsumer(AccountsAndTransactionsService service,
                                            @Value("${yolt.kafka.topics.requests-errors.topic-name}") String requestsErrorsTopic,
                                            KafkaTemplate<String, String> stringKafkaTemplate,
-                                           ObjectMapper objectMapper) {
+                                           ObjectMapper objectMapper,
+                                           KeyOrderedExecutor<UUID> ingestionRequestExecutor,
+                                           CompletedOffsets ingestionRequestOffsets,
+                                           KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry,
+                                           RetentionPolicies retentionPolicies,
+                                           @Value("${yolt.accounts-and-transactions.ingestion.key-ordered.enabled:false}") boolean keyOrdered) {
         this.service = service;
         this.stringKafkaTemplate = stringKafkaTemplate;
         this.requestsErrorsTopic = requestsErrorsTopic;
         this.objectMapper = objectMapper;
+        this.ingestionRequestExecutor = ingestionRequestExecutor;
+        this.keyOrdered = keyOrdered;
+        this.completedOffsets = ingestionRequestOffsets;
+        this.kafkaListenerEndpointRegistry = kafkaListenerEndpointRegistry;
+        this.retentionPolicies = retentionPolicies;
     }
 
-    @KafkaListener(topics = "${yolt.kafka.topics.ingestion-requests.topic-name}",
-            concurrency = "${yolt.kafka.topics.ingestion-requests.listener-concurrency}")
+    @KafkaListener(id = IngestionConfiguration.INGESTION_REQUESTS_LISTENER, idIsGroup = false,
+            topics = "${yolt.kafka.topics.ingestion-requests.topic-name}",
+            concurrency = "${yolt.kafka.topics.ingestion-requests.listener-concurrency}",
+            containerFactory = IngestionConfiguration.INGESTION_REQUESTS_CONTAINER_FACTORY)
     public void transactionsUpdate(@Payload AccountsAndTransactionsRequestDTO accountsAndTransactionsRequestDTO,
-                                   @Header(value = CLIENT_TOKEN_HEADER_NAME) final @NonNull ClientUserToken clientUserToken
+                                   @Header(value = CLIENT_TOKEN_HEADER_NAME) final @NonNull ClientUserToken clientUserToken,
+                                   @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
+                                   @Header(KafkaHeaders.OFFSET) long offset,
+                                   Acknowledgment acknowledgment
     ) throws JsonProcessingException {
+        if (!keyOrdered) {
+            process(accountsAndTransactionsRequestDTO, clientUserToken);
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        UUID userId = clientUserToken.getUserIdClaim();
+        var record = completedOffsets.started(partition, offset, acknowledgment);
+        ingestionRequestExecutor.execute(userId, () -> {
+                    try {
+                        process(accountsAndTransactionsRequestDTO, clientUserToken);
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .whenComplete((ignored, throwable) -> {
+                    if (throwable != null) {
+                        // There is no error handler to retry on this thread, the record is skipped like the ones that end up on the errors topic.
+                        log.error(LogTypeMarker.getDataErrorMarker(), "Error while processing update for user {}.", userId, throwable);
+                    }
+                    completedOffsets.completed(record).ifPresent(Acknowledgment::acknowledge);
+                    resumeIfNotSaturated();
+                });
+
+        if (ingestionRequestExecutor.saturated()) {
+            var container = listenerContainer();
+            container.pause();
+            // the pending requests may all have completed before the pause
+            resumeIfNotSaturated();
+        }
+    }
+
+    private void resumeIfNotSaturated() {
+        var container = listenerContainer();
+        if (container.isPauseRequested() && !ingestionRequestExecutor.saturated()) {
+            container.resume();
+        }
+    }
+
+    private MessageListenerContainer listenerContainer() {
+        return kafkaListenerEndpointRegistry.getListenerContainer(IngestionConfiguration.INGESTION_REQUESTS_LISTENER);
+    }
+
+    /**
+     * Process a request on the calling thread, for requests that do not come from Kafka.
+     */
+    void process(AccountsAndTransactionsRequestDTO accountsAndTransactionsRequestDTO, ClientUserToken clientUserToken) throws JsonProcessingException {
         UUID userId = clientUserToken.getUserIdClaim();
         try {
             // Can throw.
@@ -51,12 +136,14 @@ class AccountsAndTransactionsRequestConsumer {
             // XXX remove all transactions with status HOLD.  Datascience has no concept of HOLD transaction, so we ignore
             //     them entirely.
             boolean didRemoveHoldTransaction = accountsAndTransactionsRequestDTO.getIngestionAccounts().stream()
-                    .map(a -> a.getTransactions().removeIf(trx -> trx.getStatus() == TransactionStatus.HOLD))
+                    .map(AccountsAndTransactionsRequestConsumer::removeHoldTransactions)
                     .reduce(false, (a, b) -> a || b);
             if (didRemoveHoldTransaction) {
                 log.warn("Removed HOLD transactions for site {}.", accountsAndTransactionsRequestDTO.getSiteId());
             }
 
+            // The client is in the token, the writes of the request do not have to look it up in the users service.
+            retentionPolicies.clientOf(userId, clientUserToken.getClientIdClaim());
             service.processAccountsAndTransactionsForUserSite(clientUserToken, accountsAndTransactionsRequestDTO);
         } catch (RuntimeException e) {
             log.error(LogTypeMarker.getDataErrorMarker(), "Error while processing update for user {}.  Sending message to {} topic.", userId, requestsErrorsTopic, e);
@@ -67,6 +154,39 @@ class AccountsAndTransactionsRequestConsumer {
         log.debug("Processed account update with key {}", userId);
     }
 
+    /**
+     * The equivalent of {@link #process(AccountsAndTransactionsRequestDTO, ClientUserToken)} for a request that is read
+     * one account at a time: every account is validated and stripped of its HOLD transactions when it is read.
+     * <p>
+     * A request that fails is not sent to the errors topic, streaming is meant for the requests that are too large for Kafka.
+     */
+    void process(StreamingIngestionRequest request, ClientUserToken clientUserToken) {
+        UUID userId = clientUserToken.getUserIdClaim();
+        Iterator<AccountFromProviders> accounts = Iterators.transform(request.accounts(), account -> {
+            // Can throw.
+            account.getTransactions().forEach(ProviderTransactionDTO::validate);
+
+            if (removeHoldTransactions(account)) {
+                log.warn("Removed HOLD transactions for site {}.", request.getSiteId());
+            }
+            return account;
+        });
+
+        try {
+            retentionPolicies.clientOf(userId, clientUserToken.getClientIdClaim());
+            service.processAccountsAndTransactionsForUserSite(clientUserToken, request.getActivityId(), request.getUserSiteId(), request.getSiteId(), accounts);
+        } catch (RuntimeException e) {
+            log.error(LogTypeMarker.getDataErrorMarker(), "Error while processing streamed update for user {}.", userId, e);
+            return;
+        }
+
+        log.debug("Processed streamed account update with key {}", userId);
+    }
+
+    private static boolean removeHoldTransactions(AccountFromProviders account) {
+        return account.getTransactions().removeIf(trx -> trx.getStatus() == TransactionStatus.HOLD);
+    }
+
     private void validateProviderAccountDTO(AccountsAndTransactionsRequestDTO accountsAndTransactionsRequestDTO) {
         // Can throw.
         accountsAndTransactionsRequestDTO.getIngestionAccounts().stream()
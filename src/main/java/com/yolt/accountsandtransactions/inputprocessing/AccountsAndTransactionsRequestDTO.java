@@ -1,5 +1,6 @@
 package com.yolt.accountsandtransactions.inputprocessing;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -10,6 +11,8 @@ import java.util.UUID;
 @Builder
 @Data
 @AllArgsConstructor
+// The accounts come last, so a StreamingIngestionRequest can stream them.
+@JsonPropertyOrder({"activityId", "userSiteId", "siteId", "ingestionAccounts"})
 public class AccountsAndTransactionsRequestDTO {
     private UUID activityId;
     private List<AccountFromProviders> ingestionAccounts;
@@ -3,6 +3,7 @@ package com.yolt.accountsandtransactions.inputprocessing;
 import com.yolt.accountsandtransactions.ValidationException;
 import com.yolt.accountsandtransactions.accounts.Account;
 import com.yolt.accountsandtransactions.accounts.AccountService;
+import com.yolt.accountsandtransactions.accounts.AccountWrites;
 import com.yolt.accountsandtransactions.datascience.DataScienceService;
 import com.yolt.accountsandtransactions.datascience.DsTransaction;
 import com.yolt.accountsandtransactions.datascience.TransactionSyncService;
@@ -12,12 +13,15 @@ import com.yolt.accountsandtransactions.inputprocessing.enrichments.activities.A
 import com.yolt.accountsandtransactions.inputprocessing.matching.Matchers;
 import com.yolt.accountsandtransactions.legacyaccounts.AccountMatcher;
 import com.yolt.accountsandtransactions.legacyaccounts.AccountMatcher.AccountMatchResult;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.summary.AccountTransactionStatusService;
 import com.yolt.accountsandtransactions.transactions.Transaction;
 import com.yolt.accountsandtransactions.transactions.TransactionRepository;
 import com.yolt.accountsandtransactions.transactions.TransactionService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NonNull;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import nl.ing.lovebird.activityevents.events.IngestionFinishedEvent;
 import nl.ing.lovebird.clienttokens.ClientUserToken;
@@ -29,6 +33,8 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import static com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.EMPTY_INSTRUCTION;
@@ -58,6 +64,12 @@ public class AccountsAndTransactionsService {
     private final TransactionIdProvider<UUID> transactionIdProvider;
     private final AccountsAndTransactionDiagnosticsService accountsAndTransactionDiagnosticsService;
     private final TransactionRepository transactionRepository;
+    private final AccountIngestionExecutor accountIngestionExecutor;
+    private final TransactionWritePipeline transactionWritePipeline;
+    private final UpstreamDigestService upstreamDigestService;
+    private final ShadowEvaluator shadowEvaluator;
+    private final AccountTransactionStatusService accountTransactionStatusService;
+    private final AccountsAndTransactionMetrics metrics;
     private final Clock clock;
 
     public void processAccountsAndTransactionsForUserSite(
@@ -78,7 +90,7 @@ public class AccountsAndTransactionsService {
         UUID siteId = accountsAndTransactionsRequestDTO.getSiteId();
         List<Account> accountsForUserSite = accountService.getAccountsForUserSite(clientUserToken, userSiteId);
 
-        Map<UUID, AccountFromProviders> processedAccountsByInternalId = new HashMap<>();
+        Map<UUID, IngestionFinishedEvent.AccountInformationDTO> accountIdToAccountInformation = new HashMap<>();
 
         // Mark the start of the enrichment of this activity.
         activityEnrichmentService.startActivityEnrichment(clientUserToken, REFRESH, activityId);
@@ -103,76 +115,191 @@ public class AccountsAndTransactionsService {
         var accountIdToOldestTransactionChangeDate = new HashMap<UUID, LocalDate>();
 
         //
-        // Process the accounts one by one.
+        // Process the accounts, concurrently if configured.  A failing account does not stop the other accounts.
         //
-        for (AccountFromProviders upstreamAccount : deduplicatedAccounts) {
-            DurationLogger perAccountIngestionDurationLogger = new DurationLogger();
-
-            Optional<AccountMatchResult> existingAccountOpt = AccountMatcher.findExisting(accountsForUserSite, upstreamAccount, true);
-            accountsAndTransactionDiagnosticsService.updateAccountMatchingStatistics(upstreamAccount, existingAccountOpt);
-
-            boolean isAccountPresent = existingAccountOpt.isPresent();
-            existingAccountOpt
-                    .ifPresent(account -> validateCurrencyEquality(account.getAccount(), upstreamAccount));
-
-            // Create and/or update the accounts repository
-            UUID accountId = existingAccountOpt
-                    .map(AccountMatchResult::getAccount)
-                    .map(Account::getId) //existing account
-                    .orElseGet(() -> {
-                        log.info("Generating identifier for new account in user-site: {}", userSiteId);
-                        return accountIdProvider.generate(upstreamAccount);
-                    }); // new account
-
-            Account account = accountService.createOrUpdateAccount(clientUserToken, upstreamAccount, accountId, userSiteId, siteId, isAccountPresent, null);
-            dataScienceService.saveAccount(account, upstreamAccount);
-            perAccountIngestionDurationLogger.addEntry("accounts");
-
-            try {
-                //
-                // Persist the transactions.
-                //
-                TransactionInsertionStrategy.Instruction instruction = persistTransactions(
-                        upstreamAccount,
-                        clientUserToken,
-                        perAccountIngestionDurationLogger,
-                        account,
-                        isAccountPresent
-                );
-
-                // Update account with lastDataFetchTime after transactions were persisted
-                updateAccountWithLastDataFetchTime(clientUserToken, currentTime, userSiteId, siteId, upstreamAccount, isAccountPresent, accountId);
-
+        var accountWrites = accountService.openAccountWrites(clientUserToken);
+        var outcomes = accountIngestionExecutor.processAll(deduplicatedAccounts,
+                upstreamAccount -> processAccount(clientUserToken, upstreamAccount, accountsForUserSite, currentTime, userSiteId, siteId, accountWrites));
+
+        // A single upsert, event and offload per account for all of its mutations, also for the accounts that failed.
+        accountWrites.flush();
+
+        var failedAccounts = new ArrayList<AccountIngestionExecutor.Outcome<AccountFromProviders, Optional<ProcessedAccount>>>();
+        for (var outcome : outcomes) {
+            if (outcome.getFailure().isPresent()) {
+                failedAccounts.add(outcome);
+                continue;
+            }
+            outcome.getResult().flatMap(it -> it).ifPresent(processedAccount -> {
                 // Store the oldest change transaction date for the account
-                instruction.getOldestTransactionChangeDate()
-                        .ifPresent(oldestTransactionChangeDate -> accountIdToOldestTransactionChangeDate.put(accountId, oldestTransactionChangeDate));
+                processedAccount.getOldestTransactionChangeDate()
+                        .ifPresent(oldestTransactionChangeDate -> accountIdToOldestTransactionChangeDate.put(processedAccount.getAccountId(), oldestTransactionChangeDate));
 
                 // Update account status.
-                processedAccountsByInternalId.put(accountId, upstreamAccount);
-
-                //
-                // Record metrics and diagnostics.
-                //
-                accountsAndTransactionDiagnosticsService.recordInvalidRemittanceInformation(instruction.getTransactionsToInsert(), upstreamAccount.getProvider());
-                accountsAndTransactionDiagnosticsService.recordInvalidRemittanceInformation(instruction.getTransactionsToUpdate(), upstreamAccount.getProvider());
-                accountsAndTransactionDiagnosticsService.logAccountIngestionReport(clientUserToken.getUserIdClaim(), accountId, upstreamAccount, instruction);
-                accountsAndTransactionDiagnosticsService.updateTransactionProcessingDurationMetrics(perAccountIngestionDurationLogger);
-                startBalanceStrategyAnalyzer.analyze(upstreamAccount, isAccountPresent, instruction.getTransactionsToInsert(), instruction.getTransactionsToUpdate(), instruction.getTransactionsToDelete());
-
-            } catch (Exception e) {
-                log.warn("Error during saving transactions batch for account, accountId {} , lastUpdatedTime on account wont be updated. Exception : {}", upstreamAccount.getAccountId(), e);
-            }
-
+                accountInformationOf(processedAccount.getUpstreamAccount())
+                        .ifPresent(accountInformation -> accountIdToAccountInformation.put(processedAccount.getAccountId(), accountInformation));
+            });
         }
 
         MonthRange monthRange = determineDateRangeOfAllTransactions(accountsAndTransactionsRequestDTO, widestRangePendingTransactionsToBeDeleted);
 
 
-        publishIngestionFinishedEvent(clientUserToken, monthRange, activityId, userSiteId, currentTime.atZone(ZoneOffset.UTC), processedAccountsByInternalId, accountIdToOldestTransactionChangeDate);
+        publishIngestionFinishedEvent(clientUserToken, monthRange, activityId, userSiteId, currentTime.atZone(ZoneOffset.UTC), accountIdToAccountInformation, accountIdToOldestTransactionChangeDate);
+
+        // The failed accounts are reported, not rethrown: the request is announced (exactly once) with the accounts that
+        // succeeded, a replay of the whole request would announce them again.  A failed account is processed again on
+        // its next refresh.
+        failedAccounts.forEach(outcome -> reportFailedAccount(outcome.getItem(), userSiteId, outcome.getFailure().get()));
+    }
+
+    /**
+     * The streaming equivalent of {@link #processAccountsAndTransactionsForUserSite(ClientUserToken, AccountsAndTransactionsRequestDTO)},
+     * for requests that are too large to hold in memory as a whole (see {@link StreamingIngestionRequest}).
+     * <p>
+     * The accounts are processed one at a time in the order in which they are read, so only a single account and its
+     * transactions is held in memory.  What the batch variant derives from all accounts up front (the duplicates and the
+     * range of the pending transactions) is derived account by account, and only a summary of the processed accounts is
+     * kept for the {@link IngestionFinishedEvent}.
+     * <p>
+     * If the accounts cannot be read to the end, the accounts that were processed so far are still written and announced,
+     * and the failure is reported (like the failure of an account) instead of rethrown.
+     */
+    public void processAccountsAndTransactionsForUserSite(
+            ClientUserToken clientUserToken,
+            UUID activityId,
+            UUID userSiteId,
+            UUID siteId,
+            Iterator<AccountFromProviders> upstreamAccounts
+    ) {
+        // See the batch variant for the uses of this timestamp.
+        var currentTime = Instant.now(clock);
+
+        UUID userId = clientUserToken.getUserIdClaim();
+        List<Account> accountsForUserSite = accountService.getAccountsForUserSite(clientUserToken, userSiteId);
+
+        // Mark the start of the enrichment of this activity.
+        activityEnrichmentService.startActivityEnrichment(clientUserToken, REFRESH, activityId);
+
+        Predicate<AccountFromProviders> isFirstOccurrence = AccountsDeduplicator.firstOccurrences();
+        MonthRange monthRange = new MonthRange(null, null);
+        Map<UUID, IngestionFinishedEvent.AccountInformationDTO> accountIdToAccountInformation = new HashMap<>();
+        var accountIdToOldestTransactionChangeDate = new HashMap<UUID, LocalDate>();
+        int processedAccounts = 0;
+
+        var accountWrites = accountService.openAccountWrites(clientUserToken);
+        try {
+            while (upstreamAccounts.hasNext()) {
+                AccountFromProviders upstreamAccount = upstreamAccounts.next();
+
+                // Like the batch variant, the range covers the transactions of all upstream accounts, duplicates included.
+                upstreamAccount.getTransactions().forEach(trx -> widen(monthRange, MONTH_TRUNCATING_DATE_FORMATTER.format(trx.getDateTime())));
+                if (!isFirstOccurrence.test(upstreamAccount)) {
+                    continue;
+                }
+                processedAccounts++;
+
+                // The pending transactions of the account are replaced when it is processed, so their range is determined before.
+                AccountMatcher.findExisting(accountsForUserSite, upstreamAccount, false)
+                        .map(it -> it.getAccount().getId())
+                        .ifPresent(accountId -> dataScienceService.getDatesPendingTransactions(userId, List.of(accountId))
+                                .forEach(date -> widen(monthRange, date)));
+
+                try {
+                    processAccount(clientUserToken, upstreamAccount, accountsForUserSite, currentTime, userSiteId, siteId, accountWrites)
+                            .ifPresent(processedAccount -> {
+                                processedAccount.getOldestTransactionChangeDate()
+                                        .ifPresent(oldestTransactionChangeDate -> accountIdToOldestTransactionChangeDate.put(processedAccount.getAccountId(), oldestTransactionChangeDate));
+                                accountInformationOf(upstreamAccount)
+                                        .ifPresent(accountInformation -> accountIdToAccountInformation.put(processedAccount.getAccountId(), accountInformation));
+                            });
+                } catch (RuntimeException e) {
+                    // Reported, not rethrown, like the batch variant.
+                    reportFailedAccount(upstreamAccount, userSiteId, e);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to read the accounts of user-site {} after {} account(s), the remaining accounts are not processed.", userSiteId, processedAccounts, e);
+            metrics.incrementIngestionFailure("read", e);
+        }
+
+        accountWrites.flush();
+        publishIngestionFinishedEvent(clientUserToken, monthRange, activityId, userSiteId, currentTime.atZone(ZoneOffset.UTC), accountIdToAccountInformation, accountIdToOldestTransactionChangeDate);
+    }
+
+    private void reportFailedAccount(AccountFromProviders upstreamAccount, UUID userSiteId, RuntimeException failure) {
+        log.error("Failed to process account {} of user-site {}.", upstreamAccount.getAccountId(), userSiteId, failure);
+        metrics.incrementIngestionFailure("account", failure);
     }
 
-    private void updateAccountWithLastDataFetchTime(ClientUserToken clientUserToken, Instant currentTime, UUID userSiteId, UUID siteId, AccountFromProviders upstreamAccount, boolean isAccountPresent, UUID accountId) {
-        accountService.createOrUpdateAccount(clientUserToken, upstreamAccount, accountId, userSiteId, siteId, isAccountPresent, currentTime);
+    /**
+     * Processes a single account: creates or updates the account and persists its transactions.
+     *
+     * @return the processed account, or empty if the transactions could not be persisted
+     */
+    private Optional<ProcessedAccount> processAccount(ClientUserToken clientUserToken, AccountFromProviders upstreamAccount, List<Account> accountsForUserSite,
+                                                      Instant currentTime, UUID userSiteId, UUID siteId, AccountWrites accountWrites) {
+        DurationLogger perAccountIngestionDurationLogger = new DurationLogger();
+
+        Optional<AccountMatchResult> existingAccountOpt = AccountMatcher.findExisting(accountsForUserSite, upstreamAccount, true);
+        accountsAndTransactionDiagnosticsService.updateAccountMatchingStatistics(upstreamAccount, existingAccountOpt);
+
+        boolean isAccountPresent = existingAccountOpt.isPresent();
+        existingAccountOpt
+                .ifPresent(account -> validateCurrencyEquality(account.getAccount(), upstreamAccount));
+
+        // Create and/or update the accounts repository
+        UUID accountId = existingAccountOpt
+                .map(AccountMatchResult::getAccount)
+                .map(Account::getId) //existing account
+                .orElseGet(() -> {
+                    log.info("Generating identifier for new account in user-site: {}", userSiteId);
+                    return accountIdProvider.generate(upstreamAccount);
+                }); // new account
+
+        Account account = accountWrites.createOrUpdateAccount(upstreamAccount, accountId, userSiteId, siteId, isAccountPresent, null);
+        dataScienceService.saveAccount(account, upstreamAccount);
+        perAccountIngestionDurationLogger.addEntry("accounts");
+
+        Optional<UpstreamDigest> upstreamDigest = upstreamDigestService.digest(upstreamAccount);
+        if (isAccountPresent && upstreamDigest.filter(digest -> upstreamDigestService.isUnchanged(clientUserToken.getUserIdClaim(), accountId, upstreamAccount.getProvider(), digest)).isPresent()) {
+            // The same transactions as the last time they were reconciled, there is nothing to reconcile or write.
+            accountWrites.createOrUpdateAccount(upstreamAccount, accountId, userSiteId, siteId, isAccountPresent, currentTime);
+            accountWrites.complete(accountId);
+            return Optional.of(new ProcessedAccount(accountId, upstreamAccount, Optional.empty()));
+        }
+
+        try {
+            //
+            // Persist the transactions.
+            //
+            TransactionInsertionStrategy.Instruction instruction = persistTransactions(
+                    upstreamAccount,
+                    clientUserToken,
+                    perAccountIngestionDurationLogger,
+                    account,
+                    isAccountPresent
+            );
+            upstreamDigest.ifPresent(digest -> upstreamDigestService.save(clientUserToken.getUserIdClaim(), accountId, digest));
+
+            // Update account with lastDataFetchTime after transactions were persisted
+            accountWrites.createOrUpdateAccount(upstreamAccount, accountId, userSiteId, siteId, isAccountPresent, currentTime);
+            accountWrites.complete(accountId);
+
+            //
+            // Record metrics and diagnostics.
+            //
+            accountsAndTransactionDiagnosticsService.recordInvalidRemittanceInformation(instruction.getTransactionsToInsert(), upstreamAccount.getProvider());
+            accountsAndTransactionDiagnosticsService.recordInvalidRemittanceInformation(instruction.getTransactionsToUpdate(), upstreamAccount.getProvider());
+            accountsAndTransactionDiagnosticsService.logAccountIngestionReport(clientUserToken.getUserIdClaim(), accountId, upstreamAccount, instruction);
+            accountsAndTransactionDiagnosticsService.updateTransactionProcessingDurationMetrics(perAccountIngestionDurationLogger);
+            startBalanceStrategyAnalyzer.analyze(upstreamAccount, isAccountPresent, instruction.getTransactionsToInsert(), instruction.getTransactionsToUpdate(), instruction.getTransactionsToDelete());
+
+            return Optional.of(new ProcessedAccount(accountId, upstreamAccount, instruction.getOldestTransactionChangeDate()));
+        } catch (Exception e) {
+            log.warn("Error during saving transactions batch for account, accountId {} , lastUpdatedTime on account wont be updated. Exception : {}", upstreamAccount.getAccountId(), e);
+            accountWrites.complete(accountId);
+            return Optional.empty();
+        }
     }
 
     private void validateCurrencyEquality(final Account account, final AccountFromProviders upstreamAccount) {
@@ -204,13 +331,16 @@ public class AccountsAndTransactionsService {
 
         updateMetrics(upstreamAccount, durationLogger, account, isUpdate, instruction);
 
+        // The writes to both keyspaces are issued asynchronously, see TransactionWritePipeline.
+        var writes = transactionWritePipeline.open();
+
         { // delete
             if (!instruction.getTransactionsToDelete().isEmpty()) {
                 List<TransactionService.TransactionPrimaryKey> transactionIdsToDelete = instruction.getTransactionsToDelete().stream()
                         .map(tx -> new TransactionService.TransactionPrimaryKey(clientUserToken.getUserIdClaim(), account.getId(), tx.getDate(), tx.getId(), tx.getStatus()))
                         .collect(toList());
-                dataScienceService.deleteSpecificTransactions(transactionIdsToDelete);
-                transactionService.deleteSpecificTransactions(transactionIdsToDelete);
+                dataScienceService.deleteSpecificTransactions(transactionIdsToDelete, writes);
+                transactionService.deleteSpecificTransactions(transactionIdsToDelete, writes);
 
                 // --- begin log transactions to delete
                 try {
@@ -230,8 +360,8 @@ public class AccountsAndTransactionsService {
             if (!instruction.getTransactionsToInsert().isEmpty()) {
                 List<DsTransaction> newTrxs = dataScienceService.toDsTransactionList(account.getId(), clientUserToken.getUserIdClaim(), upstreamAccount.getCurrency(),
                         instruction.getTransactionsToInsert());
-                dataScienceService.saveTransactionBatch(newTrxs);
-                var transactionsToInsert = transactionService.saveTransactionsBatch(account.getId(), clientUserToken, upstreamAccount, instruction.getTransactionsToInsert(), InstructionType.INSERT);
+                dataScienceService.saveTransactionBatch(newTrxs, writes);
+                var transactionsToInsert = transactionService.saveTransactionsBatch(account.getId(), clientUserToken, upstreamAccount, instruction.getTransactionsToInsert(), InstructionType.INSERT, writes);
 
                 // --- begin log transactions to insert
                 try {
@@ -251,8 +381,8 @@ public class AccountsAndTransactionsService {
             if (!instruction.getTransactionsToUpdate().isEmpty()) {
                 List<DsTransaction> updatedTrxs = dataScienceService.toDsTransactionList(account.getId(), clientUserToken.getUserIdClaim(), upstreamAccount.getCurrency(),
                         instruction.getTransactionsToUpdate());
-                dataScienceService.saveTransactionBatch(updatedTrxs);
-                var transactionsToUpdate = transactionService.saveTransactionsBatch(account.getId(), clientUserToken, upstreamAccount, instruction.getTransactionsToUpdate(), InstructionType.UPDATE);
+                dataScienceService.saveTransactionBatch(updatedTrxs, writes);
+                var transactionsToUpdate = transactionService.saveTransactionsBatch(account.getId(), clientUserToken, upstreamAccount, instruction.getTransactionsToUpdate(), InstructionType.UPDATE, writes);
 
                 // --- begin log transactions to update
                 try {
@@ -267,33 +397,56 @@ public class AccountsAndTransactionsService {
             durationLogger.addEntry("trx_update");
         }
 
+        { // wait for the writes to both keyspaces
+            writes.await();
+            durationLogger.addEntry("trx_write");
+        }
+
+        { // the range of the pending transactions that are now stored
+            dataScienceService.updatePendingTransactionRange(clientUserToken.getUserIdClaim(), account.getId(), instruction);
+            durationLogger.addEntry("trx_pending_range");
+        }
+
+        { // the status of the transactions of the account, see SummaryService
+            accountTransactionStatusService.update(clientUserToken.getUserIdClaim(), account.getId(), instruction);
+            durationLogger.addEntry("trx_status");
+        }
+
         return instruction;
     }
 
     private TransactionInsertionStrategy getStrategyFor(final String provider) {
-        final var activeStrategy = getActiveStrategyFor(provider);
         final var optionalPassiveStrategy = getPassiveStrategyFor(provider);
-
-        if (optionalPassiveStrategy.isPresent()) {
-            return new ActivePassiveTransactionInsertionStrategy(activeStrategy, optionalPassiveStrategy.get());
+        if (optionalPassiveStrategy.isEmpty()) {
+            return getActiveStrategyFor(provider, null);
         }
 
-        return activeStrategy;
+        // The passive strategy is evaluated against the stored transactions that the active strategy loaded.
+        final var transactionLoader = new RecordingTransactionLoader(transactionRepository::getTransactionsInAccountFromDate);
+        return new ActivePassiveTransactionInsertionStrategy(getActiveStrategyFor(provider, transactionLoader),
+                optionalPassiveStrategy.get().apply(transactionLoader.replaying()), shadowEvaluator);
     }
 
-    private TransactionInsertionStrategy getActiveStrategyFor(String provider) {
+    /**
+     * @param transactionLoader loads the stored transactions, {@code null} for the default
+     */
+    private TransactionInsertionStrategy getActiveStrategyFor(String provider, TransactionLoader transactionLoader) {
         if (Matchers.isActivatedAttributeMatcher(provider)) {
-            return new AttributeInsertionStrategy(ACTIVE, transactionRepository::getTransactionsInAccountFromDate, transactionIdProvider, ACTIVATED_ATTR_MATCHERS.get(provider));
+            return new AttributeInsertionStrategy(ACTIVE, transactionLoader != null ? transactionLoader : transactionRepository::getTransactionsInAccountFromDate,
+                    transactionIdProvider, ACTIVATED_ATTR_MATCHERS.get(provider));
         }
 
         if (PROVIDER_BUDGET_INSIGHT.equals(provider)) {
             return new DeltaTransactionInsertionStrategy();
         }
 
-        return new DefaultTransactionInsertionStrategy(transactionSyncService);
+        return new DefaultTransactionInsertionStrategy(transactionSyncService, transactionLoader);
     }
 
-    private Optional<TransactionInsertionStrategy> getPassiveStrategyFor(String provider) {
+    /**
+     * @return creates the passive strategy of the provider from the loader of the stored transactions, if it has one
+     */
+    private Optional<Function<TransactionLoader, TransactionInsertionStrategy>> getPassiveStrategyFor(String provider) {
         return Optional.empty(); // All test matchers have been disabled, given the decommissioning of Yolt.
     }
 
@@ -367,39 +520,48 @@ public class AccountsAndTransactionsService {
 
     private MonthRange getWidestRange(Stream<String> dates) {
         MonthRange monthRange = new MonthRange(null, null);
-        // Widen the range so every date falls into this range.
-        dates.forEach(date -> {
-            if (monthRange.getMin() == null || monthRange.getMin().compareTo(date) > 0) {
-                monthRange.setMin(date);
-            }
-            if (monthRange.getMax() == null || monthRange.getMax().compareTo(date) < 0) {
-                monthRange.setMax(date);
-            }
-        });
+        dates.forEach(date -> widen(monthRange, date));
         return monthRange;
     }
 
+    /**
+     * Widen the range so the date falls into this range.
+     */
+    private static void widen(MonthRange monthRange, String date) {
+        if (date == null) {
+            return;
+        }
+        if (monthRange.getMin() == null || monthRange.getMin().compareTo(date) > 0) {
+            monthRange.setMin(date);
+        }
+        if (monthRange.getMax() == null || monthRange.getMax().compareTo(date) < 0) {
+            monthRange.setMax(date);
+        }
+    }
+
+    /**
+     * The last transaction of the account as reported in the {@link IngestionFinishedEvent}, empty if the account has no transactions.
+     */
+    private static Optional<IngestionFinishedEvent.AccountInformationDTO> accountInformationOf(AccountFromProviders upstreamAccount) {
+        if (upstreamAccount.getTransactions().isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new IngestionFinishedEvent.AccountInformationDTO(
+                upstreamAccount.getAccountId(),
+                upstreamAccount.getProvider(),
+                upstreamAccount.getTransactions().get(upstreamAccount.getTransactions().size() - 1).getExternalId()
+        ));
+    }
+
     private void publishIngestionFinishedEvent(
             final @NonNull ClientUserToken clientUserToken,
             final MonthRange monthRange,
             final UUID activityId,
             final UUID userSiteId,
             final @NonNull ZonedDateTime currentTime,
-            final Map<UUID, AccountFromProviders> accountIdToAccountFromProviders,
+            final Map<UUID, IngestionFinishedEvent.AccountInformationDTO> accountIdToLastTransactionId,
             final Map<UUID, LocalDate> accountIdToOldestTransactionChangeDate) {
 
-        Map<UUID, IngestionFinishedEvent.AccountInformationDTO> accountIdToLastTransactionId = new HashMap<>();
-        accountIdToAccountFromProviders.forEach((id, acc) -> {
-            if (acc.getTransactions().isEmpty()) {
-                return;
-            }
-            accountIdToLastTransactionId.put(id, new IngestionFinishedEvent.AccountInformationDTO(
-                    acc.getAccountId(),
-                    acc.getProvider(),
-                    acc.getTransactions().get(acc.getTransactions().size() - 1).getExternalId()
-            ));
-        });
-
         IngestionFinishedEvent ingestionFinishedEvent = new IngestionFinishedEvent(
                 clientUserToken.getUserIdClaim(),
                 activityId,
@@ -414,6 +576,13 @@ public class AccountsAndTransactionsService {
         accountsAndTransactionsFinishedActivityEventProducer.sendMessage(ingestionFinishedEvent, clientUserToken);
     }
 
+    @Value
+    private static class ProcessedAccount {
+        UUID accountId;
+        AccountFromProviders upstreamAccount;
+        Optional<LocalDate> oldestTransactionChangeDate;
+    }
+
     /**
      * Mutable object that helps reducing a stream of dates to the largest period that covers all those dates.
      */
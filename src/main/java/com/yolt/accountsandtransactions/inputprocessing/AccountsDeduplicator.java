@@ -3,10 +3,12 @@ package com.yolt.accountsandtransactions.inputprocessing;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.ing.lovebird.extendeddata.common.CurrencyCode;
 import nl.ing.lovebird.providerdomain.ProviderAccountDTO;
 import nl.ing.lovebird.providerdomain.ProviderAccountNumberDTO;
 
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -58,6 +60,24 @@ public final class AccountsDeduplicator {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * The streaming equivalent of {@link #deduplicateAccounts(List)}, for accounts that are processed one at a time: the
+     * predicate accepts the first occurrence of an account and rejects its duplicates.  Only the fields that identify
+     * an account are remembered, not the accounts themselves.
+     * <p>
+     * Not thread-safe, the predicate is meant to filter the accounts of a single request in order.
+     */
+    static Predicate<AccountFromProviders> firstOccurrences() {
+        final Set<AccountKey> seen = new HashSet<>();
+        return account -> {
+            if (seen.add(AccountKey.of(account))) {
+                return true;
+            }
+            log.warn("Found a duplicate (compared id, number, currency) for accountId {}, ignoring it", account.getAccountId());
+            return false;
+        };
+    }
+
     /**
      * accountId is mandatory according to {@link ProviderAccountDTO#validate()}
      * However, we will add a safe check to spot when 'validate()' method was not called upfront (should not happen).
@@ -116,4 +136,19 @@ public final class AccountsDeduplicator {
         Objects.requireNonNull(right.getCurrency(), "currency");
         return left.getCurrency() == right.getCurrency();
     }
+
+    /**
+     * The fields that {@link #deduplicateAccounts(List)} compares, with the same null-checks.
+     */
+    private record AccountKey(String accountId, ProviderAccountNumberDTO.Scheme scheme, String identification, CurrencyCode currency) {
+
+        static AccountKey of(final AccountFromProviders account) {
+            final ProviderAccountNumberDTO accountNumber = account.getAccountNumber();
+            return new AccountKey(
+                    Objects.requireNonNull(account.getAccountId(), "accountId"),
+                    accountNumber == null ? null : Objects.requireNonNull(accountNumber.getScheme(), "scheme"),
+                    accountNumber == null ? null : Objects.requireNonNull(accountNumber.getIdentification(), "identification"),
+                    Objects.requireNonNull(account.getCurrency(), "currency"));
+        }
+    }
 }
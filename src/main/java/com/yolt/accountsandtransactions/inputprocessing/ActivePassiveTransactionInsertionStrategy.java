@@ -9,15 +9,21 @@ import org.springframework.util.Assert;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Persists the instruction of the active strategy, and evaluates the passive strategy next to it with the
+ * {@link ShadowEvaluator}, off the ingestion path.
+ */
 @Slf4j
 public class ActivePassiveTransactionInsertionStrategy implements TransactionInsertionStrategy {
 
     public final TransactionInsertionStrategy activeTransactionInsertionStrategy;
     public final TransactionInsertionStrategy passiveTransactionInsertionStrategy;
+    private final ShadowEvaluator shadowEvaluator;
 
     public ActivePassiveTransactionInsertionStrategy(
             final TransactionInsertionStrategy activeTransactionInsertionStrategy,
-            final TransactionInsertionStrategy passiveTransactionInsertionStrategy) {
+            final TransactionInsertionStrategy passiveTransactionInsertionStrategy,
+            final ShadowEvaluator shadowEvaluator) {
 
         Assert.isTrue(activeTransactionInsertionStrategy.getMode() == Mode.ACTIVE,
                 "The activated strategy should run in ACTIVE mode.");
@@ -26,6 +32,7 @@ public class ActivePassiveTransactionInsertionStrategy implements TransactionIns
 
         this.activeTransactionInsertionStrategy = activeTransactionInsertionStrategy;
         this.passiveTransactionInsertionStrategy = passiveTransactionInsertionStrategy;
+        this.shadowEvaluator = shadowEvaluator;
     }
 
     @Override
@@ -36,12 +43,11 @@ public class ActivePassiveTransactionInsertionStrategy implements TransactionIns
             final String provider,
             final CurrencyCode currencyCode) {
 
-        try {
-            passiveTransactionInsertionStrategy.determineTransactionPersistenceInstruction(upstreamTransactions, clientUserToken, yoltAccountId, provider, currencyCode);
-        } catch (Exception e) {
-            log.info("Failure while running passive transaction insertion strategy. This is not a production error.", e);
-        }
+        var instruction = activeTransactionInsertionStrategy.determineTransactionPersistenceInstruction(upstreamTransactions, clientUserToken, yoltAccountId, provider, currencyCode);
 
-        return activeTransactionInsertionStrategy.determineTransactionPersistenceInstruction(upstreamTransactions, clientUserToken, yoltAccountId, provider, currencyCode);
+        shadowEvaluator.evaluate(provider, yoltAccountId, instruction,
+                () -> passiveTransactionInsertionStrategy.determineTransactionPersistenceInstruction(upstreamTransactions, clientUserToken, yoltAccountId, provider, currencyCode));
+
+        return instruction;
     }
-}
\ No newline at end of file
+}
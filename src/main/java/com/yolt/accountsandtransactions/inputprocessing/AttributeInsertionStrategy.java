@@ -59,8 +59,10 @@ import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.PENDING
  * An {@link AttributeTransactionMatcher.AttributeExtractor} which takes the booking-date from both transactions should be defined as:
  * <pre>
  *  IdentityAttributeSelector<String> EXTERNAL_ID
- *      = new IdentityAttributeSelector<>(transaction -> new Attribute<>("external-id", transaction.getExternalId()));
+ *      = new IdentityAttributeSelector<>(named("external-id", GeneralizedTransaction::getExternalId));
  * </pre>
+ * Extractors defined with {@link AttributeTransactionMatcher.AttributeExtractor#named} (and the standard decorators) are compiled
+ * into a key extractor which produces compact keys without materializing the {@link Attribute}s, see {@link AttributeSelector#compile()}.
  * The end goal of defining/ extracting the attributes is to construct a "key" for each transaction,
  * in this case a set of {@link Attribute}s, which we can use in a number of set operations to determine its equality.
  * <pre>
@@ -243,8 +245,10 @@ public class AttributeInsertionStrategy implements TransactionInsertionStrategy
         Assert.isTrue(storedTransactions.stream().allMatch(transaction -> transaction.getStatus() == BOOKED),
                 "This method can only operate on booked stored transactions.");
 
-        var allUpstream = GeneralizedTransaction.toProviderGeneralized(upstreamTransactions);
-        var allStored = GeneralizedTransaction.toStoredGeneralized(storedTransactions);
+        // normalize the transactions once, the sync window selector and every matcher in the chain read from the frame
+        var frame = TransactionFrame.of(upstreamTransactions, storedTransactions);
+        var allUpstream = frame.upstream;
+        var allStored = frame.stored;
 
         var selectedWindow = providerConfiguration.syncWindowSelector.selectWindow(allUpstream, allStored);
 
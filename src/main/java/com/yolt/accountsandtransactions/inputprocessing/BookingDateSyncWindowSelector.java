@@ -9,9 +9,10 @@ import org.springframework.util.Assert;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Slf4j
 public class BookingDateSyncWindowSelector implements SyncWindowSelector {
@@ -146,11 +147,17 @@ public class BookingDateSyncWindowSelector implements SyncWindowSelector {
                 return transactions;
             }
 
-            return transactions.stream()
-                    .filter(it -> Optional.ofNullable(it.getBookingDate())
-                            .map(bookingDate -> !bookingDate.isBefore(lowerBound))
-                            .orElseThrow())
-                    .collect(Collectors.toList());
+            var truncated = new ArrayList<T>(transactions.size());
+            for (T transaction : transactions) {
+                var bookingDate = transaction.getBookingDate();
+                if (bookingDate == null) {
+                    throw new NoSuchElementException("No value present");
+                }
+                if (!bookingDate.isBefore(lowerBound)) {
+                    truncated.add(transaction);
+                }
+            }
+            return truncated;
         }
 
         /**
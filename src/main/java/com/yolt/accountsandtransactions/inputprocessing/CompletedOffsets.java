@@ -0,0 +1,82 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import lombok.NonNull;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of the records of the partitions of a listener that are processed out of order.
+ * <p>
+ * The offset of a record may only be committed once the record and all records before it in the same partition are
+ * processed, otherwise a restart or rebalance would skip the records that were still in progress.  Therefore,
+ * {@link #completed(Record)} only returns an {@link Acknowledgment} once the completed prefix of a partition grows,
+ * namely the one of the last record of that prefix.
+ * <p>
+ * The state of a partition is dropped when the partition is revoked (see {@link #revoked(Collection)}): the records that
+ * were in progress are redelivered to the new owner of the partition.  A record is tracked by the {@link Record} that
+ * {@link #started} returned, so a record of a revoked partition that completes later can neither commit the partition
+ * nor complete a redelivery of the same offset.
+ */
+class CompletedOffsets {
+
+    private final Map<Integer, TreeMap<Long, Record>> partitions = new HashMap<>();
+
+    synchronized Record started(final int partition, final long offset, final @NonNull Acknowledgment acknowledgment) {
+        var record = new Record(partition, offset, acknowledgment);
+        partitions.computeIfAbsent(partition, p -> new TreeMap<>()).put(offset, record);
+        return record;
+    }
+
+    /**
+     * @return the acknowledgment of the record up to which the partition can be committed, if that moved forward
+     */
+    synchronized Optional<Acknowledgment> completed(final @NonNull Record record) {
+        var records = partitions.get(record.partition);
+        if (records == null || records.get(record.offset) != record) {
+            // the partition was revoked while the record was in progress
+            return Optional.empty();
+        }
+        record.completed = true;
+
+        Acknowledgment committable = null;
+        while (!records.isEmpty() && records.firstEntry().getValue().completed) {
+            committable = records.pollFirstEntry().getValue().acknowledgment;
+        }
+        if (records.isEmpty()) {
+            partitions.remove(record.partition);
+        }
+        return Optional.ofNullable(committable);
+    }
+
+    /**
+     * Forget the records of partitions that are no longer assigned to this listener.
+     */
+    synchronized void revoked(final @NonNull Collection<Integer> revokedPartitions) {
+        revokedPartitions.forEach(partitions::remove);
+    }
+
+    /**
+     * The number of records that are started but not yet committable.
+     */
+    synchronized int inProgress() {
+        return partitions.values().stream().mapToInt(Map::size).sum();
+    }
+
+    static final class Record {
+        private final int partition;
+        private final long offset;
+        private final Acknowledgment acknowledgment;
+        private boolean completed;
+
+        private Record(int partition, long offset, Acknowledgment acknowledgment) {
+            this.partition = partition;
+            this.offset = offset;
+            this.acknowledgment = acknowledgment;
+        }
+    }
+}
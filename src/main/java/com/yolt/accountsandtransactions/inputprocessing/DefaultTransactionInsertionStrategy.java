@@ -12,10 +12,21 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class DefaultTransactionInsertionStrategy implements TransactionInsertionStrategy {
     private final TransactionSyncService transactionSyncService;
+    /**
+     * Loads the stored transactions, {@code null} to let the {@link TransactionSyncService} load them.
+     */
+    private final TransactionLoader transactionLoader;
+
+    public DefaultTransactionInsertionStrategy(TransactionSyncService transactionSyncService) {
+        this(transactionSyncService, null);
+    }
 
     @Override
     public Instruction determineTransactionPersistenceInstruction(List<ProviderTransactionDTO> upstreamTransactions, ClientUserToken clientUserToken, UUID accountId, String provider, CurrencyCode currencyCode) {
-        return transactionSyncService.reconcile(clientUserToken, accountId, upstreamTransactions, provider);
+        if (transactionLoader == null) {
+            return transactionSyncService.reconcile(clientUserToken, accountId, upstreamTransactions, provider);
+        }
+        return transactionSyncService.reconcile(clientUserToken, accountId, upstreamTransactions, provider, transactionLoader);
     }
 
 }
@@ -0,0 +1,109 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties.AckMode;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Collection;
+import java.util.UUID;
+
+@Configuration
+public class IngestionConfiguration {
+
+    static final String INGESTION_REQUESTS_CONTAINER_FACTORY = "ingestionRequestsContainerFactory";
+    static final String INGESTION_REQUESTS_LISTENER = "ingestionRequests";
+
+    /**
+     * Shared pool for the per-account work of an ingestion, see {@link AccountIngestionExecutor}.  The pool has no queue,
+     * if all threads are busy the thread that handles the ingestion simply processes the accounts itself.
+     */
+    @Bean("accountIngestionRunner")
+    public ThreadPoolTaskExecutor accountIngestionRunner(TaskExecutorBuilder builder,
+                                                         @Value("${yolt.accounts-and-transactions.ingestion.max-threads:16}") int maxThreads) {
+        return builder
+                .allowCoreThreadTimeOut(true)
+                .corePoolSize(maxThreads)
+                .maxPoolSize(maxThreads)
+                .queueCapacity(0)
+                .threadNamePrefix("AccountIngestionRunner-")
+                .build();
+    }
+
+    /**
+     * The ingestion requests are processed on this pool, in order per user, if
+     * {@code yolt.accounts-and-transactions.ingestion.key-ordered.enabled}.  See {@link AccountsAndTransactionsRequestConsumer}.
+     */
+    @Bean("ingestionRequestRunner")
+    public ThreadPoolTaskExecutor ingestionRequestRunner(TaskExecutorBuilder builder,
+                                                         @Value("${yolt.accounts-and-transactions.ingestion.key-ordered.max-threads:8}") int maxThreads) {
+        return builder
+                .allowCoreThreadTimeOut(true)
+                .corePoolSize(maxThreads)
+                .maxPoolSize(maxThreads)
+                .threadNamePrefix("IngestionRequestRunner-")
+                .build();
+    }
+
+    /**
+     * The pool on which passive strategies are evaluated, see {@link ShadowEvaluator}.  The pool has no queue, an
+     * evaluation is dropped if all threads are busy.
+     */
+    @Bean("shadowEvaluationRunner")
+    public ThreadPoolTaskExecutor shadowEvaluationRunner(TaskExecutorBuilder builder,
+                                                         @Value("${yolt.accounts-and-transactions.ingestion.shadow-evaluation.max-threads:2}") int maxThreads) {
+        return builder
+                .allowCoreThreadTimeOut(true)
+                .corePoolSize(maxThreads)
+                .maxPoolSize(maxThreads)
+                .queueCapacity(0)
+                .threadNamePrefix("ShadowEvaluationRunner-")
+                .build();
+    }
+
+    @Bean
+    public KeyOrderedExecutor<UUID> ingestionRequestExecutor(@Qualifier("ingestionRequestRunner") ThreadPoolTaskExecutor ingestionRequestRunner,
+                                                             @Value("${yolt.accounts-and-transactions.ingestion.key-ordered.max-pending:64}") int maxPending) {
+        return new KeyOrderedExecutor<>(ingestionRequestRunner, maxPending);
+    }
+
+    @Bean
+    CompletedOffsets ingestionRequestOffsets() {
+        return new CompletedOffsets();
+    }
+
+    /**
+     * The default listener container factory, except that the offsets are committed by the listener: the ingestion
+     * requests may be processed out of order, see {@link CompletedOffsets}.  The offsets of the revoked partitions
+     * are forgotten before the container commits the pending acknowledgments of a rebalance.
+     */
+    @Bean(INGESTION_REQUESTS_CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> ingestionRequestsContainerFactory(ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+                                                                                                    ConsumerFactory<Object, Object> consumerFactory,
+                                                                                                    CompletedOffsets ingestionRequestOffsets) {
+        var factory = new ConcurrentKafkaListenerContainerFactory<Object, Object>();
+        configurer.configure(factory, consumerFactory);
+        factory.getContainerProperties().setAckMode(AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                ingestionRequestOffsets.revoked(partitions.stream().map(TopicPartition::partition).toList());
+            }
+
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                ingestionRequestOffsets.revoked(partitions.stream().map(TopicPartition::partition).toList());
+            }
+        });
+        return factory;
+    }
+}
@@ -0,0 +1,90 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import lombok.NonNull;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on a shared pool, where the tasks with the same key run strictly one after the other in the order in which
+ * they were submitted, while the tasks of different keys run in parallel.
+ * <p>
+ * The tasks of a key are chained: a task is handed to the pool once the previous task of its key has completed
+ * (successfully or not).  Submitting never blocks, the executor is {@link #saturated()} once {@link #maxPending} tasks
+ * are submitted but not completed; it is up to the caller to stop submitting then (a Kafka listener pauses its
+ * partitions, see {@link AccountsAndTransactionsRequestConsumer}).
+ */
+public class KeyOrderedExecutor<K> {
+
+    private final Executor executor;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<K, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    public KeyOrderedExecutor(final @NonNull Executor executor, final int maxPending) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("max-pending must be at least 1, got " + maxPending);
+        }
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Run {@code task} after all previously submitted tasks with the same {@code key}.
+     *
+     * @return a future that completes when the task has completed, exceptionally if the task failed
+     */
+    public CompletableFuture<Void> execute(final @NonNull K key, final @NonNull Runnable task) {
+        pending.incrementAndGet();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        var next = new CompletableFuture<Void>();
+        var previous = tails.put(key, next);
+
+        // a failure of the previous task does not stop the next one
+        (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous.exceptionally(throwable -> null))
+                .thenRunAsync(withMdc(mdc, task), executor)
+                .whenComplete((ignored, throwable) -> {
+                    // the last task of a key cleans up after itself, unless another task was chained onto it in the meantime
+                    tails.remove(key, next);
+                    pending.decrementAndGet();
+                    if (throwable != null) {
+                        next.completeExceptionally(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+                    } else {
+                        next.complete(null);
+                    }
+                });
+        return next;
+    }
+
+    /**
+     * Whether {@link #maxPending} or more tasks are submitted but not completed.
+     */
+    public boolean saturated() {
+        return pending.get() >= maxPending;
+    }
+
+    /**
+     * The number of keys with a task that has not completed yet.
+     */
+    int activeKeys() {
+        return tails.size();
+    }
+
+    private static Runnable withMdc(final Map<String, String> mdc, final Runnable runnable) {
+        return () -> {
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            try {
+                runnable.run();
+            } finally {
+                MDC.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Remembers the stored transactions that the active strategy loaded, so a passive strategy can be evaluated against the
+ * same stored transactions without reading them again (see {@link ShadowEvaluator}).  Only used for a provider with a
+ * passive strategy.
+ */
+@RequiredArgsConstructor
+class RecordingTransactionLoader implements TransactionLoader {
+
+    private final TransactionLoader delegate;
+    private volatile Recording recording;
+
+    @Override
+    public List<Transaction> load(final @NonNull UUID userId, final @NonNull UUID accountId, final @NonNull LocalDate earliestDateInclusive) {
+        var transactions = delegate.load(userId, accountId, earliestDateInclusive);
+        recording = new Recording(userId, accountId, earliestDateInclusive, transactions);
+        return transactions;
+    }
+
+    /**
+     * A loader that only serves the recorded transactions, so the passive strategy sees exactly the snapshot the active
+     * strategy worked on.  Reading the transactions again could see the writes of the active strategy (or of a later
+     * ingestion), and report differences that are not there.  A window that was not recorded fails the evaluation.
+     */
+    TransactionLoader replaying() {
+        return (userId, accountId, earliestDateInclusive) -> {
+            var recorded = recording;
+            if (recorded == null || !recorded.covers(userId, accountId, earliestDateInclusive)) {
+                throw new IllegalStateException("The stored transactions of account " + accountId + " from " + earliestDateInclusive + " were not loaded by the active strategy.");
+            }
+            return recorded.transactions.stream()
+                    .filter(transaction -> !transaction.getDate().isBefore(earliestDateInclusive))
+                    .collect(toList());
+        };
+    }
+
+    private record Recording(UUID userId, UUID accountId, LocalDate earliestDateInclusive, List<Transaction> transactions) {
+
+        boolean covers(final UUID userId, final UUID accountId, final LocalDate earliestDateInclusive) {
+            return this.userId.equals(userId)
+                    && this.accountId.equals(accountId)
+                    && !earliestDateInclusive.isBefore(this.earliestDateInclusive);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction.InstructionType;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics.ShadowEvaluationResult;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates passive (TEST mode) strategies off the ingestion path, see {@link ActivePassiveTransactionInsertionStrategy}.
+ * <p>
+ * A sample of the accounts of a provider is evaluated (yolt.accounts-and-transactions.ingestion.shadow-evaluation.sampling-rate,
+ * overridden per provider with ...provider-sampling-rates) on the pool shadowEvaluationRunner.  The pool has no queue:
+ * if all threads are busy the evaluation is dropped.  The differences between the active and the passive instruction
+ * are recorded as metrics.  The evaluation logs with the MDC of the ingestion that submitted it.
+ */
+@Slf4j
+@Component
+public class ShadowEvaluator {
+
+    private final Executor executor;
+    private final AccountsAndTransactionMetrics metrics;
+    private final double samplingRate;
+    private final Map<String, Double> providerSamplingRates;
+
+    public ShadowEvaluator(@Qualifier("shadowEvaluationRunner") final Executor executor,
+                           final AccountsAndTransactionMetrics metrics,
+                           @Value("${yolt.accounts-and-transactions.ingestion.shadow-evaluation.sampling-rate:1.0}") final double samplingRate,
+                           @Value("#{${yolt.accounts-and-transactions.ingestion.shadow-evaluation.provider-sampling-rates:{:}}}") final Map<String, Double> providerSamplingRates) {
+        this.executor = executor;
+        this.metrics = metrics;
+        this.samplingRate = samplingRate;
+        this.providerSamplingRates = Map.copyOf(providerSamplingRates);
+    }
+
+    /**
+     * Evaluate {@code passive} in the background, if the account is sampled, and compare it with the {@code active}
+     * instruction that is persisted.
+     */
+    public void evaluate(final @NonNull String provider, final @NonNull UUID accountId, final @NonNull Instruction active, final @NonNull Supplier<Instruction> passive) {
+        if (ThreadLocalRandom.current().nextDouble() >= providerSamplingRates.getOrDefault(provider, samplingRate)) {
+            metrics.incrementShadowEvaluationResult(provider, ShadowEvaluationResult.NOT_SAMPLED);
+            return;
+        }
+
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        try {
+            executor.execute(() -> {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                try {
+                    compare(provider, accountId, active, passive);
+                } finally {
+                    MDC.clear();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            metrics.incrementShadowEvaluationResult(provider, ShadowEvaluationResult.DROPPED);
+        }
+    }
+
+    private void compare(final String provider, final UUID accountId, final Instruction active, final Supplier<Instruction> passive) {
+        Map<InstructionType, Integer> differences;
+        try {
+            differences = differences(active, passive.get());
+        } catch (Exception e) {
+            log.info("Failure while running passive transaction insertion strategy. This is not a production error.", e);
+            metrics.incrementShadowEvaluationResult(provider, ShadowEvaluationResult.FAILED);
+            return;
+        }
+
+        differences.forEach((type, count) -> metrics.measureShadowEvaluationDifference(provider, type, count));
+        if (differences.values().stream().allMatch(count -> count == 0)) {
+            metrics.incrementShadowEvaluationResult(provider, ShadowEvaluationResult.MATCH);
+        } else {
+            log.info("The passive strategy for provider {} differs from the active strategy for account {}: {}", provider, accountId, differences);
+            metrics.incrementShadowEvaluationResult(provider, ShadowEvaluationResult.MISMATCH);
+        }
+    }
+
+    /**
+     * The number of transactions per {@link InstructionType} that are in one instruction, but not in the other.  The
+     * transactions to insert and update are compared on the upstream transaction (their ids are generated), the
+     * transactions to delete on their id.
+     */
+    static Map<InstructionType, Integer> differences(final @NonNull Instruction active, final @NonNull Instruction passive) {
+        var differences = new EnumMap<InstructionType, Integer>(InstructionType.class);
+        differences.put(InstructionType.DELETE, symmetricDifference(
+                active.getTransactionsToDelete().stream().map(Transaction::getId).toList(),
+                passive.getTransactionsToDelete().stream().map(Transaction::getId).toList()));
+        differences.put(InstructionType.INSERT, symmetricDifference(
+                active.getTransactionsToInsert().stream().map(ProviderTransactionWithId::getProviderTransactionDTO).toList(),
+                passive.getTransactionsToInsert().stream().map(ProviderTransactionWithId::getProviderTransactionDTO).toList()));
+        differences.put(InstructionType.UPDATE, symmetricDifference(
+                active.getTransactionsToUpdate().stream().map(ProviderTransactionWithId::getProviderTransactionDTO).toList(),
+                passive.getTransactionsToUpdate().stream().map(ProviderTransactionWithId::getProviderTransactionDTO).toList()));
+        return differences;
+    }
+
+    private static <T> int symmetricDifference(final Collection<T> left, final Collection<T> right) {
+        Multiset<T> leftSet = HashMultiset.create(left);
+        Multiset<T> rightSet = HashMultiset.create(right);
+        return Multisets.difference(leftSet, rightSet).size() + Multisets.difference(rightSet, leftSet).size();
+    }
+}
@@ -0,0 +1,177 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An {@link AccountsAndTransactionsRequestDTO} that is read with Jackson's streaming API: the {@link #accounts()} are
+ * deserialized one at a time while they are consumed, instead of the whole request up front.
+ * <p>
+ * The accounts can only be streamed if the other fields of the request precede {@code ingestionAccounts} in the JSON
+ * document, which is the order in which {@link AccountsAndTransactionsRequestDTO} is serialized.  Otherwise the
+ * accounts are buffered as JSON tokens until the other fields are read.
+ */
+@Slf4j
+class StreamingIngestionRequest implements Closeable {
+
+    private static final String ACTIVITY_ID = "activityId";
+    private static final String USER_SITE_ID = "userSiteId";
+    private static final String SITE_ID = "siteId";
+    private static final String INGESTION_ACCOUNTS = "ingestionAccounts";
+    private static final Set<String> HEADER_FIELDS = Set.of(ACTIVITY_ID, USER_SITE_ID, SITE_ID);
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private final Set<String> headerFieldsRead = new HashSet<>();
+
+    @Getter
+    private UUID activityId;
+    @Getter
+    private UUID userSiteId;
+    @Getter
+    private UUID siteId;
+    /**
+     * The number of transactions of the accounts that were read so far.
+     */
+    @Getter
+    private long transactionCount;
+
+    /**
+     * Positioned at the start of the array of accounts, {@code null} if the request has no accounts.
+     */
+    private JsonParser accountsParser;
+    private boolean accountsRequested;
+
+    private StreamingIngestionRequest(final ObjectMapper objectMapper, final JsonParser parser) {
+        this.objectMapper = objectMapper;
+        this.parser = parser;
+    }
+
+    /**
+     * Read the request up to the accounts.
+     */
+    static StreamingIngestionRequest read(final @NonNull ObjectMapper objectMapper, final @NonNull InputStream inputStream) throws IOException {
+        var request = new StreamingIngestionRequest(objectMapper, objectMapper.getFactory().createParser(inputStream));
+        try {
+            request.readUpToAccounts();
+        } catch (IOException | RuntimeException e) {
+            request.close();
+            throw e;
+        }
+        return request;
+    }
+
+    /**
+     * The accounts of the request, deserialized one at a time.  Can only be iterated once.
+     *
+     * @throws UncheckedIOException from {@link Iterator#hasNext()} if an account cannot be read
+     */
+    Iterator<AccountFromProviders> accounts() {
+        if (accountsRequested) {
+            throw new IllegalStateException("The accounts of a streaming ingestion request can only be iterated once.");
+        }
+        accountsRequested = true;
+
+        return new Iterator<>() {
+            private AccountFromProviders next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && accountsParser != null) {
+                    next = readNextAccount();
+                }
+                return next != null;
+            }
+
+            @Override
+            public AccountFromProviders next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var account = next;
+                next = null;
+                return account;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (accountsParser != null && accountsParser != parser) {
+            accountsParser.close();
+        }
+        parser.close();
+    }
+
+    private void readUpToAccounts() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected an ingestion request object.");
+        }
+
+        TokenBuffer bufferedAccounts = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case ACTIVITY_ID -> activityId = readHeaderField(field);
+                case USER_SITE_ID -> userSiteId = readHeaderField(field);
+                case SITE_ID -> siteId = readHeaderField(field);
+                case INGESTION_ACCOUNTS -> {
+                    if (value == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
+                    if (headerFieldsRead.containsAll(HEADER_FIELDS)) {
+                        accountsParser = parser;
+                        return;
+                    }
+                    log.warn("The accounts of a streaming ingestion request precede (some of) the fields {}, they are buffered.", HEADER_FIELDS);
+                    bufferedAccounts = new TokenBuffer(parser);
+                    bufferedAccounts.copyCurrentStructure(parser);
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (bufferedAccounts != null) {
+            accountsParser = bufferedAccounts.asParser(objectMapper);
+            accountsParser.nextToken();
+        }
+    }
+
+    private UUID readHeaderField(final String field) throws IOException {
+        headerFieldsRead.add(field);
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : UUID.fromString(parser.getValueAsString());
+    }
+
+    private AccountFromProviders readNextAccount() {
+        try {
+            if (accountsParser.nextToken() != JsonToken.START_OBJECT) {
+                accountsParser = null;
+                return null;
+            }
+            var account = objectMapper.readValue(accountsParser, AccountFromProviders.class);
+            if (account.getTransactions() != null) {
+                transactionCount += account.getTransactions().size();
+            }
+            return account;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.yolt.accountsandtransactions.concurrency.Futures;
+import com.yolt.accountsandtransactions.datascience.DataScienceCassandraSession;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes the transactions of an ingested account to the datascience and the accounts_and_transactions keyspace
+ * asynchronously.
+ * <p>
+ * Every (batch) statement is issued with {@link Session#executeAsync(Statement)} as soon as it is submitted, so the
+ * round-trips of both keyspaces overlap instead of adding up.  At most {@link #maxInFlight} statements of a single
+ * {@link Writes} are outstanding, submitting more blocks the calling thread until a statement completes.
+ * <p>
+ * A transaction that is deleted and inserted again in the same ingestion has the same primary key in both
+ * statements.  Therefore, upserts to a keyspace are only issued after all deletes to that keyspace have completed.
+ */
+@Component
+public class TransactionWritePipeline {
+
+    public enum Keyspace {
+        DATASCIENCE,
+        ACCOUNTS_AND_TRANSACTIONS
+    }
+
+    public enum Operation {
+        DELETE,
+        UPSERT
+    }
+
+    private final Map<Keyspace, Session> sessions;
+    private final AccountsAndTransactionMetrics metrics;
+    private final int maxInFlight;
+
+    public TransactionWritePipeline(Session session,
+                                    DataScienceCassandraSession dataScienceCassandraSession,
+                                    AccountsAndTransactionMetrics metrics,
+                                    @Value("${yolt.accounts-and-transactions.ingestion.max-in-flight-writes:8}") int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("max-in-flight-writes must be at least 1, got " + maxInFlight);
+        }
+        this.sessions = new EnumMap<>(Keyspace.class);
+        this.sessions.put(Keyspace.ACCOUNTS_AND_TRANSACTIONS, session);
+        this.sessions.put(Keyspace.DATASCIENCE, dataScienceCassandraSession.getSession());
+        this.metrics = metrics;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Open a new unit of writes, typically for the {@link TransactionInsertionStrategy.Instruction} of a single account.
+     */
+    public Writes open() {
+        return new Writes();
+    }
+
+    /**
+     * The writes of a single account.  Not thread-safe, a {@link Writes} should be used by the thread that opened it.
+     */
+    public final class Writes {
+        private final Semaphore window = new Semaphore(maxInFlight);
+        private final Map<Keyspace, List<CompletableFuture<Void>>> deletes = new EnumMap<>(Keyspace.class);
+        private final List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+        private final List<Runnable> afterCompletion = new ArrayList<>();
+
+        private Writes() {
+        }
+
+        public void delete(final @NonNull Keyspace keyspace, final @NonNull List<? extends Statement> statements) {
+            var issued = issue(keyspace, Operation.DELETE, statements);
+            deletes.computeIfAbsent(keyspace, k -> new ArrayList<>()).addAll(issued);
+        }
+
+        public void upsert(final @NonNull Keyspace keyspace, final @NonNull List<? extends Statement> statements) {
+            if (statements.isEmpty()) {
+                return;
+            }
+            // delete-before-insert: wait for the deletes to this keyspace, the other keyspace keeps on going.
+            deletes.getOrDefault(keyspace, List.of()).forEach(TransactionWritePipeline::join);
+            issue(keyspace, Operation.UPSERT, statements);
+        }
+
+        /**
+         * Run {@code action} on the calling thread of {@link #await()}, once all writes have completed successfully.
+         */
+        public void afterCompletion(final @NonNull Runnable action) {
+            afterCompletion.add(action);
+        }
+
+        /**
+         * Wait for all the submitted writes to complete.
+         *
+         * @throws RuntimeException the failure of the first write that failed, the after completion actions are not run in that case
+         */
+        public void await() {
+            inFlight.forEach(TransactionWritePipeline::join);
+            afterCompletion.forEach(Runnable::run);
+        }
+
+        private List<CompletableFuture<Void>> issue(final Keyspace keyspace, final Operation operation, final List<? extends Statement> statements) {
+            var session = sessions.get(keyspace);
+            var issued = new ArrayList<CompletableFuture<Void>>(statements.size());
+            for (Statement statement : statements) {
+                acquire();
+                var start = System.nanoTime();
+                CompletableFuture<Void> write;
+                try {
+                    write = Futures.from(session.executeAsync(statement))
+                            .whenComplete((resultSet, throwable) -> {
+                                window.release();
+                                metrics.measureTransactionWriteLatency(keyspace, operation, Duration.ofNanos(System.nanoTime() - start));
+                            })
+                            .thenApply(resultSet -> null);
+                } catch (RuntimeException e) {
+                    window.release();
+                    throw e;
+                }
+                issued.add(write);
+                inFlight.add(write);
+            }
+            return issued;
+        }
+
+        private void acquire() {
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an in-flight write to complete.", e);
+            }
+        }
+    }
+
+    private static void join(final CompletableFuture<Void> write) {
+        try {
+            write.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
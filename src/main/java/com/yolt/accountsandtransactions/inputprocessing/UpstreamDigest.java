@@ -0,0 +1,73 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.NonNull;
+import lombok.Value;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An order-independent digest of the transactions of an upstream account, together with the window (the first and the
+ * last date) that the transactions cover.
+ * <p>
+ * Every transaction is serialized in a normalized form (properties and map entries in alphabetical order) and hashed
+ * into 128 bits.  The hashes are summed, so two payloads with the same transactions in a different order have the same
+ * digest, while a transaction that occurs twice is not cancelled out.
+ */
+@Value
+class UpstreamDigest {
+
+    @NonNull
+    String digest;
+    @Nullable
+    LocalDate windowStart;
+    @Nullable
+    LocalDate windowEnd;
+
+    /**
+     * @param normalizedWriter a writer that serializes the properties and map entries of a transaction in a fixed order
+     */
+    static UpstreamDigest of(final @NonNull ObjectWriter normalizedWriter, final @NonNull List<ProviderTransactionDTO> transactions) {
+        long high = 0;
+        long low = 0;
+        LocalDate windowStart = null;
+        LocalDate windowEnd = null;
+
+        for (ProviderTransactionDTO transaction : transactions) {
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            try (OutputStream out = Funnels.asOutputStream(hasher)) {
+                normalizedWriter.writeValue(out, transaction);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            ByteBuffer hash = ByteBuffer.wrap(hasher.hash().asBytes());
+            high += hash.getLong();
+            low += hash.getLong();
+
+            if (transaction.getDateTime() != null) {
+                LocalDate date = transaction.getDateTime().toLocalDate();
+                windowStart = windowStart == null || date.isBefore(windowStart) ? date : windowStart;
+                windowEnd = windowEnd == null || date.isAfter(windowEnd) ? date : windowEnd;
+            }
+        }
+
+        return new UpstreamDigest(String.format("%d:%016x%016x", transactions.size(), high, low), windowStart, windowEnd);
+    }
+
+    boolean matches(final @NonNull AccountUpstreamDigest stored) {
+        return digest.equals(stored.getDigest())
+                && Objects.equals(windowStart, stored.getWindowStart())
+                && Objects.equals(windowEnd, stored.getWindowEnd());
+    }
+}
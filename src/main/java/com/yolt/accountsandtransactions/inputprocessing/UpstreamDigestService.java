@@ -0,0 +1,91 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics.UpstreamDigestResult;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Detects refreshes that deliver exactly the same transactions for an account as the previous refresh, see {@link UpstreamDigest}.
+ * For such an account there is nothing to reconcile or write, only its lastDataFetchTime is updated.
+ * <p>
+ * Disabled unless yolt.accounts-and-transactions.ingestion.upstream-digest.enabled is set, while disabled every account
+ * is reconciled in full.
+ */
+@Service
+@Slf4j
+public class UpstreamDigestService {
+
+    private final AccountUpstreamDigestRepository repository;
+    private final AccountsAndTransactionMetrics metrics;
+    private final ObjectWriter normalizedWriter;
+    private final boolean enabled;
+
+    public UpstreamDigestService(final AccountUpstreamDigestRepository repository,
+                                 final AccountsAndTransactionMetrics metrics,
+                                 final ObjectMapper objectMapper,
+                                 @Value("${yolt.accounts-and-transactions.ingestion.upstream-digest.enabled:false}") final boolean enabled) {
+        this.repository = repository;
+        this.metrics = metrics;
+        this.normalizedWriter = objectMapper.copy()
+                .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+                .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+                .writer();
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the digest of the transactions of the account, empty if digests are disabled
+     */
+    Optional<UpstreamDigest> digest(final @NonNull AccountFromProviders upstreamAccount) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.of(UpstreamDigest.of(normalizedWriter, upstreamAccount.getTransactions()));
+    }
+
+    /**
+     * @return true if the transactions of the account are the same as the last time they were reconciled
+     */
+    boolean isUnchanged(final @NonNull UUID userId, final @NonNull UUID accountId, final @NonNull String provider, final @NonNull UpstreamDigest digest) {
+        var result = repository.find(userId, accountId)
+                .map(stored -> digest.matches(stored) ? UpstreamDigestResult.UNCHANGED : UpstreamDigestResult.CHANGED)
+                .orElse(UpstreamDigestResult.UNKNOWN);
+        metrics.incrementUpstreamDigestResult(provider, result);
+        return result == UpstreamDigestResult.UNCHANGED;
+    }
+
+    /**
+     * Remember the digest of the transactions of the account, after they have been reconciled and written.
+     */
+    void save(final @NonNull UUID userId, final @NonNull UUID accountId, final @NonNull UpstreamDigest digest) {
+        repository.persist(AccountUpstreamDigest.builder()
+                .userId(userId)
+                .accountId(accountId)
+                .digest(digest.getDigest())
+                .windowStart(digest.getWindowStart())
+                .windowEnd(digest.getWindowEnd())
+                .build());
+    }
+
+    /**
+     * Forget the digests of the accounts, their transactions were changed outside of an ingestion.  The next refresh of
+     * these accounts is reconciled in full, even if it delivers the same transactions.  Also done while digests are
+     * disabled, a digest may be left over from when they were enabled.
+     */
+    public void delete(final @NonNull UUID userId, final @NonNull List<UUID> accountIds) {
+        if (!accountIds.isEmpty()) {
+            repository.delete(userId, accountIds);
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package com.yolt.accountsandtransactions.inputprocessing.matching;
 
-import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 import org.springframework.lang.Nullable;
 
+import java.util.Objects;
+
 /**
  * A structure which defines an {@link Attribute} of type <code>A</code> containing a {@link Attribute#name} and {@link Attribute#value}
  * <p/>
@@ -20,7 +21,6 @@ import org.springframework.lang.Nullable;
  * @param <A> the type of the attribute value
  */
 @ToString
-@EqualsAndHashCode
 @RequiredArgsConstructor
 public
 class Attribute<A> {
@@ -28,4 +28,29 @@ class Attribute<A> {
     public final String name;
     @Nullable
     public final A value;
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof Attribute<?> other
+                && name.equals(other.name)
+                && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode(name, value);
+    }
+
+    /**
+     * The hashcode of an {@link Attribute} with the given name and value without instantiating it.
+     * <p/>
+     * The {@link AttributeKey}s rely on this to compute the hashcode of a set of attributes
+     * (which is defined as the sum of the hashcode of its elements; see {@link java.util.Set#hashCode()}).
+     */
+    static int hashCode(final String name, final @Nullable Object value) {
+        return (59 + name.hashCode()) * 59 + (value == null ? 43 : value.hashCode());
+    }
 }
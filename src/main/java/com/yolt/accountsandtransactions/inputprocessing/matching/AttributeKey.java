@@ -0,0 +1,196 @@
+package com.yolt.accountsandtransactions.inputprocessing.matching;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The functional key of a transaction as determined by the {@link AttributeSelector}s of a matcher.
+ * <p/>
+ * Keys are compared by the attributes they represent; two keys are equal if and only if their {@link #attributes()} are equal
+ * and the {@link #hashCode()} is equal to the hashcode of {@link #attributes()}.
+ * The latter makes sure that the iteration order of hash based collections keyed by {@link AttributeKey}s is the same
+ * as that of collections keyed by the attributes themselves.
+ */
+interface AttributeKey {
+
+    /**
+     * The attributes this key represents.
+     */
+    Set<? extends Attribute<?>> attributes();
+
+    /**
+     * Indicates if all the attributes can be used in the matching process.
+     */
+    boolean isUsable();
+
+    /**
+     * A key backed by the {@link Set} of attributes as returned by {@link AttributeSelector#selectAttribute(GeneralizedTransaction)}.
+     */
+    @RequiredArgsConstructor
+    final class SetAttributeKey implements AttributeKey {
+        @NonNull
+        private final Set<? extends Attribute<?>> attributes;
+        private final boolean usable;
+
+        @Override
+        public Set<? extends Attribute<?>> attributes() {
+            return attributes;
+        }
+
+        @Override
+        public boolean isUsable() {
+            return usable;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof SetAttributeKey other && attributes.equals(other.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return attributes.hashCode();
+        }
+    }
+
+    /**
+     * A fixed-width key of attribute values as produced by a {@link AttributeKeyExtractor.CompiledAttributeKeyExtractor}.
+     * <p/>
+     * The attribute names are shared by all keys of the same extractor, only the values are stored per key.
+     * Besides the (set compatible) hashcode a 128-bit fingerprint of the values is computed up front (Murmur3 of the
+     * values themselves, not of their 32-bit hashcodes), comparing two keys only falls back to comparing the values
+     * themselves if all hashes collide (which, for distinct keys, is practically never).
+     */
+    final class CompositeAttributeKey implements AttributeKey {
+        private final String[] names;
+        private final Object[] values;
+        private final boolean usable;
+        private final int hashCode;
+        private final long fingerprint1;
+        private final long fingerprint2;
+
+        CompositeAttributeKey(final String[] names, final Object[] values, final boolean usable) {
+            this.names = names;
+            this.values = values;
+            this.usable = usable;
+
+            int setHashCode = 0;
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            for (int i = 0; i < values.length; i++) {
+                setHashCode += Attribute.hashCode(names[i], values[i]);
+                putValue(hasher, values[i]);
+            }
+            ByteBuffer fingerprint = ByteBuffer.wrap(hasher.hash().asBytes());
+            this.hashCode = setHashCode;
+            this.fingerprint1 = fingerprint.getLong();
+            this.fingerprint2 = fingerprint.getLong();
+        }
+
+        @Override
+        public Set<? extends Attribute<?>> attributes() {
+            return new AttributeSetView();
+        }
+
+        @Override
+        public boolean isUsable() {
+            return usable;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            return o instanceof CompositeAttributeKey other
+                    && hashCode == other.hashCode
+                    && fingerprint1 == other.fingerprint1
+                    && fingerprint2 == other.fingerprint2
+                    && Arrays.equals(names, other.names)
+                    && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /**
+         * Equal values are put in the same way.  The values are the plain values of a {@link GeneralizedTransaction}
+         * (strings, numbers, dates, instants and enums), of which the string form is consistent with equals.  Every value
+         * is tagged and length-prefixed, so the values of a key cannot run into each other.
+         */
+        private static void putValue(final Hasher hasher, final Object value) {
+            if (value == null) {
+                hasher.putByte((byte) 0);
+            } else if (value instanceof Long number) {
+                hasher.putByte((byte) 1).putLong(number);
+            } else if (value instanceof String string) {
+                hasher.putByte((byte) 2).putInt(string.length()).putUnencodedChars(string);
+            } else {
+                var string = value.toString();
+                hasher.putByte((byte) 3).putInt(string.length()).putUnencodedChars(string);
+            }
+        }
+
+        /**
+         * An immutable {@link Set} view on the attributes of this key, the {@link Attribute}s are materialized on iteration.
+         */
+        private final class AttributeSetView extends AbstractSet<Attribute<?>> {
+
+            @Override
+            public Iterator<Attribute<?>> iterator() {
+                return new Iterator<>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    public Attribute<?> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        var attribute = new Attribute<>(names[next], values[next]);
+                        next++;
+                        return attribute;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+
+            @Override
+            public boolean contains(final Object o) {
+                if (!(o instanceof Attribute<?> attribute)) {
+                    return false;
+                }
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].equals(attribute.name)) {
+                        return Objects.equals(values[i], attribute.value);
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public int hashCode() {
+                return hashCode;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.yolt.accountsandtransactions.inputprocessing.matching;
+
+import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeKey.CompositeAttributeKey;
+import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeKey.SetAttributeKey;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.yolt.accountsandtransactions.inputprocessing.matching.AttributeSelector.Result.isUsable;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Extracts the {@link AttributeKey} of a {@link GeneralizedTransaction} for a list of {@link AttributeSelector}s.
+ * <p/>
+ * Use {@link #compile(List)} to obtain an extractor; if every selector can be compiled (see {@link AttributeSelector#compile()})
+ * and every attribute name is unique, the extractor produces {@link CompositeAttributeKey}s.
+ * Otherwise, it falls back to the (generic) {@link Set} based keys.
+ */
+abstract class AttributeKeyExtractor {
+
+    abstract AttributeKey extract(final @NonNull GeneralizedTransaction transaction);
+
+    static AttributeKeyExtractor compile(final @NonNull List<AttributeSelector<?>> selectors) {
+        var compiled = selectors.stream()
+                .map(AttributeSelector::compile)
+                .collect(toList());
+
+        if (compiled.stream().allMatch(Optional::isPresent)) {
+            var compiledSelectors = compiled.stream()
+                    .map(Optional::get)
+                    .toArray(CompiledAttributeSelector[]::new);
+
+            var names = new HashSet<String>();
+            for (CompiledAttributeSelector selector : compiledSelectors) {
+                if (!names.add(selector.name)) {
+                    // two selectors on the same attribute collapse into one in a Set based key.
+                    return new GenericAttributeKeyExtractor(selectors);
+                }
+            }
+            return new CompiledAttributeKeyExtractor(compiledSelectors);
+        }
+        return new GenericAttributeKeyExtractor(selectors);
+    }
+
+    /**
+     * Produces {@link CompositeAttributeKey}s from a fixed list of {@link CompiledAttributeSelector}s.
+     */
+    static final class CompiledAttributeKeyExtractor extends AttributeKeyExtractor {
+        private final CompiledAttributeSelector[] selectors;
+        private final String[] names;
+
+        CompiledAttributeKeyExtractor(final CompiledAttributeSelector[] selectors) {
+            this.selectors = selectors;
+            this.names = new String[selectors.length];
+            for (int i = 0; i < selectors.length; i++) {
+                names[i] = selectors[i].name;
+            }
+        }
+
+        @Override
+        AttributeKey extract(final @NonNull GeneralizedTransaction transaction) {
+            var values = new Object[selectors.length];
+            var usable = true;
+            for (int i = 0; i < selectors.length; i++) {
+                var selector = selectors[i];
+                var raw = selector.extract(transaction);
+                usable &= selector.isUsable(raw);
+                values[i] = selector.value(raw);
+            }
+            return new CompositeAttributeKey(names, values, usable);
+        }
+    }
+
+    /**
+     * Produces {@link SetAttributeKey}s using {@link AttributeSelector#selectAttribute(GeneralizedTransaction)}.
+     */
+    @RequiredArgsConstructor
+    static final class GenericAttributeKeyExtractor extends AttributeKeyExtractor {
+        @NonNull
+        private final List<AttributeSelector<?>> selectors;
+
+        @Override
+        AttributeKey extract(final @NonNull GeneralizedTransaction transaction) {
+            Set<? extends AttributeSelector.Result<?>> results = selectors.stream()
+                    .flatMap(attributeSelector -> attributeSelector.selectAttribute(transaction).stream())
+                    .collect(toSet());
+
+            Set<? extends Attribute<?>> attributes = results.stream()
+                    .map(result -> result.attribute)
+                    .collect(toSet());
+
+            return new SetAttributeKey(attributes, isUsable(results));
+        }
+    }
+}
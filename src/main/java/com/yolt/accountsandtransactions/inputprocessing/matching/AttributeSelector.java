@@ -1,11 +1,13 @@
 package com.yolt.accountsandtransactions.inputprocessing.matching;
 
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.AttributeExtractor;
+import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.NamedAttributeExtractor;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.util.Assert;
 
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -40,6 +42,17 @@ public interface AttributeSelector<A> {
      */
     Set<Result<A>> selectAttribute(final GeneralizedTransaction generalizedTransaction);
 
+    /**
+     * Compile this selector into a {@link CompiledAttributeSelector} which yields exactly the same attribute and usability
+     * as {@link #selectAttribute(GeneralizedTransaction)} without the intermediate allocations.
+     * <p/>
+     * Selectors which cannot be compiled return {@link Optional#empty()}; the matcher then falls back to
+     * {@link #selectAttribute(GeneralizedTransaction)}.
+     */
+    default Optional<CompiledAttributeSelector> compile() {
+        return Optional.empty();
+    }
+
     @EqualsAndHashCode
     @RequiredArgsConstructor
     class Result<A> {
@@ -75,5 +88,13 @@ public interface AttributeSelector<A> {
         public Set<Result<A>> selectAttribute(GeneralizedTransaction transaction) {
             return Set.of(new Result<>(attributeExtractor().extract(transaction), true));
         }
+
+        @Override
+        public Optional<CompiledAttributeSelector> compile() {
+            if (attributeExtractor instanceof NamedAttributeExtractor<A> named) {
+                return Optional.of(CompiledAttributeSelector.identity(named.name, named.value));
+            }
+            return Optional.empty();
+        }
     }
 }
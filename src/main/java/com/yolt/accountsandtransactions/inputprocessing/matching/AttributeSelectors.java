@@ -8,6 +8,8 @@ import com.yolt.accountsandtransactions.inputprocessing.matching.decorators.NotP
 import java.time.Instant;
 import java.time.LocalDate;
 
+import static com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.AttributeExtractor.named;
+
 /**
  * {@link AttributeSelector} companion object.
  */
@@ -26,35 +28,35 @@ public class AttributeSelectors {
     }
 
     public static final IdentityAttributeSelector<String> EXTERNAL_ID
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("external-id", transaction.getExternalId()));
+            = new IdentityAttributeSelector<>(named("external-id", GeneralizedTransaction::getExternalId));
 
     public static final IdentityAttributeSelector<String> END_TO_END_ID
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("end-to-end-id", transaction.getEndToEndId()));
+            = new IdentityAttributeSelector<>(named("end-to-end-id", GeneralizedTransaction::getEndToEndId));
 
     public static final IdentityAttributeSelector<Long> AMOUNT_IN_CENTS
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("amount", transaction.getAmountInCents()));
+            = new IdentityAttributeSelector<>(named("amount", GeneralizedTransaction::getAmountInCents));
 
     public static final IdentityAttributeSelector<LocalDate> DATE
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("date", transaction.getDate()));
+            = new IdentityAttributeSelector<>(named("date", GeneralizedTransaction::getDate));
 
     public static final IdentityAttributeSelector<LocalDate> BOOKING_DATE
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("booking-date", transaction.getBookingDate()));
+            = new IdentityAttributeSelector<>(named("booking-date", GeneralizedTransaction::getBookingDate));
 
     public static final IdentityAttributeSelector<Instant> TIMESTAMP
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("timestamp", transaction.getTimestamp()));
+            = new IdentityAttributeSelector<>(named("timestamp", GeneralizedTransaction::getTimestamp));
 
     public static final IdentityAttributeSelector<String> CREDITOR_NAME
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("creditor-name", transaction.getCreditorName()));
+            = new IdentityAttributeSelector<>(named("creditor-name", GeneralizedTransaction::getCreditorName));
 
     public static final IdentityAttributeSelector<String> CREDITOR_ACCOUNT_NR
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("creditor-account-nr", transaction.getCreditorAccountNr()));
+            = new IdentityAttributeSelector<>(named("creditor-account-nr", GeneralizedTransaction::getCreditorAccountNr));
 
     public static final IdentityAttributeSelector<String> DEBTOR_NAME
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("debtor-name", transaction.getDebtorName()));
+            = new IdentityAttributeSelector<>(named("debtor-name", GeneralizedTransaction::getDebtorName));
 
     public static final IdentityAttributeSelector<String> DEBTOR_ACCOUNT_NR
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("debtor-account-nr", transaction.getDebtorAccountNr()));
+            = new IdentityAttributeSelector<>(named("debtor-account-nr", GeneralizedTransaction::getDebtorAccountNr));
 
     public static final IdentityAttributeSelector<String> DESCRIPTION
-            = new IdentityAttributeSelector<>(transaction -> new Attribute<>("description", transaction.getDescription()));
+            = new IdentityAttributeSelector<>(named("description", GeneralizedTransaction::getDescription));
 }
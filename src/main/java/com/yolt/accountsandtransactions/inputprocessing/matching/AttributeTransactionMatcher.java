@@ -9,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.util.Assert;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
@@ -38,6 +39,34 @@ public interface AttributeTransactionMatcher {
     interface AttributeExtractor<A> {
 
         Attribute<A> extract(final @NonNull GeneralizedTransaction upstreamTransaction);
+
+        /**
+         * Create an {@link AttributeExtractor} with a fixed attribute name.
+         * <p/>
+         * Prefer this over a lambda; an extractor with a known name can be compiled into an {@link AttributeKeyExtractor}
+         * which extracts the attribute values without allocating intermediate {@link Attribute}s.
+         */
+        static <A> AttributeExtractor<A> named(final @NonNull String name, final @NonNull Function<GeneralizedTransaction, A> value) {
+            return new NamedAttributeExtractor<>(name, value);
+        }
+    }
+
+    /**
+     * An {@link AttributeExtractor} of which the attribute name is known up front.
+     *
+     * @param <A> the type of the attribute value
+     */
+    @RequiredArgsConstructor
+    final class NamedAttributeExtractor<A> implements AttributeExtractor<A> {
+        @NonNull
+        public final String name;
+        @NonNull
+        public final Function<GeneralizedTransaction, A> value;
+
+        @Override
+        public Attribute<A> extract(final @NonNull GeneralizedTransaction transaction) {
+            return new Attribute<>(name, value.apply(transaction));
+        }
     }
 
     interface TransactionsExtractable {
@@ -0,0 +1,76 @@
+package com.yolt.accountsandtransactions.inputprocessing.matching;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * The compiled form of an {@link AttributeSelector} (chain).
+ * <p/>
+ * An {@link AttributeSelector} returns a {@link java.util.Set} of {@link AttributeSelector.Result}s wrapping freshly extracted
+ * {@link Attribute}s, the compiled form splits this into three plain functions on the <b>raw</b> value as extracted
+ * from the transaction:
+ * <ul>
+ *     <li><code>extractor</code>: takes the raw value from the transaction (once per transaction)</li>
+ *     <li><code>usable</code>: determines if the attribute can be used in matching</li>
+ *     <li><code>value</code>: determines the value of the attribute used in matching</li>
+ * </ul>
+ * Decorators compile themselves by wrapping the compiled form of the selector they decorate,
+ * see {@link AttributeSelector#compile()}.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CompiledAttributeSelector {
+
+    @NonNull
+    final String name;
+    @NonNull
+    private final Function<GeneralizedTransaction, ?> extractor;
+    @NonNull
+    private final Predicate<Object> usable;
+    @NonNull
+    private final UnaryOperator<Object> value;
+
+    /**
+     * The compiled form of an {@link AttributeSelector.IdentityAttributeSelector}; the value is taken at face value and always usable.
+     */
+    public static CompiledAttributeSelector identity(final @NonNull String name, final @NonNull Function<GeneralizedTransaction, ?> extractor) {
+        return new CompiledAttributeSelector(name, extractor, raw -> true, UnaryOperator.identity());
+    }
+
+    /**
+     * The compiled form of a decorator which rejects the attribute (usable = false, raw value) unless the raw value is
+     * <code>accepted</code> and otherwise delegates to the decorated selector.
+     */
+    public CompiledAttributeSelector acceptOnly(final @NonNull Predicate<Object> accepted) {
+        return new CompiledAttributeSelector(name, extractor,
+                raw -> accepted.test(raw) && usable.test(raw),
+                raw -> accepted.test(raw) ? value.apply(raw) : raw);
+    }
+
+    /**
+     * The compiled form of a decorator which replaces the value with null (usable = true) as long as it is
+     * <code>disabled</code> and otherwise delegates to the decorated selector.
+     */
+    public CompiledAttributeSelector nullWhen(final @NonNull BooleanSupplier disabled) {
+        return new CompiledAttributeSelector(name, extractor,
+                raw -> disabled.getAsBoolean() || usable.test(raw),
+                raw -> disabled.getAsBoolean() ? null : value.apply(raw));
+    }
+
+    Object extract(final GeneralizedTransaction transaction) {
+        return extractor.apply(transaction);
+    }
+
+    boolean isUsable(final Object raw) {
+        return usable.test(raw);
+    }
+
+    Object value(final Object raw) {
+        return value.apply(raw);
+    }
+}
@@ -3,7 +3,6 @@ package com.yolt.accountsandtransactions.inputprocessing.matching;
 import com.google.common.annotations.VisibleForTesting;
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.Unmatched.Reason;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.util.Assert;
@@ -11,13 +10,11 @@ import org.springframework.util.Assert;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static com.google.common.collect.Sets.difference;
 import static com.google.common.collect.Sets.intersection;
 import static com.yolt.accountsandtransactions.Predef.*;
 import static com.yolt.accountsandtransactions.Predef.Streams.partitioned;
-import static com.yolt.accountsandtransactions.inputprocessing.matching.AttributeSelector.Result.isUsable;
 import static com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.Unmatched.Reason.*;
 import static java.util.stream.Collectors.*;
 
@@ -54,6 +51,8 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
     private final String name;
     @NonNull
     private final List<AttributeSelector<?>> selectors;
+    @NonNull
+    private final AttributeKeyExtractor keyExtractor;
 
     public EqualityAttributeTransactionMatcher(@NonNull final String name, @NonNull final List<AttributeSelector<?>> selectors) {
         Assert.notEmpty(selectors,
@@ -61,6 +60,7 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
 
         this.name = name;
         this.selectors = selectors;
+        this.keyExtractor = AttributeKeyExtractor.compile(selectors);
     }
 
     @Override
@@ -89,18 +89,18 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
         var storedDuplicateCandidates = storedDuplicateAndCandidates.getLeft();
 
         var uniqueUpstreamTransactions = upstreamNonDuplicateCandidates.stream()
-                .collect(toMap(candidate -> candidate.attributes, candidate -> candidate.transaction));
+                .collect(toMap(candidate -> candidate.key, candidate -> candidate.transaction));
         var uniqueStoredTransactions = storedNonDuplicateCandidates.stream()
-                .collect(toMap(candidate -> candidate.attributes, candidate -> candidate.transaction));
+                .collect(toMap(candidate -> candidate.key, candidate -> candidate.transaction));
 
-        // Match unique transactions based on the Set<Attributes<T>> key
+        // Match unique transactions based on the AttributeKey (equivalent to the Set<Attributes<T>>) key
 
         /*
          * The returned set contains all elements that are contained by both backing sets. The iteration order of the returned set matches that of set1.
          */
         var matchedAttributes = intersection(uniqueUpstreamTransactions.keySet() /* set1 */, uniqueStoredTransactions.keySet() /* set2 */); // matched
         var matches = matchedAttributes.stream()
-                .map(attributes -> new Matched(name(), uniqueUpstreamTransactions.get(attributes), uniqueStoredTransactions.get(attributes), attributes))
+                .map(key -> new Matched(name(), uniqueUpstreamTransactions.get(key), uniqueStoredTransactions.get(key), key.attributes()))
                 .collect(toList());
 
         /*
@@ -113,11 +113,11 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
         var unmatchedStoredAttributes = difference(uniqueStoredTransactions.keySet() /* set1 */, uniqueUpstreamTransactions.keySet() /* set 2 */); // unmatched stored
 
         var unmatchedUpstream = unmatchedUpstreamAttributes.stream()
-                .map(attributes -> new Unmatched<>(name(), uniqueUpstreamTransactions.get(attributes), attributes, PEERLESS))
+                .map(key -> new Unmatched<>(name(), uniqueUpstreamTransactions.get(key), key.attributes(), PEERLESS))
                 .collect(toList());
 
         var unmatchedStored = unmatchedStoredAttributes.stream()
-                .map(attributes -> new Unmatched<>(name(), uniqueStoredTransactions.get(attributes), attributes, PEERLESS))
+                .map(key -> new Unmatched<>(name(), uniqueStoredTransactions.get(key), key.attributes(), PEERLESS))
                 .collect(toList());
 
         return new MatchResult(
@@ -130,7 +130,7 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
 
     private <T extends GeneralizedTransaction> Pair<List<Unmatched<T>>, List<Candidate<T>>> determineRejectedAndCandidates(
             final List<Unmatched<T>> unmatched) {
-        return determineUnmatchedAndCandidates(partitionOnMatcherUsability(unmatched, selectors), REJECTED);
+        return determineUnmatchedAndCandidates(partitionOnMatcherUsability(unmatched, keyExtractor), REJECTED);
     }
 
     private <T extends GeneralizedTransaction> Pair<List<Unmatched<T>>, List<Candidate<T>>> determineDuplicateAndCandidates(
@@ -191,8 +191,13 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
     }
 
     @VisibleForTesting
-    @RequiredArgsConstructor
     static class Candidate<T extends GeneralizedTransaction> {
+        /**
+         * The key as determined by the current matcher;
+         */
+        @NonNull
+        public final AttributeKey key;
+
         /**
          * The attributes as determined by the current matcher;
          */
@@ -217,6 +222,14 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
         @NonNull
         public final Unmatched<T> previousResult;
 
+        Candidate(final @NonNull AttributeKey key, final @NonNull T transaction, final @NonNull Unmatched<T> previousResult) {
+            this.key = key;
+            this.attributes = key.attributes();
+            this.transaction = transaction;
+            this.usable = key.isUsable();
+            this.previousResult = previousResult;
+        }
+
         public boolean hasPreviousReasonEqualOrLowerWeight(final Reason reference) {
             return this.previousResult.reason.hasEqualOrLowerWeightThan(reference);
         }
@@ -234,18 +247,16 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
      * </ul>
      *
      * @param upstreamTransactions the list of upstream transactions as {@link Unmatched} to partition
-     * @param selectors            the {@link AttributeSelector}s to test
+     * @param keyExtractor         the {@link AttributeKeyExtractor} of the {@link AttributeSelector}s to test
      * @return a {@link Partitioned} result with maps {@link Partitioned#included} to usable upstream transactions and
      * the {@link Partitioned#excluded} to unusable upstream transactions.
      */
     private static <T extends GeneralizedTransaction> Partitioned<List<Candidate<T>>> partitionOnMatcherUsability(
             final List<Unmatched<T>> upstreamTransactions,
-            final List<AttributeSelector<?>> selectors) {
+            final AttributeKeyExtractor keyExtractor) {
 
         return upstreamTransactions.stream()
-                .map(unmatched -> selectors.stream()
-                        .flatMap(attributeSelector -> attributeSelector.selectAttribute(unmatched.transaction).stream())
-                        .collect(collectingAndThen(toSet(), results -> new Candidate<T>(extractAttributes(results), unmatched.transaction, isUsable(results), unmatched))))
+                .map(unmatched -> new Candidate<>(keyExtractor.extract(unmatched.transaction), unmatched.transaction, unmatched))
                 .collect(partitioned(candidate -> candidate.usable));
     }
 
@@ -265,7 +276,7 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
             final List<Candidate<T>> candidates) {
 
         var candidatesGroupedByAttributes = candidates.stream()
-                .collect(groupingBy(candidate -> candidate.attributes, toList()));
+                .collect(groupingBy(candidate -> candidate.key, toList()));
 
         var uniqueCandidates = candidatesGroupedByAttributes.values().stream()
                 .filter(intermediate -> intermediate.size() == 1)
@@ -283,10 +294,4 @@ public class EqualityAttributeTransactionMatcher implements AttributeTransaction
                 .build();
     }
 
-    private static Set<? extends Attribute<?>> extractAttributes(final Set<? extends AttributeSelector.Result<?>> results) {
-        return results.stream()
-                .map(result -> result.attribute)
-                .collect(Collectors.toSet());
-    }
-
 }
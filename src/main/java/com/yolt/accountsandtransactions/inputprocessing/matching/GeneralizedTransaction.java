@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import nl.ing.lovebird.extendeddata.common.AccountReferenceDTO;
+import nl.ing.lovebird.extendeddata.transaction.ExtendedTransactionDTO;
 import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
 import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
 import nl.ing.lovebird.providerdomain.ProviderTransactionType;
@@ -143,7 +144,8 @@ public interface GeneralizedTransaction {
         @Override
         public @Nullable
         LocalDate getBookingDate() {
-            return Optional.ofNullable(provider.getExtendedTransaction().getBookingDate())
+            return extendedTransaction()
+                    .map(ExtendedTransactionDTO::getBookingDate)
                     .map(ZonedDateTime::toLocalDate)
                     .orElse(null);
         }
@@ -160,13 +162,16 @@ public interface GeneralizedTransaction {
         @Override
         public @Nullable
         String getDebtorName() {
-            return provider.getExtendedTransaction().getDebtorName();
+            return extendedTransaction()
+                    .map(ExtendedTransactionDTO::getDebtorName)
+                    .orElse(null);
         }
 
         @Nullable
         @Override
         public String getDebtorAccountNr() {
-            return Optional.ofNullable(provider.getExtendedTransaction().getDebtorAccount())
+            return extendedTransaction()
+                    .map(ExtendedTransactionDTO::getDebtorAccount)
                     .map(AccountReferenceDTO::getValue)
                     .orElse(null);
         }
@@ -174,13 +179,16 @@ public interface GeneralizedTransaction {
         @Override
         public @Nullable
         String getCreditorName() {
-            return provider.getExtendedTransaction().getCreditorName();
+            return extendedTransaction()
+                    .map(ExtendedTransactionDTO::getCreditorName)
+                    .orElse(null);
         }
 
         @Nullable
         @Override
         public String getCreditorAccountNr() {
-            return Optional.ofNullable(provider.getExtendedTransaction().getCreditorAccount())
+            return extendedTransaction()
+                    .map(ExtendedTransactionDTO::getCreditorAccount)
                     .map(AccountReferenceDTO::getValue)
                     .orElse(null);
         }
@@ -194,7 +202,16 @@ public interface GeneralizedTransaction {
         @Nullable
         @Override
         public String getEndToEndId() {
-            return provider.getExtendedTransaction().getEndToEndId();
+            return extendedTransaction()
+                    .map(ExtendedTransactionDTO::getEndToEndId)
+                    .orElse(null);
+        }
+
+        /**
+         * Not every provider supplies the extended transaction, its attributes are absent then.
+         */
+        private Optional<ExtendedTransactionDTO> extendedTransaction() {
+            return Optional.ofNullable(provider.getExtendedTransaction());
         }
 
         @Override
@@ -0,0 +1,295 @@
+package com.yolt.accountsandtransactions.inputprocessing.matching;
+
+import com.yolt.accountsandtransactions.inputprocessing.matching.GeneralizedTransaction.ProviderGeneralizedTransaction;
+import com.yolt.accountsandtransactions.inputprocessing.matching.GeneralizedTransaction.StoredGeneralizedTransaction;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * A reconciliation scoped, column oriented, snapshot of the upstream and stored transactions.
+ * <p/>
+ * The {@link ProviderGeneralizedTransaction} and {@link StoredGeneralizedTransaction} derive their values on every call
+ * (the amount in cents by means of {@link java.math.BigDecimal} arithmetic, the dates and account numbers through {@link java.util.Optional}s).
+ * Every matcher in the chain, and the sync window selector before that, calls these getters again for the same transaction.
+ * <p/>
+ * The frame derives all the values once, when it is created, and stores them in columns:
+ * <ul>
+ *     <li>the amount in cents as a primitive <code>long</code></li>
+ *     <li>the dates as {@link LocalDate}s, interned such that all transactions on the same day share the same instance</li>
+ *     <li>the strings (external-id, description, etc.) interned such that equal values in the upstream and stored
+ *     transactions share the same instance, which makes comparing them an identity check</li>
+ * </ul>
+ * The transactions in {@link #upstream} and {@link #stored} are (still) {@link ProviderGeneralizedTransaction}s and
+ * {@link StoredGeneralizedTransaction}s, their getters read from the columns instead.
+ * <p/>
+ * A frame is immutable and should not outlive the reconciliation it was created for.
+ */
+@RequiredArgsConstructor
+public final class TransactionFrame {
+
+    /**
+     * The upstream transactions, in order of the input.
+     */
+    @NonNull
+    public final List<ProviderGeneralizedTransaction> upstream;
+
+    /**
+     * The stored transactions, in order of the input.
+     */
+    @NonNull
+    public final List<StoredGeneralizedTransaction> stored;
+
+    public static TransactionFrame of(final @NonNull List<ProviderTransactionDTO> upstream, final @NonNull List<Transaction> stored) {
+        var interner = new Interner();
+
+        var upstreamColumns = new Columns(upstream.size());
+        var framedUpstream = new ArrayList<ProviderGeneralizedTransaction>(upstream.size());
+        for (int row = 0; row < upstream.size(); row++) {
+            var transaction = GeneralizedTransaction.toGeneralized(upstream.get(row));
+            upstreamColumns.set(row, transaction, interner);
+            framedUpstream.add(new FramedProviderTransaction(transaction.provider, upstreamColumns, row));
+        }
+
+        var storedColumns = new Columns(stored.size());
+        var framedStored = new ArrayList<StoredGeneralizedTransaction>(stored.size());
+        for (int row = 0; row < stored.size(); row++) {
+            var transaction = GeneralizedTransaction.toGeneralized(stored.get(row));
+            storedColumns.set(row, transaction, interner);
+            framedStored.add(new FramedStoredTransaction(transaction.stored, storedColumns, row));
+        }
+
+        return new TransactionFrame(unmodifiableList(framedUpstream), unmodifiableList(framedStored));
+    }
+
+    /**
+     * The normalized values of a list of {@link GeneralizedTransaction}s, the n-th element of every column belongs to the n-th transaction.
+     */
+    private static final class Columns {
+        private final String[] internalId;
+        private final String[] externalId;
+        private final long[] amountInCents;
+        private final LocalDate[] date;
+        private final TransactionStatus[] status;
+        private final LocalDate[] bookingDate;
+        private final Instant[] timestamp;
+        private final String[] debtorName;
+        private final String[] debtorAccountNr;
+        private final String[] creditorName;
+        private final String[] creditorAccountNr;
+        private final String[] description;
+        private final String[] endToEndId;
+
+        private Columns(final int size) {
+            internalId = new String[size];
+            externalId = new String[size];
+            amountInCents = new long[size];
+            date = new LocalDate[size];
+            status = new TransactionStatus[size];
+            bookingDate = new LocalDate[size];
+            timestamp = new Instant[size];
+            debtorName = new String[size];
+            debtorAccountNr = new String[size];
+            creditorName = new String[size];
+            creditorAccountNr = new String[size];
+            description = new String[size];
+            endToEndId = new String[size];
+        }
+
+        private void set(final int row, final GeneralizedTransaction transaction, final Interner interner) {
+            internalId[row] = transaction.getInternalId();
+            externalId[row] = interner.intern(transaction.getExternalId());
+            amountInCents[row] = transaction.getAmountInCents();
+            date[row] = interner.intern(transaction.getDate());
+            status[row] = transaction.getStatus();
+            bookingDate[row] = interner.intern(transaction.getBookingDate());
+            timestamp[row] = transaction.getTimestamp();
+            debtorName[row] = interner.intern(transaction.getDebtorName());
+            debtorAccountNr[row] = interner.intern(transaction.getDebtorAccountNr());
+            creditorName[row] = interner.intern(transaction.getCreditorName());
+            creditorAccountNr[row] = interner.intern(transaction.getCreditorAccountNr());
+            description[row] = interner.intern(transaction.getDescription());
+            endToEndId[row] = interner.intern(transaction.getEndToEndId());
+        }
+    }
+
+    /**
+     * Frame scoped interner; unlike {@link String#intern()} the values are released together with the frame.
+     */
+    private static final class Interner {
+        private final Map<Object, Object> values = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        private <T> T intern(final @Nullable T value) {
+            if (value == null) {
+                return null;
+            }
+            var existing = values.putIfAbsent(value, value);
+            return existing == null ? value : (T) existing;
+        }
+    }
+
+    private static final class FramedProviderTransaction extends ProviderGeneralizedTransaction {
+        private final Columns columns;
+        private final int row;
+
+        private FramedProviderTransaction(final ProviderTransactionDTO provider, final Columns columns, final int row) {
+            super(provider);
+            this.columns = columns;
+            this.row = row;
+        }
+
+        @Override
+        public String getInternalId() {
+            return columns.internalId[row];
+        }
+
+        @Override
+        public String getExternalId() {
+            return columns.externalId[row];
+        }
+
+        @Override
+        public @NonNull Long getAmountInCents() {
+            return columns.amountInCents[row];
+        }
+
+        @Override
+        public @NonNull LocalDate getDate() {
+            return columns.date[row];
+        }
+
+        @Override
+        public @NonNull TransactionStatus getStatus() {
+            return columns.status[row];
+        }
+
+        @Override
+        public LocalDate getBookingDate() {
+            return columns.bookingDate[row];
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return columns.timestamp[row];
+        }
+
+        @Override
+        public String getDebtorName() {
+            return columns.debtorName[row];
+        }
+
+        @Override
+        public String getDebtorAccountNr() {
+            return columns.debtorAccountNr[row];
+        }
+
+        @Override
+        public String getCreditorName() {
+            return columns.creditorName[row];
+        }
+
+        @Override
+        public String getCreditorAccountNr() {
+            return columns.creditorAccountNr[row];
+        }
+
+        @Override
+        public String getDescription() {
+            return columns.description[row];
+        }
+
+        @Override
+        public String getEndToEndId() {
+            return columns.endToEndId[row];
+        }
+    }
+
+    private static final class FramedStoredTransaction extends StoredGeneralizedTransaction {
+        private final Columns columns;
+        private final int row;
+
+        private FramedStoredTransaction(final Transaction stored, final Columns columns, final int row) {
+            super(stored);
+            this.columns = columns;
+            this.row = row;
+        }
+
+        @Override
+        public String getInternalId() {
+            return columns.internalId[row];
+        }
+
+        @Override
+        public String getExternalId() {
+            return columns.externalId[row];
+        }
+
+        @Override
+        public @NonNull Long getAmountInCents() {
+            return columns.amountInCents[row];
+        }
+
+        @Override
+        public @NonNull LocalDate getDate() {
+            return columns.date[row];
+        }
+
+        @Override
+        public @NonNull TransactionStatus getStatus() {
+            return columns.status[row];
+        }
+
+        @Override
+        public LocalDate getBookingDate() {
+            return columns.bookingDate[row];
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return columns.timestamp[row];
+        }
+
+        @Override
+        public String getDebtorName() {
+            return columns.debtorName[row];
+        }
+
+        @Override
+        public String getDebtorAccountNr() {
+            return columns.debtorAccountNr[row];
+        }
+
+        @Override
+        public String getCreditorName() {
+            return columns.creditorName[row];
+        }
+
+        @Override
+        public String getCreditorAccountNr() {
+            return columns.creditorAccountNr[row];
+        }
+
+        @Override
+        public String getDescription() {
+            return columns.description[row];
+        }
+
+        @Override
+        public String getEndToEndId() {
+            return columns.endToEndId[row];
+        }
+    }
+}
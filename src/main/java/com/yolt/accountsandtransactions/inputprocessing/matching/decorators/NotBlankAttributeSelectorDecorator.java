@@ -2,9 +2,11 @@ package com.yolt.accountsandtransactions.inputprocessing.matching.decorators;
 
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeSelector;
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher;
+import com.yolt.accountsandtransactions.inputprocessing.matching.CompiledAttributeSelector;
 import com.yolt.accountsandtransactions.inputprocessing.matching.GeneralizedTransaction;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -31,4 +33,9 @@ public final class NotBlankAttributeSelectorDecorator extends BaseAttributeSelec
 
         return Set.of(new Result<>(attribute, false));
     }
+
+    @Override
+    public Optional<CompiledAttributeSelector> compile() {
+        return selector.compile().map(compiled -> compiled.acceptOnly(value -> StringUtils.isNotBlank((String) value)));
+    }
 }
@@ -2,8 +2,11 @@ package com.yolt.accountsandtransactions.inputprocessing.matching.decorators;
 
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeSelector;
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher;
+import com.yolt.accountsandtransactions.inputprocessing.matching.CompiledAttributeSelector;
 import com.yolt.accountsandtransactions.inputprocessing.matching.GeneralizedTransaction;
 
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -30,4 +33,9 @@ public final class NotNullAttributeSelectorDecorator<A> extends BaseAttributeSel
 
         return Set.of(new Result<>(attribute, false));
     }
+
+    @Override
+    public Optional<CompiledAttributeSelector> compile() {
+        return selector.compile().map(compiled -> compiled.acceptOnly(Objects::nonNull));
+    }
 }
@@ -2,9 +2,11 @@ package com.yolt.accountsandtransactions.inputprocessing.matching.decorators;
 
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeSelector;
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher;
+import com.yolt.accountsandtransactions.inputprocessing.matching.CompiledAttributeSelector;
 import com.yolt.accountsandtransactions.inputprocessing.matching.GeneralizedTransaction;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -29,9 +31,18 @@ public final class NotPlaceholderAttributeSelectorDecorator extends BaseAttribut
     public Set<Result<String>> selectAttribute(GeneralizedTransaction transaction) {
         var attribute = attributeExtractor().extract(transaction);
 
-        if (StringUtils.isNotBlank(attribute.value) && attribute.value.equalsIgnoreCase(PLACEHOLDER)) {
+        if (isPlaceholder(attribute.value)) {
             return Set.of(new Result<>(attribute, false));
         }
         return super.selectAttribute(transaction);
     }
-}
\ No newline at end of file
+
+    @Override
+    public Optional<CompiledAttributeSelector> compile() {
+        return selector.compile().map(compiled -> compiled.acceptOnly(value -> !isPlaceholder((String) value)));
+    }
+
+    private static boolean isPlaceholder(final String value) {
+        return StringUtils.isNotBlank(value) && value.equalsIgnoreCase(PLACEHOLDER);
+    }
+}
@@ -3,11 +3,13 @@ package com.yolt.accountsandtransactions.inputprocessing.matching.decorators;
 import com.yolt.accountsandtransactions.inputprocessing.matching.Attribute;
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeSelector;
 import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher;
+import com.yolt.accountsandtransactions.inputprocessing.matching.CompiledAttributeSelector;
 import com.yolt.accountsandtransactions.inputprocessing.matching.GeneralizedTransaction;
 import lombok.NonNull;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -42,4 +44,9 @@ public final class UseAfterOrNullAttributeSelectorDecorator<A> extends BaseAttri
 
         return super.selectAttribute(transaction);
     }
+
+    @Override
+    public Optional<CompiledAttributeSelector> compile() {
+        return selector.compile().map(compiled -> compiled.nullWhen(() -> Instant.now(clock).isBefore(useAfter)));
+    }
 }
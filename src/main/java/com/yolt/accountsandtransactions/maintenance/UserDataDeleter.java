@@ -1,6 +1,7 @@
 package com.yolt.accountsandtransactions.maintenance;
 
 import com.yolt.accountsandtransactions.accounts.AccountService;
+import com.yolt.accountsandtransactions.datascience.PendingTransactionRangeService;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +23,7 @@ import java.util.UUID;
 public class UserDataDeleter {
 
     private final AccountService accountService;
+    private final PendingTransactionRangeService pendingTransactionRangeService;
 
     @Autowired
     void registerUserDeleter(final UserDeleter userDeleter) {
@@ -35,7 +37,9 @@ public class UserDataDeleter {
      *     <li>bulk_update_sessions: omitted because it has a ttl</li>
      *     <li>activity_enrichments_v2: omitted because it has a ttl</li>
      *     <li>batch_sync_progress_state: omitted because it is a temporary technical table and contains no "user data"</li>
+     *     <li>batch_scan_progress: omitted because it is a technical table and contains no "user data"</li>
      *     <li>activity_enrichments_initiation: omitted because it has a ttl</li>
+     *     <li>account_upstream_digests: omitted because it has a ttl</li>
      * </ul>
      *
      * @param clientUserToken The client user token.
@@ -44,5 +48,7 @@ public class UserDataDeleter {
         UUID userId = clientUserToken.getUserIdClaim();
         log.info("Deleting all accounts and transactions for user {}", userId);
         accountService.deleteAccountsAndTransactionsForUser(userId);
+        // the ranges of the accounts are deleted with their transactions, this also covers accounts that no longer exist
+        pendingTransactionRangeService.deleteAll(userId);
     }
 }
@@ -1,10 +1,16 @@
 package com.yolt.accountsandtransactions.metrics;
 
+import com.yolt.accountsandtransactions.batch.AdaptiveBatchThrottle;
+import com.yolt.accountsandtransactions.batch.BatchMetadataCache;
 import com.yolt.accountsandtransactions.inputprocessing.DurationLogger;
+import com.yolt.accountsandtransactions.inputprocessing.ShadowEvaluator;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction.InstructionType;
 import com.yolt.accountsandtransactions.inputprocessing.TransactionReconciliationResultMetrics;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline;
 import com.yolt.accountsandtransactions.legacyaccounts.AccountMatcher.AccountMatchType;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -30,9 +36,18 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 @RequiredArgsConstructor
 public class AccountsAndTransactionMetrics {
 
+    private static final TransactionStatus[] TRANSACTION_STATUSES = TransactionStatus.values();
+
     private final Clock clock;
     private final MeterRegistry meterRegistry;
 
+    /*
+     * The counters below are incremented per transaction, they are registered once per provider.
+     */
+    private final CounterCache debtorOrCreditorNamePresence = new CounterCache(8, this::registerDebtorOrCreditorNamePresence);
+    private final CounterCache transactionsWithFutureDate = new CounterCache(2 * TRANSACTION_STATUSES.length, this::registerTransactionWithFutureDate);
+    private final CounterCache remittanceInformationPresence = new CounterCache(2, this::registerRemittanceInformationPresence);
+
     public enum Cardinality {
         SINGLE,
         BULK;
@@ -100,14 +115,58 @@ public class AccountsAndTransactionMetrics {
         );
     }
 
+    /**
+     * The round-trip of a single (batch) write of the {@link TransactionWritePipeline}, per keyspace and operation.
+     */
+    public void measureTransactionWriteLatency(TransactionWritePipeline.Keyspace keyspace, TransactionWritePipeline.Operation operation, Duration duration) {
+        meterRegistry.timer("acc_trx_write_duration",
+                        "keyspace", keyspace.name().toLowerCase(),
+                        "operation", operation.name().toLowerCase())
+                .record(duration);
+    }
+
+    /**
+     * A record that is sent to an offload topic and the number of entities it contains (1 unless batched).
+     */
+    public void measureOffloadEnvelope(@NonNull String topic, int entities) {
+        meterRegistry.counter("acc_trx_offload_envelopes", "topic", topic).increment();
+        DistributionSummary.builder("acc_trx_offload_entities_per_envelope")
+                .tags("topic", topic)
+                .register(meterRegistry)
+                .record(entities);
+    }
+
+    public void incrementOffloadFailure(@NonNull String topic, @NonNull Throwable throwable) {
+        meterRegistry.counter("acc_trx_offload_failure",
+                        "topic", topic,
+                        "exception", throwable.getClass().getSimpleName())
+                .increment();
+    }
+
+    /**
+     * A failure while ingesting the accounts of a user-site that is reported instead of rethrown.
+     *
+     * @param stage either "account" (processing a single account) or "read" (reading the accounts of a streaming request)
+     */
+    public void incrementIngestionFailure(@NonNull String stage, @NonNull Throwable throwable) {
+        meterRegistry.counter("acc_trx_ingestion_failure",
+                        "stage", stage,
+                        "exception", throwable.getClass().getSimpleName())
+                .increment();
+    }
+
     public void incrementTransactionWithFutureDate(String provider, boolean newTransaction, TransactionStatus transactionStatus) {
-        meterRegistry.counter("accounts_transactions_trx_with_future_date",
-                        "provider", provider,
-                        "new-transaction", Boolean.toString(newTransaction),
-                        "status", transactionStatus.toString())
+        transactionsWithFutureDate.get(provider, (newTransaction ? TRANSACTION_STATUSES.length : 0) + transactionStatus.ordinal())
                 .increment();
     }
 
+    private Counter registerTransactionWithFutureDate(String provider, int combination) {
+        return meterRegistry.counter("accounts_transactions_trx_with_future_date",
+                "provider", provider,
+                "new-transaction", Boolean.toString(combination >= TRANSACTION_STATUSES.length),
+                "status", TRANSACTION_STATUSES[combination % TRANSACTION_STATUSES.length].toString());
+    }
+
     public void updateClientEnrichment(String clientId, String enrichmentDomain) {
         meterRegistry.counter("acc_trx_client_enrichments", "client-id", clientId, "enrichment-domain", enrichmentDomain).increment();
     }
@@ -199,15 +258,16 @@ public class AccountsAndTransactionMetrics {
     }
 
     public void incrementTransactionWithStructuredAndUnstructuredRemittanceInformation(@NonNull String provider) {
-        meterRegistry.counter("transaction_with_structured_and_unstructured",
-                        "provider", provider)
-                .increment();
+        remittanceInformationPresence.get(provider, 1).increment();
     }
 
     public void incrementTransactionWithoutStructuredAndUnstructuredRemittanceInformation(@NonNull String provider) {
-        meterRegistry.counter("transaction_without_structured_and_unstructured",
-                        "provider", provider)
-                .increment();
+        remittanceInformationPresence.get(provider, 0).increment();
+    }
+
+    private Counter registerRemittanceInformationPresence(String provider, int combination) {
+        return meterRegistry.counter(combination == 1 ? "transaction_with_structured_and_unstructured" : "transaction_without_structured_and_unstructured",
+                "provider", provider);
     }
 
     /**
@@ -251,14 +311,101 @@ public class AccountsAndTransactionMetrics {
                                                        boolean isIncoming,
                                                        boolean creditorNamePresent,
                                                        boolean debtorNamePresent) {
-        meterRegistry.counter("trx_debtor_creditor_field_presence",
-                        "provider", provider,
-                        "incoming_trx", Boolean.toString(isIncoming),
-                        "debtor_name", Boolean.toString(debtorNamePresent),
-                        "creditor_name", Boolean.toString(creditorNamePresent))
+        debtorOrCreditorNamePresence.get(provider, (isIncoming ? 4 : 0) | (debtorNamePresent ? 2 : 0) | (creditorNamePresent ? 1 : 0))
                 .increment();
     }
 
+    private Counter registerDebtorOrCreditorNamePresence(String provider, int combination) {
+        return meterRegistry.counter("trx_debtor_creditor_field_presence",
+                "provider", provider,
+                "incoming_trx", Boolean.toString((combination & 4) != 0),
+                "debtor_name", Boolean.toString((combination & 2) != 0),
+                "creditor_name", Boolean.toString((combination & 1) != 0));
+    }
+
+    public enum UpstreamDigestResult {
+        /**
+         * The transactions are the same as the last time they were reconciled, the account is not reconciled.
+         */
+        UNCHANGED,
+        CHANGED,
+        /**
+         * There is no digest of the previous refresh of the account.
+         */
+        UNKNOWN
+    }
+
+    /**
+     * The outcome of comparing the upstream digest of an existing account, the skip ratio is the share of {@code unchanged}.
+     */
+    public void incrementUpstreamDigestResult(final @NonNull String provider, final @NonNull UpstreamDigestResult result) {
+        meterRegistry.counter("acc_trx_upstream_digest",
+                "provider", provider,
+                "result", result.name().toLowerCase()
+        ).increment();
+    }
+
+    public enum ShadowEvaluationResult {
+        MATCH,
+        MISMATCH,
+        FAILED,
+        /**
+         * The shadow evaluation pool was saturated.
+         */
+        DROPPED,
+        NOT_SAMPLED
+    }
+
+    /**
+     * The outcome of evaluating a passive insertion strategy next to the active one, see {@link ShadowEvaluator}.
+     */
+    public void incrementShadowEvaluationResult(final @NonNull String provider, final @NonNull ShadowEvaluationResult result) {
+        meterRegistry.counter("acc_trx_shadow_evaluation",
+                "provider", provider,
+                "result", result.name().toLowerCase()
+        ).increment();
+    }
+
+    /**
+     * The number of transactions of an {@link InstructionType} on which the passive and the active strategy disagree.
+     */
+    public void measureShadowEvaluationDifference(final @NonNull String provider, final @NonNull InstructionType type, int difference) {
+        DistributionSummary.builder("acc_trx_shadow_evaluation_difference")
+                .tags("provider", provider, "type", type.name().toLowerCase())
+                .register(meterRegistry)
+                .record(difference);
+    }
+
+    /**
+     * The current limits of the {@link AdaptiveBatchThrottle}, the read rate (rows per second) and the number of
+     * concurrent pages of the batch jobs.
+     */
+    public void registerBatchThrottleGauges(final @NonNull AdaptiveBatchThrottle throttle) {
+        Gauge.builder("acc_trx_batch_throttle_limit", throttle, AdaptiveBatchThrottle::getReadPerSecondLimit)
+                .tag("limit", "read_per_second")
+                .register(meterRegistry);
+        Gauge.builder("acc_trx_batch_throttle_limit", throttle, AdaptiveBatchThrottle::getConcurrencyLimit)
+                .tag("limit", "concurrency")
+                .register(meterRegistry);
+    }
+
+    public enum BatchMetadataCacheResult {
+        HIT,
+        MISS,
+        PREFETCH
+    }
+
+    /**
+     * A lookup in (or a prefetch into) a {@link BatchMetadataCache}, per job and cache.
+     */
+    public void incrementBatchMetadataCacheLookup(final @NonNull String job, final @NonNull String cache, final @NonNull BatchMetadataCacheResult result) {
+        meterRegistry.counter("acc_trx_batch_metadata_cache",
+                "job", job,
+                "cache", cache,
+                "result", result.name().toLowerCase()
+        ).increment();
+    }
+
     enum ReconciliationStatus {
         FAILURE,
         SUCCESS
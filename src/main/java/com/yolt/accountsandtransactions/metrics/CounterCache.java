@@ -0,0 +1,50 @@
+package com.yolt.accountsandtransactions.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The counters of a metric for a given key (typically the provider), registered up front for every combination of
+ * the remaining tags.
+ * <p>
+ * {@code MeterRegistry.counter(name, tags...)} allocates and sorts the tags and looks up the meter on every call.  For
+ * metrics that are incremented per transaction, that cost is paid once per key instead: after the first call for a key
+ * {@link #get(String, int)} is a map lookup and an array access.
+ */
+final class CounterCache {
+
+    @FunctionalInterface
+    interface Registration {
+        /**
+         * Register (or look up) the counter of {@code key} for the tag combination with index {@code combination}.
+         */
+        Counter register(String key, int combination);
+    }
+
+    private final ConcurrentHashMap<String, Counter[]> counters = new ConcurrentHashMap<>();
+    private final int combinations;
+    private final Registration registration;
+
+    CounterCache(final int combinations, final @NonNull Registration registration) {
+        this.combinations = combinations;
+        this.registration = registration;
+    }
+
+    Counter get(final @NonNull String key, final int combination) {
+        var registered = counters.get(key);
+        if (registered == null) {
+            registered = counters.computeIfAbsent(key, this::registerAll);
+        }
+        return registered[combination];
+    }
+
+    private Counter[] registerAll(final String key) {
+        var registered = new Counter[combinations];
+        for (int combination = 0; combination < combinations; combination++) {
+            registered[combination] = registration.register(key, combination);
+        }
+        return registered;
+    }
+}
@@ -1,42 +1,124 @@
 package com.yolt.accountsandtransactions.offloading;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.google.common.base.Utf8;
 import com.yolt.accountsandtransactions.accounts.Account;
 import com.yolt.accountsandtransactions.concurrency.Futures;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
 import com.yolt.accountsandtransactions.transactions.Transaction;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 
-import static java.lang.String.format;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 import static org.springframework.kafka.support.KafkaHeaders.MESSAGE_KEY;
 import static org.springframework.kafka.support.KafkaHeaders.TOPIC;
 
+/**
+ * Offloads accounts and transactions to the offload topics.
+ * <p>
+ * By default every entity is sent as a separate {@link OffloadableEnvelope}.  With
+ * {@code yolt.accounts-and-transactions.offload.batch.enabled} the accounts and transactions of a user that are
+ * offloaded together are packed into {@link OffloadableBatchEnvelope}s of at most {@link #batchMaxBytes} instead, marked
+ * with the {@link #OFFLOAD_FORMAT_HEADER} header.  Consumers that still need a record per entity should stay on the
+ * default.  The records are compressed by a producer of their own
+ * ({@code yolt.accounts-and-transactions.offload.compression-type}, lz4 by default), which pays off most for the
+ * batches: the envelopes of a batch repeat the same field names.  The other producers of the application are not
+ * affected.
+ * <p>
+ * At most {@link #maxInFlight} records are outstanding, sending more blocks the calling thread until a send completes.
+ * <p>
+ * A failed send is logged and counted, and fails the returned future.  An entity that cannot be mapped or serialized is
+ * skipped instead (a retry would not help).  Callers that must not lose records, like the batch jobs that checkpoint
+ * their progress, wait for the returned future.
+ */
 @Slf4j
 @Service
 public class OffloadService {
     private static final int ACCOUNT_OFFLOAD_SCHEMA_VERSION = 1;
     private static final int TRANSACTION_OFFLOAD_SCHEMA_VERSION = 1;
+    private static final int BATCH_OFFLOAD_SCHEMA_VERSION = 1;
+
+    static final String OFFLOAD_FORMAT_HEADER = "offload-format";
+    static final String BATCH_OFFLOAD_FORMAT = "batch";
 
     private final KafkaTemplate<String, OffloadableEnvelope<?>> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final AccountsAndTransactionMetrics metrics;
     private final boolean offloadAISEnabled;
     private final String accountsOffloadTopic;
     private final String transactionsOffloadTopic;
+    private final boolean batchEnabled;
+    private final int batchMaxBytes;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
 
+    @Autowired
     public OffloadService(
-            KafkaTemplate<String, OffloadableEnvelope<?>> kafkaTemplate,
+            ProducerFactory<String, OffloadableEnvelope<?>> producerFactory,
+            ObjectMapper objectMapper,
+            AccountsAndTransactionMetrics metrics,
             @Value("${yolt.accounts-and-transactions.offload.ais.enabled:false}") boolean offloadAISEnabled,
             @Value("${yolt.kafka.topics.offload-yts-accounts.topic-name}") String accountsOffloadTopic,
-            @Value("${yolt.kafka.topics.offload-yts-transactions.topic-name}") String transactionsOffloadTopic) {
+            @Value("${yolt.kafka.topics.offload-yts-transactions.topic-name}") String transactionsOffloadTopic,
+            @Value("${yolt.accounts-and-transactions.offload.batch.enabled:false}") boolean batchEnabled,
+            @Value("${yolt.accounts-and-transactions.offload.batch.max-bytes:512000}") int batchMaxBytes,
+            @Value("${yolt.accounts-and-transactions.offload.max-in-flight:1024}") int maxInFlight,
+            @Value("${yolt.accounts-and-transactions.offload.compression-type:lz4}") String compressionType) {
+        // A copy of the producer factory of the application with the compression of the offload topics, the template
+        // closes the copy on destroy.  Not a bean: a KafkaTemplate bean would replace the one of the auto-configuration.
+        this(new KafkaTemplate<>(producerFactory, Map.of(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType)),
+                objectMapper, metrics, offloadAISEnabled, accountsOffloadTopic, transactionsOffloadTopic, batchEnabled, batchMaxBytes, maxInFlight);
+    }
+
+    OffloadService(
+            KafkaTemplate<String, OffloadableEnvelope<?>> kafkaTemplate,
+            ObjectMapper objectMapper,
+            AccountsAndTransactionMetrics metrics,
+            boolean offloadAISEnabled,
+            String accountsOffloadTopic,
+            String transactionsOffloadTopic,
+            boolean batchEnabled,
+            int batchMaxBytes,
+            int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("offload max-in-flight must be at least 1, got " + maxInFlight);
+        }
         this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
         this.offloadAISEnabled = offloadAISEnabled;
         this.accountsOffloadTopic = accountsOffloadTopic;
         this.transactionsOffloadTopic = transactionsOffloadTopic;
+        this.batchEnabled = batchEnabled;
+        this.batchMaxBytes = batchMaxBytes;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    @PreDestroy
+    void close() {
+        kafkaTemplate.destroy();
     }
 
     public CompletableFuture<Void> offloadInsertOrUpdateAsync(@NonNull Account account, @NonNull UUID clientId) {
@@ -65,8 +147,96 @@ public class OffloadService {
         return send(envelope, this.transactionsOffloadTopic, transaction.getUserId());
     }
 
+    /**
+     * Offload {@code accounts} (possibly of multiple users), batched per user if batching is enabled.
+     *
+     * @param clientIdOf the client of the user of an account
+     */
+    public CompletableFuture<Void> offloadAccountsInsertOrUpdateAsync(@NonNull List<Account> accounts, @NonNull Function<Account, UUID> clientIdOf) {
+        return offload(accounts, Account::getUserId, Account::getId, accountsOffloadTopic, account -> OffloadableEnvelope.createInsertOrUpdate(
+                ACCOUNT_OFFLOAD_SCHEMA_VERSION, account.getId(), mapToOffloadable(account, clientIdOf.apply(account))));
+    }
+
+    /**
+     * Offload {@code transactions} (possibly of multiple users), batched per user if batching is enabled.
+     */
+    public CompletableFuture<Void> offloadTransactionsInsertOrUpdateAsync(@NonNull List<Transaction> transactions) {
+        return offload(transactions, Transaction::getUserId, OffloadService::createTransactionId, transactionsOffloadTopic, transaction -> OffloadableEnvelope.createInsertOrUpdate(
+                TRANSACTION_OFFLOAD_SCHEMA_VERSION, createTransactionId(transaction), mapToOffloadable(transaction)));
+    }
+
+    /**
+     * Offload the deletion of {@code transactions} (possibly of multiple users), batched per user if batching is enabled.
+     */
+    public CompletableFuture<Void> offloadTransactionsDeleteAsync(@NonNull List<Transaction> transactions) {
+        return offload(transactions, Transaction::getUserId, OffloadService::createTransactionId, transactionsOffloadTopic, transaction -> OffloadableEnvelope.createDelete(
+                TRANSACTION_OFFLOAD_SCHEMA_VERSION, createTransactionId(transaction)));
+    }
+
+    /**
+     * An entity that cannot be mapped or serialized is logged and skipped, it does not stop the other entities.
+     *
+     * @param idOf identifies an entity in the log
+     */
+    private <T> CompletableFuture<Void> offload(List<T> entities, Function<T, UUID> userIdOf, Function<T, ?> idOf, String topic,
+                                                Function<T, OffloadableEnvelope<?>> toEnvelope) {
+        if (!offloadAISEnabled || entities.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!batchEnabled) {
+            var sends = new ArrayList<CompletableFuture<Void>>(entities.size());
+            for (T entity : entities) {
+                OffloadableEnvelope<?> envelope;
+                try {
+                    envelope = toEnvelope.apply(entity);
+                } catch (RuntimeException e) {
+                    log.warn("Unable to offload {} due to exception", idOf.apply(entity), e); //NOSHERIFF
+                    metrics.incrementOffloadFailure(topic, e);
+                    continue;
+                }
+                sends.add(send(envelope, topic, userIdOf.apply(entity)));
+            }
+            return allOf(sends);
+        }
+
+        // the record key is the user-id, so the order of the entities of a user is preserved across the batches
+        var entitiesByUser = entities.stream()
+                .collect(groupingBy(userIdOf, LinkedHashMap::new, toList()));
+
+        var sends = new ArrayList<CompletableFuture<Void>>();
+        entitiesByUser.forEach((userId, entitiesOfUser) -> {
+            var batch = new ArrayList<RawValue>();
+            int batchBytes = 0;
+            for (T entity : entitiesOfUser) {
+                String serialized;
+                try {
+                    serialized = objectMapper.writeValueAsString(toEnvelope.apply(entity));
+                } catch (JsonProcessingException | RuntimeException e) {
+                    log.warn("Unable to offload {} due to exception", idOf.apply(entity), e); //NOSHERIFF
+                    metrics.incrementOffloadFailure(topic, e);
+                    continue;
+                }
+                // The budget is in serialized (UTF-8) bytes, which is what the producer checks against max.request.size:
+                // the producer compresses the record, but checks the size before compression.  An entity that exceeds
+                // the budget on its own is sent as a batch of one.
+                int entityBytes = Utf8.encodedLength(serialized) + 1;
+                if (!batch.isEmpty() && batchBytes + entityBytes > batchMaxBytes) {
+                    sends.add(sendBatch(batch, topic, userId));
+                    batch = new ArrayList<>();
+                    batchBytes = 0;
+                }
+                batch.add(new RawValue(serialized));
+                batchBytes += entityBytes;
+            }
+            if (!batch.isEmpty()) {
+                sends.add(sendBatch(batch, topic, userId));
+            }
+        });
+        return allOf(sends);
+    }
+
     private static String createTransactionId(@NonNull Transaction transaction) {
-        return format("%s:%s:%s:%s", transaction.getUserId(), transaction.getAccountId(), transaction.getDate(), transaction.getId());
+        return transaction.getUserId() + ":" + transaction.getAccountId() + ":" + transaction.getDate() + ":" + transaction.getId();
     }
 
     private CompletableFuture<Void> send(OffloadableEnvelope<?> envelope, String topic, UUID userId) {
@@ -80,16 +250,62 @@ public class OffloadService {
                 .setHeader(MESSAGE_KEY, userId.toString())
                 .build();
 
-        return Futures.from(kafkaTemplate.send(message))
-                .handle((ignored, throwable) -> {
+        return send(message, topic, 1);
+    }
+
+    private CompletableFuture<Void> sendBatch(List<RawValue> envelopes, String topic, UUID userId) {
+        var batch = OffloadableBatchEnvelope.builder()
+                .schemaVersion(BATCH_OFFLOAD_SCHEMA_VERSION)
+                .envelopes(envelopes)
+                .build();
+
+        var message = MessageBuilder
+                .withPayload(batch)
+                .setHeader(TOPIC, topic)
+                .setHeader(MESSAGE_KEY, userId.toString())
+                .setHeader(OFFLOAD_FORMAT_HEADER, BATCH_OFFLOAD_FORMAT)
+                .build();
+
+        return send(message, topic, envelopes.size());
+    }
+
+    private CompletableFuture<Void> send(Message<?> message, String topic, int entities) {
+        acquire();
+        CompletableFuture<?> sent;
+        try {
+            sent = Futures.from(kafkaTemplate.send(message));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            log.error("Failed to offload CAM data.", e);
+            metrics.incrementOffloadFailure(topic, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        metrics.measureOffloadEnvelope(topic, entities);
+
+        return sent
+                .whenComplete((ignored, throwable) -> {
+                    inFlight.release();
                     if (throwable != null) {
                         log.error("Failed to offload CAM data.", throwable);
+                        metrics.incrementOffloadFailure(topic, throwable);
                     }
-                    return null;
                 })
                 .thenApply(ignored -> null);
     }
 
+    private void acquire() {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for one of the " + maxInFlight + " in-flight offloads to complete.", e);
+        }
+    }
+
+    private static CompletableFuture<Void> allOf(List<CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
     private OffloadableTransaction mapToOffloadable(Transaction transaction) {
         return OffloadableTransaction.builder()
                 .accountId(transaction.getAccountId())
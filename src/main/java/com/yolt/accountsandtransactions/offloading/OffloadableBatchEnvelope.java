@@ -0,0 +1,25 @@
+package com.yolt.accountsandtransactions.offloading;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import com.fasterxml.jackson.databind.util.RawValue;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+
+import java.util.List;
+
+/**
+ * Many {@link OffloadableEnvelope}s of the same user and entity type in a single Kafka record.
+ * <p>
+ * The envelopes are serialized up front (to determine the size of the batch), they are embedded as is.
+ */
+@Data
+@Builder
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class) // DS uses snake-case for their properties.
+class OffloadableBatchEnvelope {
+    @NonNull
+    private Integer schemaVersion;
+    @NonNull
+    private List<RawValue> envelopes;
+}
@@ -0,0 +1,75 @@
+package com.yolt.accountsandtransactions.summary;
+
+import com.datastax.driver.mapping.annotations.ClusteringColumn;
+import com.datastax.driver.mapping.annotations.Column;
+import com.datastax.driver.mapping.annotations.PartitionKey;
+import com.datastax.driver.mapping.annotations.Table;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The pending and booked transactions of an account in the transactions table: the timestamps the
+ * {@link SummaryService} needs, and the number of those transactions.  Maintained by {@link AccountTransactionStatusService}.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "account_transaction_status")
+@Data
+@Builder(toBuilder = true)
+public class AccountTransactionStatus {
+    public static final String USER_ID_COLUMN = "user_id";
+    public static final String ACCOUNT_ID_COLUMN = "account_id";
+
+    @NonNull
+    @PartitionKey
+    @Column(name = USER_ID_COLUMN)
+    private UUID userId;
+
+    @NonNull
+    @ClusteringColumn
+    @Column(name = ACCOUNT_ID_COLUMN)
+    private UUID accountId;
+
+    /**
+     * {@code null} if the account has no pending transactions.
+     */
+    @Column(name = "oldest_pending")
+    private Instant oldestPending;
+
+    /**
+     * {@code null} if the account has no pending transactions.
+     */
+    @Column(name = "newest_pending")
+    private Instant newestPending;
+
+    @Column(name = "pending_count")
+    private int pendingCount;
+
+    /**
+     * {@code null} if the account has no booked transactions.
+     */
+    @Column(name = "newest_booked")
+    private Instant newestBooked;
+
+    /**
+     * The newest booked transaction that is not after {@link #oldestPending}, {@code null} if there is none (or if the
+     * account has no pending transactions).
+     */
+    @Column(name = "newest_booked_before_pending")
+    private Instant newestBookedBeforePending;
+
+    @Column(name = "booked_count")
+    private int bookedCount;
+
+    AccountTransactionStatusSummary toSummary() {
+        return AccountTransactionStatusSummary.builder()
+                .accountId(accountId)
+                .oldestPendingTrxTimestamp(Optional.ofNullable(oldestPending))
+                .mostRecentBookedTrxTimestamp(Optional.ofNullable(newestBooked))
+                .mostRecentBookedBeforeAllPendingTrxTimestamp(Optional.ofNullable(newestBookedBeforePending))
+                .build();
+    }
+}
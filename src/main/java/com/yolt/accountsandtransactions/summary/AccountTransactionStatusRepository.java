@@ -0,0 +1,53 @@
+package com.yolt.accountsandtransactions.summary;
+
+import com.datastax.driver.core.Session;
+import lombok.extern.slf4j.Slf4j;
+import nl.ing.lovebird.cassandra.CassandraRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
+import static com.yolt.accountsandtransactions.summary.AccountTransactionStatus.ACCOUNT_ID_COLUMN;
+import static com.yolt.accountsandtransactions.summary.AccountTransactionStatus.USER_ID_COLUMN;
+
+@Validated
+@Repository
+@Slf4j
+public class AccountTransactionStatusRepository extends CassandraRepository<AccountTransactionStatus> {
+    protected AccountTransactionStatusRepository(Session session) {
+        super(session, AccountTransactionStatus.class);
+        setAuditLoggingEnabled(false);
+    }
+
+    void persist(AccountTransactionStatus accountTransactionStatus) {
+        save(accountTransactionStatus);
+    }
+
+    Optional<AccountTransactionStatus> find(UUID userId, UUID accountId) {
+        var select = createSelect();
+        select.where(eq(USER_ID_COLUMN, userId))
+                .and(eq(ACCOUNT_ID_COLUMN, accountId));
+        return select(select).stream().findFirst();
+    }
+
+    /**
+     * The status of all accounts of the user, a read of a single partition.
+     */
+    List<AccountTransactionStatus> find(UUID userId) {
+        var select = createSelect();
+        select.where(eq(USER_ID_COLUMN, userId));
+        return select(select);
+    }
+
+    public void delete(UUID userId, List<UUID> accountIds) {
+        var delete = createDelete();
+        delete.where(eq(USER_ID_COLUMN, userId))
+                .and(in(ACCOUNT_ID_COLUMN, accountIds));
+        executeDelete(delete);
+    }
+}
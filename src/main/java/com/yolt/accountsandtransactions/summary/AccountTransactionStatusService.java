@@ -0,0 +1,235 @@
+package com.yolt.accountsandtransactions.summary;
+
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
+import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import com.yolt.accountsandtransactions.transactions.TransactionRepository;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the {@link AccountTransactionStatus} of every account up to date, so the {@link SummaryService} reads a single
+ * partition per user instead of the recent transactions of every account.
+ * <p>
+ * The status is maintained from the {@link Instruction} that is persisted for an account, in the same way as the
+ * {@link com.yolt.accountsandtransactions.datascience.PendingTransactionRangeService}: a transaction that is written
+ * widens the timestamps, and once all pending transactions that were counted have been deleted the pending timestamps
+ * start over.  The oldest pending timestamp may therefore be older than the pending transactions that are left, which
+ * only makes the lower bound of the {@link SummaryService} more conservative.  A change that cannot be applied
+ * incrementally (the newest booked transaction is deleted, or a pending transaction is older than the booked transaction
+ * that precedes the pending transactions) counts the transactions of the account again.
+ * <p>
+ * Transactions that expire through the retention policy of their client (see {@link RetentionPolicies}) are not seen
+ * here.  Once a timestamp of the status is past the retention, the transactions of the account are counted again on
+ * its next ingestion.  Until then the status may still refer to expired transactions, which only makes the lower bound
+ * of the {@link SummaryService} more conservative.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AccountTransactionStatusService {
+
+    private final AccountTransactionStatusRepository accountTransactionStatusRepository;
+    private final TransactionRepository transactionRepository;
+    private final RetentionPolicies retentionPolicies;
+
+    /**
+     * Update the status of the account after {@code instruction} has been written to the transactions table.
+     */
+    public void update(final @NonNull UUID userId, final @NonNull UUID accountId, final @NonNull Instruction instruction) {
+        var stored = accountTransactionStatusRepository.find(userId, accountId);
+        if (stored.isEmpty()) {
+            // The first time the account is seen, its transactions are counted once.
+            accountTransactionStatusRepository.persist(count(userId, accountId));
+            return;
+        }
+        if (hasExpired(stored.get())) {
+            accountTransactionStatusRepository.persist(count(userId, accountId));
+            return;
+        }
+        var updated = apply(stored.get(), instruction).orElseGet(() -> count(userId, accountId));
+        if (!updated.equals(stored.get())) {
+            accountTransactionStatusRepository.persist(updated);
+        }
+    }
+
+    /**
+     * Delete the status of the accounts, together with their transactions.
+     */
+    public void delete(final @NonNull UUID userId, final @NonNull List<UUID> accountIds) {
+        if (!accountIds.isEmpty()) {
+            accountTransactionStatusRepository.delete(userId, accountIds);
+        }
+    }
+
+    /**
+     * @return the status after the instruction, empty if the transactions of the account have to be counted again
+     */
+    static Optional<AccountTransactionStatus> apply(final AccountTransactionStatus status, final Instruction instruction) {
+        // A transaction whose date or status changes is deleted and written again (see TransactionSyncService), the
+        // other updates overwrite the same row.
+        Set<String> deletedIds = new HashSet<>();
+        int deletedPending = 0;
+        int deletedBooked = 0;
+        for (Transaction deleted : instruction.getTransactionsToDelete()) {
+            deletedIds.add(deleted.getId());
+            if (deleted.getStatus() == TransactionStatus.PENDING) {
+                deletedPending++;
+            } else {
+                deletedBooked++;
+                if (deleted.getTimestamp() == null
+                        || !isBefore(deleted.getTimestamp(), status.getNewestBooked())
+                        || deleted.getTimestamp().equals(status.getNewestBookedBeforePending())) {
+                    // The transaction before it is not known.
+                    return Optional.empty();
+                }
+            }
+        }
+
+        List<Instant> writtenPending = new ArrayList<>();
+        List<Instant> writtenBooked = new ArrayList<>();
+        int newPending = 0;
+        int newBooked = 0;
+        for (ProviderTransactionWithId trx : instruction.getTransactionsToInsert()) {
+            if (add(trx, writtenPending, writtenBooked)) {
+                newPending++;
+            } else {
+                newBooked++;
+            }
+        }
+        for (ProviderTransactionWithId trx : instruction.getTransactionsToUpdate()) {
+            boolean pending = add(trx, writtenPending, writtenBooked);
+            if (deletedIds.contains(trx.getTransactionId())) {
+                if (pending) {
+                    newPending++;
+                } else {
+                    newBooked++;
+                }
+            }
+        }
+
+        if (deletedIds.isEmpty() && writtenPending.isEmpty() && writtenBooked.isEmpty()) {
+            return Optional.of(status);
+        }
+
+        int remainingPending = Math.max(0, status.getPendingCount() - deletedPending);
+        Instant oldestPending = remainingPending == 0 ? null : status.getOldestPending();
+        Instant newestPending = remainingPending == 0 ? null : status.getNewestPending();
+        for (Instant timestamp : writtenPending) {
+            oldestPending = oldestPending == null || timestamp.isBefore(oldestPending) ? timestamp : oldestPending;
+            newestPending = newestPending == null || timestamp.isAfter(newestPending) ? timestamp : newestPending;
+        }
+
+        Instant newestBooked = status.getNewestBooked();
+        for (Instant timestamp : writtenBooked) {
+            newestBooked = newestBooked == null || timestamp.isAfter(newestBooked) ? timestamp : newestBooked;
+        }
+
+        Instant newestBookedBeforePending = null;
+        if (oldestPending != null) {
+            if (remainingPending > 0 && status.getOldestPending() != null) {
+                // The pending transactions that were counted are (partly) left, a booked transaction that preceded them
+                // still precedes them, unless a pending transaction before it was written.
+                newestBookedBeforePending = status.getNewestBookedBeforePending();
+                if (newestBookedBeforePending != null && newestBookedBeforePending.isAfter(oldestPending)) {
+                    return Optional.empty();
+                }
+            } else if (newestBooked == null || !newestBooked.isAfter(oldestPending)) {
+                // The pending transactions start over, they follow all booked transactions.
+                newestBookedBeforePending = newestBooked;
+            } else {
+                return Optional.empty();
+            }
+            for (Instant timestamp : writtenBooked) {
+                if (!timestamp.isAfter(oldestPending) && isBefore(newestBookedBeforePending, timestamp)) {
+                    newestBookedBeforePending = timestamp;
+                }
+            }
+        }
+
+        return Optional.of(status.toBuilder()
+                .oldestPending(oldestPending)
+                .newestPending(newestPending)
+                .pendingCount(remainingPending + newPending)
+                .newestBooked(newestBooked)
+                .newestBookedBeforePending(newestBookedBeforePending)
+                .bookedCount(Math.max(0, status.getBookedCount() - deletedBooked) + newBooked)
+                .build());
+    }
+
+    /**
+     * @return true if the status refers to a transaction that has expired through the retention policy of its client
+     */
+    private boolean hasExpired(final AccountTransactionStatus status) {
+        return Stream.of(status.getOldestPending(), status.getNewestBookedBeforePending(), status.getNewestBooked())
+                .filter(Objects::nonNull)
+                .min(Instant::compareTo)
+                .filter(timestamp -> retentionPolicies.isExpired(status.getUserId(), LocalDate.ofInstant(timestamp, ZoneOffset.UTC)))
+                .isPresent();
+    }
+
+    private AccountTransactionStatus count(final UUID userId, final UUID accountId) {
+        var transactions = transactionRepository.getStatusAndTimestampForTrxs(userId, accountId);
+        var oldestPending = transactions.stream()
+                .filter(t -> t.getLeft() == TransactionStatus.PENDING)
+                .map(Pair::getRight)
+                .min(Instant::compareTo);
+        return AccountTransactionStatus.builder()
+                .userId(userId)
+                .accountId(accountId)
+                .oldestPending(oldestPending.orElse(null))
+                .newestPending(transactions.stream()
+                        .filter(t -> t.getLeft() == TransactionStatus.PENDING)
+                        .map(Pair::getRight)
+                        .max(Instant::compareTo)
+                        .orElse(null))
+                .pendingCount((int) transactions.stream().filter(t -> t.getLeft() == TransactionStatus.PENDING).count())
+                .newestBooked(transactions.stream()
+                        .filter(t -> t.getLeft() == TransactionStatus.BOOKED)
+                        .map(Pair::getRight)
+                        .max(Instant::compareTo)
+                        .orElse(null))
+                .newestBookedBeforePending(oldestPending.flatMap(upperBound -> transactions.stream()
+                                .filter(t -> t.getLeft() == TransactionStatus.BOOKED)
+                                .map(Pair::getRight)
+                                .filter(timestamp -> !timestamp.isAfter(upperBound))
+                                .max(Instant::compareTo))
+                        .orElse(null))
+                .bookedCount((int) transactions.stream().filter(t -> t.getLeft() == TransactionStatus.BOOKED).count())
+                .build();
+    }
+
+    /**
+     * @return true if the transaction is pending
+     */
+    private static boolean add(final ProviderTransactionWithId transaction, final List<Instant> pending, final List<Instant> booked) {
+        var providerTransaction = transaction.getProviderTransactionDTO();
+        // The same timestamp as the row in the transactions table, see TransactionService#map.
+        var timestamp = providerTransaction.getDateTime().toInstant().truncatedTo(ChronoUnit.MILLIS);
+        if (providerTransaction.getStatus() == TransactionStatus.PENDING) {
+            pending.add(timestamp);
+            return true;
+        }
+        booked.add(timestamp);
+        return false;
+    }
+
+    /**
+     * @return true if {@code timestamp} is before {@code other}, a {@code null} timestamp precedes all others
+     */
+    private static boolean isBefore(final Instant timestamp, final Instant other) {
+        return other != null && (timestamp == null || timestamp.isBefore(other));
+    }
+}
@@ -9,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.Clock;
@@ -17,8 +18,10 @@ import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
@@ -35,8 +38,15 @@ public class SummaryService {
     private final Clock clock;
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final AccountTransactionStatusRepository accountTransactionStatusRepository;
     private final AccountsAndTransactionMetrics metrics;
 
+    /**
+     * Read the {@link AccountTransactionStatus} of the accounts (a single partition per user) instead of the transactions
+     * of every account within the horizon.  Accounts without a status (not refreshed since) fall back to the transactions.
+     */
+    @Value("${yolt.accounts-and-transactions.summary.materialized.enabled:false}")
+    private final boolean materialized;
 
     /**
      * Compute a summary that contains, for every UserSite (for which we have transaction information in the db):
@@ -44,19 +54,26 @@ public class SummaryService {
      * - the timestamp at which the most recent booked transaction happened
      * - the timestamp at which the most recent booked transaction before all pending transactions took place
      * - the timestamp that should be used as the lower bound for retrieving transactions
+     * <p>
+     * Pending transactions before the horizon do not move the lower bound before the horizon.
      */
     public List<UserSiteTransactionStatusSummary> getUserSiteTransactionStatusSummary(@NonNull UUID userId) {
         // Limit the list of transactions we retrieve (for performance reasons).
         final LocalDate horizon = LocalDate.now(clock).minusDays(USER_SITE_TRANSACTION_STATUS_SUMMARY_HORIZON_DAYS);
 
+        final Instant horizonStart = horizon.atStartOfDay(clock.getZone()).toInstant();
+
         // List the accounts for the user first, we require this to access the transactions table efficiently.
         var accounts = accountRepository.getAccounts(userId);
+        Map<UUID, AccountTransactionStatus> statuses = materialized
+                ? accountTransactionStatusRepository.find(userId).stream().collect(Collectors.toMap(AccountTransactionStatus::getAccountId, Function.identity()))
+                : Map.of();
 
         return accounts.stream().collect(Collectors.groupingBy(Account::getUserSiteId))
                 .entrySet().stream()
                 .map(entry -> {
                     var summaries = entry.getValue().stream()
-                            .map(account -> getAccountTransactionStatusSummary(account, horizon))
+                            .map(account -> getAccountTransactionStatusSummary(account, horizon, statuses.get(account.getId())))
                             .collect(Collectors.toList());
 
                     var oldestPendingTrxTimestamp = getOldestPendingTrxTimestamp(summaries);
@@ -69,6 +86,15 @@ public class SummaryService {
                     var transactionRetrievalLowerBoundTimestamp = getTransactionRetrievalLowerBoundTimestamp(siteId,
                             oldestPendingTrxTimestamp, mostRecentBookedTrxTimestamp, mostRecentBookedBeforeAllPendingTrxTimestamp);
 
+                    // The status of an account covers all its transactions, a query only those within the horizon.
+                    // Pending transactions that are stuck for longer than the horizon should not widen the lower bound beyond it.
+                    if (oldestPendingTrxTimestamp.filter(timestamp -> timestamp.isBefore(horizonStart)).isPresent()) {
+                        var horizonLowerBound = horizonStart.minus(1, ChronoUnit.DAYS);
+                        transactionRetrievalLowerBoundTimestamp = Optional.of(transactionRetrievalLowerBoundTimestamp
+                                .filter(timestamp -> timestamp.isAfter(horizonLowerBound))
+                                .orElse(horizonLowerBound));
+                    }
+
                     return UserSiteTransactionStatusSummary.builder()
                             .userSiteId(entry.getKey())
                             .transactionRetrievalLowerBoundTimestamp(transactionRetrievalLowerBoundTimestamp)
@@ -77,7 +103,13 @@ public class SummaryService {
                 .collect(Collectors.toList());
     }
 
-    private AccountTransactionStatusSummary getAccountTransactionStatusSummary(Account account, LocalDate horizon) {
+    private AccountTransactionStatusSummary getAccountTransactionStatusSummary(Account account, LocalDate horizon, AccountTransactionStatus status) {
+        if (status != null) {
+            var summary = status.toSummary();
+            summary.getOldestPendingTrxTimestamp().ifPresent(time -> metrics.measureAgeOfPendingTransaction(account.getSiteId(), account.getType(), time));
+            return summary;
+        }
+
         var trxs = transactionRepository.getStatusAndTimestampForTrxsOnOrAfter(account.getUserId(), account.getId(), horizon);
 
         // Find the oldest pending transaction.
@@ -0,0 +1,34 @@
+package com.yolt.accountsandtransactions.transactions;
+
+/**
+ * The migration of the transactions from the {@code transactions} table (a partition per user) to the
+ * {@code transactions_by_month} table (a partition per account and month), see {@link TransactionsByMonthRepository}.
+ * <p>
+ * The {@code transactions} table is written in every mode, so a mode can always be rolled back to the previous one.
+ */
+public enum TransactionBucketMode {
+    /**
+     * Only the {@code transactions} table is used.
+     */
+    OFF,
+    /**
+     * The transactions are written to both tables and read from the {@code transactions} table.  Once the existing
+     * transactions have been copied (see {@link com.yolt.accountsandtransactions.batch.BatchBackfillTransactionsByMonth})
+     * both tables hold the same transactions.
+     */
+    DUAL_WRITE,
+    /**
+     * The transactions are written to both tables and the reads of (the transactions of) an account are served from the
+     * {@code transactions_by_month} table.  The paging states of the two tables are not compatible: a paging state that
+     * was issued before the switch (or after a roll back) is rejected with a 400, the client starts from the first page.
+     */
+    DUAL_READ;
+
+    public boolean writesMonths() {
+        return this != OFF;
+    }
+
+    public boolean readsMonths() {
+        return this == DUAL_READ;
+    }
+}
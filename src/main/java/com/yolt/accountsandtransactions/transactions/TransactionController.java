@@ -14,6 +14,7 @@ import nl.ing.lovebird.clienttokens.ClientUserToken;
 import nl.ing.lovebird.clienttokens.annotations.VerifiedClientToken;
 import com.yolt.accountsandtransactions.datetime.DateInterval;
 import nl.ing.lovebird.springdoc.annotations.ExternalApi;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
@@ -31,13 +32,14 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 @Slf4j
 @RequiredArgsConstructor
 @RestController
+@ConditionalOnProperty(value = "yolt.accounts-and-transactions.api.non-blocking-reads.enabled", havingValue = "false", matchIfMissing = true)
 @Tag(name = ApiTags.AIS_TRANSACTION_DETAILS)
 public class TransactionController {
 
     /**
      * Number of transactions returned in a single page.
      */
-    private static final int pageSize = 100;
+    static final int pageSize = 100;
 
     private final AccountService accountService;
 
@@ -79,6 +81,11 @@ public class TransactionController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
         TransactionsPageDTO transactionDTOS = accountService.getTransactionsForAccount(userId, accountIds, dateInterval, next, pageSize);
+        logPage(userId, dateInterval, accountIds, next, transactionDTOS);
+        return ResponseEntity.ok(transactionDTOS);
+    }
+
+    static void logPage(UUID userId, DateInterval dateInterval, List<UUID> accountIds, String next, TransactionsPageDTO transactionDTOS) {
         var sorted = transactionDTOS.getTransactions().stream()
                 .sorted(comparing(TransactionDTO::getDate))
                 .toList();
@@ -92,7 +99,6 @@ public class TransactionController {
                 , !sorted.isEmpty() ? sorted.get(sorted.size() - 1).getDate() : null // ub_date = highest date in response
                 , transactionDTOS.getNext() != null
         ); // NOSHERIFF
-        return ResponseEntity.ok(transactionDTOS);
     }
 
 }
@@ -8,7 +8,9 @@ import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.mapping.Mapper;
 import com.datastax.driver.mapping.MappingManager;
 import com.datastax.driver.mapping.Result;
+import com.yolt.accountsandtransactions.concurrency.ReactiveResults;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -24,6 +26,22 @@ public class TransactionPager<T extends Transaction> {
     }
 
     public TransactionsPage getPage(final Select regularSelect, final String pagingState) {
+        setPagingState(regularSelect, pagingState);
+        return toPage(session.execute(regularSelect));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getPage(Select, String)}, an invalid paging state is signalled as an
+     * {@link InvalidPagingStateException}.
+     */
+    public Mono<TransactionsPage> getPageAsync(final Select regularSelect, final String pagingState) {
+        return ReactiveResults.mono(() -> {
+            setPagingState(regularSelect, pagingState);
+            return session.executeAsync(regularSelect);
+        }).map(this::toPage);
+    }
+
+    private static void setPagingState(final Select regularSelect, final String pagingState) {
         if (pagingState != null) {
             try {
                 regularSelect.setPagingState(PagingState.fromString(pagingState));
@@ -32,22 +50,18 @@ public class TransactionPager<T extends Transaction> {
                 throw new InvalidPagingStateException(String.format("Invalid paging state %s for query %s", pagingState, regularSelect.getQueryString()));
             }
         }
+    }
 
-        final ResultSet resultSet = session.execute(regularSelect);
-
+    private TransactionsPage toPage(final ResultSet resultSet) {
         final PagingState newPagingState = resultSet.getExecutionInfo().getPagingState();
-        int remaining = resultSet.getAvailableWithoutFetching();
+        final int available = resultSet.getAvailableWithoutFetching();
 
-        final List<Transaction> transactions = new ArrayList<>(remaining);
+        final List<Transaction> transactions = new ArrayList<>(available);
         final Result<T> result = mapper.map(resultSet);
-        for (T trx : result) {
-            transactions.add(trx);
-
-            // Prevent the driver from retrieving more data (which would happen we keep calling converter.read())
-            --remaining;
-            if (remaining == 0) {
-                break;
-            }
+        // Only take the rows of this page, iterating further would make the driver (synchronously) fetch the next page.
+        // The non-blocking variant maps the page on an I/O thread of the driver, where that fetch is not allowed.
+        for (int i = 0; i < available; i++) {
+            transactions.add(result.one());
         }
 
         String serializedNewPagingState = newPagingState != null ? newPagingState.toString() : null;
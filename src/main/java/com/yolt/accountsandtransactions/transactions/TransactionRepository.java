@@ -8,17 +8,21 @@ import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.extras.codecs.jdk8.InstantCodec;
 import com.datastax.driver.mapping.Mapper;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import nl.ing.lovebird.cassandra.CassandraRepository;
 import nl.ing.lovebird.cassandra.codec.LocalDateTypeCodec;
 import com.yolt.accountsandtransactions.datetime.DateInterval;
 import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.validation.annotation.Validated;
+import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
 import java.time.Instant;
@@ -32,7 +36,15 @@ import java.util.stream.Collectors;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.*;
 import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.BOOKED;
 import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.PENDING;
+import static reactor.core.scheduler.Schedulers.boundedElastic;
 
+/**
+ * The transactions, partitioned by user.
+ * <p>
+ * Depending on the {@link TransactionBucketMode} the transactions are written to the {@link TransactionsByMonthRepository}
+ * as well, and the reads of (the transactions of) an account are served from there.  The reads of all transactions of a
+ * user are always served from this table.
+ */
 @Validated
 @Repository
 @Slf4j
@@ -41,16 +53,25 @@ public class TransactionRepository extends CassandraRepository<Transaction> {
     private final int batchSize;
     private final int fetchSizeForInternalSummary;
     private final TransactionPager<Transaction> pager;
+    private final RetentionPolicies retentionPolicies;
+    private final TransactionsByMonthRepository transactionsByMonth;
+    private final TransactionBucketMode bucketMode;
     private final LocalDateTypeCodec localDateTypeCodec = new LocalDateTypeCodec();
 
     protected TransactionRepository(Session session,
+                                    RetentionPolicies retentionPolicies,
+                                    TransactionsByMonthRepository transactionsByMonth,
                                     @Value("${lovebird.accounts-and-transactions.batch-size:500}") final int batchSize,
-                                    @Value("${yolt.transactions.internal-summary.fetch-size:2000}") int fetchSizeForInternalSummary) {
+                                    @Value("${yolt.transactions.internal-summary.fetch-size:2000}") int fetchSizeForInternalSummary,
+                                    @Value("${yolt.accounts-and-transactions.transactions.bucket-mode:OFF}") TransactionBucketMode bucketMode) {
         super(session, Transaction.class);
         setAuditLoggingEnabled(false);
 
         this.batchSize = batchSize;
         this.fetchSizeForInternalSummary = fetchSizeForInternalSummary;
+        this.retentionPolicies = retentionPolicies;
+        this.transactionsByMonth = transactionsByMonth;
+        this.bucketMode = bucketMode;
         this.pager = new TransactionPager<>(session, Transaction.class);
     }
 
@@ -59,6 +80,17 @@ public class TransactionRepository extends CassandraRepository<Transaction> {
         return select(select);
     }
 
+    /**
+     * All transactions of the user, as an {@link Iterable} that fetches the next page of <code>fetchSize</code>
+     * transactions only when the previous page has been consumed.  Unlike {@link #getTransactionsForUser(UUID)}, the
+     * (possibly large) partition is never held in memory as a whole.
+     */
+    public Iterable<Transaction> streamTransactionsForUser(@NonNull UUID userId, int fetchSize) {
+        Select select = getTransactionsForUserQuery(userId);
+        select.setFetchSize(fetchSize);
+        return mapper.map(session.execute(select));
+    }
+
     public Select getTransactionsForUserQuery(UUID userId) {
         Select select = QueryBuilder.select()
                 .from("transactions");
@@ -67,6 +99,26 @@ public class TransactionRepository extends CassandraRepository<Transaction> {
     }
 
     public void deleteSpecificTransactions(final @NonNull List<TransactionService.TransactionPrimaryKey> transactionsToDelete) {
+        session.execute(deleteSpecificTransactionsStatement(transactionsToDelete));
+        pruneMonths(transactionsToDelete);
+
+        log.debug("Deleted a batch of {} transactions", transactionsToDelete.size());
+    }
+
+    /**
+     * Remove the months that are left without transactions after {@link #deleteSpecificTransactionsStatement(List)} has
+     * been executed, see {@link TransactionsByMonthRepository#pruneMonths(List)}.
+     */
+    public void pruneMonths(final @NonNull List<TransactionService.TransactionPrimaryKey> deletedTransactions) {
+        if (bucketMode.writesMonths()) {
+            transactionsByMonth.pruneMonths(deletedTransactions);
+        }
+    }
+
+    /**
+     * The (unlogged) batch that {@link #deleteSpecificTransactions(List)} executes, for asynchronous execution.
+     */
+    public BatchStatement deleteSpecificTransactionsStatement(final @NonNull List<TransactionService.TransactionPrimaryKey> transactionsToDelete) {
         BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
 
         transactionsToDelete.forEach(t -> {
@@ -77,10 +129,10 @@ public class TransactionRepository extends CassandraRepository<Transaction> {
             delete.where(eq("id", t.getId()));
             batch.add(delete);
         });
-
-        session.execute(batch);
-
-        log.debug("Deleted a batch of {} transactions", transactionsToDelete.size());
+        if (bucketMode.writesMonths()) {
+            transactionsByMonth.deleteStatements(transactionsToDelete).forEach(batch::add);
+        }
+        return batch;
     }
 
     TransactionsPage getPageOfTransactionsForAccounts(@NonNull UUID userId, @NonNull List<UUID> accountIds, @Nullable String pagingState) {
@@ -98,14 +150,76 @@ public class TransactionRepository extends CassandraRepository<Transaction> {
         Delete delete = super.createDelete();
         delete.where(eq("user_id", userId)).and(in("account_id", accountIds));
         executeDelete(delete);
+        if (bucketMode.writesMonths()) {
+            transactionsByMonth.deleteAccounts(userId, accountIds);
+        }
     }
 
+    /**
+     * Upserts the transactions, with the TTL of the retention policy of their client (if any), see {@link RetentionPolicies}.
+     */
     public void upsert(@Valid List<Transaction> transactions) {
-        super.saveBatch(transactions, batchSize);
+        if (retentionPolicies.isEmpty()) {
+            super.saveBatch(transactions, batchSize);
+        } else {
+            var withOptions = transactions.stream()
+                    .map(t -> new Tuple2<>(t, ImmutableList.copyOf(retentionPolicies.saveOptions(t.getUserId(), t.getDate()))))
+                    .collect(Collectors.toList());
+            super.saveBatchWithOption(withOptions, batchSize);
+        }
+        if (bucketMode.writesMonths()) {
+            transactionsByMonth.upsertStatements(transactions, batchSize).forEach(batch -> {
+                batch.setConsistencyLevel(writeConsistency);
+                session.execute(batch);
+            });
+        }
+    }
+
+    /**
+     * The equivalent of {@link #upsert(List)} as (unlogged) batches of at most <code>batchSize</code> transactions,
+     * for asynchronous execution.  All transactions have the same userId, thus they are written to the same partition.
+     * When the transactions are bucketed as well, the batches of the buckets (a partition each) follow.
+     */
+    public List<BatchStatement> upsertStatements(@Valid List<Transaction> transactions) {
+        var batches = ListUtils.partition(transactions, batchSize).stream()
+                .map(subBatch -> {
+                    BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    subBatch.forEach(t -> batch.add(mapper.saveQuery(t, retentionPolicies.saveOptions(t.getUserId(), t.getDate()).toArray(Mapper.Option[]::new))));
+                    batch.setConsistencyLevel(writeConsistency);
+                    return batch;
+                })
+                .collect(Collectors.toList());
+        if (bucketMode.writesMonths()) {
+            transactionsByMonth.upsertStatements(transactions, batchSize).forEach(batch -> {
+                batch.setConsistencyLevel(writeConsistency);
+                batches.add(batch);
+            });
+        }
+        return batches;
     }
 
     public TransactionsPage get(@NonNull UUID userId, @NonNull List<UUID> accountIds, @NonNull DateInterval interval, @Nullable String pagingState, int pageSize) {
+        if (bucketMode.readsMonths()) {
+            return transactionsByMonth.get(userId, accountIds, interval, pagingState, pageSize);
+        }
+        return pager.getPage(pageSelect(userId, accountIds, interval, pageSize), pagingState);
+    }
 
+    /**
+     * Non-blocking variant of {@link #get(UUID, List, DateInterval, String, int)}.
+     * <p>
+     * The pages of the {@code transactions_by_month} table are merged from several (blocking) reads, in
+     * {@link TransactionBucketMode#DUAL_READ} the page is read on the bounded elastic scheduler instead.
+     */
+    public Mono<TransactionsPage> getAsync(@NonNull UUID userId, @NonNull List<UUID> accountIds, @NonNull DateInterval interval, @Nullable String pagingState, int pageSize) {
+        if (bucketMode.readsMonths()) {
+            return Mono.fromCallable(() -> transactionsByMonth.get(userId, accountIds, interval, pagingState, pageSize))
+                    .subscribeOn(boundedElastic());
+        }
+        return pager.getPageAsync(pageSelect(userId, accountIds, interval, pageSize), pagingState);
+    }
+
+    private static Select pageSelect(UUID userId, List<UUID> accountIds, DateInterval interval, int pageSize) {
         Select select = QueryBuilder.select()
                 .from("transactions");
 
@@ -115,8 +229,7 @@ public class TransactionRepository extends CassandraRepository<Transaction> {
                 .and(in("account_id", accountIds))
                 .and(gte("date", interval.getStartFormatted()))
                 .and(lte("date", interval.getEndFormatted()));
-
-        return pager.getPage(select, pagingState);
+        return select;
     }
 
     /**
@@ -129,12 +242,34 @@ public class TransactionRepository extends CassandraRepository<Transaction> {
      * @param onOrAfterDate only consider transactions on or after this date
      */
     public List<Pair<TransactionStatus, Instant>> getStatusAndTimestampForTrxsOnOrAfter(@NonNull UUID userId, @NonNull UUID accountId, @NonNull LocalDate onOrAfterDate) {
+        if (bucketMode.readsMonths()) {
+            return transactionsByMonth.getStatusAndTimestamp(userId, accountId, onOrAfterDate);
+        }
         Select select = QueryBuilder.select("status", "transaction_timestamp")
                 .from("transactions");
         select.where(eq("user_id", userId))
                 .and(eq("account_id", accountId))
                 .and(gte("date", localDateTypeCodec.format(onOrAfterDate)));
+        return getStatusAndTimestamp(select);
+    }
+
+    /**
+     * Retrieve, for a given account, the status and timestamp for all transactions.  Unlike
+     * {@link #getStatusAndTimestampForTrxsOnOrAfter(UUID, UUID, LocalDate)} this reads the whole history of the account,
+     * in pages of <code>fetchSizeForInternalSummary</code> transactions.
+     */
+    public List<Pair<TransactionStatus, Instant>> getStatusAndTimestampForTrxs(@NonNull UUID userId, @NonNull UUID accountId) {
+        if (bucketMode.readsMonths()) {
+            return transactionsByMonth.getStatusAndTimestamp(userId, accountId, null);
+        }
+        Select select = QueryBuilder.select("status", "transaction_timestamp")
+                .from("transactions");
+        select.where(eq("user_id", userId))
+                .and(eq("account_id", accountId));
+        return getStatusAndTimestamp(select);
+    }
 
+    private List<Pair<TransactionStatus, Instant>> getStatusAndTimestamp(Select select) {
         // When setting the fetch size, the driver will fetch pages this size.
         // if session.execute(select).all() is invoked, the driver will fetch all the results in chunks of fetchSizeForInternalSummary.
         select.setFetchSize(fetchSizeForInternalSummary);
@@ -151,6 +286,9 @@ public class TransactionRepository extends CassandraRepository<Transaction> {
     }
 
     public Optional<Transaction> get(@NonNull UUID userId, @NonNull UUID accountId, @NonNull LocalDate date, @NonNull String transactionId) {
+        if (bucketMode.readsMonths()) {
+            return transactionsByMonth.get(userId, accountId, date, transactionId);
+        }
         return select(QueryBuilder.select()
                 .from("transactions")
                 .where(eq("user_id", userId))
@@ -161,6 +299,9 @@ public class TransactionRepository extends CassandraRepository<Transaction> {
     }
 
     public List<Transaction> getTransactionsInAccountFromDate(final @NonNull UUID userId, final @NonNull UUID accountId, @NonNull LocalDate onOrAfterDate) {
+        if (bucketMode.readsMonths()) {
+            return transactionsByMonth.getTransactionsInAccountFromDate(userId, accountId, onOrAfterDate);
+        }
         return select(QueryBuilder.select()
                 .from("transactions")
                 .where(eq("user_id", userId))
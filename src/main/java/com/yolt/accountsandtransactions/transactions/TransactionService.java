@@ -2,14 +2,19 @@ package com.yolt.accountsandtransactions.transactions;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.yolt.accountsandtransactions.accounts.AccountReferencesDTO;
+import com.yolt.accountsandtransactions.datascience.PendingTransactionRangeService;
 import com.yolt.accountsandtransactions.inputprocessing.AccountFromProviders;
 import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
 import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction.InstructionType;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Writes;
+import com.yolt.accountsandtransactions.inputprocessing.UpstreamDigestService;
 import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
 import com.yolt.accountsandtransactions.offloading.OffloadService;
+import com.yolt.accountsandtransactions.summary.AccountTransactionStatusService;
 import com.yolt.accountsandtransactions.transactions.TransactionDTO.EnrichmentDTO;
 import com.yolt.accountsandtransactions.transactions.cycles.TransactionCyclesService;
 import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichments;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository.TransactionEnrichmentsPrimaryKey;
 import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsService;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
@@ -22,20 +27,25 @@ import nl.ing.lovebird.extendeddata.transaction.ExchangeRateDTO;
 import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
 import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
+import static com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Keyspace.ACCOUNTS_AND_TRANSACTIONS;
 import static java.lang.String.format;
-import static java.util.Collections.emptyList;
 import static java.util.Optional.empty;
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static nl.ing.lovebird.providerdomain.ProviderTransactionType.DEBIT;
 
 @RequiredArgsConstructor
@@ -47,6 +57,9 @@ public class TransactionService {
     private final TransactionEnrichmentsService transactionEnrichmentsService;
     private final TransactionCyclesService transactionCyclesService;
     private final OffloadService offloadService;
+    private final AccountTransactionStatusService accountTransactionStatusService;
+    private final PendingTransactionRangeService pendingTransactionRangeService;
+    private final UpstreamDigestService upstreamDigestService;
     private final Clock clock;
     private final AccountsAndTransactionMetrics metrics;
 
@@ -59,8 +72,7 @@ public class TransactionService {
         String pagingState = null;
         do {
             var transactionsPage = transactionRepository.getPageOfTransactionsForAccounts(userId, accountIds, pagingState);
-            transactionsPage.getTransactions()
-                    .forEach(offloadService::offloadDeleteAsync);
+            offloadService.offloadTransactionsDeleteAsync(transactionsPage.getTransactions());
             pagingState = transactionsPage.getNext();
         } while (pagingState != null);
 
@@ -70,6 +82,9 @@ public class TransactionService {
                 .filter(Objects::nonNull)
                 .forEach(cycleId -> transactionCyclesService.deleteCycle(userId, cycleId));
         transactionEnrichmentsService.deleteAllEnrichmentsForAccounts(userId, accountIds);
+        accountTransactionStatusService.delete(userId, accountIds);
+        pendingTransactionRangeService.delete(userId, accountIds);
+        upstreamDigestService.delete(userId, accountIds);
     }
 
     /**
@@ -79,12 +94,55 @@ public class TransactionService {
      */
     public void deleteSpecificTransactions(final @NonNull List<TransactionPrimaryKey> transactionsToDelete) {
         if (!transactionsToDelete.isEmpty()) {
-            transactionsToDelete.stream()
+            offloadService.offloadTransactionsDeleteAsync(transactionsToDelete.stream()
                     .flatMap(key -> transactionRepository.get(key.getUserId(), key.getAccountId(), key.getDate(), key.getId()).stream())
-                    .forEach(offloadService::offloadDeleteAsync);
+                    .collect(toList()));
 
-            transactionRepository.deleteSpecificTransactions(transactionsToDelete);
-            transactionEnrichmentsService.deleteSpecificEnrichments(transactionsToDelete);
+            deleteTransactionsAndTheirData(transactionsToDelete);
+        }
+    }
+
+    /**
+     * The equivalent of {@link #deleteSpecificTransactions(List)} for transactions that were already read, they are not
+     * read again to offload them.
+     */
+    public void deleteTransactions(final @NonNull List<Transaction> transactionsToDelete) {
+        if (!transactionsToDelete.isEmpty()) {
+            offloadService.offloadTransactionsDeleteAsync(transactionsToDelete);
+
+            deleteTransactionsAndTheirData(transactionsToDelete.stream()
+                    .map(t -> new TransactionPrimaryKey(t.getUserId(), t.getAccountId(), t.getDate(), t.getId(), t.getStatus()))
+                    .collect(toList()));
+        }
+    }
+
+    private void deleteTransactionsAndTheirData(final List<TransactionPrimaryKey> transactionsToDelete) {
+        transactionRepository.deleteSpecificTransactions(transactionsToDelete);
+        transactionEnrichmentsService.deleteSpecificEnrichments(transactionsToDelete);
+
+        // Deleted outside of an ingestion, the status of the accounts is counted again on their next ingestion, and that
+        // ingestion is reconciled in full (it restores the transactions that are still delivered upstream).
+        transactionsToDelete.stream()
+                .collect(groupingBy(TransactionPrimaryKey::getUserId, mapping(TransactionPrimaryKey::getAccountId, toSet())))
+                .forEach((userId, accountIds) -> {
+                    accountTransactionStatusService.delete(userId, List.copyOf(accountIds));
+                    upstreamDigestService.delete(userId, List.copyOf(accountIds));
+                });
+    }
+
+    /**
+     * Asynchronous variant of {@link #deleteSpecificTransactions(List)}, the deletes are submitted to {@code writes}.
+     * The transactions are offloaded (as deleted) before the deletes are submitted.
+     */
+    public void deleteSpecificTransactions(final @NonNull List<TransactionPrimaryKey> transactionsToDelete, final @NonNull Writes writes) {
+        if (!transactionsToDelete.isEmpty()) {
+            offloadService.offloadTransactionsDeleteAsync(transactionsToDelete.stream()
+                    .flatMap(key -> transactionRepository.get(key.getUserId(), key.getAccountId(), key.getDate(), key.getId()).stream())
+                    .collect(toList()));
+
+            writes.delete(ACCOUNTS_AND_TRANSACTIONS, List.of(transactionRepository.deleteSpecificTransactionsStatement(transactionsToDelete)));
+            writes.afterCompletion(() -> transactionRepository.pruneMonths(transactionsToDelete));
+            transactionEnrichmentsService.deleteSpecificEnrichments(transactionsToDelete, writes);
         }
     }
 
@@ -99,15 +157,34 @@ public class TransactionService {
     }
 
     public List<Transaction> saveTransactionsBatch(UUID accountId, ClientUserToken clientUserToken, AccountFromProviders accountFromProviders, List<ProviderTransactionWithId> upstreamTransactions, InstructionType instructionType) {
+        var transactions = toTransactions(accountId, clientUserToken, accountFromProviders, upstreamTransactions, instructionType);
+        transactionRepository.upsert(transactions);
+        afterSave(accountFromProviders, transactions);
+        return transactions;
+    }
+
+    /**
+     * Asynchronous variant of {@link #saveTransactionsBatch(UUID, ClientUserToken, AccountFromProviders, List, InstructionType)},
+     * the batches are submitted to {@code writes} and the transactions are offloaded once {@code writes} completes.
+     */
+    public List<Transaction> saveTransactionsBatch(UUID accountId, ClientUserToken clientUserToken, AccountFromProviders accountFromProviders, List<ProviderTransactionWithId> upstreamTransactions, InstructionType instructionType, Writes writes) {
+        var transactions = toTransactions(accountId, clientUserToken, accountFromProviders, upstreamTransactions, instructionType);
+        writes.upsert(ACCOUNTS_AND_TRANSACTIONS, transactionRepository.upsertStatements(transactions));
+        writes.afterCompletion(() -> afterSave(accountFromProviders, transactions));
+        return transactions;
+    }
+
+    private List<Transaction> toTransactions(UUID accountId, ClientUserToken clientUserToken, AccountFromProviders accountFromProviders, List<ProviderTransactionWithId> upstreamTransactions, InstructionType instructionType) {
         var accountIdentifiable = new AccountIdentifiable(clientUserToken.getUserIdClaim(), accountId, accountFromProviders.getCurrency());
 
-        var transactions = upstreamTransactions.stream()
+        return upstreamTransactions.stream()
                 .map(providerTx -> map(providerTx, accountIdentifiable, instructionType == InstructionType.INSERT, clock, null))
                 .collect(toList());
-        transactionRepository.upsert(transactions);
+    }
 
+    private void afterSave(AccountFromProviders accountFromProviders, List<Transaction> transactions) {
+        offloadService.offloadTransactionsInsertOrUpdateAsync(transactions);
         transactions.forEach(trx -> {
-            offloadService.offloadInsertOrUpdateAsync(trx);
             metrics.incrementDebtorOrCreditorNameIsPresent(
                     accountFromProviders.getProvider(),
                     trx.getAmount().compareTo(BigDecimal.ZERO) >= 0,
@@ -115,8 +192,6 @@ public class TransactionService {
                     trx.getDebtorName() != null
             );
         });
-
-        return transactions;
     }
 
     public Optional<TransactionDTO> getTransaction(UUID userId, UUID accountId, LocalDate date, String transactionId) {
@@ -125,47 +200,56 @@ public class TransactionService {
     }
 
     public TransactionsPageDTO getTransactions(UUID userId, List<UUID> accountIds, DateInterval interval, String pagingState, int pageSize) {
-        var dateInterval = ofNullable(interval).orElseGet(() -> new DateInterval(LocalDate.now(clock).minusMonths(1), LocalDate.now(clock)));
-        var transactionTransactionsPage = transactionRepository.get(userId, accountIds, dateInterval, pagingState, pageSize);
-        var transactionEnrichments = getEnrichmentsForTransactions(userId, accountIds, transactionTransactionsPage.getTransactions());
+        var transactionTransactionsPage = transactionRepository.get(userId, accountIds, orDefault(interval), pagingState, pageSize);
+        var transactions = regular(transactionTransactionsPage);
+        var transactionEnrichments = transactionEnrichmentsService.getTransactionEnrichments(userId, enrichmentsPrimaryKeys(transactions));
+
+        return toDTO(transactions, transactionEnrichments, transactionTransactionsPage.getNext());
+    }
+
+    /**
+     * Non-blocking variant of {@link #getTransactions(UUID, List, DateInterval, String, int)}.
+     */
+    public Mono<TransactionsPageDTO> getTransactionsAsync(UUID userId, List<UUID> accountIds, DateInterval interval, String pagingState, int pageSize) {
+        return transactionRepository.getAsync(userId, accountIds, orDefault(interval), pagingState, pageSize)
+                .flatMap(transactionTransactionsPage -> {
+                    var transactions = regular(transactionTransactionsPage);
+                    return transactionEnrichmentsService.getTransactionEnrichmentsAsync(userId, enrichmentsPrimaryKeys(transactions))
+                            .map(transactionEnrichments -> toDTO(transactions, transactionEnrichments, transactionTransactionsPage.getNext()));
+                });
+    }
 
+    private DateInterval orDefault(DateInterval interval) {
+        return ofNullable(interval).orElseGet(() -> new DateInterval(LocalDate.now(clock).minusMonths(1), LocalDate.now(clock)));
+    }
+
+    private static List<Transaction> regular(TransactionsPage transactionsPage) {
+        return transactionsPage.getTransactions().stream()
+                .filter(transaction -> transaction.getFillTypeOrDefault() == Transaction.FillType.REGULAR)
+                .collect(toList());
+    }
+
+    private static TransactionsPageDTO toDTO(List<Transaction> transactions, Map<TransactionEnrichmentsPrimaryKey, TransactionEnrichments> transactionEnrichments, String next) {
         return new TransactionsPageDTO(
-                transactionTransactionsPage.getTransactions().stream()
-                        .filter(transaction -> transaction.getFillTypeOrDefault() == Transaction.FillType.REGULAR)
-                        .map(transaction -> map(transaction, getEnrichmentsForTransaction(transactionEnrichments, transaction).orElse(null)))
+                transactions.stream()
+                        .map(transaction -> map(transaction, transactionEnrichments.get(enrichmentsPrimaryKey(transaction))))
                         .collect(toList()),
-                transactionTransactionsPage.getNext()
+                next
         );
     }
 
-    private List<TransactionEnrichments> getEnrichmentsForTransactions(UUID userId, List<UUID> accountIds, List<Transaction> transactions) {
-        // The `transactions` can be a subset of the all transactions requested (due to paging) so here we only need to get the transaction-enrichments for this specific set of transactions. Therefore
-        // we narrow the search for transaction-enrichments that fall within the date-interval of the `transactions`. For this we sort the list of transactions based on the date and get the first and last
-        // date and use that in the selection.
+    private static List<TransactionEnrichmentsPrimaryKey> enrichmentsPrimaryKeys(List<Transaction> transactions) {
+        // The `transactions` are a subset of all the transactions requested (due to paging), so we only retrieve the transaction-enrichments
+        // of exactly these transactions (by primary key) and join them by means of a hash lookup on that same primary key.
         //
-        // Note 1: We cannot use the `id` field that is part of the composite key because of Cassandra restrictions. Reason is a range check on the `date` cannot be followed by an `IN` selection on `id`.
-        // Note 2: The resulting list of transaction-enrichments can be longer than the list of transactions if there are a lot of transactions within the date-interval which means that it could contain
-        //         transaction-enrichments for transactions that are not in `transactions`. However for each entry in `transactions` for which there are transaction-enrichments they will be available in the
-        //         returned list.
-        if (transactions.isEmpty()) {
-            return emptyList();
-        } else {
-            var sortedDates = transactions.stream()
-                    .map(Transaction::getDate)
-                    .sorted()
-                    .collect(toList());
-            var dateInterval = new DateInterval(sortedDates.get(0), sortedDates.get(sortedDates.size() - 1));
-            return transactionEnrichmentsService.getTransactionEnrichments(userId, accountIds, dateInterval);
-        }
+        // Note: Cassandra does not allow a range check on `date` followed by an `IN` on `id`, instead the (date, id) pairs are selected per account.
+        return transactions.stream()
+                .map(TransactionService::enrichmentsPrimaryKey)
+                .collect(toList());
     }
 
-    private Optional<TransactionEnrichments> getEnrichmentsForTransaction(List<TransactionEnrichments> enrichments, Transaction transaction) {
-        return enrichments.stream()
-                .filter(enrichment -> enrichment.getUserId().equals(transaction.getUserId()))
-                .filter(enrichment -> enrichment.getAccountId().equals(transaction.getAccountId()))
-                .filter(enrichment -> enrichment.getDate().equals(transaction.getDate()))
-                .filter(enrichment -> enrichment.getId().equals(transaction.getId()))
-                .findFirst();
+    private static TransactionEnrichmentsPrimaryKey enrichmentsPrimaryKey(Transaction transaction) {
+        return new TransactionEnrichmentsPrimaryKey(transaction.getUserId(), transaction.getAccountId(), transaction.getDate(), transaction.getId());
     }
 
     @SuppressWarnings("squid:S3776")
@@ -0,0 +1,501 @@
+package com.yolt.accountsandtransactions.transactions;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.querybuilder.Delete;
+import com.datastax.driver.core.querybuilder.Insert;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.querybuilder.Select;
+import com.datastax.driver.extras.codecs.jdk8.InstantCodec;
+import com.datastax.driver.mapping.Mapper;
+import com.datastax.driver.mapping.MappingManager;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
+import com.yolt.accountsandtransactions.concurrency.Futures;
+import com.yolt.accountsandtransactions.datetime.DateInterval;
+import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.*;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.BOOKED;
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.PENDING;
+
+/**
+ * The transactions partitioned by user, account and month ({@code transactions_by_month}), the alternative for the
+ * {@code transactions} table in which all transactions of a user are stored in a single (unbounded) partition.
+ * <p>
+ * The rows are the same as the rows of the {@code transactions} table plus the month (yyyy-MM) of their date, they are
+ * written with the statements that the {@link Transaction} mapper generates for the {@code transactions} table, bound
+ * to the same insert on this table.  The months for which an account has transactions are kept in the
+ * {@code transaction_months} table (a partition per user), so a read of an interval only reads the buckets that exist.
+ * A month is written with the TTL of the last day of the month, so it expires with the last transaction of its bucket,
+ * and it is removed once the last transaction of its bucket is deleted (see {@link #pruneMonths(List)}).  The buckets
+ * are read in parallel and merged by date (descending).
+ * <p>
+ * The tables are used depending on the {@link TransactionBucketMode}, see {@link TransactionRepository}.
+ */
+@Repository
+@Slf4j
+public class TransactionsByMonthRepository {
+
+    static final String TABLE = "transactions_by_month";
+    static final String MONTHS_TABLE = "transaction_months";
+
+    private static final String USER_ID_COLUMN = "user_id";
+    private static final String ACCOUNT_ID_COLUMN = "account_id";
+    private static final String MONTH_COLUMN = "month";
+    private static final String DATE_COLUMN = "date";
+    private static final String ID_COLUMN = "id";
+
+    /**
+     * The maximum number of buckets that are read at the same time by a single read.
+     */
+    private static final int MAX_CONCURRENT_BUCKET_READS = 16;
+
+    /**
+     * The margin between the write timestamp of the delete of an empty month and the read that found it empty.
+     */
+    private static final Duration PRUNE_TIMESTAMP_MARGIN = Duration.ofMinutes(1);
+
+    /**
+     * The order of the transactions of a page, the most recent transactions first.
+     */
+    private static final Comparator<Transaction> PAGE_ORDER = Comparator.comparing(Transaction::getDate).reversed()
+            .thenComparing(Transaction::getAccountId)
+            .thenComparing(Transaction::getId);
+
+    private final Session session;
+    private final Mapper<Transaction> mapper;
+    private final RetentionPolicies retentionPolicies;
+    /**
+     * The inserts on this table, by the insert on the {@code transactions} table that the mapper generated.  The mapper
+     * generates a different insert for every combination of null fields that it leaves out.
+     */
+    private final Cache<String, PreparedStatement> inserts = CacheBuilder.newBuilder()
+            .maximumSize(1_000)
+            .build();
+
+    public TransactionsByMonthRepository(final Session session, final RetentionPolicies retentionPolicies) {
+        this.session = session;
+        this.mapper = new MappingManager(session).mapper(Transaction.class);
+        this.retentionPolicies = retentionPolicies;
+    }
+
+    /**
+     * The equivalent of {@link TransactionRepository#upsertStatements(List)}: (unlogged) batches of at most
+     * {@code batchSize} transactions of the same bucket, with the TTL of the retention policy of their client, and the
+     * months of the buckets.
+     */
+    public List<BatchStatement> upsertStatements(final @NonNull List<Transaction> transactions, final int batchSize) {
+        var buckets = transactions.stream()
+                .collect(groupingBy(Bucket::of));
+
+        var batches = new ArrayList<BatchStatement>();
+        buckets.forEach((bucket, transactionsOfBucket) -> ListUtils.partition(transactionsOfBucket, batchSize).forEach(subBatch -> {
+            BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            subBatch.forEach(t -> batch.add(insert(t, retentionPolicies.ttl(t.getUserId(), t.getDate()), null)));
+            batches.add(batch);
+        }));
+        // A transaction of the month expires at the latest with the last day of the month.
+        batches.addAll(monthStatements(buckets.keySet(), bucket -> retentionPolicies.ttl(bucket.getUserId(), bucket.lastDay()), null));
+        return batches;
+    }
+
+    /**
+     * Copy rows of the {@code transactions} table, without their null columns (to not create tombstones), and their months
+     * with the given write timestamp (in microseconds), see {@link com.yolt.accountsandtransactions.batch.BatchBackfillTransactionsByMonth}.
+     * The TTLs follow the same rule as {@link #upsertStatements(List, int)}: a month expires with the last day of the
+     * month, whichever of its transactions are in {@code transactions} (a month can be copied in more than one page).
+     *
+     * @param ttl the TTL of a row of the user that is dated at the given date, empty if it is kept forever (see
+     *            {@link RetentionPolicies#ttl(UUID, LocalDate)})
+     */
+    public CompletableFuture<Void> copyAsync(final @NonNull List<Transaction> transactions, final @NonNull BiFunction<UUID, LocalDate, Optional<Integer>> ttl, final long timestampMicros) {
+        var writes = new ArrayList<CompletableFuture<ResultSet>>();
+        transactions.forEach(t -> writes.add(Futures.from(session.executeAsync(insert(t, ttl.apply(t.getUserId(), t.getDate()), timestampMicros, Mapper.Option.saveNullFields(false))))));
+        var buckets = transactions.stream()
+                .map(Bucket::of)
+                .distinct()
+                .collect(toList());
+        monthStatements(buckets, bucket -> ttl.apply(bucket.getUserId(), bucket.lastDay()), timestampMicros)
+                .forEach(batch -> writes.add(Futures.from(session.executeAsync(batch))));
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * The (unlogged) batches that add the months of the given buckets, a batch per user.
+     *
+     * @param ttlOf           the TTL of the month of a bucket, empty if it is kept forever
+     * @param timestampMicros the write timestamp, {@code null} for the current time
+     */
+    private List<BatchStatement> monthStatements(final Collection<Bucket> buckets, final Function<Bucket, Optional<Integer>> ttlOf, final @Nullable Long timestampMicros) {
+        return buckets.stream()
+                .collect(groupingBy(Bucket::getUserId))
+                .values().stream()
+                .map(bucketsOfUser -> {
+                    BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    bucketsOfUser.forEach(bucket -> {
+                        Insert insert = insertInto(MONTHS_TABLE)
+                                .value(USER_ID_COLUMN, bucket.getUserId())
+                                .value(ACCOUNT_ID_COLUMN, bucket.getAccountId())
+                                .value(MONTH_COLUMN, bucket.getMonth());
+                        ttlOf.apply(bucket).ifPresent(seconds -> insert.using(ttl(seconds)));
+                        if (timestampMicros != null) {
+                            insert.using(timestamp(timestampMicros));
+                        }
+                        batch.add(insert);
+                    });
+                    return batch;
+                })
+                .collect(toList());
+    }
+
+    /**
+     * The deletes of the transactions, to be added to the batch that deletes them from the {@code transactions} table.
+     * The months are pruned once the deletes have completed, see {@link #pruneMonths(List)}.
+     */
+    public List<Delete> deleteStatements(final @NonNull List<TransactionPrimaryKey> transactionsToDelete) {
+        return transactionsToDelete.stream()
+                .map(t -> {
+                    Delete delete = QueryBuilder.delete().from(TABLE);
+                    delete.where(eq(USER_ID_COLUMN, t.getUserId()))
+                            .and(eq(ACCOUNT_ID_COLUMN, t.getAccountId()))
+                            .and(eq(MONTH_COLUMN, month(t.getDate())))
+                            .and(eq(DATE_COLUMN, format(t.getDate())))
+                            .and(eq(ID_COLUMN, t.getId()));
+                    return delete;
+                })
+                .collect(toList());
+    }
+
+    /**
+     * Delete the months of the buckets of the deleted transactions that have no transactions left, so they are no longer
+     * read.  A bucket is checked with a read of a single row.  The month is deleted with a write timestamp just before
+     * that read, so a month that is written again by a concurrent insert into the bucket (with a later timestamp) is kept.
+     * The margin also keeps a month that was written less than {@link #PRUNE_TIMESTAMP_MARGIN} ago, its bucket is read
+     * (and found empty) until a later delete prunes it, it expires, or the account is deleted.
+     */
+    public void pruneMonths(final @NonNull List<TransactionPrimaryKey> deletedTransactions) {
+        deletedTransactions.stream()
+                .map(Bucket::of)
+                .distinct()
+                .forEach(bucket -> {
+                    long timestampMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now().minus(PRUNE_TIMESTAMP_MARGIN));
+                    Select select = QueryBuilder.select(DATE_COLUMN).from(TABLE);
+                    select.where(eq(USER_ID_COLUMN, bucket.getUserId()))
+                            .and(eq(ACCOUNT_ID_COLUMN, bucket.getAccountId()))
+                            .and(eq(MONTH_COLUMN, bucket.getMonth()));
+                    select.limit(1);
+                    if (session.execute(select).one() != null) {
+                        return;
+                    }
+
+                    Delete delete = QueryBuilder.delete().from(MONTHS_TABLE);
+                    delete.where(eq(USER_ID_COLUMN, bucket.getUserId()))
+                            .and(eq(ACCOUNT_ID_COLUMN, bucket.getAccountId()))
+                            .and(eq(MONTH_COLUMN, bucket.getMonth()));
+                    delete.using(timestamp(timestampMicros));
+                    session.execute(delete);
+                });
+    }
+
+    /**
+     * Delete all transactions (all buckets) of the accounts, and their months.
+     */
+    public void deleteAccounts(final @NonNull UUID userId, final @NonNull List<UUID> accountIds) {
+        getMonths(userId, accountIds).forEach((accountId, months) -> months.forEach(month -> {
+            Delete delete = QueryBuilder.delete().from(TABLE);
+            delete.where(eq(USER_ID_COLUMN, userId))
+                    .and(eq(ACCOUNT_ID_COLUMN, accountId))
+                    .and(eq(MONTH_COLUMN, month));
+            session.execute(delete);
+        }));
+
+        Delete delete = QueryBuilder.delete().from(MONTHS_TABLE);
+        delete.where(eq(USER_ID_COLUMN, userId))
+                .and(in(ACCOUNT_ID_COLUMN, accountIds));
+        session.execute(delete);
+    }
+
+    public Optional<Transaction> get(@NonNull UUID userId, @NonNull UUID accountId, @NonNull LocalDate date, @NonNull String transactionId) {
+        Select select = QueryBuilder.select().from(TABLE);
+        select.where(eq(USER_ID_COLUMN, userId))
+                .and(eq(ACCOUNT_ID_COLUMN, accountId))
+                .and(eq(MONTH_COLUMN, month(date)))
+                .and(eq(DATE_COLUMN, format(date)))
+                .and(eq(ID_COLUMN, transactionId));
+        return mapper.map(session.execute(select)).all().stream().findFirst();
+    }
+
+    /**
+     * The transactions of the account on or after {@code onOrAfterDate}, by date (descending).
+     */
+    public List<Transaction> getTransactionsInAccountFromDate(final @NonNull UUID userId, final @NonNull UUID accountId, final @NonNull LocalDate onOrAfterDate) {
+        return readBuckets(bucketSelects(userId, accountId, onOrAfterDate, QueryBuilder.select()), resultSet -> mapper.map(resultSet).all());
+    }
+
+    /**
+     * The equivalent of {@link TransactionRepository#getStatusAndTimestampForTrxsOnOrAfter(UUID, UUID, LocalDate)}, a
+     * {@code null} date reads all transactions of the account.
+     */
+    public List<Pair<TransactionStatus, Instant>> getStatusAndTimestamp(final @NonNull UUID userId, final @NonNull UUID accountId, final @Nullable LocalDate onOrAfterDate) {
+        return readBuckets(bucketSelects(userId, accountId, onOrAfterDate, QueryBuilder.select("status", "transaction_timestamp")), resultSet -> resultSet.all().stream()
+                .filter(t -> t.getObject("transaction_timestamp") != null)
+                .map(t -> Pair.of(
+                        PENDING.name().equals(t.getString("status")) ? PENDING : BOOKED,
+                        t.get("transaction_timestamp", InstantCodec.instance)))
+                .collect(toList()));
+    }
+
+    /**
+     * A page of the transactions of the accounts within the interval, the most recent transactions first (the
+     * transactions of a date are ordered by account and id).  The buckets of a month are read in parallel, until the
+     * page is full.  The paging state is the last transaction of the previous page, it is not compatible with the paging
+     * state of {@link TransactionRepository#get(UUID, List, DateInterval, String, int)} on the {@code transactions} table.
+     */
+    public TransactionsPage get(@NonNull UUID userId, @NonNull List<UUID> accountIds, @NonNull DateInterval interval, @Nullable String pagingState, int pageSize) {
+        var cursor = Optional.ofNullable(pagingState).map(Cursor::parse);
+        var end = cursor.map(Cursor::getDate).filter(date -> date.isBefore(interval.getEnd())).orElse(interval.getEnd());
+        if (end.isBefore(interval.getStart())) {
+            return new TransactionsPage(List.of(), null);
+        }
+        var monthsByAccount = getMonths(userId, accountIds);
+
+        var months = new TreeSet<String>(Comparator.reverseOrder());
+        monthsByAccount.values().forEach(months::addAll);
+
+        var page = new ArrayList<Transaction>();
+        var remainingMonths = months.subSet(month(end), true, month(interval.getStart()), true);
+        for (String month : remainingMonths) {
+            if (page.size() > pageSize) {
+                break;
+            }
+            var selects = new ArrayList<Select>();
+            monthsByAccount.forEach((accountId, monthsOfAccount) -> {
+                if (monthsOfAccount.contains(month)) {
+                    Select select = QueryBuilder.select().from(TABLE);
+                    select.where(eq(USER_ID_COLUMN, userId))
+                            .and(eq(ACCOUNT_ID_COLUMN, accountId))
+                            .and(eq(MONTH_COLUMN, month))
+                            .and(gte(DATE_COLUMN, interval.getStartFormatted()))
+                            .and(lte(DATE_COLUMN, format(end)));
+                    selects.add(select);
+                }
+            });
+            readBuckets(selects, resultSet -> mapper.map(resultSet).all()).stream()
+                    .filter(transaction -> cursor.map(c -> c.isBefore(transaction)).orElse(true))
+                    .sorted(PAGE_ORDER)
+                    .forEach(page::add);
+        }
+
+        if (page.size() <= pageSize) {
+            return new TransactionsPage(page, null);
+        }
+        var transactions = List.copyOf(page.subList(0, pageSize));
+        return new TransactionsPage(transactions, Cursor.of(transactions.get(pageSize - 1)).toString());
+    }
+
+    /**
+     * The months of the accounts that have transactions, most recent first.  A month whose last transaction was just
+     * deleted may still be returned until it is pruned, its bucket is read (and found empty) then.
+     */
+    Map<UUID, NavigableSet<String>> getMonths(final UUID userId, final List<UUID> accountIds) {
+        Select select = QueryBuilder.select(ACCOUNT_ID_COLUMN, MONTH_COLUMN).from(MONTHS_TABLE);
+        select.where(eq(USER_ID_COLUMN, userId))
+                .and(in(ACCOUNT_ID_COLUMN, accountIds));
+
+        var months = new HashMap<UUID, NavigableSet<String>>();
+        session.execute(select).forEach(row -> months
+                .computeIfAbsent(row.getUUID(ACCOUNT_ID_COLUMN), accountId -> new TreeSet<>(Comparator.reverseOrder()))
+                .add(row.getString(MONTH_COLUMN)));
+        return months;
+    }
+
+    private List<Select> bucketSelects(final UUID userId, final UUID accountId, final @Nullable LocalDate onOrAfterDate, final Select.Builder selection) {
+        var months = getMonths(userId, List.of(accountId)).getOrDefault(accountId, new TreeSet<>());
+        return months.stream()
+                .filter(month -> onOrAfterDate == null || month.compareTo(month(onOrAfterDate)) >= 0)
+                .map(month -> {
+                    Select select = selection.from(TABLE);
+                    select.where(eq(USER_ID_COLUMN, userId))
+                            .and(eq(ACCOUNT_ID_COLUMN, accountId))
+                            .and(eq(MONTH_COLUMN, month));
+                    if (onOrAfterDate != null) {
+                        select.where(gte(DATE_COLUMN, format(onOrAfterDate)));
+                    }
+                    return select;
+                })
+                .collect(toList());
+    }
+
+    /**
+     * Read the buckets, at most {@link #MAX_CONCURRENT_BUCKET_READS} at the same time.  The results are mapped on the
+     * calling thread, a bucket with more rows than the fetch size is fetched further there (and not on a driver thread).
+     *
+     * @return the results of the buckets, in the order of the selects
+     */
+    private <R> List<R> readBuckets(final List<Select> selects, final Function<ResultSet, List<R>> mapping) {
+        var results = new ArrayList<R>();
+        for (List<Select> slice : Lists.partition(selects, MAX_CONCURRENT_BUCKET_READS)) {
+            var futures = slice.stream()
+                    .map(select -> Futures.from(session.executeAsync(select)))
+                    .collect(toList());
+            for (CompletableFuture<ResultSet> future : futures) {
+                results.addAll(mapping.apply(future.join()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The insert of the transaction on this table, with the values of the insert that the mapper generates for the
+     * {@code transactions} table.
+     */
+    private Statement insert(final Transaction transaction, final Optional<Integer> ttl, final @Nullable Long timestampMicros, final Mapper.Option... options) {
+        var saved = (BoundStatement) mapper.saveQuery(transaction, options);
+        var variables = saved.preparedStatement().getVariables();
+
+        var key = saved.preparedStatement().getQueryString() + ttl.isPresent() + (timestampMicros != null);
+        PreparedStatement prepared;
+        try {
+            prepared = inserts.get(key, () -> session.prepare(insertOf(variables, ttl.isPresent(), timestampMicros != null)));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to prepare the insert on " + TABLE, e.getCause());
+        }
+
+        var bound = prepared.bind();
+        int index = 0;
+        bound.setString(index++, month(transaction.getDate()));
+        for (int i = 0; i < variables.size(); i++) {
+            bound.setBytesUnsafe(index++, saved.getBytesUnsafe(i));
+        }
+        if (ttl.isPresent()) {
+            bound.setInt(index++, ttl.get());
+        }
+        if (timestampMicros != null) {
+            bound.setLong(index, timestampMicros);
+        }
+        return bound;
+    }
+
+    private static Insert insertOf(final ColumnDefinitions variables, final boolean withTtl, final boolean withTimestamp) {
+        Insert insert = insertInto(TABLE).value(MONTH_COLUMN, bindMarker());
+        for (ColumnDefinitions.Definition variable : variables) {
+            insert.value(variable.getName(), bindMarker());
+        }
+        if (withTtl) {
+            insert.using(ttl(bindMarker()));
+        }
+        if (withTimestamp) {
+            insert.using(timestamp(bindMarker()));
+        }
+        return insert;
+    }
+
+    private static String month(final LocalDate date) {
+        return YearMonth.from(date).toString();
+    }
+
+    private static String format(final LocalDate date) {
+        return DateTimeFormatter.ISO_LOCAL_DATE.format(date);
+    }
+
+    @Value
+    static class Bucket {
+        @NonNull
+        UUID userId;
+
+        @NonNull
+        UUID accountId;
+
+        @NonNull
+        String month;
+
+        static Bucket of(final Transaction transaction) {
+            return new Bucket(transaction.getUserId(), transaction.getAccountId(), month(transaction.getDate()));
+        }
+
+        static Bucket of(final TransactionPrimaryKey transaction) {
+            return new Bucket(transaction.getUserId(), transaction.getAccountId(), month(transaction.getDate()));
+        }
+
+        LocalDate lastDay() {
+            return YearMonth.parse(month).atEndOfMonth();
+        }
+    }
+
+    /**
+     * The position of the last transaction of a page.
+     */
+    @Value
+    static class Cursor {
+        LocalDate date;
+        UUID accountId;
+        String id;
+
+        static Cursor of(final Transaction transaction) {
+            return new Cursor(transaction.getDate(), transaction.getAccountId(), transaction.getId());
+        }
+
+        static Cursor parse(final String pagingState) {
+            try {
+                var parts = new String(Base64.getUrlDecoder().decode(pagingState), StandardCharsets.UTF_8).split("\\|", 3);
+                return new Cursor(LocalDate.parse(parts[0]), UUID.fromString(parts[1]), parts[2]);
+            } catch (RuntimeException e) {
+                throw new InvalidPagingStateException(String.format("Invalid paging state %s for %s", pagingState, TABLE));
+            }
+        }
+
+        /**
+         * @return true if the transaction comes after this position in a page
+         */
+        boolean isBefore(final Transaction transaction) {
+            return PAGE_ORDER.compare(Transaction.builder().date(date).accountId(accountId).id(id).build(), transaction) < 0;
+        }
+
+        @Override
+        public String toString() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((date + "|" + accountId + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
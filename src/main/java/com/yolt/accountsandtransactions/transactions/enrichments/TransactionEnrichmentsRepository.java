@@ -5,6 +5,8 @@ import com.datastax.driver.core.Session;
 import com.datastax.driver.mapping.Mapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
+import com.yolt.accountsandtransactions.concurrency.Futures;
 import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
 import com.yolt.accountsandtransactions.transactions.enrichments.api.CategoryTransactionEnrichment;
 import com.yolt.accountsandtransactions.transactions.enrichments.api.CounterpartyTransactionEnrichment;
@@ -24,6 +26,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.*;
 import static com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichments.*;
@@ -34,9 +37,12 @@ import static java.util.stream.Collectors.toList;
 @Slf4j
 public class TransactionEnrichmentsRepository extends CassandraRepository<TransactionEnrichments> {
 
-    protected TransactionEnrichmentsRepository(Session session) {
+    private final RetentionPolicies retentionPolicies;
+
+    protected TransactionEnrichmentsRepository(Session session, RetentionPolicies retentionPolicies) {
         super(session, TransactionEnrichments.class);
         setAuditLoggingEnabled(false);
+        this.retentionPolicies = retentionPolicies;
     }
 
     public void updateCategories(List<CategoryTransactionEnrichment> categoryTransactionEnrichments) {
@@ -108,6 +114,15 @@ public class TransactionEnrichmentsRepository extends CassandraRepository<Transa
     }
 
     public void deleteSpecificEnrichments(final @NonNull List<TransactionPrimaryKey> enrichmentsToDelete) {
+        session.execute(deleteSpecificEnrichmentsStatement(enrichmentsToDelete));
+
+        log.debug("Deleted a batch of {} transaction enrichments", enrichmentsToDelete.size());
+    }
+
+    /**
+     * The (unlogged) batch that {@link #deleteSpecificEnrichments(List)} executes, for asynchronous execution.
+     */
+    public BatchStatement deleteSpecificEnrichmentsStatement(final @NonNull List<TransactionPrimaryKey> enrichmentsToDelete) {
         BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
         enrichmentsToDelete.forEach(it -> {
             var delete = super.createDelete();
@@ -117,21 +132,21 @@ public class TransactionEnrichmentsRepository extends CassandraRepository<Transa
                     .and(eq(ID_COLUMN, it.getId()));
             batch.add(delete);
         });
-
-        session.execute(batch);
-
-        log.debug("Deleted a batch of {} transaction enrichments", enrichmentsToDelete.size());
+        return batch;
     }
 
     /**
      * This method does not overwrite the nulled fields of the {@link TransactionEnrichments} because the table will be
      * updated with new fields on each message we receive from datascience.
      * That's why we call the {@link super#saveBatchWithOption(List, int)} with saveNullFields
+     * <p>
+     * The enrichments are written with the TTL of the retention policy of their client (if any), so they expire together
+     * with their transaction, see {@link RetentionPolicies}.
      */
     @VisibleForTesting
     void batchUpsertOmitNullValues(List<TransactionEnrichments> transactionEnrichments) {
         var batchUpsert = transactionEnrichments.stream()
-                .map(it -> new Tuple2<>(it, ImmutableList.of(Mapper.Option.saveNullFields(false))))
+                .map(it -> new Tuple2<>(it, ImmutableList.copyOf(retentionPolicies.saveOptions(it.getUserId(), it.getDate(), Mapper.Option.saveNullFields(false)))))
                 .collect(toList());
         super.saveBatchWithOption(batchUpsert, 100);
     }
@@ -155,6 +170,31 @@ public class TransactionEnrichmentsRepository extends CassandraRepository<Transa
         return select(select);
     }
 
+    /**
+     * Retrieve the enrichments with the given primary keys of a single account.
+     * <p/>
+     * Unlike {@link #get(UUID, List, DateInterval)} this only reads the rows that are asked for, the keys are selected
+     * with a multi-column <code>IN</code> on the (date, id) clustering columns. The caller is responsible for keeping
+     * the number of keys per call within the limits of Cassandra (see {@link TransactionEnrichmentsService#MAX_KEYS_PER_QUERY}).
+     */
+    public CompletableFuture<List<TransactionEnrichments>> getAsync(@NonNull UUID userId, @NonNull UUID accountId, @NonNull List<TransactionEnrichmentsPrimaryKey> keys) {
+        var dateAndIds = keys.stream()
+                .map(key -> List.<Object>of(DateTimeFormatter.ISO_LOCAL_DATE.format(key.getDate()), key.getId()))
+                .collect(toList());
+
+        var select = createSelect();
+        select.where(eq(USER_ID_COLUMN, userId))
+                .and(eq(ACCOUNT_ID_COLUMN, accountId))
+                .and(in(List.of(DATE_COLUMN, ID_COLUMN), dateAndIds));
+
+        return Futures.from(session.executeAsync(select))
+                .thenApply(resultSet -> mapper.map(resultSet).all());
+    }
+
+    public Mapper<TransactionEnrichments> getMapper() {
+        return mapper;
+    }
+
     public List<TransactionEnrichments> getAllEnrichments(@NonNull UUID userId) {
         var select = createSelect();
         select.where(eq(USER_ID_COLUMN, userId));
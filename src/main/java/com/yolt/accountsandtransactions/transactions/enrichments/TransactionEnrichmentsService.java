@@ -1,6 +1,9 @@
 package com.yolt.accountsandtransactions.transactions.enrichments;
 
+import com.google.common.collect.Lists;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Writes;
 import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository.TransactionEnrichmentsPrimaryKey;
 import com.yolt.accountsandtransactions.transactions.enrichments.api.CategoryTransactionEnrichment;
 import com.yolt.accountsandtransactions.transactions.enrichments.api.CounterpartyTransactionEnrichment;
 import com.yolt.accountsandtransactions.transactions.enrichments.api.CycleTransactionEnrichment;
@@ -10,11 +13,21 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import com.yolt.accountsandtransactions.datetime.DateInterval;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Keyspace.ACCOUNTS_AND_TRANSACTIONS;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.groupingBy;
 
 /**
  * Enrichment information for {@link com.yolt.accountsandtransactions.transactions.Transaction} are not stored inside that class/table but instead are
@@ -26,6 +39,13 @@ import java.util.UUID;
 @Service
 @Slf4j
 public class TransactionEnrichmentsService {
+
+    /**
+     * The maximum number of primary keys per query. Cassandra rejects queries of which the cartesian product of the
+     * <code>IN</code> restrictions exceeds 100 (see <code>max_clustering_key_restrictions_per_query</code>).
+     */
+    static final int MAX_KEYS_PER_QUERY = 100;
+
     private final TransactionEnrichmentsRepository transactionEnrichmentsRepository;
 
     public void updateCategories(List<CategoryTransactionEnrichment> categoryTransactionEnrichments) {
@@ -52,6 +72,13 @@ public class TransactionEnrichmentsService {
         transactionEnrichmentsRepository.deleteSpecificEnrichments(enrichmentsToDelete);
     }
 
+    /**
+     * Asynchronous variant of {@link #deleteSpecificEnrichments(List)}, the delete is submitted to {@code writes}.
+     */
+    public void deleteSpecificEnrichments(final @NonNull List<TransactionPrimaryKey> enrichmentsToDelete, final @NonNull Writes writes) {
+        writes.delete(ACCOUNTS_AND_TRANSACTIONS, List.of(transactionEnrichmentsRepository.deleteSpecificEnrichmentsStatement(enrichmentsToDelete)));
+    }
+
     public Optional<TransactionEnrichments> getTransactionEnrichments(UUID userId, UUID accountId, LocalDate date, String transactionId) {
         return transactionEnrichmentsRepository.get(userId, accountId, date, transactionId);
     }
@@ -59,4 +86,50 @@ public class TransactionEnrichmentsService {
     public List<TransactionEnrichments> getTransactionEnrichments(UUID userId, List<UUID> accountIds, DateInterval interval) {
         return transactionEnrichmentsRepository.get(userId, accountIds, interval);
     }
+
+    /**
+     * Retrieve the enrichments for the given primary keys, keyed by primary key.
+     * <p/>
+     * The keys are grouped by account and split into slices of at most {@link #MAX_KEYS_PER_QUERY} keys,
+     * the slices are queried concurrently. Keys without enrichments are absent in the result.
+     */
+    public Map<TransactionEnrichmentsPrimaryKey, TransactionEnrichments> getTransactionEnrichments(final @NonNull UUID userId, final @NonNull List<TransactionEnrichmentsPrimaryKey> keys) {
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+
+        var futures = getAsync(userId, keys);
+        var enrichments = new HashMap<TransactionEnrichmentsPrimaryKey, TransactionEnrichments>(keys.size() * 2);
+        for (CompletableFuture<List<TransactionEnrichments>> future : futures) {
+            future.join().forEach(enrichment -> enrichments.put(primaryKey(enrichment), enrichment));
+        }
+        return enrichments;
+    }
+
+    /**
+     * Non-blocking variant of {@link #getTransactionEnrichments(UUID, List)}, the slices are queried on subscription.
+     */
+    public Mono<Map<TransactionEnrichmentsPrimaryKey, TransactionEnrichments>> getTransactionEnrichmentsAsync(final @NonNull UUID userId, final @NonNull List<TransactionEnrichmentsPrimaryKey> keys) {
+        if (keys.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+
+        return Mono.defer(() -> Flux.merge(Flux.fromIterable(getAsync(userId, keys)).map(future -> Mono.fromFuture(future)))
+                .flatMapIterable(identity())
+                .collectMap(TransactionEnrichmentsService::primaryKey, identity(), () -> new HashMap<>(keys.size() * 2)));
+    }
+
+    private List<CompletableFuture<List<TransactionEnrichments>>> getAsync(final UUID userId, final List<TransactionEnrichmentsPrimaryKey> keys) {
+        var futures = new ArrayList<CompletableFuture<List<TransactionEnrichments>>>();
+        keys.stream()
+                .distinct()
+                .collect(groupingBy(TransactionEnrichmentsPrimaryKey::getAccountId))
+                .forEach((accountId, keysOfAccount) -> Lists.partition(keysOfAccount, MAX_KEYS_PER_QUERY)
+                        .forEach(slice -> futures.add(transactionEnrichmentsRepository.getAsync(userId, accountId, slice))));
+        return futures;
+    }
+
+    private static TransactionEnrichmentsPrimaryKey primaryKey(final TransactionEnrichments enrichments) {
+        return new TransactionEnrichmentsPrimaryKey(enrichments.getUserId(), enrichments.getAccountId(), enrichments.getDate(), enrichments.getId());
+    }
 }
@@ -26,4 +26,17 @@ public class AccountRepositoryTest extends BaseIntegrationTest {
         var output = accountRepository.getAccounts(userId);
         assertThat(output).containsExactly(input);
     }
+
+    @Test
+    public void theAccountsAreReadWithoutBlocking() {
+        var userId = randomUUID();
+
+        var input = List.of(
+                TestBuilders.createAllFieldsRandomAccount(userId, randomUUID()),
+                TestBuilders.createAllFieldsRandomAccount(userId, randomUUID()));
+        accountRepository.saveBatch(input, 2);
+
+        var output = accountRepository.getAccountsAsync(userId).collectList().block();
+        assertThat(output).containsExactlyInAnyOrderElementsOf(input);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.yolt.accountsandtransactions.accounts;
+
+import nl.ing.lovebird.clienttokens.ClientUserToken;
+import nl.ing.lovebird.providerdomain.ProviderAccountDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static java.util.UUID.randomUUID;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AccountWritesTest {
+
+    private final AccountService accountService = mock(AccountService.class);
+    private final ClientUserToken clientUserToken = mock(ClientUserToken.class);
+    private final ProviderAccountDTO providerAccount = mock(ProviderAccountDTO.class);
+    private final UUID userId = randomUUID();
+
+    @BeforeEach
+    void setup() {
+        when(clientUserToken.getUserIdClaim()).thenReturn(userId);
+        when(accountService.map(eq(userId), eq(providerAccount), any(), any(), any(), any(), anyBoolean()))
+                .thenAnswer(invocation -> Account.builder()
+                        .userId(userId)
+                        .id(invocation.getArgument(2))
+                        .lastDataFetchTime(invocation.getArgument(5))
+                        .build());
+    }
+
+    @Test
+    void shouldWriteTheLastStateOfAnAccountOnce() {
+        var accountWrites = new AccountWrites(accountService, clientUserToken, false);
+        var accountId = randomUUID();
+        var otherAccountId = randomUUID();
+
+        accountWrites.createOrUpdateAccount(providerAccount, accountId, null, null, false, null);
+        accountWrites.createOrUpdateAccount(providerAccount, otherAccountId, null, null, true, null);
+        var updated = accountWrites.createOrUpdateAccount(providerAccount, accountId, null, null, true, Instant.EPOCH);
+        accountWrites.complete(accountId);
+        verify(accountService, never()).saveAccount(any(), any(), anyBoolean());
+
+        accountWrites.flush();
+        accountWrites.flush();
+
+        // the account did not exist at the first mutation, so it is created
+        verify(accountService).saveAccount(clientUserToken, updated, false);
+        verify(accountService).saveAccount(eq(clientUserToken), argThat(account -> account.getId().equals(otherAccountId)), eq(true));
+        verify(accountService, times(2)).saveAccount(any(), any(), anyBoolean());
+    }
+
+    @Test
+    void shouldFlushACompleteAccountEarlyIfConfigured() {
+        var accountWrites = new AccountWrites(accountService, clientUserToken, true);
+        var accountId = randomUUID();
+
+        var account = accountWrites.createOrUpdateAccount(providerAccount, accountId, null, null, true, Instant.EPOCH);
+        accountWrites.complete(accountId);
+        verify(accountService).saveAccount(clientUserToken, account, true);
+
+        accountWrites.flush();
+        verify(accountService).saveAccount(any(), any(), anyBoolean());
+    }
+}
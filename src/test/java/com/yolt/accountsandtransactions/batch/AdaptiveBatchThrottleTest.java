@@ -0,0 +1,146 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.WriteType;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.yolt.accountsandtransactions.MutableClock;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveBatchThrottleTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2021, 1, 1, 0, 0);
+
+    @Mock
+    private Cluster cluster;
+    @Mock
+    private AccountsAndTransactionMetrics metrics;
+
+    private final MutableClock clock = new MutableClock();
+    private AdaptiveBatchThrottle throttle;
+    private Statement batchStatement;
+    private int seconds;
+
+    @BeforeEach
+    void setUp() {
+        clock.asFixed(START);
+        throttle = new AdaptiveBatchThrottle(cluster, metrics, clock, true, 250, 1_000, 250, 4, 50, 1_000);
+        batchStatement = throttle.track(new SimpleStatement("SELECT * FROM transactions"));
+    }
+
+    @Test
+    void when_theLatencyIsBelowTheTarget_then_theLimitsAreRaisedUpToTheirBounds() {
+        for (int i = 0; i < 5; i++) {
+            throttle.update(null, batchStatement, null, TimeUnit.MILLISECONDS.toNanos(5));
+            nextWindow();
+        }
+
+        assertThat(throttle.getReadPerSecondLimit()).isEqualTo(1_000.0);
+        assertThat(throttle.getConcurrencyLimit()).isEqualTo(4);
+        verify(cluster).register(throttle);
+        verify(metrics).registerBatchThrottleGauges(throttle);
+    }
+
+    @Test
+    void when_theLatencyExceedsTheTarget_then_theLimitsAreHalved() {
+        raise(3);
+
+        throttle.update(null, batchStatement, null, TimeUnit.MILLISECONDS.toNanos(5));
+        throttle.update(null, batchStatement, null, TimeUnit.MILLISECONDS.toNanos(200));
+        nextWindow();
+
+        assertThat(throttle.getReadPerSecondLimit()).isEqualTo(500.0);
+        assertThat(throttle.getConcurrencyLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void when_aQueryTimesOut_then_theLimitsAreHalvedDownToTheirBounds() {
+        raise(1);
+
+        for (int i = 0; i < 3; i++) {
+            throttle.update(null, batchStatement, new WriteTimeoutException(ConsistencyLevel.QUORUM, WriteType.SIMPLE, 1, 2), 0);
+            nextWindow();
+        }
+
+        assertThat(throttle.getReadPerSecondLimit()).isEqualTo(250.0);
+        assertThat(throttle.getConcurrencyLimit()).isEqualTo(1);
+    }
+
+    @Test
+    void when_aQueryIsNotOneOfTheBatchJobs_then_itIsIgnored() {
+        raise(2);
+
+        var liveTraffic = new SimpleStatement("SELECT * FROM transactions");
+        throttle.update(null, liveTraffic, null, TimeUnit.MILLISECONDS.toNanos(200));
+        throttle.update(null, liveTraffic, new WriteTimeoutException(ConsistencyLevel.QUORUM, WriteType.SIMPLE, 1, 2), 0);
+        nextWindow();
+
+        assertThat(throttle.getReadPerSecondLimit()).isEqualTo(750.0);
+        assertThat(throttle.getConcurrencyLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void when_thereAreNoQueries_then_theLimitsAreKept() {
+        raise(2);
+
+        nextWindow();
+        nextWindow();
+
+        assertThat(throttle.getReadPerSecondLimit()).isEqualTo(750.0);
+        assertThat(throttle.getConcurrencyLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void theConcurrencyIsLimited() throws Exception {
+        throttle.acquire();
+        var second = CompletableFuture.runAsync(throttle::acquire);
+
+        Thread.sleep(100);
+        assertThat(second).isNotDone();
+
+        throttle.release();
+        second.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void when_theThrottleIsDisabled_then_nothingIsThrottled() {
+        var otherCluster = mock(Cluster.class);
+        var otherMetrics = mock(AccountsAndTransactionMetrics.class);
+        var disabled = new AdaptiveBatchThrottle(otherCluster, otherMetrics, clock, false, 250, 1_000, 250, 4, 50, 1_000);
+
+        disabled.acquire();
+        disabled.acquire();
+        disabled.acquireReads(1_000_000);
+
+        verifyNoInteractions(otherCluster, otherMetrics);
+    }
+
+    private void raise(int windows) {
+        for (int i = 0; i < windows; i++) {
+            throttle.update(null, batchStatement, null, TimeUnit.MILLISECONDS.toNanos(5));
+            nextWindow();
+        }
+    }
+
+    private void nextWindow() {
+        clock.asFixed(START.plusSeconds(++seconds));
+        throttle.adjustIfDue();
+    }
+}
@@ -12,7 +12,7 @@ import static org.assertj.core.api.Assertions.assertThatCode;
 
 class BatchDeleteTransactionsOlderThanOneYearForFranceTest {
 
-    BatchDeleteTransactionsOlderThanOneYearForFrance batch = new BatchDeleteTransactionsOlderThanOneYearForFrance("", null, null, null);
+    BatchDeleteTransactionsOlderThanOneYearForFrance batch = new BatchDeleteTransactionsOlderThanOneYearForFrance("", null, null, null, null, null);
 
     LocalDate referenceDate = LocalDate.now(ZoneId.of("Europe/Paris"))
             .atStartOfDay()
@@ -23,19 +23,19 @@ class BatchDeleteTransactionsOlderThanOneYearForFranceTest {
     public void testSafeguards() {
         // Fail to run on production environments other than yfb-prd
         assertThatCode(() -> {
-            var b = new BatchDeleteTransactionsOlderThanOneYearForFrance("yfb-ext-prd", null, null, null);
-            b.run(false);
+            var b = new BatchDeleteTransactionsOlderThanOneYearForFrance("yfb-ext-prd", null, null, null, null, null);
+            b.run(false, 1);
         }).hasMessageStartingWith("refusing to run on environment \"yfb-ext-prd\"");
 
         assertThatCode(() -> {
-            var b = new BatchDeleteTransactionsOlderThanOneYearForFrance("app-prd", null, null, null);
-            b.run(false);
+            var b = new BatchDeleteTransactionsOlderThanOneYearForFrance("app-prd", null, null, null, null, null);
+            b.run(false, 1);
         }).hasMessageStartingWith("refusing to run on environment \"app-prd\"");
 
         // Permit a run on yfb-prd
         assertThatCode(() -> {
-            var b = new BatchDeleteTransactionsOlderThanOneYearForFrance("yfb-prd", null, null, null);
-            b.run(false);
+            var b = new BatchDeleteTransactionsOlderThanOneYearForFrance("yfb-prd", null, null, null, null, null);
+            b.run(false, 1);
         }).doesNotThrowAnyException();
     }
 
@@ -0,0 +1,116 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.yolt.accountsandtransactions.accounts.AccountRepository;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.UserDTO;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.UsersClient;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics.BatchMetadataCacheResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchMetadataCacheTest {
+
+    private static final String JOB = "job";
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID clientId = UUID.randomUUID();
+
+    @Mock
+    private AccountsAndTransactionMetrics metrics;
+    @Mock
+    private UsersClient usersClient;
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Test
+    void when_aUserIsLookedUpTwice_then_itIsLoadedOnce() {
+        when(usersClient.getUser(userId)).thenReturn(Optional.of(new UserDTO(clientId, userId)));
+        var cache = cache(Runnable::run);
+
+        assertThat(cache.clientId(userId)).contains(clientId);
+        assertThat(cache.clientId(userId)).contains(clientId);
+
+        verify(usersClient).getUser(userId);
+        verify(metrics).incrementBatchMetadataCacheLookup(JOB, BatchMetadataCache.CLIENT_ID, BatchMetadataCacheResult.MISS);
+        verify(metrics).incrementBatchMetadataCacheLookup(JOB, BatchMetadataCache.CLIENT_ID, BatchMetadataCacheResult.HIT);
+    }
+
+    @Test
+    void when_aUserIsNotFound_then_itIsCountedAndNotLookedUpAgain() {
+        when(usersClient.getUser(userId)).thenReturn(Optional.empty());
+        var cache = cache(Runnable::run);
+
+        assertThat(cache.clientId(userId)).isEmpty();
+        assertThat(cache.clientId(userId)).isEmpty();
+
+        verify(usersClient).getUser(userId);
+        assertThat(cache.usersNotFound()).isEqualTo(1);
+    }
+
+    @Test
+    void when_theUsersAreLookedUpConcurrently_then_eachUserIsLoadedOnce() throws Exception {
+        var loading = new CountDownLatch(1);
+        when(accountRepository.getAccounts(userId)).thenAnswer(invocation -> {
+            loading.await(1, TimeUnit.SECONDS);
+            return List.of();
+        });
+        var cache = cache(Runnable::run);
+
+        var first = CompletableFuture.supplyAsync(() -> cache.accounts(userId));
+        var second = CompletableFuture.supplyAsync(() -> cache.accounts(userId));
+        loading.countDown();
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEmpty();
+        assertThat(second.get(1, TimeUnit.SECONDS)).isEmpty();
+        verify(accountRepository).getAccounts(userId);
+    }
+
+    @Test
+    void when_theUsersOfAPageArePrefetched_then_theLookupsHitTheCache() {
+        var otherUserId = UUID.randomUUID();
+        when(accountRepository.getAccounts(any())).thenReturn(List.of());
+        var cache = cache(Runnable::run);
+
+        cache.prefetchAccounts(List.of(userId, otherUserId, userId));
+        cache.accounts(userId);
+        cache.accounts(otherUserId);
+
+        verify(accountRepository, times(2)).getAccounts(any());
+        verify(metrics, times(2)).incrementBatchMetadataCacheLookup(JOB, BatchMetadataCache.ACCOUNTS, BatchMetadataCacheResult.PREFETCH);
+        verify(metrics, times(2)).incrementBatchMetadataCacheLookup(JOB, BatchMetadataCache.ACCOUNTS, BatchMetadataCacheResult.HIT);
+        verify(metrics, never()).incrementBatchMetadataCacheLookup(JOB, BatchMetadataCache.ACCOUNTS, BatchMetadataCacheResult.MISS);
+    }
+
+    @Test
+    void when_thePrefetchPoolIsSaturated_then_theUserIsLoadedByTheLookup() {
+        when(usersClient.getUser(userId)).thenReturn(Optional.of(new UserDTO(clientId, userId)));
+        var cache = cache(command -> {
+            throw new RejectedExecutionException();
+        });
+
+        cache.prefetchClientIds(List.of(userId));
+
+        assertThat(cache.clientId(userId)).contains(clientId);
+        verify(metrics).incrementBatchMetadataCacheLookup(JOB, BatchMetadataCache.CLIENT_ID, BatchMetadataCacheResult.MISS);
+        verify(metrics, never()).incrementBatchMetadataCacheLookup(JOB, BatchMetadataCache.CLIENT_ID, BatchMetadataCacheResult.PREFETCH);
+    }
+
+    private BatchMetadataCache cache(Executor prefetchExecutor) {
+        return new BatchMetadataCache(JOB, 100, prefetchExecutor, metrics, usersClient, accountRepository);
+    }
+}
@@ -0,0 +1,156 @@
+package com.yolt.accountsandtransactions.batch;
+
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.mapping.Mapper;
+import com.datastax.driver.mapping.MappingManager;
+import com.datastax.driver.mapping.Result;
+import com.yolt.accountsandtransactions.batch.TokenRangeScanner.Range;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRangeScannerTest {
+
+    @Mock
+    private BatchSyncProgressStateRepository progressRepository;
+    @Mock
+    private AdaptiveBatchThrottle adaptiveBatchThrottle;
+    @Mock
+    private Mapper<String> mapper;
+    @Mock
+    private MappingManager mappingManager;
+    @Mock
+    private Session session;
+
+    private TokenRangeScanner scanner;
+
+    @BeforeEach
+    void setUp() {
+        scanner = new TokenRangeScanner(Runnable::run, progressRepository, adaptiveBatchThrottle, 2, 100);
+        lenient().when(mapper.getManager()).thenReturn(mappingManager);
+        lenient().when(mappingManager.getSession()).thenReturn(session);
+    }
+
+    @Test
+    void theRangesCoverTheWholeRing() {
+        var ranges = new ArrayList<>(TokenRangeScanner.split(7));
+        ranges.sort(Comparator.comparingLong(Range::start));
+
+        assertThat(ranges).hasSize(7);
+        assertThat(ranges.get(0).start()).isEqualTo(Long.MIN_VALUE);
+        assertThat(ranges.get(6).end()).isEqualTo(Long.MAX_VALUE);
+        for (int i = 1; i < ranges.size(); i++) {
+            assertThat(ranges.get(i).start()).isEqualTo(ranges.get(i - 1).end());
+        }
+    }
+
+    @Test
+    void when_aRangeWasScannedBefore_then_onlyTheOtherRangeIsScanned() {
+        var ranges = sortedRanges();
+        when(progressRepository.getScanProgress("job")).thenReturn(List.of(BatchScanProgress.builder()
+                .job("job")
+                .rangeStart(ranges.get(0).start())
+                .rangeEnd(ranges.get(0).end())
+                .done(true)
+                .build()));
+        returnRows("row");
+
+        var pages = new ArrayList<List<String>>();
+        boolean completed = scanner.scan(scan().checkpointed(true).build(), pages::add);
+
+        assertThat(completed).isTrue();
+        assertThat(pages).containsExactly(List.of("row"));
+        var statement = ArgumentCaptor.forClass(SimpleStatement.class);
+        verify(session).execute(statement.capture());
+        assertThat(statement.getValue().getObject(0)).isEqualTo(ranges.get(1).start());
+        assertThat(statement.getValue().getObject(1)).isEqualTo(ranges.get(1).end());
+        verify(progressRepository).upsertScanProgress(BatchScanProgress.builder()
+                .job("job")
+                .rangeStart(ranges.get(1).start())
+                .rangeEnd(ranges.get(1).end())
+                .done(true)
+                .build());
+        verify(progressRepository).resetScanProgress("job");
+    }
+
+    @Test
+    void when_theCheckpointsAreOfOtherRanges_then_theScanStartsOver() {
+        when(progressRepository.getScanProgress("job")).thenReturn(List.of(BatchScanProgress.builder()
+                .job("job")
+                .rangeStart(0)
+                .rangeEnd(1)
+                .done(true)
+                .build()));
+        returnRows("row");
+
+        var pages = new ArrayList<List<String>>();
+        scanner.scan(scan().checkpointed(true).build(), pages::add);
+
+        assertThat(pages).hasSize(2);
+        verify(progressRepository, times(2)).resetScanProgress("job");
+    }
+
+    @Test
+    void when_theScanIsStopped_then_theCheckpointsAreKept() {
+        var pages = new ArrayList<List<String>>();
+        boolean completed = scanner.scan(scan().checkpointed(true).stopWhen(() -> true).build(), pages::add);
+
+        assertThat(completed).isFalse();
+        assertThat(pages).isEmpty();
+        verifyNoInteractions(session);
+        verify(progressRepository, never()).resetScanProgress(any());
+    }
+
+    @Test
+    void when_theScanIsNotCheckpointed_then_noProgressIsStored() {
+        returnRows("row");
+
+        scanner.scan(scan().build(), page -> {
+        });
+
+        verifyNoInteractions(progressRepository);
+    }
+
+    private TokenRangeScan.TokenRangeScanBuilder<String> scan() {
+        return TokenRangeScan.<String>builder()
+                .job("job")
+                .mapper(mapper)
+                .table("table")
+                .parallelism(2)
+                .maxReadPerSecond(1_000);
+    }
+
+    private List<Range> sortedRanges() {
+        var ranges = new ArrayList<>(TokenRangeScanner.split(2));
+        ranges.sort(Comparator.comparingLong(Range::start));
+        return ranges;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void returnRows(String... rows) {
+        var resultSet = mock(ResultSet.class);
+        var executionInfo = mock(ExecutionInfo.class);
+        Result<String> result = mock(Result.class);
+        when(session.execute(any(Statement.class))).thenReturn(resultSet);
+        when(resultSet.getAvailableWithoutFetching()).thenReturn(rows.length);
+        when(resultSet.getExecutionInfo()).thenReturn(executionInfo);
+        when(mapper.map(resultSet)).thenReturn(result);
+        when(result.iterator()).thenAnswer(invocation -> List.of(rows).iterator());
+    }
+}
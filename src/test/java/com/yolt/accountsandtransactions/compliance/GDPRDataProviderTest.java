@@ -3,6 +3,7 @@ package com.yolt.accountsandtransactions.compliance;
 import com.yolt.accountsandtransactions.TestAccountBuilder;
 import com.yolt.accountsandtransactions.TestBuilders;
 import com.yolt.accountsandtransactions.accounts.AccountRepository;
+import com.yolt.accountsandtransactions.transactions.Transaction;
 import com.yolt.accountsandtransactions.transactions.TransactionRepository;
 import com.yolt.accountsandtransactions.transactions.TransactionService;
 import com.yolt.compliance.gdpr.client.spi.GDPRServiceDataProvider.FileMetaAndBytes;
@@ -14,12 +15,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -60,7 +66,7 @@ class GDPRDataProviderTest {
                 )
         );
 
-        when(transactionRepository.getTransactionsForUser(USER_ID)).thenReturn(
+        when(transactionRepository.streamTransactionsForUser(eq(USER_ID), anyInt())).thenReturn(
                 List.of(TestBuilders.createTransactionTemplate(
                                 new TransactionService.TransactionPrimaryKey(
                                         USER_ID,
@@ -82,4 +88,54 @@ class GDPRDataProviderTest {
         assertThat(fileMetadata).isEqualTo(new FileMetadata("accounts-and-transactions", "csv"));
         assertThat(new String(bytes, StandardCharsets.UTF_8)).isEqualTo(expectedOutput);
     }
-}
\ No newline at end of file
+
+    /**
+     * The transactions are generated on the fly by a stand-in for the repository.  If the export would collect the
+     * transactions before writing them, nothing would be written by the time the last transaction is read.
+     */
+    @Test
+    void testWriteDataFileWritesTheRowsWhileTheTransactionsAreRead() {
+        final int rows = 10_000;
+        final var lines = new AtomicLong();
+        final var linesWhenExhausted = new AtomicLong(-1);
+        when(accountRepository.getAccounts(USER_ID)).thenReturn(List.of(TestAccountBuilder.builder().id(ACCOUNT_ID).build()));
+        when(transactionRepository.streamTransactionsForUser(eq(USER_ID), anyInt())).thenReturn(() -> new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                if (next == rows) {
+                    linesWhenExhausted.compareAndSet(-1, lines.get());
+                }
+                return next < rows;
+            }
+
+            @Override
+            public Transaction next() {
+                return transaction(next++);
+            }
+        });
+        final var output = new OutputStream() {
+            @Override
+            public void write(int b) {
+                if (b == '\n') {
+                    lines.incrementAndGet();
+                }
+            }
+        };
+
+        dataProvider.writeDataFile(USER_ID, output);
+
+        // 2 headers, 1 account
+        assertThat(lines).hasValue(rows + 3);
+        // only the rows that are still in the buffer of the writer are missing
+        assertThat(linesWhenExhausted.get()).isGreaterThan(rows / 2);
+    }
+
+    private static Transaction transaction(int i) {
+        return TestBuilders.createTransactionTemplate(new TransactionService.TransactionPrimaryKey(USER_ID, ACCOUNT_ID, LocalDate.EPOCH, "transaction-" + i, TransactionStatus.BOOKED))
+                .toBuilder()
+                .remittanceInformationUnstructured("description of transaction " + i)
+                .build();
+    }
+}
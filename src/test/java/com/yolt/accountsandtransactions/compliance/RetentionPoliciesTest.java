@@ -0,0 +1,117 @@
+package com.yolt.accountsandtransactions.compliance;
+
+import com.datastax.driver.mapping.Mapper;
+import com.yolt.accountsandtransactions.MutableClock;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.UserDTO;
+import com.yolt.accountsandtransactions.inputprocessing.enrichments.UsersClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionPoliciesTest {
+
+    private static final UUID CLIENT_ID = UUID.randomUUID();
+    private static final LocalDateTime NOW = LocalDateTime.of(2021, 6, 15, 12, 0);
+
+    private final UUID userId = UUID.randomUUID();
+    private final MutableClock clock = new MutableClock();
+
+    @Mock
+    private UsersClient usersClient;
+
+    private RetentionPolicies retentionPolicies;
+
+    @BeforeEach
+    void setUp() {
+        clock.asFixed(NOW);
+        retentionPolicies = new RetentionPolicies(usersClient, clock, Map.of(CLIENT_ID.toString(), 365), 100);
+    }
+
+    @Test
+    void aTransactionExpiresAtTheEndOfItsRetention() {
+        when(usersClient.getUser(userId)).thenReturn(Optional.of(new UserDTO(CLIENT_ID, userId)));
+
+        // Expires at the start of 2021-06-16, 12 hours from now.
+        assertThat(retentionPolicies.ttl(userId, LocalDate.of(2020, 6, 15))).contains(12 * 60 * 60);
+        // Expires at the start of 2022-06-16, a year and 12 hours from now.
+        assertThat(retentionPolicies.ttl(userId, LocalDate.of(2021, 6, 15))).contains(365 * 24 * 60 * 60 + 12 * 60 * 60);
+        verify(usersClient).getUser(userId);
+    }
+
+    @Test
+    void when_aTransactionIsPastItsRetention_then_itExpiresRightAway() {
+        assertThat(retentionPolicies.ttlOfClient(CLIENT_ID, LocalDate.of(2019, 1, 1))).contains(1);
+    }
+
+    @Test
+    void when_aTransactionIsFarInTheFuture_then_theTtlIsCapped() {
+        assertThat(retentionPolicies.ttlOfClient(CLIENT_ID, LocalDate.of(2100, 1, 1))).contains(RetentionPolicies.MAX_TTL_SECONDS);
+    }
+
+    @Test
+    void when_theClientHasNoPolicy_then_theTransactionIsKeptForever() {
+        when(usersClient.getUser(userId)).thenReturn(Optional.of(new UserDTO(UUID.randomUUID(), userId)));
+
+        assertThat(retentionPolicies.ttl(userId, LocalDate.of(2021, 6, 15))).isEmpty();
+        assertThat(retentionPolicies.saveOptions(userId, LocalDate.of(2021, 6, 15), Mapper.Option.saveNullFields(false))).hasSize(1);
+    }
+
+    @Test
+    void when_thereAreNoPolicies_then_theUsersAreNotLookedUp() {
+        var withoutPolicies = new RetentionPolicies(usersClient, clock, Map.of(), 100);
+
+        assertThat(withoutPolicies.isEmpty()).isTrue();
+        assertThat(withoutPolicies.ttl(userId, LocalDate.of(2021, 6, 15))).isEmpty();
+        verifyNoInteractions(usersClient);
+    }
+
+    @Test
+    void when_theUserCannotBeLookedUp_then_theWriteFailsAndTheUserIsLookedUpAgainNextTime() {
+        when(usersClient.getUser(any())).thenThrow(new IllegalStateException("users is down"));
+
+        assertThatThrownBy(() -> retentionPolicies.ttl(userId, LocalDate.of(2021, 6, 15)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(userId.toString());
+        assertThatThrownBy(() -> retentionPolicies.ttl(userId, LocalDate.of(2021, 6, 15)))
+                .isInstanceOf(IllegalStateException.class);
+        verify(usersClient, times(2)).getUser(userId);
+    }
+
+    @Test
+    void when_theClientOfTheUserIsRegistered_then_theUserIsNotLookedUp() {
+        retentionPolicies.clientOf(userId, CLIENT_ID);
+
+        assertThat(retentionPolicies.ttl(userId, LocalDate.of(2021, 6, 15))).contains(365 * 24 * 60 * 60 + 12 * 60 * 60);
+        verifyNoInteractions(usersClient);
+    }
+
+    @Test
+    void aTransactionHasExpiredOncePastTheRetentionOfItsClient() {
+        retentionPolicies.clientOf(userId, CLIENT_ID);
+
+        assertThat(retentionPolicies.isExpired(userId, LocalDate.of(2020, 6, 14))).isTrue();
+        assertThat(retentionPolicies.isExpired(userId, LocalDate.of(2020, 6, 15))).isFalse();
+    }
+
+    @Test
+    void theTtlIsAddedToTheSaveOptions() {
+        when(usersClient.getUser(userId)).thenReturn(Optional.of(new UserDTO(CLIENT_ID, userId)));
+
+        assertThat(retentionPolicies.saveOptions(userId, LocalDate.of(2021, 6, 15), Mapper.Option.saveNullFields(false)))
+                .hasSize(2);
+    }
+}
@@ -0,0 +1,77 @@
+package com.yolt.accountsandtransactions.concurrency;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveResultsTest {
+
+    @Mock
+    private ResultSet resultSet;
+    @Mock
+    private Row first;
+    @Mock
+    private Row second;
+    @Mock
+    private Row third;
+
+    @BeforeEach
+    void twoPages() {
+        // The driver appends the rows of the next page to the same result set.
+        lenient().when(resultSet.getAvailableWithoutFetching()).thenReturn(2, 1);
+        lenient().when(resultSet.one()).thenReturn(first, second, third);
+        lenient().when(resultSet.isFullyFetched()).thenReturn(false, true);
+        lenient().when(resultSet.fetchMoreResults()).thenReturn(immediateFuture(resultSet));
+    }
+
+    @Test
+    void theRowsOfAllPagesAreEmitted() {
+        assertThat(ReactiveResults.rows(Mono.just(resultSet)).collectList().block())
+                .containsExactly(first, second, third);
+        verify(resultSet).fetchMoreResults();
+    }
+
+    @Test
+    void theNextPageIsOnlyFetchedWhenItsRowsAreRequested() {
+        assertThat(ReactiveResults.rows(Mono.just(resultSet)).take(2).collectList().block())
+                .containsExactly(first, second);
+        verify(resultSet, never()).fetchMoreResults();
+    }
+
+    @Test
+    void aFailedFetchIsSignalled() {
+        when(resultSet.fetchMoreResults()).thenReturn(immediateFailedFuture(new IllegalStateException("unavailable")));
+
+        assertThatThrownBy(() -> ReactiveResults.rows(Mono.just(resultSet)).collectList().block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("unavailable");
+    }
+
+    @Test
+    void theQueryIsSentOnSubscription() {
+        var queries = new AtomicInteger();
+        var mono = ReactiveResults.mono(() -> {
+            queries.incrementAndGet();
+            return immediateFuture("result");
+        });
+        assertThat(queries).hasValue(0);
+
+        assertThat(mono.block()).isEqualTo("result");
+        assertThat(mono.block()).isEqualTo("result");
+        assertThat(queries).hasValue(2);
+    }
+}
@@ -29,7 +29,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class DataScienceServiceDsTransactionMappingTest {
 
     private final ObjectMapper om = new ObjectMapper();
-    DataScienceService dss = new DataScienceService(null, om, null, null, Clock.systemUTC());
+    DataScienceService dss = new DataScienceService(null, om, null, null, null, Clock.systemUTC());
 
     @Test
     public void given_noExtendedTransactionInformation_when_mapping_then_counterPartyInformationIsEmpty() {
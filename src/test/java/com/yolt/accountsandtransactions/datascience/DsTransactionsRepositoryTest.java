@@ -8,6 +8,7 @@ import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.mapping.Mapper;
 import com.yolt.accountsandtransactions.BaseIntegrationTest;
 import com.yolt.accountsandtransactions.TestUtils;
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -36,6 +37,8 @@ public class DsTransactionsRepositoryTest extends BaseIntegrationTest {
     private DsTransactionsRepository repository;
     @Autowired
     private DataScienceCassandraSession session;
+    @Autowired
+    private RetentionPolicies retentionPolicies;
 
     private Mapper<DsTransaction> mapper;
 
@@ -98,7 +101,7 @@ public class DsTransactionsRepositoryTest extends BaseIntegrationTest {
         UUID accountId1 = UUID.randomUUID();
         UUID accountId2 = UUID.randomUUID();
         UUID accountId3 = UUID.randomUUID();
-        repository = new DsTransactionsRepository(session, 2);
+        repository = new DsTransactionsRepository(session, retentionPolicies, 2);
 
         assertRecordCount(0);
         assertRecordCountForUser(userId1, 0);
@@ -131,7 +134,7 @@ public class DsTransactionsRepositoryTest extends BaseIntegrationTest {
         UUID accountId1 = UUID.randomUUID();
 
         // prep the repo
-        repository = new DsTransactionsRepository(session, 1);
+        repository = new DsTransactionsRepository(session, retentionPolicies, 1);
         assertRecordCount(0);
 
         // insert list of transactions for a single user
@@ -0,0 +1,168 @@
+package com.yolt.accountsandtransactions.datascience;
+
+import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static java.util.Collections.emptyList;
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.BOOKED;
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.PENDING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PendingTransactionRangeServiceTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+    private static final UUID ACCOUNT_ID = UUID.randomUUID();
+    private static final UUID OTHER_ACCOUNT_ID = UUID.randomUUID();
+
+    @Mock
+    private AccountPendingRangeRepository accountPendingRangeRepository;
+    @Mock
+    private DsTransactionsRepository dsTransactionsRepository;
+
+    @Test
+    void when_theRangeIsDisabled_then_thePendingTransactionsAreRead() {
+        var service = new PendingTransactionRangeService(accountPendingRangeRepository, dsTransactionsRepository, false);
+        when(dsTransactionsRepository.getDatesPendingTransactions(USER_ID, List.of(ACCOUNT_ID))).thenReturn(Stream.of("2021-01", "2021-01", "2021-03"));
+
+        assertThat(service.getDatesPendingTransactions(USER_ID, List.of(ACCOUNT_ID))).containsExactly("2021-01", "2021-01", "2021-03");
+        verifyNoInteractions(accountPendingRangeRepository);
+    }
+
+    @Test
+    void when_theRangeIsEnabled_then_onlyTheAccountsWithoutRangeAreRead() {
+        var service = new PendingTransactionRangeService(accountPendingRangeRepository, dsTransactionsRepository, true);
+        when(accountPendingRangeRepository.find(USER_ID, List.of(ACCOUNT_ID, OTHER_ACCOUNT_ID)))
+                .thenReturn(List.of(range(LocalDate.of(2021, 1, 15), LocalDate.of(2021, 2, 1), 3)));
+        when(dsTransactionsRepository.getDatesPendingTransactions(USER_ID, List.of(OTHER_ACCOUNT_ID))).thenReturn(Stream.of("2020-12"));
+
+        assertThat(service.getDatesPendingTransactions(USER_ID, List.of(ACCOUNT_ID, OTHER_ACCOUNT_ID)))
+                .containsExactlyInAnyOrder("2021-01", "2021-02", "2020-12");
+    }
+
+    @Test
+    void when_anAccountHasNoRange_then_itsPendingTransactionsAreCounted() {
+        var service = new PendingTransactionRangeService(accountPendingRangeRepository, dsTransactionsRepository, true);
+        when(accountPendingRangeRepository.find(USER_ID, ACCOUNT_ID)).thenReturn(Optional.empty());
+        when(dsTransactionsRepository.getPendingTransactionDates(USER_ID, ACCOUNT_ID))
+                .thenReturn(List.of(LocalDate.of(2021, 3, 1), LocalDate.of(2021, 1, 1), LocalDate.of(2021, 2, 1)));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(emptyList(), emptyList(), emptyList()));
+
+        assertThat(persisted()).isEqualTo(range(LocalDate.of(2021, 1, 1), LocalDate.of(2021, 3, 1), 3));
+    }
+
+    @Test
+    void when_pendingTransactionsAreWritten_then_theRangeIsWidened() {
+        var service = new PendingTransactionRangeService(accountPendingRangeRepository, dsTransactionsRepository, true);
+        when(accountPendingRangeRepository.find(USER_ID, ACCOUNT_ID)).thenReturn(Optional.of(range(LocalDate.of(2021, 2, 1), LocalDate.of(2021, 2, 10), 2)));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(
+                List.of(stored("deleted", PENDING, LocalDate.of(2021, 2, 1))),
+                List.of(upstream("inserted", PENDING, LocalDate.of(2021, 1, 20)), upstream("booked", BOOKED, LocalDate.of(2020, 1, 1))),
+                emptyList()));
+
+        // one of the two pending transactions is left, the range cannot shrink
+        assertThat(persisted()).isEqualTo(range(LocalDate.of(2021, 1, 20), LocalDate.of(2021, 2, 10), 2));
+        verifyNoInteractions(dsTransactionsRepository);
+    }
+
+    @Test
+    void when_allPendingTransactionsAreDeleted_then_theRangeStartsOver() {
+        var service = new PendingTransactionRangeService(accountPendingRangeRepository, dsTransactionsRepository, true);
+        when(accountPendingRangeRepository.find(USER_ID, ACCOUNT_ID)).thenReturn(Optional.of(range(LocalDate.of(2020, 6, 1), LocalDate.of(2021, 2, 10), 2)));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(
+                List.of(stored("1", PENDING, LocalDate.of(2020, 6, 1)), stored("2", PENDING, LocalDate.of(2021, 2, 10)), stored("moved", BOOKED, LocalDate.of(2021, 2, 3))),
+                List.of(upstream("3", PENDING, LocalDate.of(2021, 2, 12))),
+                // a booked transaction that became pending is written again, an update of a pending transaction overwrites it
+                List.of(upstream("moved", PENDING, LocalDate.of(2021, 2, 3)), upstream("unchanged", PENDING, LocalDate.of(2019, 1, 1)))));
+
+        assertThat(persisted()).isEqualTo(range(LocalDate.of(2021, 2, 3), LocalDate.of(2021, 2, 12), 2));
+    }
+
+    @Test
+    void when_noPendingTransactionsAreTouched_then_theRangeIsNotWritten() {
+        var service = new PendingTransactionRangeService(accountPendingRangeRepository, dsTransactionsRepository, true);
+        when(accountPendingRangeRepository.find(USER_ID, ACCOUNT_ID)).thenReturn(Optional.of(range(null, null, 0)));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(emptyList(), List.of(upstream("booked", BOOKED, LocalDate.of(2021, 1, 1))), emptyList()));
+
+        verify(accountPendingRangeRepository, never()).persist(any());
+    }
+
+    @Test
+    void when_theRangeIsDisabled_then_theRangeIsNotMaintained() {
+        var service = new PendingTransactionRangeService(accountPendingRangeRepository, dsTransactionsRepository, false);
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(emptyList(), List.of(upstream("inserted", PENDING, LocalDate.of(2021, 1, 20))), emptyList()));
+
+        verifyNoInteractions(accountPendingRangeRepository, dsTransactionsRepository);
+    }
+
+    @Test
+    void when_theAccountsAreDeleted_then_theirRangesAreDeleted() {
+        var service = new PendingTransactionRangeService(accountPendingRangeRepository, dsTransactionsRepository, false);
+
+        service.delete(USER_ID, List.of(ACCOUNT_ID, OTHER_ACCOUNT_ID));
+        service.delete(USER_ID, emptyList());
+
+        verify(accountPendingRangeRepository).delete(USER_ID, List.of(ACCOUNT_ID, OTHER_ACCOUNT_ID));
+        verifyNoMoreInteractions(accountPendingRangeRepository);
+    }
+
+    private AccountPendingRange persisted() {
+        var captor = ArgumentCaptor.forClass(AccountPendingRange.class);
+        verify(accountPendingRangeRepository).persist(captor.capture());
+        return captor.getValue();
+    }
+
+    private static AccountPendingRange range(LocalDate earliest, LocalDate latest, int pendingCount) {
+        return new AccountPendingRange(USER_ID, ACCOUNT_ID, earliest, latest, pendingCount);
+    }
+
+    private static Instruction instruction(List<Transaction> deleted, List<ProviderTransactionWithId> inserted, List<ProviderTransactionWithId> updated) {
+        return Instruction.builder()
+                .transactionsToDelete(deleted)
+                .transactionsToInsert(inserted)
+                .transactionsToUpdate(updated)
+                .transactionsToIgnore(emptyList())
+                .oldestTransactionChangeDate(Optional.empty())
+                .build();
+    }
+
+    private static Transaction stored(String id, TransactionStatus status, LocalDate date) {
+        return Transaction.builder()
+                .userId(USER_ID)
+                .accountId(ACCOUNT_ID)
+                .id(id)
+                .status(status)
+                .date(date)
+                .build();
+    }
+
+    private static ProviderTransactionWithId upstream(String id, TransactionStatus status, LocalDate date) {
+        return new ProviderTransactionWithId(ProviderTransactionDTO.builder()
+                .externalId(id)
+                .status(status)
+                .dateTime(date.atStartOfDay(ZoneOffset.UTC))
+                .build(), id);
+    }
+}
@@ -0,0 +1,149 @@
+package com.yolt.accountsandtransactions.datascience;
+
+import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import nl.ing.lovebird.providerdomain.ProviderTransactionType;
+import nl.ing.lovebird.providerdomain.YoltCategory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.yolt.accountsandtransactions.TestBuilders.createTransactionWithId;
+import static com.yolt.accountsandtransactions.datascience.TransactionSyncService.reconcileUpstreamTransactionsWithPersisted;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Verifies that {@link IdentityTransactionIndex} yields exactly the same reconciliation results as the original
+ * {@link ListTransactionIndex} on randomized histories.
+ */
+class TransactionIndexDifferentialTest {
+
+    private static final ZonedDateTime START = Instant.EPOCH.atZone(ZoneOffset.UTC);
+    private static final Clock CLOCK = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+
+    @ParameterizedTest
+    @ValueSource(longs = {1L, 2L, 3L, 5L, 8L, 13L, 21L, 34L, 55L, 89L})
+    void given_randomHistory_when_reconcileWithBothIndexes_then_instructionsAreIdentical(long seed) {
+        var random = new Random(seed);
+
+        for (int run = 0; run < 25; run++) {
+            var history = randomHistory(random, 1 + random.nextInt(300));
+            var stored = new ArrayList<Transaction>();
+            for (int i = 0; i < history.size(); i++) {
+                // Only part of the history is stored, the rest is new.
+                if (random.nextInt(4) != 0) {
+                    stored.add(createTransactionWithId(Integer.toString(i), history.get(i)));
+                }
+            }
+            var upstream = mutate(random, history);
+
+            var expected = reconcileUpstreamTransactionsWithPersisted(stored, upstream, "dummy", CLOCK, ListTransactionIndex::new);
+            var actual = reconcileUpstreamTransactionsWithPersisted(stored, upstream, "dummy", CLOCK, IdentityTransactionIndex::new);
+
+            assertSameInstruction(actual, expected);
+        }
+    }
+
+    @Test
+    void given_sameInstanceTwice_when_removeFromIndex_then_occurrencesAreRemovedOneByOne() {
+        var trx = trx(random -> "ext-1", new Random(0), 0);
+        var index = new IdentityTransactionIndex(List.of(trx, trx));
+
+        index.removeFromIndex(trx);
+        assertThat(index.transactions()).containsExactly(trx);
+        assertThat(index.byExternalId().get("ext-1")).containsExactly(trx);
+
+        index.removeFromIndex(trx);
+        assertThat(index.transactions()).isEmpty();
+        assertThat(index.byExternalId()).isEmpty();
+
+        assertThatThrownBy(() -> index.removeFromIndex(trx)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static void assertSameInstruction(Instruction actual, Instruction expected) {
+        assertThat(actual.getTransactionsToDelete()).containsExactlyElementsOf(expected.getTransactionsToDelete());
+        assertThat(actual.getTransactionsToUpdate()).containsExactlyElementsOf(expected.getTransactionsToUpdate());
+        assertThat(actual.getTransactionsToIgnore()).containsExactlyElementsOf(expected.getTransactionsToIgnore());
+        // New transactions are assigned a random id, so only compare the upstream transactions.
+        assertThat(upstreamOf(actual.getTransactionsToInsert())).containsExactlyElementsOf(upstreamOf(expected.getTransactionsToInsert()));
+        assertThat(actual.getMetrics()).usingRecursiveComparison().isEqualTo(expected.getMetrics());
+        assertThat(actual.getOldestTransactionChangeDate()).isEqualTo(expected.getOldestTransactionChangeDate());
+    }
+
+    private static List<ProviderTransactionDTO> upstreamOf(List<ProviderTransactionWithId> trxs) {
+        return trxs.stream()
+                .map(ProviderTransactionWithId::getProviderTransactionDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Generates a history with a mix of (missing, duplicate) externalIds, pending and booked transactions and
+     * transactions that are identical in date, amount and description.
+     */
+    private static List<ProviderTransactionDTO> randomHistory(Random random, int size) {
+        var history = new ArrayList<ProviderTransactionDTO>(size);
+        for (int i = 0; i < size; i++) {
+            history.add(trx(r -> switch (r.nextInt(5)) {
+                case 0 -> null;
+                case 1 -> "dup-" + r.nextInt(5);
+                default -> "ext-" + r.nextInt(1_000_000);
+            }, random, random.nextInt(30)));
+        }
+        return history;
+    }
+
+    /**
+     * Produces the 'next' upstream batch: drops some transactions, books pending ones, shifts dates, reuses the
+     * exact same instance and adds new transactions.
+     */
+    private static List<ProviderTransactionDTO> mutate(Random random, List<ProviderTransactionDTO> history) {
+        var upstream = new ArrayList<ProviderTransactionDTO>(history.size());
+        for (ProviderTransactionDTO trx : history) {
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    // dropped upstream
+                }
+                case 1 -> upstream.add(trx.toBuilder().status(TransactionStatus.BOOKED).build());
+                case 2 -> upstream.add(trx.toBuilder().dateTime(trx.getDateTime().plusDays(1)).build());
+                case 3 -> upstream.add(trx.toBuilder().description(trx.getDescription() + " updated").build());
+                case 4 -> {
+                    upstream.add(trx);
+                    upstream.add(trx);
+                }
+                default -> upstream.add(trx);
+            }
+        }
+        int added = random.nextInt(20);
+        for (int i = 0; i < added; i++) {
+            upstream.add(trx(r -> r.nextBoolean() ? null : "new-" + r.nextInt(1_000_000), random, random.nextInt(30)));
+        }
+        return upstream;
+    }
+
+    private static ProviderTransactionDTO trx(Function<Random, String> externalId, Random random, int day) {
+        return ProviderTransactionDTO.builder()
+                .externalId(externalId.apply(random))
+                .dateTime(START.plusDays(day))
+                .amount(new BigDecimal(1 + random.nextInt(10)))
+                .status(random.nextInt(3) == 0 ? TransactionStatus.PENDING : TransactionStatus.BOOKED)
+                .type(random.nextBoolean() ? ProviderTransactionType.CREDIT : ProviderTransactionType.DEBIT)
+                .description("trx " + random.nextInt(5))
+                .category(YoltCategory.GENERAL)
+                .build();
+    }
+}
@@ -0,0 +1,76 @@
+package com.yolt.accountsandtransactions.datascience.counterparties;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MerchantPrefixIndexTest {
+
+    @Test
+    void shouldFindMerchantsByPrefix() {
+        var index = MerchantPrefixIndex.of(List.<Map.Entry<String, String>>of(
+                new SimpleImmutableEntry<>("zeeman", "Zeeman"),
+                new SimpleImmutableEntry<>("albert heijn", "Albert Heijn"),
+                new SimpleImmutableEntry<>("ah", "Albert Heijn"),
+                new SimpleImmutableEntry<>("zara", "Zara"),
+                new SimpleImmutableEntry<>("zara", "Zara Home")));
+
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.search("z", 10)).containsExactly("Zara", "Zeeman");
+        assertThat(index.search("a", 10)).containsExactly("Albert Heijn");
+        assertThat(index.search("zz", 10)).isEmpty();
+        assertThat(index.search("zeeman and more", 10)).isEmpty();
+        assertThat(MerchantPrefixIndex.EMPTY.search("a", 10)).isEmpty();
+    }
+
+    @Test
+    void given_randomMerchants_when_search_then_resultIsIdenticalToLinearScan() {
+        var random = new Random(42);
+        var entries = new ArrayList<Map.Entry<String, String>>();
+        for (int i = 0; i < 5_000; i++) {
+            var searchTerm = randomTerm(random, 1 + random.nextInt(6));
+            entries.add(new SimpleImmutableEntry<>(searchTerm, "merchant " + random.nextInt(1_000)));
+        }
+        var index = MerchantPrefixIndex.of(entries);
+
+        for (int i = 0; i < 1_000; i++) {
+            var prefix = randomTerm(random, 1 + random.nextInt(3));
+            assertThat(index.search(prefix, 10)).containsExactlyElementsOf(linearScan(entries, prefix, 10));
+        }
+    }
+
+    /**
+     * The search as it was done before the index: walk all the (sorted) search terms, the first merchant of a search term wins.
+     */
+    private static List<String> linearScan(List<Map.Entry<String, String>> entries, String prefix, int limit) {
+        var sorted = new TreeMap<String, String>();
+        entries.forEach(entry -> sorted.putIfAbsent(entry.getKey(), entry.getValue()));
+
+        var matches = new LinkedHashSet<String>();
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                matches.add(entry.getValue());
+                if (matches.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(matches);
+    }
+
+    private static String randomTerm(Random random, int length) {
+        var term = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            term.append("abcde -".charAt(random.nextInt(7)));
+        }
+        return term.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountIngestionExecutorTest {
+
+    private ThreadPoolTaskExecutor pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(8);
+        pool.setMaxPoolSize(8);
+        pool.setQueueCapacity(0);
+        pool.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void shouldProcessAllItemsInOrderWithBoundedConcurrency() {
+        var executor = new AccountIngestionExecutor(pool, 3);
+        var active = new AtomicInteger();
+        var maxActive = new AtomicInteger();
+        var items = IntStream.range(0, 20).boxed().collect(Collectors.toList());
+
+        var outcomes = executor.processAll(items, i -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            return i * 2;
+        });
+
+        assertThat(outcomes).extracting(AccountIngestionExecutor.Outcome::getItem).containsExactlyElementsOf(items);
+        assertThat(outcomes).allSatisfy(outcome -> assertThat(outcome.getResult()).contains(outcome.getItem() * 2));
+        assertThat(maxActive.get()).isBetween(1, 3);
+    }
+
+    @Test
+    void shouldRecordFailuresPerItemWithoutAbortingTheOthers() {
+        var executor = new AccountIngestionExecutor(pool, 4);
+
+        var outcomes = executor.processAll(List.of(1, 2, 3, 4, 5), i -> {
+            if (i % 2 == 0) {
+                throw new IllegalStateException("boom " + i);
+            }
+            return i;
+        });
+
+        assertThat(outcomes).filteredOn(outcome -> outcome.getFailure().isPresent())
+                .extracting(AccountIngestionExecutor.Outcome::getItem)
+                .containsExactly(2, 4);
+        assertThat(outcomes).filteredOn(outcome -> outcome.getResult().isPresent())
+                .extracting(AccountIngestionExecutor.Outcome::getItem)
+                .containsExactly(1, 3, 5);
+    }
+
+    @Test
+    void shouldFallBackToCallingThreadWhenPoolIsSaturated() throws Exception {
+        var executor = new AccountIngestionExecutor(task -> {
+            throw new TaskRejectedException("saturated");
+        }, 4);
+        var caller = Thread.currentThread();
+        var latch = new CountDownLatch(3);
+
+        var outcomes = executor.processAll(List.of(1, 2, 3), i -> {
+            latch.countDown();
+            return Thread.currentThread() == caller;
+        });
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(outcomes).allSatisfy(outcome -> assertThat(outcome.getResult()).contains(true));
+    }
+}
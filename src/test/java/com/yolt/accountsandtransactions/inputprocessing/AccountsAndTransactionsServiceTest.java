@@ -1,13 +1,18 @@
 package com.yolt.accountsandtransactions.inputprocessing;
 
+import com.datastax.driver.core.Session;
 import com.yolt.accountsandtransactions.TestUtils;
 import com.yolt.accountsandtransactions.accounts.Account;
 import com.yolt.accountsandtransactions.accounts.AccountService;
+import com.yolt.accountsandtransactions.accounts.AccountWrites;
+import com.yolt.accountsandtransactions.datascience.DataScienceCassandraSession;
 import com.yolt.accountsandtransactions.datascience.DataScienceService;
 import com.yolt.accountsandtransactions.datascience.DsTransaction;
 import com.yolt.accountsandtransactions.datascience.TransactionSyncService;
 import com.yolt.accountsandtransactions.inputprocessing.dataquality.StartBalanceStrategyAnalyzer;
 import com.yolt.accountsandtransactions.inputprocessing.enrichments.activities.ActivityEnrichmentService;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.summary.AccountTransactionStatusService;
 import com.yolt.accountsandtransactions.transactions.TransactionRepository;
 import com.yolt.accountsandtransactions.transactions.TransactionService;
 import nl.ing.lovebird.activityevents.events.IngestionFinishedEvent;
@@ -33,6 +38,7 @@ import static com.yolt.accountsandtransactions.TestUtils.toTransaction;
 import static java.time.Clock.systemUTC;
 import static java.util.UUID.randomUUID;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -68,6 +74,15 @@ public class AccountsAndTransactionsServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private UpstreamDigestService upstreamDigestService;
+
+    @Mock
+    private ShadowEvaluator shadowEvaluator;
+
+    @Mock
+    private AccountsAndTransactionMetrics metrics;
+
     @BeforeEach
     public void setup() {
         accountsAndTransactionsService = new AccountsAndTransactionsService(dataScienceService,
@@ -81,6 +96,12 @@ public class AccountsAndTransactionsServiceTest {
                 transactionIdProvider,
                 accountsAndTransactionDiagnosticsService,
                 transactionRepository,
+                new AccountIngestionExecutor(Runnable::run, 1),
+                new TransactionWritePipeline(mock(Session.class), mock(DataScienceCassandraSession.class), mock(AccountsAndTransactionMetrics.class), 8),
+                upstreamDigestService,
+                shadowEvaluator,
+                mock(AccountTransactionStatusService.class),
+                metrics,
                 systemUTC()
         );
     }
@@ -105,7 +126,7 @@ public class AccountsAndTransactionsServiceTest {
                 .build();
 
         when(accountService.getAccountsForUserSite(any(ClientUserToken.class), any())).thenReturn(Collections.singletonList(account));
-        when(accountService.createOrUpdateAccount(any(), any(), eq(accountId), any(), any(), anyBoolean(), any())).thenReturn(account);
+        when(accountService.map(any(), any(), eq(accountId), any(), any(), any(), anyBoolean())).thenReturn(account);
 
         when(dataScienceService.toDsTransactionList(eq(accountId), eq(userId), eq(CurrencyCode.EUR), any())).thenReturn(extractedTransactions);
         when(dataScienceService.getDatesPendingTransactions(userId, Collections.singletonList(accountId)))
@@ -117,11 +138,14 @@ public class AccountsAndTransactionsServiceTest {
         );
 
         var clientToken = new ClientUserToken("mock-client-token", TestJwtClaims.createClientUserClaims("junit", randomUUID(), randomUUID(), userId));
+        when(accountService.openAccountWrites(clientToken)).thenReturn(new AccountWrites(accountService, clientToken, false));
         accountsAndTransactionsService.processAccountsAndTransactionsForUserSite(clientToken, ingestionRequest);
 
-        verify(dataScienceService).saveTransactionBatch(captor.capture());
+        verify(dataScienceService).saveTransactionBatch(captor.capture(), any());
         verify(dataScienceService).saveAccount(account, accountFromProviders);
-        verify(accountService, times(2)).createOrUpdateAccount(any(), any(), eq(accountId), any(), any(), anyBoolean(), any());
+        // the account and its lastDataFetchTime are written at once
+        verify(accountService, times(2)).map(any(), any(), eq(accountId), any(), any(), any(), anyBoolean());
+        verify(accountService).saveAccount(eq(clientToken), eq(account), anyBoolean());
         ArgumentCaptor<IngestionFinishedEvent> ingestionFinishedEventArgumentCaptor = ArgumentCaptor.forClass(IngestionFinishedEvent.class);
         verify(accountsAndTransactionsFinishedActivityEventProducer).sendMessage(ingestionFinishedEventArgumentCaptor.capture(), any(ClientToken.class));
         assertThat(captor.getValue().get(0)).isEqualTo(extractedTransactions.get(0));
@@ -132,4 +156,87 @@ public class AccountsAndTransactionsServiceTest {
         assertThat(ingestionFinishedEventArgumentCaptor.getValue().getAccountIdToOldestTransactionChangeDate()).isEqualTo(Map.of(accountId, LocalDate.EPOCH));
     }
 
+    @Test
+    public void shouldOnlyUpdateTheLastDataFetchTimeWhenTheUpstreamIsUnchanged() throws Exception {
+        final UUID accountId = randomUUID();
+        final UUID userSiteId = randomUUID();
+        final UUID userId = randomUUID();
+        AccountsAndTransactionsRequestDTO ingestionRequest = TestUtils.ingestionRequestSuccessMessage(userId, randomUUID(), userSiteId, "externalId", "PROVIDER_X", randomUUID());
+        AccountFromProviders accountFromProviders = ingestionRequest.getIngestionAccounts().get(0);
+
+        Account account = builder()
+                .userId(userId)
+                .id(accountId)
+                .currency(CurrencyCode.EUR)
+                .userSiteId(userSiteId)
+                .siteId(ingestionRequest.getSiteId())
+                .build();
+
+        when(accountService.getAccountsForUserSite(any(ClientUserToken.class), any())).thenReturn(Collections.singletonList(account));
+        when(accountService.map(any(), any(), eq(accountId), any(), any(), any(), anyBoolean())).thenReturn(account);
+        when(dataScienceService.getDatesPendingTransactions(userId, Collections.singletonList(accountId))).thenReturn(Stream.empty());
+        var digest = new UpstreamDigest("2:digest", LocalDate.of(2017, 10, 3), LocalDate.of(2017, 10, 4));
+        when(upstreamDigestService.digest(accountFromProviders)).thenReturn(Optional.of(digest));
+        when(upstreamDigestService.isUnchanged(userId, accountId, "PROVIDER_X", digest)).thenReturn(true);
+
+        var clientToken = new ClientUserToken("mock-client-token", TestJwtClaims.createClientUserClaims("junit", randomUUID(), randomUUID(), userId));
+        when(accountService.openAccountWrites(clientToken)).thenReturn(new AccountWrites(accountService, clientToken, false));
+        accountsAndTransactionsService.processAccountsAndTransactionsForUserSite(clientToken, ingestionRequest);
+
+        // the account is written with its lastDataFetchTime, its transactions are neither reconciled nor written
+        verify(accountService).map(any(), any(), eq(accountId), any(), any(), isNotNull(), anyBoolean());
+        verify(accountService).saveAccount(eq(clientToken), eq(account), anyBoolean());
+        verifyNoInteractions(transactionSyncService, transactionService);
+        verify(dataScienceService, never()).saveTransactionBatch(any(), any());
+        verify(upstreamDigestService, never()).save(any(), any(), any());
+        verify(accountsAndTransactionsFinishedActivityEventProducer).sendMessage(any(IngestionFinishedEvent.class), any(ClientToken.class));
+    }
+
+    @Test
+    public void shouldAnnounceTheOtherAccountsOnceAndReportTheFailureWhenAnAccountFails() throws Exception {
+        final UUID accountId = randomUUID();
+        final UUID activityId = randomUUID();
+        final UUID userSiteId = randomUUID();
+        final UUID userId = randomUUID();
+        final UUID siteId = randomUUID();
+        AccountFromProviders accountFromProviders = TestUtils.ingestionRequestSuccessMessage(userId, activityId, userSiteId, "externalId", "PROVIDER_X", siteId)
+                .getIngestionAccounts().get(0);
+        AccountFromProviders failingAccountFromProviders = TestUtils.ingestionRequestSuccessMessage(userId, activityId, userSiteId, "otherExternalId", "PROVIDER_X", siteId)
+                .getIngestionAccounts().get(0);
+        var ingestionRequest = new AccountsAndTransactionsRequestDTO(activityId, List.of(accountFromProviders, failingAccountFromProviders), userSiteId, siteId);
+
+        Account account = builder()
+                .userId(userId)
+                .id(accountId)
+                .currency(CurrencyCode.EUR)
+                .userSiteId(userSiteId)
+                .siteId(siteId)
+                .build();
+
+        when(accountService.getAccountsForUserSite(any(ClientUserToken.class), any())).thenReturn(Collections.singletonList(account));
+        when(accountService.map(any(), any(), eq(accountId), any(), any(), any(), anyBoolean())).thenReturn(account);
+        when(dataScienceService.getDatesPendingTransactions(userId, Collections.singletonList(accountId))).thenReturn(Stream.empty());
+        when(transactionSyncService.reconcile(any(), eq(accountId), anyList(), eq("PROVIDER_X"))).thenReturn(
+                new TransactionInsertionStrategy.Instruction(Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), null, Optional.of(LocalDate.EPOCH)));
+        var failure = new IllegalStateException("account failed");
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0) == failingAccountFromProviders) {
+                throw failure;
+            }
+            return null;
+        }).when(accountsAndTransactionDiagnosticsService).updateAccountMatchingStatistics(any(), any());
+
+        var clientToken = new ClientUserToken("mock-client-token", TestJwtClaims.createClientUserClaims("junit", randomUUID(), randomUUID(), userId));
+        when(accountService.openAccountWrites(clientToken)).thenReturn(new AccountWrites(accountService, clientToken, false));
+
+        // Nothing is rethrown, so the consumer commits the request instead of sending it to the errors topic (a replay
+        // would announce the account that succeeded a second time).  The failed account is processed on its next refresh.
+        assertThatCode(() -> accountsAndTransactionsService.processAccountsAndTransactionsForUserSite(clientToken, ingestionRequest))
+                .doesNotThrowAnyException();
+
+        ArgumentCaptor<IngestionFinishedEvent> ingestionFinishedEventArgumentCaptor = ArgumentCaptor.forClass(IngestionFinishedEvent.class);
+        verify(accountsAndTransactionsFinishedActivityEventProducer, times(1)).sendMessage(ingestionFinishedEventArgumentCaptor.capture(), any(ClientToken.class));
+        assertThat(ingestionFinishedEventArgumentCaptor.getValue().getAccountIdToOldestTransactionChangeDate()).isEqualTo(Map.of(accountId, LocalDate.EPOCH));
+        verify(metrics).incrementIngestionFailure("account", failure);
+    }
 }
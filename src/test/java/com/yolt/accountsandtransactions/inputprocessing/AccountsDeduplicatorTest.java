@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.stream.Stream;
 
 import static com.yolt.accountsandtransactions.inputprocessing.AccountsDeduplicator.deduplicateAccounts;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -122,6 +123,24 @@ public class AccountsDeduplicatorTest {
                 .containsExactlyInAnyOrder(a1, b1, c1);
     }
 
+    @Test
+    public void firstOccurrences_acceptsTheFirstOccurrenceOfEveryAccount() {
+        AccountFromProviders a1 = prepareAccount("id1",
+                new ProviderAccountNumberDTO(ProviderAccountNumberDTO.Scheme.IBAN, "identification"),
+                CurrencyCode.EUR);
+        AccountFromProviders b1 = prepareAccount("id1", null, CurrencyCode.EUR);
+        AccountFromProviders a2 = prepareAccount("id1",
+                new ProviderAccountNumberDTO(ProviderAccountNumberDTO.Scheme.IBAN, "identification"),
+                CurrencyCode.EUR);
+        AccountFromProviders c1 = prepareAccount("id1",
+                new ProviderAccountNumberDTO(ProviderAccountNumberDTO.Scheme.IBAN, "identification"),
+                CurrencyCode.GBP);
+        AccountFromProviders b2 = prepareAccount("id1", null, CurrencyCode.EUR);
+
+        assertThat(Stream.of(a1, b1, a2, c1, b2).filter(AccountsDeduplicator.firstOccurrences()))
+                .containsExactly(a1, b1, c1);
+    }
+
     private static AccountFromProviders prepareAccount(String id, ProviderAccountNumberDTO number, CurrencyCode currencyCode) {
         return AccountFromProviders.accountsFromProvidersBuilder()
                 .accountId(id)
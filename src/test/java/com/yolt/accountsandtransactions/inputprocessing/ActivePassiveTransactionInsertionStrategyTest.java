@@ -1,5 +1,7 @@
 package com.yolt.accountsandtransactions.inputprocessing;
 
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics.ShadowEvaluationResult;
 import nl.ing.lovebird.clienttokens.ClientUserToken;
 import nl.ing.lovebird.clienttokens.test.TestJwtClaims;
 import nl.ing.lovebird.extendeddata.common.CurrencyCode;
@@ -7,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -27,10 +30,13 @@ class ActivePassiveTransactionInsertionStrategyTest {
         when(active.getMode()).thenReturn(TransactionInsertionStrategy.Mode.ACTIVE);
 
         var passive = Mockito.mock(AttributeInsertionStrategy.class);
+        when(passive.determineTransactionPersistenceInstruction(any(), any(), any(), any(), any()))
+                .thenReturn(activeStubInstruction);
         when(passive.getMode()).thenReturn(TransactionInsertionStrategy.Mode.TEST);
 
+        var metrics = Mockito.mock(AccountsAndTransactionMetrics.class);
         var activePassiveTransactionInsertionStrategy
-                = new ActivePassiveTransactionInsertionStrategy(active, passive);
+                = new ActivePassiveTransactionInsertionStrategy(active, passive, new ShadowEvaluator(Runnable::run, metrics, 1.0, Map.of()));
 
         final ClientUserToken clientUserToken = new ClientUserToken(null, TestJwtClaims.createClientUserClaims("junit", UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()));
 
@@ -45,5 +51,6 @@ class ActivePassiveTransactionInsertionStrategyTest {
         assertThat(instruction).isEqualTo(activeStubInstruction);
         Mockito.verify(active).determineTransactionPersistenceInstruction(any(), any(), any(), any(), any());
         Mockito.verify(passive).determineTransactionPersistenceInstruction(any(), any(), any(), any(), any());
+        Mockito.verify(metrics).incrementShadowEvaluationResult("RABOBANK", ShadowEvaluationResult.MATCH);
     }
 }
\ No newline at end of file
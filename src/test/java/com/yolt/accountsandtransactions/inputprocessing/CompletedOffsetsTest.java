@@ -0,0 +1,69 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CompletedOffsetsTest {
+
+    @Test
+    void shouldOnlyCommitTheCompletedPrefixOfAPartition() {
+        var completedOffsets = new CompletedOffsets();
+        var first = mock(Acknowledgment.class);
+        var second = mock(Acknowledgment.class);
+        var third = mock(Acknowledgment.class);
+        var otherPartition = mock(Acknowledgment.class);
+        var firstRecord = completedOffsets.started(0, 10, first);
+        var secondRecord = completedOffsets.started(0, 11, second);
+        var thirdRecord = completedOffsets.started(0, 12, third);
+        var otherPartitionRecord = completedOffsets.started(1, 10, otherPartition);
+
+        // a slow record holds back the commit of its own partition ...
+        assertThat(completedOffsets.completed(thirdRecord)).isEmpty();
+        assertThat(completedOffsets.completed(secondRecord)).isEmpty();
+        // ... but not the commit of the other partitions
+        assertThat(completedOffsets.completed(otherPartitionRecord)).contains(otherPartition);
+
+        assertThat(completedOffsets.completed(firstRecord)).contains(third);
+        assertThat(completedOffsets.inProgress()).isZero();
+    }
+
+    @Test
+    void shouldIgnoreRecordsThatAreAlreadyCommitted() {
+        var completedOffsets = new CompletedOffsets();
+        var record = completedOffsets.started(0, 10, mock(Acknowledgment.class));
+        completedOffsets.completed(record);
+
+        assertThat(completedOffsets.completed(record)).isEmpty();
+    }
+
+    @Test
+    void shouldForgetTheRecordsOfARevokedPartition() {
+        var completedOffsets = new CompletedOffsets();
+        var inProgress = completedOffsets.started(0, 10, mock(Acknowledgment.class));
+        var otherPartition = completedOffsets.started(1, 10, mock(Acknowledgment.class));
+
+        completedOffsets.revoked(List.of(0));
+
+        assertThat(completedOffsets.inProgress()).isEqualTo(1);
+        assertThat(completedOffsets.completed(inProgress)).isEmpty();
+        assertThat(completedOffsets.completed(otherPartition)).isPresent();
+    }
+
+    @Test
+    void aRecordOfARevokedPartitionShouldNotCompleteItsRedelivery() {
+        var completedOffsets = new CompletedOffsets();
+        var revoked = completedOffsets.started(0, 10, mock(Acknowledgment.class));
+        completedOffsets.revoked(List.of(0));
+        var redeliveredAcknowledgment = mock(Acknowledgment.class);
+        var redelivered = completedOffsets.started(0, 10, redeliveredAcknowledgment);
+
+        assertThat(completedOffsets.completed(revoked)).isEmpty();
+        assertThat(completedOffsets.inProgress()).isEqualTo(1);
+        assertThat(completedOffsets.completed(redelivered)).contains(redeliveredAcknowledgment);
+    }
+}
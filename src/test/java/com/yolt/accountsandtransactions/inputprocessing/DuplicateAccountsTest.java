@@ -1,12 +1,17 @@
 package com.yolt.accountsandtransactions.inputprocessing;
 
+import com.datastax.driver.core.Session;
 import com.yolt.accountsandtransactions.TestAccountBuilder;
 import com.yolt.accountsandtransactions.accounts.Account;
 import com.yolt.accountsandtransactions.accounts.AccountService;
+import com.yolt.accountsandtransactions.accounts.AccountWrites;
+import com.yolt.accountsandtransactions.datascience.DataScienceCassandraSession;
 import com.yolt.accountsandtransactions.datascience.DataScienceService;
 import com.yolt.accountsandtransactions.datascience.TransactionSyncService;
 import com.yolt.accountsandtransactions.inputprocessing.dataquality.StartBalanceStrategyAnalyzer;
 import com.yolt.accountsandtransactions.inputprocessing.enrichments.activities.ActivityEnrichmentService;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.summary.AccountTransactionStatusService;
 import com.yolt.accountsandtransactions.transactions.TransactionRepository;
 import nl.ing.lovebird.clienttokens.ClientUserToken;
 import nl.ing.lovebird.extendeddata.common.CurrencyCode;
@@ -70,13 +75,19 @@ public class DuplicateAccountsTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private UpstreamDigestService upstreamDigestService;
+
+    @Mock
+    private ShadowEvaluator shadowEvaluator;
+
     @BeforeEach
     public void setUp() {
         when(accountServiceMock.getAccountsForUserSite(any(), any(UUID.class)))
                 .thenReturn(Collections.emptyList());
         when(dataScienceServiceMock.getDatesPendingTransactions(USER_ID, Collections.emptyList()))
                 .thenReturn(Stream.<String>builder().build());
-        when(accountServiceMock.createOrUpdateAccount(any(), eq(REQUEST_DTO.getIngestionAccounts().get(0)), any(), any(), any(), anyBoolean(), any()))
+        when(accountServiceMock.map(any(), eq(REQUEST_DTO.getIngestionAccounts().get(0)), any(), any(), any(), any(), anyBoolean()))
                 .thenReturn(buildFromIngestionAccount(REQUEST_DTO.getIngestionAccounts().get(0)));
         when(transactionSyncService.reconcile(any(),
                 any(UUID.class), eq(Collections.emptyList()), eq("TRIODOS")))
@@ -94,6 +105,12 @@ public class DuplicateAccountsTest {
                 transactionIdProvider,
                 accountsAndTransactionDiagnosticsService,
                 transactionRepository,
+                new AccountIngestionExecutor(Runnable::run, 1),
+                new TransactionWritePipeline(mock(Session.class), mock(DataScienceCassandraSession.class), mock(AccountsAndTransactionMetrics.class), 8),
+                upstreamDigestService,
+                shadowEvaluator,
+                mock(AccountTransactionStatusService.class),
+                mock(AccountsAndTransactionMetrics.class),
                 Clock.systemUTC()
         );
     }
@@ -108,10 +125,13 @@ public class DuplicateAccountsTest {
         var clientUserToken = mock(ClientUserToken.class);
         var userId = USER_ID;
         when(clientUserToken.getUserIdClaim()).thenReturn(userId);
+        when(accountServiceMock.openAccountWrites(clientUserToken)).thenReturn(new AccountWrites(accountServiceMock, clientUserToken, false));
         service.processAccountsAndTransactionsForUserSite(clientUserToken, REQUEST_DTO);
 
         verify(accountServiceMock).getAccountsForUserSite(any(), any(UUID.class));
-        verify(accountServiceMock, times(2)).createOrUpdateAccount(any(), eq(REQUEST_DTO.getIngestionAccounts().get(0)), any(), any(), any(), anyBoolean(), any());
+        verify(accountServiceMock).openAccountWrites(clientUserToken);
+        verify(accountServiceMock, times(2)).map(any(), eq(REQUEST_DTO.getIngestionAccounts().get(0)), any(), any(), any(), any(), anyBoolean());
+        verify(accountServiceMock).saveAccount(eq(clientUserToken), any(), eq(false));
     }
 
     private static AccountsAndTransactionsRequestDTO prepareIncomingRequestWithDuplicateAccounts() {
@@ -0,0 +1,129 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyOrderedExecutorTest {
+
+    private ThreadPoolTaskExecutor pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(8);
+        pool.setMaxPoolSize(8);
+        pool.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void shouldRunTheTasksOfAKeyInOrderAndTheKeysInParallel() {
+        var executor = new KeyOrderedExecutor<String>(pool, 1_000);
+        var executed = new HashMap<String, List<Integer>>();
+        var activePerKey = new HashMap<String, AtomicInteger>();
+        var maxActivePerKey = new AtomicInteger();
+        var active = new AtomicInteger();
+        var maxActive = new AtomicInteger();
+        var keys = List.of("a", "b", "c", "d");
+        keys.forEach(key -> {
+            executed.put(key, Collections.synchronizedList(new ArrayList<>()));
+            activePerKey.put(key, new AtomicInteger());
+        });
+
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 100; i++) {
+            var key = keys.get(i % keys.size());
+            var task = i;
+            futures.add(executor.execute(key, () -> {
+                maxActivePerKey.accumulateAndGet(activePerKey.get(key).incrementAndGet(), Math::max);
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                sleep(2);
+                executed.get(key).add(task);
+                active.decrementAndGet();
+                activePerKey.get(key).decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        for (int k = 0; k < keys.size(); k++) {
+            var expected = new ArrayList<Integer>();
+            for (int i = k; i < 100; i += keys.size()) {
+                expected.add(i);
+            }
+            assertThat(executed.get(keys.get(k))).containsExactlyElementsOf(expected);
+        }
+        assertThat(maxActivePerKey).hasValue(1);
+        assertThat(maxActive.get()).isGreaterThan(1);
+        assertThat(executor.activeKeys()).isZero();
+    }
+
+    @Test
+    void aFailingTaskShouldNotStopTheNextTaskOfTheKey() {
+        var executor = new KeyOrderedExecutor<String>(pool, 10);
+        var failure = new IllegalStateException("failed");
+
+        var failing = executor.execute("a", () -> {
+            throw failure;
+        });
+        var next = executor.execute("a", () -> {
+        });
+
+        next.join();
+        assertThatThrownBy(failing::join).hasCause(failure);
+    }
+
+    @Test
+    void shouldBeSaturatedWithoutBlockingTheCallerIfTooManyTasksArePending() {
+        var executor = new KeyOrderedExecutor<String>(pool, 2);
+        var release = new CountDownLatch(1);
+        executor.execute("a", () -> await(release));
+        assertThat(executor.saturated()).isFalse();
+        executor.execute("b", () -> await(release));
+        assertThat(executor.saturated()).isTrue();
+
+        // submitting beyond the limit does not block
+        var beyondTheLimit = executor.execute("c", () -> {
+        });
+        assertThat(beyondTheLimit).isNotDone();
+
+        release.countDown();
+        beyondTheLimit.join();
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> !executor.saturated());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction.InstructionType;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics.ShadowEvaluationResult;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.MDC;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShadowEvaluatorTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+    private static final UUID ACCOUNT_ID = UUID.randomUUID();
+
+    @Mock
+    private AccountsAndTransactionMetrics metrics;
+    @Mock
+    private Supplier<Instruction> passive;
+
+    @Test
+    void when_theInstructionsDiffer_then_theDifferencesAreRecorded() {
+        var evaluator = new ShadowEvaluator(Runnable::run, metrics, 1.0, Map.of());
+        var upstream = upstream("1");
+        when(passive.get()).thenReturn(instruction(List.of(stored("a"), stored("b")), List.of(upstream, upstream("2"))));
+
+        evaluator.evaluate("PROVIDER", ACCOUNT_ID, instruction(List.of(stored("a")), List.of(upstream)), passive);
+
+        verify(metrics).measureShadowEvaluationDifference("PROVIDER", InstructionType.DELETE, 1);
+        verify(metrics).measureShadowEvaluationDifference("PROVIDER", InstructionType.INSERT, 1);
+        verify(metrics).measureShadowEvaluationDifference("PROVIDER", InstructionType.UPDATE, 0);
+        verify(metrics).incrementShadowEvaluationResult("PROVIDER", ShadowEvaluationResult.MISMATCH);
+    }
+
+    @Test
+    void when_thePassiveStrategyFails_then_theFailureIsRecorded() {
+        var evaluator = new ShadowEvaluator(Runnable::run, metrics, 1.0, Map.of());
+        when(passive.get()).thenThrow(new IllegalStateException("passive"));
+
+        evaluator.evaluate("PROVIDER", ACCOUNT_ID, instruction(emptyList(), emptyList()), passive);
+
+        verify(metrics).incrementShadowEvaluationResult("PROVIDER", ShadowEvaluationResult.FAILED);
+    }
+
+    @Test
+    void when_thePoolIsSaturated_then_theEvaluationIsDropped() {
+        var evaluator = new ShadowEvaluator(runnable -> {
+            throw new RejectedExecutionException("saturated");
+        }, metrics, 1.0, Map.of());
+
+        evaluator.evaluate("PROVIDER", ACCOUNT_ID, instruction(emptyList(), emptyList()), passive);
+
+        verify(metrics).incrementShadowEvaluationResult("PROVIDER", ShadowEvaluationResult.DROPPED);
+        verifyNoInteractions(passive);
+    }
+
+    @Test
+    void when_aProviderIsNotSampled_then_itIsNotEvaluated() {
+        var evaluator = new ShadowEvaluator(Runnable::run, metrics, 1.0, Map.of("PROVIDER", 0.0));
+
+        evaluator.evaluate("PROVIDER", ACCOUNT_ID, instruction(emptyList(), emptyList()), passive);
+
+        verify(metrics).incrementShadowEvaluationResult("PROVIDER", ShadowEvaluationResult.NOT_SAMPLED);
+        verifyNoInteractions(passive);
+    }
+
+    @Test
+    void theRecordedTransactionsAreReplayedWithinTheirWindow() {
+        TransactionLoader repository = mock(TransactionLoader.class);
+        var january = stored("january", LocalDate.of(2021, 1, 15));
+        var february = stored("february", LocalDate.of(2021, 2, 15));
+        when(repository.load(USER_ID, ACCOUNT_ID, LocalDate.of(2021, 1, 1))).thenReturn(List.of(january, february));
+
+        var loader = new RecordingTransactionLoader(repository);
+        assertThat(loader.load(USER_ID, ACCOUNT_ID, LocalDate.of(2021, 1, 1))).containsExactly(january, february);
+
+        assertThat(loader.replaying().load(USER_ID, ACCOUNT_ID, LocalDate.of(2021, 2, 1))).containsExactly(february);
+        verify(repository, times(1)).load(any(), any(), any());
+
+        // an earlier window than was recorded is not read again, the passive strategy fails instead
+        assertThatThrownBy(() -> loader.replaying().load(USER_ID, ACCOUNT_ID, LocalDate.of(2020, 12, 1)))
+                .isInstanceOf(IllegalStateException.class);
+        verify(repository, times(1)).load(any(), any(), any());
+    }
+
+    @Test
+    void when_nothingWasRecorded_then_nothingIsReplayed() {
+        TransactionLoader repository = mock(TransactionLoader.class);
+        var loader = new RecordingTransactionLoader(repository);
+
+        assertThatThrownBy(() -> loader.replaying().load(USER_ID, ACCOUNT_ID, LocalDate.of(2021, 1, 1)))
+                .isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void thePassiveStrategyIsEvaluatedWithTheMdcOfTheIngestion() throws InterruptedException {
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var evaluator = new ShadowEvaluator(executor, metrics, 1.0, Map.of());
+            var mdc = new AtomicReference<String>();
+            var evaluated = new CountDownLatch(1);
+            Supplier<Instruction> passiveStrategy = () -> {
+                mdc.set(MDC.get("user-id"));
+                evaluated.countDown();
+                return instruction(emptyList(), emptyList());
+            };
+
+            MDC.put("user-id", USER_ID.toString());
+            try {
+                evaluator.evaluate("PROVIDER", ACCOUNT_ID, instruction(emptyList(), emptyList()), passiveStrategy);
+            } finally {
+                MDC.remove("user-id");
+            }
+
+            assertThat(evaluated.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(mdc.get()).isEqualTo(USER_ID.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Instruction instruction(List<Transaction> deleted, List<ProviderTransactionWithId> inserted) {
+        return Instruction.builder()
+                .transactionsToDelete(deleted)
+                .transactionsToInsert(inserted)
+                .transactionsToUpdate(emptyList())
+                .transactionsToIgnore(emptyList())
+                .oldestTransactionChangeDate(Optional.empty())
+                .build();
+    }
+
+    private static Transaction stored(String id) {
+        return stored(id, LocalDate.of(2021, 1, 1));
+    }
+
+    private static Transaction stored(String id, LocalDate date) {
+        return Transaction.builder()
+                .userId(USER_ID)
+                .accountId(ACCOUNT_ID)
+                .id(id)
+                .date(date)
+                .build();
+    }
+
+    private static ProviderTransactionWithId upstream(String externalId) {
+        // the ids are generated, the instructions are compared on the upstream transaction
+        return new ProviderTransactionWithId(ProviderTransactionDTO.builder()
+                .externalId(externalId)
+                .build(), UUID.randomUUID().toString());
+    }
+}
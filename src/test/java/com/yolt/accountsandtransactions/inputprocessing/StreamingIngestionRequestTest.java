@@ -0,0 +1,116 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.yolt.accountsandtransactions.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingIngestionRequestTest {
+
+    private ObjectMapper objectMapper;
+    private AccountsAndTransactionsRequestDTO message;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        objectMapper = new ObjectMapper()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE)
+                .registerModule(new JavaTimeModule())
+                .registerModule(new Jdk8Module());
+
+        var userId = UUID.randomUUID();
+        var activityId = UUID.randomUUID();
+        var userSiteId = UUID.randomUUID();
+        var siteId = UUID.randomUUID();
+        var first = TestUtils.ingestionRequestSuccessMessage(userId, activityId, userSiteId, "account-1", "PROVIDER", siteId);
+        var second = TestUtils.ingestionRequestSuccessMessage(userId, activityId, userSiteId, "account-2", "PROVIDER", siteId);
+        var accounts = new ArrayList<>(first.getIngestionAccounts());
+        accounts.addAll(second.getIngestionAccounts());
+        // round-trip once, so the dates are compared in the zone in which they are deserialized
+        message = objectMapper.readValue(objectMapper.writeValueAsBytes(new AccountsAndTransactionsRequestDTO(activityId, accounts, userSiteId, siteId)),
+                AccountsAndTransactionsRequestDTO.class);
+    }
+
+    @Test
+    void when_theAccountsComeLast_then_theyAreReadOneAtATime() throws IOException {
+        try (var request = StreamingIngestionRequest.read(objectMapper, new ByteArrayInputStream(objectMapper.writeValueAsBytes(message)))) {
+            assertThat(request.getActivityId()).isEqualTo(message.getActivityId());
+            assertThat(request.getUserSiteId()).isEqualTo(message.getUserSiteId());
+            assertThat(request.getSiteId()).isEqualTo(message.getSiteId());
+
+            Iterator<AccountFromProviders> accounts = request.accounts();
+            assertThat(request.getTransactionCount()).isZero();
+
+            assertThat(accounts.next()).isEqualTo(message.getIngestionAccounts().get(0));
+            assertThat(request.getTransactionCount()).isEqualTo(message.getIngestionAccounts().get(0).getTransactions().size());
+
+            assertThat(accounts.next()).isEqualTo(message.getIngestionAccounts().get(1));
+            assertThat(accounts.hasNext()).isFalse();
+            assertThat(request.getTransactionCount()).isEqualTo(message.getIngestionAccounts().stream().mapToInt(it -> it.getTransactions().size()).sum());
+        }
+    }
+
+    @Test
+    void when_theAccountsComeFirst_then_theyAreBufferedUntilTheOtherFieldsAreRead() throws IOException {
+        ObjectNode tree = objectMapper.valueToTree(message);
+        ObjectNode accountsFirst = objectMapper.createObjectNode();
+        accountsFirst.set("ingestionAccounts", tree.get("ingestionAccounts"));
+        accountsFirst.put("unknownField", "ignored");
+        accountsFirst.set("activityId", tree.get("activityId"));
+        accountsFirst.set("userSiteId", tree.get("userSiteId"));
+        accountsFirst.set("siteId", tree.get("siteId"));
+
+        try (var request = StreamingIngestionRequest.read(objectMapper, new ByteArrayInputStream(objectMapper.writeValueAsBytes(accountsFirst)))) {
+            assertThat(request.getActivityId()).isEqualTo(message.getActivityId());
+            assertThat(request.getUserSiteId()).isEqualTo(message.getUserSiteId());
+            assertThat(request.getSiteId()).isEqualTo(message.getSiteId());
+
+            List<AccountFromProviders> accounts = new ArrayList<>();
+            request.accounts().forEachRemaining(accounts::add);
+            assertThat(accounts).isEqualTo(message.getIngestionAccounts());
+        }
+    }
+
+    @Test
+    void when_thereAreNoAccounts_then_nothingIsRead() throws IOException {
+        var json = String.format("{\"activityId\":\"%s\",\"ingestionAccounts\":null}", message.getActivityId());
+
+        try (var request = StreamingIngestionRequest.read(objectMapper, new ByteArrayInputStream(json.getBytes(UTF_8)))) {
+            assertThat(request.getActivityId()).isEqualTo(message.getActivityId());
+            assertThat(request.getUserSiteId()).isNull();
+            assertThat(request.accounts().hasNext()).isFalse();
+            assertThatThrownBy(request::accounts).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    void when_anAccountIsMalformed_then_theAccountsBeforeItAreRead() throws IOException {
+        var json = objectMapper.writeValueAsString(message);
+        // cut the document in the middle of the second account
+        var truncated = json.substring(0, json.lastIndexOf("\"accountId\""));
+
+        try (var request = StreamingIngestionRequest.read(objectMapper, new ByteArrayInputStream(truncated.getBytes(UTF_8)))) {
+            Iterator<AccountFromProviders> accounts = request.accounts();
+            assertThat(accounts.next()).isEqualTo(message.getIngestionAccounts().get(0));
+            assertThatThrownBy(accounts::hasNext).isInstanceOf(UncheckedIOException.class);
+        }
+    }
+}
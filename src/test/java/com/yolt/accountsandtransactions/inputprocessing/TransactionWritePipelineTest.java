@@ -0,0 +1,167 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.yolt.accountsandtransactions.datascience.DataScienceCassandraSession;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.datastax.driver.core.ConsistencyLevel.LOCAL_QUORUM;
+import static com.datastax.driver.core.WriteType.UNLOGGED_BATCH;
+import static com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Keyspace.ACCOUNTS_AND_TRANSACTIONS;
+import static com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Keyspace.DATASCIENCE;
+import static com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Operation.DELETE;
+import static com.yolt.accountsandtransactions.inputprocessing.TransactionWritePipeline.Operation.UPSERT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TransactionWritePipelineTest {
+
+    private final Session session = mock(Session.class);
+    private final Session dataScienceSession = mock(Session.class);
+    private final AccountsAndTransactionMetrics metrics = mock(AccountsAndTransactionMetrics.class);
+    private final Map<String, Statement> statements = new HashMap<>();
+    private final Map<Statement, TestResultSetFuture> results = new HashMap<>();
+
+    @BeforeEach
+    void setup() {
+        when(session.executeAsync(any(Statement.class))).thenAnswer(invocation -> result(invocation.getArgument(0)));
+        when(dataScienceSession.executeAsync(any(Statement.class))).thenAnswer(invocation -> result(invocation.getArgument(0)));
+    }
+
+    @Test
+    void shouldIssueUpsertsOnlyAfterTheDeletesToTheSameKeyspace() {
+        var writes = pipeline(8).open();
+        var dsDelete = statement("ds-delete");
+        var atDelete = statement("at-delete");
+        var dsUpsert = statement("ds-upsert");
+        var atUpsert = statement("at-upsert");
+
+        writes.delete(DATASCIENCE, List.of(dsDelete));
+        writes.delete(ACCOUNTS_AND_TRANSACTIONS, List.of(atDelete));
+        verify(dataScienceSession).executeAsync(dsDelete);
+        verify(session).executeAsync(atDelete);
+
+        // the pending delete to the accounts_and_transactions keyspace does not hold back the datascience keyspace
+        result(dsDelete).complete();
+        writes.upsert(DATASCIENCE, List.of(dsUpsert));
+        verify(dataScienceSession).executeAsync(dsUpsert);
+
+        var upserting = CompletableFuture.runAsync(() -> writes.upsert(ACCOUNTS_AND_TRANSACTIONS, List.of(atUpsert)));
+        verify(session, after(100).never()).executeAsync(atUpsert);
+
+        result(atDelete).complete();
+        upserting.join();
+        verify(session).executeAsync(atUpsert);
+
+        result(dsUpsert).complete();
+        result(atUpsert).complete();
+        writes.await();
+    }
+
+    @Test
+    void shouldBoundTheNumberOfWritesInFlight() {
+        var writes = pipeline(2).open();
+        var first = statement("first");
+        var second = statement("second");
+        var third = statement("third");
+
+        var deleting = CompletableFuture.runAsync(() -> writes.delete(DATASCIENCE, List.of(first, second, third)));
+        verify(dataScienceSession, timeout(1_000)).executeAsync(second);
+        verify(dataScienceSession, after(100).never()).executeAsync(third);
+
+        result(first).complete();
+        deleting.join();
+        verify(dataScienceSession).executeAsync(third);
+    }
+
+    @Test
+    void shouldRunAfterCompletionActionsOnlyIfAllWritesSucceed() {
+        var executed = new AtomicBoolean();
+        var succeeding = pipeline(8).open();
+        succeeding.upsert(DATASCIENCE, List.of(statement("upsert")));
+        succeeding.afterCompletion(() -> executed.set(true));
+
+        result(statement("upsert")).complete();
+        succeeding.await();
+        assertThat(executed).isTrue();
+
+        executed.set(false);
+        var failing = pipeline(8).open();
+        failing.upsert(ACCOUNTS_AND_TRANSACTIONS, List.of(statement("timing-out")));
+        failing.afterCompletion(() -> executed.set(true));
+
+        var failure = new WriteTimeoutException(LOCAL_QUORUM, UNLOGGED_BATCH, 1, 2);
+        result(statement("timing-out")).fail(failure);
+        assertThatThrownBy(failing::await).isSameAs(failure);
+        assertThat(executed).isFalse();
+    }
+
+    @Test
+    void shouldMeasureTheLatencyPerKeyspaceAndOperation() {
+        var writes = pipeline(8).open();
+        writes.delete(DATASCIENCE, List.of(statement("delete")));
+        writes.upsert(DATASCIENCE, List.of(statement("upsert")));
+        result(statement("delete")).complete();
+        result(statement("upsert")).complete();
+        writes.await();
+
+        verify(metrics).measureTransactionWriteLatency(eq(DATASCIENCE), eq(DELETE), any());
+        verify(metrics).measureTransactionWriteLatency(eq(DATASCIENCE), eq(UPSERT), any());
+        verifyNoMoreInteractions(metrics);
+    }
+
+    private TransactionWritePipeline pipeline(int maxInFlight) {
+        var dataScienceCassandraSession = mock(DataScienceCassandraSession.class);
+        when(dataScienceCassandraSession.getSession()).thenReturn(dataScienceSession);
+        return new TransactionWritePipeline(session, dataScienceCassandraSession, metrics, maxInFlight);
+    }
+
+    private Statement statement(String name) {
+        return statements.computeIfAbsent(name, SimpleStatement::new);
+    }
+
+    private synchronized TestResultSetFuture result(Statement statement) {
+        return results.computeIfAbsent(statement, ignored -> new TestResultSetFuture());
+    }
+
+    /**
+     * A {@link ResultSetFuture} that is completed by the test.
+     */
+    private static class TestResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+        void complete() {
+            set(mock(ResultSet.class));
+        }
+
+        void fail(Throwable throwable) {
+            setException(throwable);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.yolt.accountsandtransactions.BaseIntegrationTest;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import com.yolt.accountsandtransactions.transactions.TransactionRepository;
+import com.yolt.accountsandtransactions.transactions.TransactionService;
+import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
+import lombok.SneakyThrows;
+import nl.ing.lovebird.clienttokens.ClientUserToken;
+import nl.ing.lovebird.extendeddata.common.CurrencyCode;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import nl.ing.lovebird.providerdomain.AccountType;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import nl.ing.lovebird.providerdomain.ProviderTransactionType;
+import nl.ing.lovebird.providerdomain.YoltCategory;
+import org.jose4j.jwt.JwtClaims;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = "yolt.accounts-and-transactions.ingestion.upstream-digest.enabled=true")
+class UpstreamDigestIntegrationTest extends BaseIntegrationTest {
+
+    private static final UUID SITE_ID = UUID.randomUUID();
+
+    @Autowired
+    AccountsAndTransactionsService accountsAndTransactionsService;
+    @Autowired
+    TransactionRepository transactionRepository;
+    @Autowired
+    TransactionService transactionService;
+
+    @Test
+    @SneakyThrows
+    void given_transactionsDeletedOutsideOfAnIngestion_when_theSameTransactionsAreDeliveredAgain_then_theyAreWrittenAgain() {
+        var now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        var userId = UUID.randomUUID();
+        var accountId = UUID.randomUUID();
+        var userSiteId = UUID.randomUUID();
+        var clientUserToken = buildClientUserToken(userId);
+        var upstreamTransactions = List.of(
+                buildTransaction(now.minus(2, ChronoUnit.DAYS), TransactionStatus.BOOKED),
+                buildTransaction(now.minus(1, ChronoUnit.DAYS), TransactionStatus.PENDING));
+
+        var ingestionData = buildIngestionData(userId, userSiteId, accountId, upstreamTransactions);
+        stubNewAccounts(ingestionData, accountId);
+        accountsAndTransactionsService.processAccountsAndTransactionsForUserSite(clientUserToken, ingestionData);
+        assertThat(transactionRepository.getTransactionsForUser(userId)).hasSize(2);
+
+        // e.g. the job that deletes old pending transactions
+        var pending = transactionRepository.getTransactionsForUser(userId).stream()
+                .filter(transaction -> transaction.getStatus() == TransactionStatus.PENDING)
+                .map(transaction -> new TransactionPrimaryKey(transaction.getUserId(), transaction.getAccountId(), transaction.getDate(), transaction.getId(), transaction.getStatus()))
+                .toList();
+        transactionService.deleteSpecificTransactions(pending);
+        assertThat(transactionRepository.getTransactionsForUser(userId)).hasSize(1);
+
+        var sameIngestionData = buildIngestionData(userId, userSiteId, accountId, upstreamTransactions);
+        stubExistingAccounts(userId, sameIngestionData, accountId);
+        accountsAndTransactionsService.processAccountsAndTransactionsForUserSite(clientUserToken, sameIngestionData);
+
+        assertThat(transactionRepository.getTransactionsForUser(userId))
+                .extracting(Transaction::getStatus)
+                .containsExactlyInAnyOrder(TransactionStatus.BOOKED, TransactionStatus.PENDING);
+    }
+
+    private static ClientUserToken buildClientUserToken(UUID userId) {
+        JwtClaims claims = new JwtClaims();
+        claims.setClaim("client-id", UUID.randomUUID().toString());
+        claims.setClaim("user-id", userId.toString());
+        return new ClientUserToken(null, claims);
+    }
+
+    private static ProviderTransactionDTO buildTransaction(Instant timestamp, TransactionStatus status) {
+        return ProviderTransactionDTO.builder()
+                .dateTime(timestamp.atZone(ZoneOffset.UTC))
+                .amount(BigDecimal.ONE)
+                .type(ProviderTransactionType.DEBIT)
+                .status(status)
+                .externalId(UUID.randomUUID().toString())
+                .description("")
+                .category(YoltCategory.GENERAL)
+                .build();
+    }
+
+    private static AccountsAndTransactionsRequestDTO buildIngestionData(UUID userId, UUID userSiteId, UUID accountId, List<ProviderTransactionDTO> transactions) {
+        return AccountsAndTransactionsRequestDTO.builder()
+                .activityId(UUID.randomUUID())
+                .ingestionAccounts(List.of(AccountFromProviders.accountsFromProvidersBuilder()
+                        .accountId(accountId.toString())
+                        .name("")
+                        .yoltUserId(userId)
+                        .yoltUserSiteId(userSiteId)
+                        .yoltSiteId(SITE_ID)
+                        .yoltAccountType(AccountType.CURRENT_ACCOUNT)
+                        .currency(CurrencyCode.EUR)
+                        .currentBalance(BigDecimal.ZERO)
+                        .lastRefreshed(ZonedDateTime.now())
+                        .transactions(transactions)
+                        .provider("ABN Amro")
+                        .build()))
+                .userSiteId(userSiteId)
+                .siteId(SITE_ID)
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.yolt.accountsandtransactions.inputprocessing;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import nl.ing.lovebird.providerdomain.ProviderTransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamDigestTest {
+
+    private static final ObjectWriter NORMALIZED_WRITER = new ObjectMapper()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .registerModule(new JavaTimeModule())
+            .registerModule(new Jdk8Module())
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .writer();
+
+    @Test
+    void theDigestDoesNotDependOnTheOrderOfTheTransactions() {
+        var first = transaction("1", "10.00", 3);
+        var second = transaction("2", "20.00", 5);
+
+        var digest = UpstreamDigest.of(NORMALIZED_WRITER, List.of(first, second));
+
+        assertThat(UpstreamDigest.of(NORMALIZED_WRITER, List.of(second, first))).isEqualTo(digest);
+        assertThat(digest.getWindowStart()).isEqualTo(LocalDate.of(2021, 1, 3));
+        assertThat(digest.getWindowEnd()).isEqualTo(LocalDate.of(2021, 1, 5));
+    }
+
+    @Test
+    void theDigestChangesWithTheTransactions() {
+        var first = transaction("1", "10.00", 3);
+        var second = transaction("2", "20.00", 5);
+
+        var digest = UpstreamDigest.of(NORMALIZED_WRITER, List.of(first, second));
+
+        assertThat(UpstreamDigest.of(NORMALIZED_WRITER, List.of(first, transaction("2", "20.01", 5))).getDigest()).isNotEqualTo(digest.getDigest());
+        assertThat(UpstreamDigest.of(NORMALIZED_WRITER, List.of(first)).getDigest()).isNotEqualTo(digest.getDigest());
+        // a duplicate does not cancel out
+        assertThat(UpstreamDigest.of(NORMALIZED_WRITER, List.of(first, second, second, second)).getDigest()).isNotEqualTo(digest.getDigest());
+    }
+
+    @Test
+    void aStoredDigestMatchesOnlyWithTheSameWindow() {
+        var digest = UpstreamDigest.of(NORMALIZED_WRITER, List.of(transaction("1", "10.00", 3)));
+        var stored = new AccountUpstreamDigest(UUID.randomUUID(), UUID.randomUUID(), digest.getDigest(), digest.getWindowStart(), digest.getWindowEnd());
+
+        assertThat(digest.matches(stored)).isTrue();
+        assertThat(digest.matches(stored.toBuilder().windowStart(LocalDate.of(2021, 1, 1)).build())).isFalse();
+        assertThat(digest.matches(stored.toBuilder().digest("other").build())).isFalse();
+    }
+
+    @Test
+    void anAccountWithoutTransactionsHasNoWindow() {
+        var digest = UpstreamDigest.of(NORMALIZED_WRITER, List.of());
+
+        assertThat(digest.getDigest()).startsWith("0:");
+        assertThat(digest.getWindowStart()).isNull();
+        assertThat(digest.getWindowEnd()).isNull();
+    }
+
+    private static ProviderTransactionDTO transaction(String externalId, String amount, int dayOfMonth) {
+        return ProviderTransactionDTO.builder()
+                .externalId(externalId)
+                .dateTime(ZonedDateTime.of(2021, 1, dayOfMonth, 12, 0, 0, 0, ZoneOffset.UTC))
+                .amount(new BigDecimal(amount))
+                .status(TransactionStatus.BOOKED)
+                .type(ProviderTransactionType.DEBIT)
+                .description("description " + externalId)
+                .build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.yolt.accountsandtransactions.inputprocessing.matching;
+
+import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeKeyExtractor.CompiledAttributeKeyExtractor;
+import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeKeyExtractor.GenericAttributeKeyExtractor;
+import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.AttributeExtractor;
+import com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.MatchResult;
+import com.yolt.accountsandtransactions.inputprocessing.matching.decorators.UseAfterOrNullAttributeSelectorDecorator;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import nl.ing.lovebird.extendeddata.transaction.ExtendedTransactionDTO;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.yolt.accountsandtransactions.TestBuilders.createTransactionWithId;
+import static com.yolt.accountsandtransactions.TestBuilders.transactionWithExternalIdAmountAndDate;
+import static com.yolt.accountsandtransactions.inputprocessing.matching.AttributeSelectors.*;
+import static com.yolt.accountsandtransactions.inputprocessing.matching.AttributeTransactionMatcher.Unmatched.unprocessed;
+import static com.yolt.accountsandtransactions.inputprocessing.matching.GeneralizedTransaction.toProviderGeneralized;
+import static com.yolt.accountsandtransactions.inputprocessing.matching.GeneralizedTransaction.toStoredGeneralized;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AttributeKeyExtractorTest {
+
+    private static final ZonedDateTime NOW = ZonedDateTime.of(2022, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+    private static final Clock CLOCK = Clock.fixed(NOW.toInstant(), ZoneOffset.UTC);
+
+    private static final List<List<AttributeSelector<?>>> SELECTOR_LISTS = List.of(
+            List.of(EXTERNAL_ID, AMOUNT_IN_CENTS),
+            List.of(notBlank(EXTERNAL_ID), AMOUNT_IN_CENTS, notNull(BOOKING_DATE)),
+            List.of(notPlaceholder(notBlank(EXTERNAL_ID)), AMOUNT_IN_CENTS, DATE, DESCRIPTION),
+            List.of(AMOUNT_IN_CENTS, DATE, CREDITOR_NAME, DEBTOR_NAME),
+            List.of(AMOUNT_IN_CENTS, new UseAfterOrNullAttributeSelectorDecorator<>(notBlank(EXTERNAL_ID), CLOCK, NOW.toInstant().plusSeconds(1))),
+            List.of(AMOUNT_IN_CENTS, new UseAfterOrNullAttributeSelectorDecorator<>(notBlank(EXTERNAL_ID), CLOCK, NOW.toInstant().minusSeconds(1)))
+    );
+
+    @Test
+    void shouldCompileNamedSelectorsAndFallBackOtherwise() {
+        assertThat(AttributeKeyExtractor.compile(List.of(notBlank(EXTERNAL_ID), AMOUNT_IN_CENTS)))
+                .isInstanceOf(CompiledAttributeKeyExtractor.class);
+
+        // an anonymous extractor has no name up front
+        AttributeExtractor<String> anonymous = transaction -> new Attribute<>("external-id", transaction.getExternalId());
+        assertThat(AttributeKeyExtractor.compile(List.of(new AttributeSelector.IdentityAttributeSelector<>(anonymous), AMOUNT_IN_CENTS)))
+                .isInstanceOf(GenericAttributeKeyExtractor.class);
+
+        // the same attribute twice collapses in a set
+        assertThat(AttributeKeyExtractor.compile(List.of(EXTERNAL_ID, notBlank(EXTERNAL_ID))))
+                .isInstanceOf(GenericAttributeKeyExtractor.class);
+    }
+
+    @Test
+    void shouldExposeKeyAsSetOfAttributes() {
+        var transaction = GeneralizedTransaction.toGeneralized(transactionWithExternalIdAmountAndDate("a", new BigDecimal("1.23"), NOW));
+
+        var key = AttributeKeyExtractor.compile(List.of(EXTERNAL_ID, AMOUNT_IN_CENTS)).extract(transaction);
+
+        var expected = Set.of(new Attribute<>("external-id", "a"), new Attribute<>("amount", 123L));
+        assertThat(key.attributes()).isEqualTo(expected);
+        assertThat(expected).isEqualTo(key.attributes());
+        assertThat(key.attributes().hashCode()).isEqualTo(expected.hashCode());
+        assertThat(key.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(key.isUsable()).isTrue();
+    }
+
+    @Test
+    void shouldTellKeysApartWhoseValuesHaveTheSameHashCode() {
+        var extractor = AttributeKeyExtractor.compile(List.of(EXTERNAL_ID, AMOUNT_IN_CENTS));
+        // "Aa" and "BB" have the same String#hashCode
+        var aa = extractor.extract(GeneralizedTransaction.toGeneralized(transactionWithExternalIdAmountAndDate("Aa", new BigDecimal("1.23"), NOW)));
+        var bb = extractor.extract(GeneralizedTransaction.toGeneralized(transactionWithExternalIdAmountAndDate("BB", new BigDecimal("1.23"), NOW)));
+        var otherAa = extractor.extract(GeneralizedTransaction.toGeneralized(transactionWithExternalIdAmountAndDate("Aa", new BigDecimal("1.23"), NOW)));
+
+        assertThat(aa.hashCode()).isEqualTo(bb.hashCode());
+        assertThat(aa).isNotEqualTo(bb);
+        assertThat(aa).isEqualTo(otherAa);
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1L, 2L, 3L, 5L, 8L})
+    void given_randomTransactions_when_extractKeys_then_compiledKeysAreEquivalentToSetKeys(long seed) {
+        var random = new Random(seed);
+        var transactions = toProviderGeneralized(randomTransactions(random, 500));
+
+        for (List<AttributeSelector<?>> selectors : SELECTOR_LISTS) {
+            var compiled = AttributeKeyExtractor.compile(selectors);
+            var generic = new GenericAttributeKeyExtractor(selectors);
+            assertThat(compiled).isInstanceOf(CompiledAttributeKeyExtractor.class);
+
+            var compiledKeys = new ArrayList<AttributeKey>();
+            var genericKeys = new ArrayList<AttributeKey>();
+            for (GeneralizedTransaction transaction : transactions) {
+                var compiledKey = compiled.extract(transaction);
+                var genericKey = generic.extract(transaction);
+
+                assertThat(compiledKey.attributes()).isEqualTo(genericKey.attributes());
+                assertThat(compiledKey.hashCode()).isEqualTo(genericKey.hashCode());
+                assertThat(compiledKey.isUsable()).isEqualTo(genericKey.isUsable());
+                compiledKeys.add(compiledKey);
+                genericKeys.add(genericKey);
+            }
+
+            for (int i = 0; i < compiledKeys.size(); i++) {
+                for (int j = i + 1; j < compiledKeys.size(); j++) {
+                    assertThat(compiledKeys.get(i).equals(compiledKeys.get(j)))
+                            .isEqualTo(genericKeys.get(i).equals(genericKeys.get(j)));
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1L, 2L, 3L, 5L, 8L})
+    void given_randomHistory_when_match_then_resultIsIdenticalToSetKeys(long seed) {
+        var random = new Random(seed);
+        var upstream = randomTransactions(random, 300);
+        var stored = new ArrayList<Transaction>();
+        for (int i = 0; i < upstream.size(); i++) {
+            if (random.nextInt(4) != 0) {
+                stored.add(createTransactionWithId(Integer.toString(i), upstream.get(i)));
+            }
+        }
+        var input = new MatchResult(emptyList(), emptyList(),
+                unprocessed(toProviderGeneralized(upstream)), unprocessed(toStoredGeneralized(stored)));
+
+        for (List<AttributeSelector<?>> selectors : SELECTOR_LISTS) {
+            var expected = new EqualityAttributeTransactionMatcher("test", uncompilable(selectors)).match("BANK", input);
+            var actual = new EqualityAttributeTransactionMatcher("test", selectors).match("BANK", input);
+
+            assertThat(actual).isEqualTo(expected);
+            assertThat(actual.matched).containsExactlyElementsOf(expected.matched);
+            assertThat(actual.unmatchedUpstream).containsExactlyElementsOf(expected.unmatchedUpstream);
+            assertThat(actual.unmatchedStored).containsExactlyElementsOf(expected.unmatchedStored);
+        }
+    }
+
+    /**
+     * Wrap the selectors such that they can not be compiled, which forces the matcher to use the {@link Set} based keys.
+     */
+    private static List<AttributeSelector<?>> uncompilable(List<AttributeSelector<?>> selectors) {
+        var result = new ArrayList<AttributeSelector<?>>();
+        for (AttributeSelector<?> selector : selectors) {
+            result.add(uncompilableSelector(selector));
+        }
+        return result;
+    }
+
+    private static <A> AttributeSelector<A> uncompilableSelector(AttributeSelector<A> selector) {
+        return new AttributeSelector<>() {
+            @Override
+            public AttributeExtractor<A> attributeExtractor() {
+                return selector.attributeExtractor();
+            }
+
+            @Override
+            public Set<Result<A>> selectAttribute(GeneralizedTransaction transaction) {
+                return selector.selectAttribute(transaction);
+            }
+        };
+    }
+
+    private static List<ProviderTransactionDTO> randomTransactions(Random random, int size) {
+        var transactions = new ArrayList<ProviderTransactionDTO>(size);
+        for (int i = 0; i < size; i++) {
+            var dateTime = NOW.minusDays(random.nextInt(5));
+            transactions.add(transactionWithExternalIdAmountAndDate(pick(random, "ext-" + random.nextInt(50)), new BigDecimal(random.nextInt(10)), dateTime)
+                    .toBuilder()
+                    .description(random.nextInt(8) == 0 ? "Not Provided" : "description " + random.nextInt(3))
+                    .extendedTransaction(ExtendedTransactionDTO.builder()
+                            .bookingDate(random.nextBoolean() ? dateTime : null)
+                            .creditorName(pick(random, "creditor " + random.nextInt(3)))
+                            .debtorName(pick(random, "debtor " + random.nextInt(3)))
+                            .build())
+                    .build());
+        }
+        return transactions;
+    }
+
+    private static String pick(Random random, String value) {
+        return switch (random.nextInt(8)) {
+            case 0 -> null;
+            case 1 -> " ";
+            case 2 -> "not provided";
+            default -> value;
+        };
+    }
+}
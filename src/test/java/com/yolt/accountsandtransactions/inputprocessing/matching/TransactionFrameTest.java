@@ -0,0 +1,115 @@
+package com.yolt.accountsandtransactions.inputprocessing.matching;
+
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import nl.ing.lovebird.extendeddata.common.AccountReferenceDTO;
+import nl.ing.lovebird.extendeddata.transaction.ExtendedTransactionDTO;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.yolt.accountsandtransactions.TestBuilders.createTransactionWithId;
+import static com.yolt.accountsandtransactions.TestBuilders.transactionWithExternalIdAmountAndDate;
+import static nl.ing.lovebird.extendeddata.transaction.AccountReferenceType.IBAN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionFrameTest {
+
+    @Test
+    void framedTransactionsShouldEqualGeneralizedTransactions() {
+        var random = new Random(42);
+        var upstream = new ArrayList<ProviderTransactionDTO>();
+        var stored = new ArrayList<Transaction>();
+        for (int i = 0; i < 200; i++) {
+            var upstreamTransaction = randomTransaction(random);
+            upstream.add(upstreamTransaction);
+            if (random.nextBoolean()) {
+                stored.add(createTransactionWithId(Integer.toString(i), upstreamTransaction));
+            }
+        }
+
+        var frame = TransactionFrame.of(upstream, stored);
+
+        assertThat(frame.upstream).hasSize(upstream.size());
+        for (int i = 0; i < upstream.size(); i++) {
+            assertThat(frame.upstream.get(i).provider).isSameAs(upstream.get(i));
+            assertEqualValues(frame.upstream.get(i), GeneralizedTransaction.toGeneralized(upstream.get(i)));
+        }
+        assertThat(frame.stored).hasSize(stored.size());
+        for (int i = 0; i < stored.size(); i++) {
+            assertThat(frame.stored.get(i).stored).isSameAs(stored.get(i));
+            assertEqualValues(frame.stored.get(i), GeneralizedTransaction.toGeneralized(stored.get(i)));
+        }
+    }
+
+    @Test
+    void equalValuesShouldBeInternedAcrossUpstreamAndStored() {
+        var now = Instant.EPOCH.atZone(ZoneOffset.UTC);
+        var upstream = transactionWithExternalIdAmountAndDate(new String("a"), new BigDecimal("-100.10"), now);
+        var stored = createTransactionWithId("1", transactionWithExternalIdAmountAndDate(new String("a"), new BigDecimal("-100.10"), now));
+
+        var frame = TransactionFrame.of(List.of(upstream), List.of(stored));
+
+        var framedUpstream = frame.upstream.get(0);
+        var framedStored = frame.stored.get(0);
+        assertThat(framedUpstream.getExternalId()).isSameAs(framedStored.getExternalId());
+        assertThat(framedUpstream.getDescription()).isSameAs(framedStored.getDescription());
+        assertThat(framedUpstream.getDate()).isSameAs(framedStored.getDate());
+        assertThat(framedUpstream.getAmountInCents()).isEqualTo(-10010L);
+    }
+
+    @Test
+    void theExtendedAttributesOfATransactionWithoutExtendedTransactionShouldBeAbsent() {
+        var upstream = transactionWithExternalIdAmountAndDate("a", new BigDecimal("-100.10"), Instant.EPOCH.atZone(ZoneOffset.UTC))
+                .toBuilder()
+                .extendedTransaction(null)
+                .build();
+
+        var framed = TransactionFrame.of(List.of(upstream), List.of()).upstream.get(0);
+
+        assertThat(framed.getBookingDate()).isNull();
+        assertThat(framed.getDebtorName()).isNull();
+        assertThat(framed.getDebtorAccountNr()).isNull();
+        assertThat(framed.getCreditorName()).isNull();
+        assertThat(framed.getCreditorAccountNr()).isNull();
+        assertThat(framed.getEndToEndId()).isNull();
+        assertThat(framed.getExternalId()).isEqualTo("a");
+        assertEqualValues(framed, GeneralizedTransaction.toGeneralized(upstream));
+    }
+
+    private static void assertEqualValues(GeneralizedTransaction actual, GeneralizedTransaction expected) {
+        assertThat(actual.getInternalId()).isEqualTo(expected.getInternalId());
+        assertThat(actual.getExternalId()).isEqualTo(expected.getExternalId());
+        assertThat(actual.getAmountInCents()).isEqualTo(expected.getAmountInCents());
+        assertThat(actual.getDate()).isEqualTo(expected.getDate());
+        assertThat(actual.getStatus()).isEqualTo(expected.getStatus());
+        assertThat(actual.getBookingDate()).isEqualTo(expected.getBookingDate());
+        assertThat(actual.getTimestamp()).isEqualTo(expected.getTimestamp());
+        assertThat(actual.getDebtorName()).isEqualTo(expected.getDebtorName());
+        assertThat(actual.getDebtorAccountNr()).isEqualTo(expected.getDebtorAccountNr());
+        assertThat(actual.getCreditorName()).isEqualTo(expected.getCreditorName());
+        assertThat(actual.getCreditorAccountNr()).isEqualTo(expected.getCreditorAccountNr());
+        assertThat(actual.getDescription()).isEqualTo(expected.getDescription());
+        assertThat(actual.getEndToEndId()).isEqualTo(expected.getEndToEndId());
+    }
+
+    private static ProviderTransactionDTO randomTransaction(Random random) {
+        var dateTime = Instant.EPOCH.atZone(ZoneOffset.UTC).plusDays(random.nextInt(10)).plusMinutes(random.nextInt(1_440));
+        return transactionWithExternalIdAmountAndDate(random.nextInt(5) == 0 ? null : "ext-" + random.nextInt(100), new BigDecimal(random.nextInt(10_000)).movePointLeft(2), dateTime)
+                .toBuilder()
+                .description("description " + random.nextInt(10))
+                .extendedTransaction(ExtendedTransactionDTO.builder()
+                        .bookingDate(random.nextBoolean() ? dateTime : null)
+                        .creditorName(random.nextBoolean() ? "creditor " + random.nextInt(3) : null)
+                        .creditorAccount(random.nextBoolean() ? AccountReferenceDTO.builder().type(IBAN).value("NL" + random.nextInt(3)).build() : null)
+                        .debtorName(random.nextBoolean() ? "debtor " + random.nextInt(3) : null)
+                        .endToEndId(random.nextBoolean() ? "e2e-" + random.nextInt(3) : null)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.yolt.accountsandtransactions.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountsAndTransactionMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AccountsAndTransactionMetrics metrics = new AccountsAndTransactionMetrics(Clock.systemUTC(), meterRegistry);
+
+    @Test
+    void shouldIncrementTheCounterOfTheTagCombination() {
+        metrics.incrementDebtorOrCreditorNameIsPresent("ABN", true, false, true);
+        metrics.incrementDebtorOrCreditorNameIsPresent("ABN", true, false, true);
+        metrics.incrementDebtorOrCreditorNameIsPresent("ABN", false, true, false);
+        metrics.incrementDebtorOrCreditorNameIsPresent("ING", true, false, true);
+
+        assertThat(debtorOrCreditorNamePresence("ABN", true, false, true)).isEqualTo(2);
+        assertThat(debtorOrCreditorNamePresence("ABN", false, true, false)).isEqualTo(1);
+        assertThat(debtorOrCreditorNamePresence("ABN", false, false, false)).isZero();
+        assertThat(debtorOrCreditorNamePresence("ING", true, false, true)).isEqualTo(1);
+
+        for (TransactionStatus status : TransactionStatus.values()) {
+            metrics.incrementTransactionWithFutureDate("ABN", status.ordinal() % 2 == 0, status);
+        }
+        for (TransactionStatus status : TransactionStatus.values()) {
+            assertThat(meterRegistry.get("accounts_transactions_trx_with_future_date")
+                    .tags("provider", "ABN", "new-transaction", Boolean.toString(status.ordinal() % 2 == 0), "status", status.toString())
+                    .counter().count()).isEqualTo(1);
+        }
+
+        metrics.incrementTransactionWithStructuredAndUnstructuredRemittanceInformation("ABN");
+        metrics.incrementTransactionWithoutStructuredAndUnstructuredRemittanceInformation("ABN");
+        metrics.incrementTransactionWithoutStructuredAndUnstructuredRemittanceInformation("ABN");
+        assertThat(meterRegistry.get("transaction_with_structured_and_unstructured").tags("provider", "ABN").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("transaction_without_structured_and_unstructured").tags("provider", "ABN").counter().count()).isEqualTo(2);
+    }
+
+    private double debtorOrCreditorNamePresence(String provider, boolean isIncoming, boolean creditorNamePresent, boolean debtorNamePresent) {
+        return meterRegistry.get("trx_debtor_creditor_field_presence")
+                .tags("provider", provider,
+                        "incoming_trx", Boolean.toString(isIncoming),
+                        "debtor_name", Boolean.toString(debtorNamePresent),
+                        "creditor_name", Boolean.toString(creditorNamePresent))
+                .counter().count();
+    }
+}
@@ -82,7 +82,7 @@ class BatchPushOffloadDataIntegrationTest extends BaseIntegrationTest {
                 .willReturn(okForJson(userContext)));
 
         // when triggering the batch
-        CompletableFuture<Void> voidCompletableFuture = batchPushOffloadData.offloadTransactions(false, 5_000);
+        CompletableFuture<Void> voidCompletableFuture = batchPushOffloadData.offloadTransactions(false, 5_000, 4);
         voidCompletableFuture.toCompletableFuture().get(10, TimeUnit.SECONDS);
 
         // 1 'offloadable' transactions should be published
@@ -120,7 +120,7 @@ class BatchPushOffloadDataIntegrationTest extends BaseIntegrationTest {
                 .willReturn(okForJson(userContext)));
 
         // when triggering the batch
-        CompletableFuture<Void> voidCompletableFuture = batchPushOffloadData.offloadAccounts(false, 5_000);
+        CompletableFuture<Void> voidCompletableFuture = batchPushOffloadData.offloadAccounts(false, 5_000, 4);
         voidCompletableFuture.toCompletableFuture().get(10, TimeUnit.SECONDS);
 
         // 1 'offloadable' accounts should be published
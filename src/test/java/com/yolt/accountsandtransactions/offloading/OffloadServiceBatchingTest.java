@@ -0,0 +1,195 @@
+package com.yolt.accountsandtransactions.offloading;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.messaging.Message;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static com.yolt.accountsandtransactions.TestBuilders.createAllFieldsRandomAccount;
+import static com.yolt.accountsandtransactions.TestBuilders.createTransactionTemplate;
+import static com.yolt.accountsandtransactions.offloading.OffloadService.BATCH_OFFLOAD_FORMAT;
+import static com.yolt.accountsandtransactions.offloading.OffloadService.OFFLOAD_FORMAT_HEADER;
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.kafka.support.KafkaHeaders.MESSAGE_KEY;
+
+class OffloadServiceBatchingTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final AccountsAndTransactionMetrics metrics = mock(AccountsAndTransactionMetrics.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, OffloadableEnvelope<?>> kafkaTemplate = mock(KafkaTemplate.class);
+    private final List<Message<?>> sent = new ArrayList<>();
+    private final List<SettableListenableFuture<SendResult<String, OffloadableEnvelope<?>>>> results = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        when(kafkaTemplate.send(any(Message.class))).thenAnswer(invocation -> {
+            var result = new SettableListenableFuture<SendResult<String, OffloadableEnvelope<?>>>();
+            synchronized (this) {
+                sent.add(invocation.getArgument(0));
+                results.add(result);
+            }
+            return result;
+        });
+    }
+
+    @Test
+    void shouldSendARecordPerTransactionIfBatchingIsDisabled() {
+        var offloadService = offloadService(false, 512_000, 8);
+        var userId = randomUUID();
+
+        offloadService.offloadTransactionsInsertOrUpdateAsync(List.of(transaction(userId, "1"), transaction(userId, "2")));
+
+        assertThat(sent).hasSize(2);
+        assertThat(sent).allSatisfy(message -> {
+            assertThat(message.getPayload()).isInstanceOf(OffloadableEnvelope.class);
+            assertThat(message.getHeaders()).doesNotContainKey(OFFLOAD_FORMAT_HEADER);
+        });
+        verify(metrics, times(2)).measureOffloadEnvelope(any(), eq(1));
+    }
+
+    @Test
+    void shouldPackTheTransactionsOfAUserIntoBatchesOfAtMostTheByteBudget() throws Exception {
+        var userId = randomUUID();
+        var otherUserId = randomUUID();
+        var transactions = new ArrayList<Transaction>();
+        for (int i = 0; i < 10; i++) {
+            transactions.add(transaction(userId, "trx-" + i));
+        }
+        transactions.add(transaction(otherUserId, "other"));
+        var envelopeBytes = objectMapper.writeValueAsString(OffloadableEnvelope.createDelete(1, transactionId(transactions.get(0)))).length() + 1;
+        var offloadService = offloadService(true, 4 * envelopeBytes, 8);
+
+        offloadService.offloadTransactionsDeleteAsync(transactions);
+
+        // 10 envelopes of the first user in batches of 4, 4 and 2, the other user in its own batch
+        assertThat(sent).hasSize(4);
+        assertThat(sent).allSatisfy(message -> assertThat(message.getHeaders().get(OFFLOAD_FORMAT_HEADER)).isEqualTo(BATCH_OFFLOAD_FORMAT));
+        assertThat(sent).extracting(message -> message.getHeaders().get(MESSAGE_KEY))
+                .containsExactly(userId.toString(), userId.toString(), userId.toString(), otherUserId.toString());
+
+        var entityIds = new ArrayList<String>();
+        for (Message<?> message : sent.subList(0, 3)) {
+            var batch = objectMapper.readTree(objectMapper.writeValueAsString(message.getPayload()));
+            assertThat(batch.get("schema_version").asInt()).isOne();
+            for (JsonNode envelope : batch.get("envelopes")) {
+                assertThat(envelope.get("delete").asBoolean()).isTrue();
+                entityIds.add(envelope.get("entity_id").asText());
+            }
+        }
+        // the order of the transactions of a user is preserved
+        assertThat(entityIds).containsExactlyElementsOf(transactions.subList(0, 10).stream().map(OffloadServiceBatchingTest::transactionId).toList());
+
+        verify(metrics, times(2)).measureOffloadEnvelope(any(), eq(4));
+        verify(metrics).measureOffloadEnvelope(any(), eq(2));
+        verify(metrics).measureOffloadEnvelope(any(), eq(1));
+    }
+
+    @Test
+    void shouldBoundTheNumberOfSendsInFlightAndCountFailures() {
+        var offloadService = offloadService(false, 512_000, 2);
+        var userId = randomUUID();
+
+        var offloading = CompletableFuture.runAsync(() -> offloadService.offloadTransactionsInsertOrUpdateAsync(
+                List.of(transaction(userId, "1"), transaction(userId, "2"), transaction(userId, "3"))));
+        verify(kafkaTemplate, timeout(1_000).times(2)).send(any(Message.class));
+        verify(kafkaTemplate, after(100).times(2)).send(any(Message.class));
+
+        var failure = new IllegalStateException("broker unavailable");
+        synchronized (this) {
+            results.get(0).setException(failure);
+        }
+        offloading.join();
+        verify(kafkaTemplate, times(3)).send(any(Message.class));
+        verify(metrics).incrementOffloadFailure(any(), eq(failure));
+    }
+
+    @Test
+    void shouldFailTheOffloadIfASendFails() {
+        var offloadService = offloadService(true, 512_000, 8);
+
+        var offloading = offloadService.offloadTransactionsInsertOrUpdateAsync(List.of(transaction(randomUUID(), "1"), transaction(randomUUID(), "2")));
+        var failure = new IllegalStateException("broker unavailable");
+        synchronized (this) {
+            results.get(0).set(null);
+            results.get(1).setException(failure);
+        }
+
+        assertThat(offloading).isCompletedExceptionally();
+        assertThatThrownBy(offloading::join).hasCause(failure);
+        verify(metrics).incrementOffloadFailure(any(), eq(failure));
+    }
+
+    @Test
+    void shouldSkipATransactionThatCannotBeOffloadedWithoutStoppingTheOthers() {
+        var userId = randomUUID();
+        var invalid = transaction(userId, "invalid").toBuilder().amount(null).build();
+
+        offloadService(false, 512_000, 8).offloadTransactionsInsertOrUpdateAsync(List.of(invalid, transaction(userId, "1")));
+        offloadService(true, 512_000, 8).offloadTransactionsInsertOrUpdateAsync(List.of(invalid, transaction(userId, "2")));
+
+        assertThat(sent).hasSize(2);
+        verify(metrics, times(2)).measureOffloadEnvelope(any(), eq(1));
+        verify(metrics, times(2)).incrementOffloadFailure(eq("transactions"), any(NullPointerException.class));
+    }
+
+    @Test
+    void shouldPackTheAccountsOfAUserIntoABatch() throws Exception {
+        var userId = randomUUID();
+        var clientId = randomUUID();
+        var accounts = List.of(createAllFieldsRandomAccount(userId, randomUUID()), createAllFieldsRandomAccount(userId, randomUUID()));
+
+        offloadService(true, 512_000, 8).offloadAccountsInsertOrUpdateAsync(accounts, account -> clientId);
+
+        assertThat(sent).hasSize(1);
+        assertThat(sent.get(0).getHeaders().get(MESSAGE_KEY)).isEqualTo(userId.toString());
+        var batch = objectMapper.readTree(objectMapper.writeValueAsString(sent.get(0).getPayload()));
+        assertThat(batch.get("envelopes")).hasSize(2);
+        verify(metrics).measureOffloadEnvelope("accounts", 2);
+    }
+
+    @Test
+    void shouldMeasureTheByteBudgetInUtf8Bytes() throws Exception {
+        var userId = randomUUID();
+        // 3 bytes per character in UTF-8
+        var transactions = List.of(transaction(userId, "\u20ac".repeat(100)), transaction(userId, "\u20ac".repeat(100)));
+        var envelopeChars = objectMapper.writeValueAsString(OffloadableEnvelope.createDelete(1, transactionId(transactions.get(0)))).length() + 1;
+
+        // two envelopes fit the budget when counted in characters, but not in bytes
+        offloadService(true, 2 * envelopeChars, 8).offloadTransactionsDeleteAsync(transactions);
+
+        assertThat(sent).hasSize(2);
+    }
+
+    private OffloadService offloadService(boolean batchEnabled, int batchMaxBytes, int maxInFlight) {
+        return new OffloadService(kafkaTemplate, objectMapper, metrics, true, "accounts", "transactions", batchEnabled, batchMaxBytes, maxInFlight);
+    }
+
+    private static Transaction transaction(UUID userId, String id) {
+        return createTransactionTemplate(new TransactionPrimaryKey(userId, randomUUID(), LocalDate.EPOCH, id, TransactionStatus.BOOKED));
+    }
+
+    private static String transactionId(Transaction transaction) {
+        return transaction.getUserId() + ":" + transaction.getAccountId() + ":" + transaction.getDate() + ":" + transaction.getId();
+    }
+}
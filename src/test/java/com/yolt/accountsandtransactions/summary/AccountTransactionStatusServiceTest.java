@@ -0,0 +1,176 @@
+package com.yolt.accountsandtransactions.summary;
+
+import com.yolt.accountsandtransactions.compliance.RetentionPolicies;
+import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
+import com.yolt.accountsandtransactions.inputprocessing.TransactionInsertionStrategy.Instruction;
+import com.yolt.accountsandtransactions.transactions.Transaction;
+import com.yolt.accountsandtransactions.transactions.TransactionRepository;
+import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
+import nl.ing.lovebird.providerdomain.ProviderTransactionDTO;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.util.Collections.emptyList;
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.BOOKED;
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.PENDING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountTransactionStatusServiceTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+    private static final UUID ACCOUNT_ID = UUID.randomUUID();
+
+    @Mock
+    private AccountTransactionStatusRepository accountTransactionStatusRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private RetentionPolicies retentionPolicies;
+    @InjectMocks
+    private AccountTransactionStatusService service;
+
+    @Test
+    void when_anAccountHasNoStatus_then_itsTransactionsAreCounted() {
+        when(accountTransactionStatusRepository.find(USER_ID, ACCOUNT_ID)).thenReturn(Optional.empty());
+        when(transactionRepository.getStatusAndTimestampForTrxs(USER_ID, ACCOUNT_ID)).thenReturn(List.of(
+                Pair.of(PENDING, at(2021, 2, 10)),
+                Pair.of(BOOKED, at(2021, 2, 12)),
+                Pair.of(PENDING, at(2021, 2, 1)),
+                Pair.of(BOOKED, at(2021, 1, 25)),
+                Pair.of(BOOKED, at(2021, 1, 20))));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(emptyList(), emptyList(), emptyList()));
+
+        assertThat(persisted()).isEqualTo(status(at(2021, 2, 1), at(2021, 2, 10), 2, at(2021, 2, 12), at(2021, 1, 25), 3));
+    }
+
+    @Test
+    void when_aPendingTransactionIsWritten_then_thePendingTimestampsAreWidened() {
+        when(accountTransactionStatusRepository.find(USER_ID, ACCOUNT_ID))
+                .thenReturn(Optional.of(status(at(2021, 2, 1), at(2021, 2, 10), 2, at(2021, 1, 25), at(2021, 1, 25), 10)));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(emptyList(), List.of(upstream("inserted", PENDING, LocalDate.of(2021, 1, 28))), emptyList()));
+
+        assertThat(persisted()).isEqualTo(status(at(2021, 1, 28), at(2021, 2, 10), 3, at(2021, 1, 25), at(2021, 1, 25), 10));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void when_allPendingTransactionsAreDeleted_then_thePendingTimestampsStartOver() {
+        when(accountTransactionStatusRepository.find(USER_ID, ACCOUNT_ID))
+                .thenReturn(Optional.of(status(at(2021, 2, 1), at(2021, 2, 10), 2, at(2021, 1, 25), at(2021, 1, 25), 10)));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(
+                List.of(stored("1", PENDING, LocalDate.of(2021, 2, 1)), stored("2", PENDING, LocalDate.of(2021, 2, 10))),
+                List.of(upstream("3", PENDING, LocalDate.of(2021, 2, 12))),
+                // a pending transaction that was booked is written again
+                List.of(upstream("1", BOOKED, LocalDate.of(2021, 2, 1)))));
+
+        assertThat(persisted()).isEqualTo(status(at(2021, 2, 12), at(2021, 2, 12), 1, at(2021, 2, 1), at(2021, 2, 1), 11));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void when_theNewestBookedTransactionIsDeleted_then_theTransactionsAreCountedAgain() {
+        when(accountTransactionStatusRepository.find(USER_ID, ACCOUNT_ID))
+                .thenReturn(Optional.of(status(at(2021, 2, 1), at(2021, 2, 1), 1, at(2021, 1, 25), at(2021, 1, 25), 2)));
+        when(transactionRepository.getStatusAndTimestampForTrxs(USER_ID, ACCOUNT_ID)).thenReturn(List.of(
+                Pair.of(PENDING, at(2021, 2, 1)),
+                Pair.of(BOOKED, at(2021, 1, 20))));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(List.of(stored("booked", BOOKED, LocalDate.of(2021, 1, 25))), emptyList(), emptyList()));
+
+        assertThat(persisted()).isEqualTo(status(at(2021, 2, 1), at(2021, 2, 1), 1, at(2021, 1, 20), at(2021, 1, 20), 1));
+    }
+
+    @Test
+    void when_aPendingTransactionPrecedesTheBookedTransactionBeforeThePendingTransactions_then_theTransactionsAreCountedAgain() {
+        var stored = status(at(2021, 2, 1), at(2021, 2, 1), 1, at(2021, 1, 25), at(2021, 1, 25), 2);
+
+        assertThat(AccountTransactionStatusService.apply(stored, instruction(emptyList(), List.of(upstream("inserted", PENDING, LocalDate.of(2021, 1, 20))), emptyList())))
+                .isEmpty();
+    }
+
+    @Test
+    void when_aTransactionOfTheStatusHasExpired_then_theTransactionsAreCountedAgain() {
+        when(accountTransactionStatusRepository.find(USER_ID, ACCOUNT_ID))
+                .thenReturn(Optional.of(status(at(2020, 2, 1), at(2021, 2, 1), 2, at(2021, 1, 25), at(2020, 1, 25), 5)));
+        when(retentionPolicies.isExpired(USER_ID, LocalDate.of(2020, 1, 25))).thenReturn(true);
+        when(transactionRepository.getStatusAndTimestampForTrxs(USER_ID, ACCOUNT_ID)).thenReturn(List.of(
+                Pair.of(PENDING, at(2021, 2, 1)),
+                Pair.of(BOOKED, at(2021, 1, 25))));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(emptyList(), emptyList(), emptyList()));
+
+        assertThat(persisted()).isEqualTo(status(at(2021, 2, 1), at(2021, 2, 1), 1, at(2021, 1, 25), at(2021, 1, 25), 1));
+    }
+
+    @Test
+    void when_noTransactionsAreTouched_then_theStatusIsNotWritten() {
+        when(accountTransactionStatusRepository.find(USER_ID, ACCOUNT_ID))
+                .thenReturn(Optional.of(status(null, null, 0, at(2021, 1, 25), null, 2)));
+
+        service.update(USER_ID, ACCOUNT_ID, instruction(emptyList(), emptyList(), emptyList()));
+
+        verify(accountTransactionStatusRepository, never()).persist(any());
+    }
+
+    private AccountTransactionStatus persisted() {
+        var captor = ArgumentCaptor.forClass(AccountTransactionStatus.class);
+        verify(accountTransactionStatusRepository).persist(captor.capture());
+        return captor.getValue();
+    }
+
+    private static AccountTransactionStatus status(Instant oldestPending, Instant newestPending, int pendingCount,
+                                                   Instant newestBooked, Instant newestBookedBeforePending, int bookedCount) {
+        return new AccountTransactionStatus(USER_ID, ACCOUNT_ID, oldestPending, newestPending, pendingCount, newestBooked, newestBookedBeforePending, bookedCount);
+    }
+
+    private static Instant at(int year, int month, int day) {
+        return LocalDate.of(year, month, day).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static Instruction instruction(List<Transaction> deleted, List<ProviderTransactionWithId> inserted, List<ProviderTransactionWithId> updated) {
+        return Instruction.builder()
+                .transactionsToDelete(deleted)
+                .transactionsToInsert(inserted)
+                .transactionsToUpdate(updated)
+                .transactionsToIgnore(emptyList())
+                .oldestTransactionChangeDate(Optional.empty())
+                .build();
+    }
+
+    private static Transaction stored(String id, TransactionStatus status, LocalDate date) {
+        return Transaction.builder()
+                .userId(USER_ID)
+                .accountId(ACCOUNT_ID)
+                .id(id)
+                .status(status)
+                .date(date)
+                .timestamp(date.atStartOfDay(ZoneOffset.UTC).toInstant())
+                .build();
+    }
+
+    private static ProviderTransactionWithId upstream(String id, TransactionStatus status, LocalDate date) {
+        return new ProviderTransactionWithId(ProviderTransactionDTO.builder()
+                .externalId(id)
+                .status(status)
+                .dateTime(date.atStartOfDay(ZoneOffset.UTC))
+                .build(), id);
+    }
+}
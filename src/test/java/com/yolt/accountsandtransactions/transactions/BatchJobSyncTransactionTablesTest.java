@@ -86,7 +86,7 @@ class BatchJobSyncTransactionTablesTest extends BaseIntegrationTest {
 
         // Run the batch, this should do nothing.
         batchSyncProgressStateRepository.reset();
-        batchJobSyncTransactionTables.doRun(false, -1);
+        batchJobSyncTransactionTables.doRun(false, -1, 1);
 
         // Make sure the batch has indeed not deleted anything from our table.
         assertThat(atTransactionRepository.getTransactionsForUser(userId)).hasSize(2);
@@ -116,13 +116,13 @@ class BatchJobSyncTransactionTablesTest extends BaseIntegrationTest {
         // Do a dryrun, this should have no effect, it shouldn't delete anything (there are 4 trxs before/after)
         assertThat(atTransactionRepository.getTransactionsForUser(userId)).hasSize(4);
         batchSyncProgressStateRepository.reset();
-        batchJobSyncTransactionTables.doRun(true, -1);
+        batchJobSyncTransactionTables.doRun(true, -1, 1);
         assertThat(atTransactionRepository.getTransactionsForUser(userId)).hasSize(4);
 
         // This run should delete transaction 3, and not transaction 4, despite it not being present in the
         // datascience keyspace, since it has status BOOKED.
         batchSyncProgressStateRepository.reset();
-        batchJobSyncTransactionTables.doRun(false, -1);
+        batchJobSyncTransactionTables.doRun(false, -1, 1);
 
         // Check that it has indeed deleted transaction 3, which is expected.
         assertThat(atTransactionRepository.getTransactionsForUser(userId)).hasSize(3);
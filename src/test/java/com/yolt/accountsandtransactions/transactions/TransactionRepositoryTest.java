@@ -1,6 +1,7 @@
 package com.yolt.accountsandtransactions.transactions;
 
 import com.yolt.accountsandtransactions.BaseIntegrationTest;
+import com.yolt.accountsandtransactions.datetime.DateInterval;
 import nl.ing.lovebird.extendeddata.transaction.TransactionStatus;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.Test;
@@ -14,6 +15,7 @@ import java.util.concurrent.ThreadLocalRandom;
 
 import static com.yolt.accountsandtransactions.TestBuilders.bulkCreateTransactions;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class TransactionRepositoryTest extends BaseIntegrationTest  {
 
@@ -36,6 +38,37 @@ class TransactionRepositoryTest extends BaseIntegrationTest  {
         assertThat(statusAndTimestampForTrxsOnOrAfter).hasSize(2000);
     }
 
+    @Test
+    void given_ALotOfTransactions_then_theNonBlockingPagesAreTheSame() {
+        var userId = UUID.randomUUID();
+        var accountId = UUID.randomUUID();
+
+        List<Transaction> transactions = bulkCreateTransactions(250, () -> new TransactionService.TransactionPrimaryKey(userId, accountId, randomDateFromEpochTillNow(), UUID.randomUUID().toString(), TransactionStatus.BOOKED),
+                (builder, i) -> builder, t -> t);
+        repository.saveBatch(transactions, 500);
+
+        var interval = new DateInterval(LocalDate.of(1970, 1, 1), LocalDate.now());
+        var pages = 0;
+        String next = null;
+        do {
+            var page = repository.get(userId, List.of(accountId), interval, next, 100);
+            var nonBlocking = repository.getAsync(userId, List.of(accountId), interval, next, 100).block();
+            assertThat(nonBlocking).isEqualTo(page);
+            next = page.getNext();
+            pages++;
+        } while (next != null);
+
+        assertThat(pages).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void given_anInvalidPagingState_then_theNonBlockingPageIsRejected() {
+        var interval = new DateInterval(LocalDate.of(1970, 1, 1), LocalDate.now());
+
+        assertThatThrownBy(() -> repository.getAsync(UUID.randomUUID(), List.of(UUID.randomUUID()), interval, "not-a-paging-state", 100).block())
+                .isInstanceOf(InvalidPagingStateException.class);
+    }
+
     private LocalDate randomDateFromEpochTillNow() {
         long minDay = LocalDate.of(1970, 1, 1).toEpochDay();
         long maxDay = LocalDate.now().toEpochDay();
@@ -2,11 +2,15 @@ package com.yolt.accountsandtransactions.transactions;
 
 import com.yolt.accountsandtransactions.TestBuilders;
 import com.yolt.accountsandtransactions.inputprocessing.ProviderTransactionWithId;
+import com.yolt.accountsandtransactions.inputprocessing.UpstreamDigestService;
 import com.yolt.accountsandtransactions.metrics.AccountsAndTransactionMetrics;
 import com.yolt.accountsandtransactions.offloading.OffloadService;
+import com.yolt.accountsandtransactions.datascience.PendingTransactionRangeService;
+import com.yolt.accountsandtransactions.summary.AccountTransactionStatusService;
 import com.yolt.accountsandtransactions.transactions.TransactionService.AccountIdentifiable;
 import com.yolt.accountsandtransactions.transactions.cycles.TransactionCyclesService;
 import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichments;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository.TransactionEnrichmentsPrimaryKey;
 import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsService;
 import com.yolt.accountsandtransactions.datetime.DateInterval;
 import nl.ing.lovebird.extendeddata.common.BalanceAmountDTO;
@@ -18,6 +22,7 @@ import org.junit.jupiter.api.Test;
 import java.time.*;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static java.math.BigDecimal.ONE;
 import static java.math.BigDecimal.TEN;
@@ -27,6 +32,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class TransactionServiceTest {
@@ -255,6 +262,9 @@ public class TransactionServiceTest {
                 mock(TransactionEnrichmentsService.class),
                 mock(TransactionCyclesService.class),
                 mock(OffloadService.class),
+                mock(AccountTransactionStatusService.class),
+                mock(PendingTransactionRangeService.class),
+                mock(UpstreamDigestService.class),
                 Clock.systemUTC(),
                 mock(AccountsAndTransactionMetrics.class)
         );
@@ -269,4 +279,86 @@ public class TransactionServiceTest {
                 .allSatisfy(transactionDTO -> assertThat(transactionDTO.getId()).isEqualTo("regular"));
     }
 
+    @Test
+    void shouldJoinEnrichmentsOfPageByPrimaryKey() {
+        var userId = randomUUID();
+        var accountId = randomUUID();
+        var enriched = TestBuilders.createTransactionTemplate().toBuilder()
+                .userId(userId)
+                .accountId(accountId)
+                .id("enriched")
+                .build();
+        var notEnriched = enriched.toBuilder()
+                .id("not-enriched")
+                .build();
+
+        var repository = mock(TransactionRepository.class);
+        when(repository.get(any(), any(), any(DateInterval.class), isNull(), eq(100))).thenReturn(
+                new TransactionsPage(List.of(enriched, notEnriched), null));
+
+        var enrichedKey = new TransactionEnrichmentsPrimaryKey(userId, accountId, enriched.getDate(), "enriched");
+        var enrichmentsService = mock(TransactionEnrichmentsService.class);
+        when(enrichmentsService.getTransactionEnrichments(userId, List.of(enrichedKey,
+                new TransactionEnrichmentsPrimaryKey(userId, accountId, notEnriched.getDate(), "not-enriched"))))
+                .thenReturn(Map.of(enrichedKey, TransactionEnrichments.builder()
+                        .userId(userId)
+                        .accountId(accountId)
+                        .date(enriched.getDate())
+                        .id("enriched")
+                        .enrichmentCategoryPersonal("Groceries")
+                        .build()));
+
+        var transactionService = new TransactionService(
+                repository,
+                enrichmentsService,
+                mock(TransactionCyclesService.class),
+                mock(OffloadService.class),
+                mock(AccountTransactionStatusService.class),
+                mock(PendingTransactionRangeService.class),
+                mock(UpstreamDigestService.class),
+                Clock.systemUTC(),
+                mock(AccountsAndTransactionMetrics.class)
+        );
+
+        var transactions = transactionService.getTransactions(
+                userId,
+                List.of(accountId),
+                DateInterval.of(LocalDate.now(), Period.ofDays(7)), null, 100);
+
+        assertThat(transactions.getTransactions()).hasSize(2);
+        assertThat(transactions.getTransactions().get(0).getEnrichment().getCategory()).isEqualTo("Groceries");
+        assertThat(transactions.getTransactions().get(1).getEnrichment()).isNull();
+    }
+
+    @Test
+    void shouldDeleteTheEnrichmentsTheStatusAndTheDigestWithTheTransactionsThatWereRead() {
+        var transaction = TestBuilders.createTransactionTemplate();
+        var key = new TransactionService.TransactionPrimaryKey(transaction.getUserId(), transaction.getAccountId(), transaction.getDate(), transaction.getId(), transaction.getStatus());
+        var repository = mock(TransactionRepository.class);
+        var enrichmentsService = mock(TransactionEnrichmentsService.class);
+        var offloadService = mock(OffloadService.class);
+        var accountTransactionStatusService = mock(AccountTransactionStatusService.class);
+        var upstreamDigestService = mock(UpstreamDigestService.class);
+
+        var transactionService = new TransactionService(
+                repository,
+                enrichmentsService,
+                mock(TransactionCyclesService.class),
+                offloadService,
+                accountTransactionStatusService,
+                mock(PendingTransactionRangeService.class),
+                upstreamDigestService,
+                Clock.systemUTC(),
+                mock(AccountsAndTransactionMetrics.class)
+        );
+
+        transactionService.deleteTransactions(List.of(transaction));
+
+        verify(offloadService).offloadTransactionsDeleteAsync(List.of(transaction));
+        verify(repository).deleteSpecificTransactions(List.of(key));
+        verify(repository, never()).get(any(), any(), any(LocalDate.class), any());
+        verify(enrichmentsService).deleteSpecificEnrichments(List.of(key));
+        verify(accountTransactionStatusService).delete(transaction.getUserId(), List.of(transaction.getAccountId()));
+        verify(upstreamDigestService).delete(transaction.getUserId(), List.of(transaction.getAccountId()));
+    }
 }
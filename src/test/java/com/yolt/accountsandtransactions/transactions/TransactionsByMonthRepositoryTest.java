@@ -0,0 +1,156 @@
+package com.yolt.accountsandtransactions.transactions;
+
+import com.yolt.accountsandtransactions.BaseIntegrationTest;
+import com.yolt.accountsandtransactions.datetime.DateInterval;
+import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+import static com.yolt.accountsandtransactions.TestBuilders.createTransactionTemplate;
+import static nl.ing.lovebird.extendeddata.transaction.TransactionStatus.BOOKED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionsByMonthRepositoryTest extends BaseIntegrationTest {
+
+    @Autowired
+    TransactionsByMonthRepository repository;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID accountId = UUID.randomUUID();
+    private final UUID otherAccountId = UUID.randomUUID();
+
+    @Test
+    void aTransactionIsReadFromTheBucketOfItsMonth() {
+        var transaction = transaction(accountId, LocalDate.of(2021, 3, 15), "1");
+        write(List.of(transaction));
+
+        assertThat(repository.get(userId, accountId, LocalDate.of(2021, 3, 15), "1")).contains(transaction);
+        assertThat(repository.getMonths(userId, List.of(accountId)).get(accountId)).containsExactly("2021-03");
+    }
+
+    @Test
+    void theTransactionsOfAnAccountAreMergedByDate() {
+        write(List.of(
+                transaction(accountId, LocalDate.of(2021, 1, 31), "1"),
+                transaction(accountId, LocalDate.of(2021, 3, 1), "2"),
+                transaction(accountId, LocalDate.of(2021, 2, 10), "3"),
+                transaction(accountId, LocalDate.of(2020, 12, 31), "4"),
+                transaction(otherAccountId, LocalDate.of(2021, 2, 11), "5")));
+
+        assertThat(repository.getTransactionsInAccountFromDate(userId, accountId, LocalDate.of(2021, 1, 1)))
+                .extracting(Transaction::getId)
+                .containsExactly("2", "3", "1");
+    }
+
+    @Test
+    void thePagesOfTheAccountsFollowEachOther() {
+        write(List.of(
+                transaction(accountId, LocalDate.of(2021, 1, 31), "1"),
+                transaction(accountId, LocalDate.of(2021, 3, 1), "2"),
+                transaction(otherAccountId, LocalDate.of(2021, 3, 1), "3"),
+                transaction(otherAccountId, LocalDate.of(2021, 2, 10), "4"),
+                transaction(accountId, LocalDate.of(2020, 12, 31), "5"),
+                transaction(accountId, LocalDate.of(2021, 5, 1), "6")));
+
+        var interval = new DateInterval(LocalDate.of(2021, 1, 1), LocalDate.of(2021, 4, 30));
+        var ids = new ArrayList<String>();
+        String next = null;
+        do {
+            var page = repository.get(userId, List.of(accountId, otherAccountId), interval, next, 2);
+            assertThat(page.getTransactions()).hasSizeLessThanOrEqualTo(2);
+            page.getTransactions().forEach(transaction -> ids.add(transaction.getId()));
+            next = page.getNext();
+        } while (next != null);
+
+        var sameDate = accountId.compareTo(otherAccountId) < 0 ? List.of("2", "3") : List.of("3", "2");
+        assertThat(ids).containsExactly(sameDate.get(0), sameDate.get(1), "4", "1");
+    }
+
+    @Test
+    void when_theAccountsAreDeleted_then_theirBucketsAreDeleted() {
+        write(List.of(
+                transaction(accountId, LocalDate.of(2021, 1, 31), "1"),
+                transaction(accountId, LocalDate.of(2021, 3, 1), "2"),
+                transaction(otherAccountId, LocalDate.of(2021, 3, 1), "3")));
+
+        repository.deleteAccounts(userId, List.of(accountId));
+
+        assertThat(repository.getTransactionsInAccountFromDate(userId, accountId, LocalDate.of(2021, 1, 1))).isEmpty();
+        assertThat(repository.getMonths(userId, List.of(accountId, otherAccountId))).containsOnlyKeys(otherAccountId);
+    }
+
+    @Test
+    void when_theLastTransactionOfAMonthIsDeleted_then_theMonthIsPruned() {
+        var january = transaction(accountId, LocalDate.of(2021, 1, 31), "1");
+        var march = transaction(accountId, LocalDate.of(2021, 3, 1), "2");
+        var otherMarch = transaction(accountId, LocalDate.of(2021, 3, 2), "3");
+        // written before the margin of the prune
+        long timestampMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now().minus(Duration.ofMinutes(5)));
+        repository.copyAsync(List.of(january, march, otherMarch), (user, date) -> Optional.empty(), timestampMicros).join();
+
+        var deleted = List.of(key(january), key(march));
+        repository.deleteStatements(deleted).forEach(session::execute);
+        repository.pruneMonths(deleted);
+
+        assertThat(repository.getMonths(userId, List.of(accountId)).get(accountId)).containsExactly("2021-03");
+    }
+
+    @Test
+    void when_aMonthIsCopiedInTwoPages_then_itExpiresWithTheLastDayOfTheMonth() throws InterruptedException {
+        // the transactions table is clustered by date (descending), the older transactions of a month come in a later page
+        var newer = transaction(accountId, LocalDate.of(2021, 3, 20), "1");
+        var older = transaction(accountId, LocalDate.of(2021, 3, 2), "2");
+        BiFunction<UUID, LocalDate, Optional<Integer>> ttl = (user, date) -> Optional.of(date.isBefore(LocalDate.of(2021, 3, 15)) ? 1 : 3_600);
+        long timestampMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now().minus(Duration.ofMinutes(1)));
+
+        repository.copyAsync(List.of(newer), ttl, timestampMicros).join();
+        repository.copyAsync(List.of(older), ttl, timestampMicros + 1).join();
+        Thread.sleep(2_000);
+
+        assertThat(repository.getMonths(userId, List.of(accountId)).get(accountId)).containsExactly("2021-03");
+        assertThat(repository.getTransactionsInAccountFromDate(userId, accountId, LocalDate.of(2021, 1, 1))).containsExactly(newer);
+    }
+
+    @Test
+    void when_aMonthWasJustWritten_then_itIsNotPruned() {
+        var january = transaction(accountId, LocalDate.of(2021, 1, 31), "1");
+        write(List.of(january));
+
+        repository.deleteStatements(List.of(key(january))).forEach(session::execute);
+        repository.pruneMonths(List.of(key(january)));
+
+        // a concurrent insert into the bucket could have written it
+        assertThat(repository.getMonths(userId, List.of(accountId)).get(accountId)).containsExactly("2021-01");
+    }
+
+    @Test
+    void when_thePagingStateIsInvalid_then_itIsRejected() {
+        var interval = new DateInterval(LocalDate.of(2021, 1, 1), LocalDate.of(2021, 4, 30));
+
+        assertThatThrownBy(() -> repository.get(userId, List.of(accountId), interval, "not-a-paging-state", 2))
+                .isInstanceOf(InvalidPagingStateException.class);
+    }
+
+    private void write(List<Transaction> transactions) {
+        repository.upsertStatements(transactions, 500).forEach(session::execute);
+    }
+
+    private static TransactionPrimaryKey key(Transaction transaction) {
+        return new TransactionPrimaryKey(transaction.getUserId(), transaction.getAccountId(), transaction.getDate(), transaction.getId(), transaction.getStatus());
+    }
+
+    private Transaction transaction(UUID accountId, LocalDate date, String id) {
+        return createTransactionTemplate(new TransactionPrimaryKey(userId, accountId, date, id, BOOKED));
+    }
+}
@@ -3,6 +3,7 @@ package com.yolt.accountsandtransactions.transactions.enrichments;
 import com.yolt.accountsandtransactions.BaseIntegrationTest;
 import com.yolt.accountsandtransactions.transactions.TransactionService.TransactionPrimaryKey;
 import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichments.TransactionEnrichmentsBuilder;
+import com.yolt.accountsandtransactions.transactions.enrichments.TransactionEnrichmentsRepository.TransactionEnrichmentsPrimaryKey;
 import com.yolt.accountsandtransactions.transactions.enrichments.api.CategoryTransactionEnrichment;
 import com.yolt.accountsandtransactions.transactions.enrichments.api.CounterpartyTransactionEnrichment;
 import com.yolt.accountsandtransactions.transactions.enrichments.api.CycleTransactionEnrichment;
@@ -208,6 +209,27 @@ public class TransactionEnrichmentsRepositoryIntegrationTest extends BaseIntegra
         assertEnrichmentsExistForAccount(otherUserId, otherUserAccountId, List.of(otherUserAccountId));
     }
 
+    @Test
+    public void shouldOnlyGetEnrichmentsWithTheGivenPrimaryKeys() {
+        var userId = randomUUID();
+        var accountId = randomUUID();
+        var date = LocalDate.now();
+        persistEnrichments(userId, accountId, "requested-1", date);
+        persistEnrichments(userId, accountId, "requested-2", date.minusDays(3));
+        persistEnrichments(userId, accountId, "not-requested", date);
+        persistEnrichments(userId, randomUUID(), "requested-1", date);
+
+        var enrichments = transactionEnrichmentsRepository.getAsync(userId, accountId, List.of(
+                new TransactionEnrichmentsPrimaryKey(userId, accountId, date, "requested-1"),
+                new TransactionEnrichmentsPrimaryKey(userId, accountId, date.minusDays(3), "requested-2"),
+                new TransactionEnrichmentsPrimaryKey(userId, accountId, date, "absent"))).join();
+
+        assertThat(enrichments)
+                .extracting(TransactionEnrichments::getId)
+                .containsExactlyInAnyOrder("requested-1", "requested-2");
+        assertThat(enrichments).allMatch(it -> accountId.equals(it.getAccountId()));
+    }
+
     private void assertEnrichmentsExistForAccount(UUID userId, UUID accountIdToMatch, List<UUID> accountsToFetch) {
         assertThat(transactionEnrichmentsRepository.get(userId, accountsToFetch, getDateInterval()))
                 .hasSize(1)